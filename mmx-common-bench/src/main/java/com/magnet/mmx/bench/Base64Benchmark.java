@@ -0,0 +1,126 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.util.Base64;
+import com.magnet.mmx.util.Base64Codec;
+
+/**
+ * Base64 encoding and decoding of binary payloads by the iharder Base64 and
+ * by the Base64Codec.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Base64Benchmark {
+  @Param({ BenchData.SIZE_1K, BenchData.SIZE_THRESHOLD, BenchData.SIZE_MAX })
+  public int size;
+
+  private byte[] mRaw;
+  private String mEncoded;
+  private ByteBuffer mRawBuf;
+  private ByteBuffer mEncBuf;
+  private ByteBuffer mDirectRawBuf;
+  private ByteBuffer mDirectEncBuf;
+  private ByteBuffer mDecBuf;
+  private CharBuffer mCharBuf;
+
+  @Setup
+  public void setup() {
+    mRaw = BenchData.bytes(size);
+    mEncoded = Base64.encodeBytes(mRaw);
+    mRawBuf = ByteBuffer.wrap(mRaw);
+    mEncBuf = ByteBuffer.allocate((size + 2) / 3 * 4);
+    mDirectRawBuf = ByteBuffer.allocateDirect(size);
+    mDirectRawBuf.put(mRaw);
+    mDirectEncBuf = ByteBuffer.allocateDirect(mEncBuf.capacity());
+    mDecBuf = ByteBuffer.allocate(Base64Codec.maxDecodedLength(mEncoded.length()));
+    mCharBuf = CharBuffer.allocate(mEncBuf.capacity());
+    Base64Codec.encode(mRawBuf, mEncBuf);
+  }
+
+  @Benchmark
+  public String encodeBytes() {
+    return Base64.encodeBytes(mRaw);
+  }
+
+  @Benchmark
+  public byte[] decodeString() throws IOException {
+    return Base64.decode(mEncoded);
+  }
+
+  @Benchmark
+  public ByteBuffer encodeByteBuffer() {
+    mRawBuf.clear();
+    mEncBuf.clear();
+    Base64.encode(mRawBuf, mEncBuf);
+    return mEncBuf;
+  }
+
+  @Benchmark
+  public String codecEncodeToString() {
+    return Base64Codec.encodeToString(mRaw, 0, mRaw.length);
+  }
+
+  @Benchmark
+  public byte[] codecDecodeString() {
+    return Base64Codec.decode(mEncoded);
+  }
+
+  @Benchmark
+  public CharBuffer codecEncodeCharBuffer() {
+    mRawBuf.clear();
+    mCharBuf.clear();
+    Base64Codec.encode(mRawBuf, mCharBuf);
+    return mCharBuf;
+  }
+
+  @Benchmark
+  public ByteBuffer codecEncodeDirect() {
+    mDirectRawBuf.clear();
+    mDirectEncBuf.clear();
+    Base64Codec.encode(mDirectRawBuf, mDirectEncBuf);
+    return mDirectEncBuf;
+  }
+
+  @Benchmark
+  public ByteBuffer codecDecodeByteBuffer() {
+    mEncBuf.clear();
+    mDecBuf.clear();
+    Base64Codec.decode(mEncBuf, mDecBuf);
+    return mDecBuf;
+  }
+}
@@ -0,0 +1,92 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.util.BatchEncryptor;
+import com.magnet.mmx.util.DefaultEncryptor;
+import com.magnet.mmx.util.EncryptorConfig;
+
+/**
+ * Fan-out of a 1KB message to many recipients: one encryptor called
+ * sequentially versus {@link BatchEncryptor} over a fixed thread pool.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchEncryptorBenchmark {
+  @Param({ "16", "256", "4096" })
+  public int recipients;
+
+  private DefaultEncryptor mEncryptor;
+  private List<byte[]> mPlains;
+  private ExecutorService mExecutor;
+  private BatchEncryptor mBatchEncryptor;
+
+  @Setup
+  public void setup() throws Exception {
+    mEncryptor = new DefaultEncryptor(
+        BenchData.bytes(EncryptorConfig.DEFAULT_KEY_SIZE));
+    byte[] plain = BenchData.bytes(Integer.parseInt(BenchData.SIZE_1K));
+    mPlains = new ArrayList<byte[]>(recipients);
+    for (int i = 0; i < recipients; i++) {
+      mPlains.add(plain);
+    }
+    int cpus = Runtime.getRuntime().availableProcessors();
+    mExecutor = Executors.newFixedThreadPool(cpus);
+    mBatchEncryptor = new BatchEncryptor(mExecutor, cpus);
+  }
+
+  @TearDown
+  public void tearDown() {
+    mExecutor.shutdownNow();
+  }
+
+  @Benchmark
+  public List<byte[]> encodeSequential() {
+    List<byte[]> results = new ArrayList<byte[]>(recipients);
+    for (byte[] plain : mPlains) {
+      results.add(mEncryptor.encode(plain));
+    }
+    return results;
+  }
+
+  @Benchmark
+  public List<byte[]> encodeBatch() throws InterruptedException {
+    return mBatchEncryptor.encode(mEncryptor, mPlains);
+  }
+}
@@ -0,0 +1,114 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import com.magnet.mmx.protocol.Constants;
+import com.magnet.mmx.protocol.TopicAction;
+
+/**
+ * Deterministic test data shared by all benchmarks.  The payload sizes are
+ * the ones that matter to the message server: a typical 1KB message, the
+ * {@link Constants#PAYLOAD_THRESHOLD} and the {@link Constants#MAX_PAYLOAD_SIZE}.
+ */
+public class BenchData {
+  public final static String SIZE_1K = "1024";
+  public final static String SIZE_THRESHOLD = "102400";     // PAYLOAD_THRESHOLD
+  public final static String SIZE_MAX = "2097152";          // MAX_PAYLOAD_SIZE
+
+  private final static String WORDS =
+      "The quick brown fox & the lazy dog <said> \"hello\" to 'everyone' ";
+  private final static long SEED = 0x4d4d58L;
+
+  static {
+    // Keep the @Param strings in sync with the protocol constants.
+    if (Integer.parseInt(SIZE_THRESHOLD) != Constants.PAYLOAD_THRESHOLD ||
+        Integer.parseInt(SIZE_MAX) != Constants.MAX_PAYLOAD_SIZE) {
+      throw new IllegalStateException("Benchmark sizes are out of sync with Constants");
+    }
+  }
+
+  /**
+   * Generate a text of <code>size</code> chars with a mix of XML special
+   * characters.
+   * @param size Number of chars.
+   * @return A text.
+   */
+  public static String text(int size) {
+    StringBuilder sb = new StringBuilder(size);
+    while (sb.length() < size) {
+      sb.append(WORDS, 0, Math.min(WORDS.length(), size - sb.length()));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Generate <code>size</code> pseudo random bytes.
+   * @param size Number of bytes.
+   * @return A byte array.
+   */
+  public static byte[] bytes(int size) {
+    byte[] data = new byte[size];
+    new Random(SEED).nextBytes(data);
+    return data;
+  }
+
+  /**
+   * Generate a fetch response whose items carry about <code>size</code> chars
+   * of payload in total.  Each item carries at most 1KB.
+   * @param size The total payload size in chars.
+   * @return A fetch response.
+   */
+  public static TopicAction.FetchResponse fetchResponse(int size) {
+    int itemSize = Math.min(size, 1024);
+    int count = Math.max(1, size / itemSize);
+    String payload = text(itemSize);
+    Date now = new Date(1420070400000L);
+    List<TopicAction.MMXPublishedItem> items =
+        new ArrayList<TopicAction.MMXPublishedItem>(count);
+    for (int i = 0; i < count; i++) {
+      items.add(new TopicAction.MMXPublishedItem("item-"+i, "user"+(i % 16),
+          new Date(now.getTime() + i), payload));
+    }
+    return new TopicAction.FetchResponse("user0", "bench-topic", count, items);
+  }
+
+  /**
+   * Write the content into a temporary file that is deleted on exit.
+   * @param prefix The file name prefix.
+   * @param content The content.
+   * @return The temporary file.
+   * @throws IOException
+   */
+  public static File tempFile(String prefix, byte[] content) throws IOException {
+    File file = File.createTempFile(prefix, ".dat");
+    file.deleteOnExit();
+    FileOutputStream fos = new FileOutputStream(file);
+    try {
+      fos.write(content);
+    } finally {
+      fos.close();
+    }
+    return file;
+  }
+}
@@ -0,0 +1,40 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks with the GC profiler so each result reports the
+ * allocation rate (gc.alloc.rate.norm is bytes allocated per operation.)
+ * An optional argument is a regular expression of the benchmarks to be run.
+ * <pre>
+ * java -cp target/benchmarks.jar com.magnet.mmx.bench.BenchmarkMain [regexp]
+ * </pre>
+ */
+public class BenchmarkMain {
+  public static void main(String[] args) throws RunnerException {
+    Options opts = new OptionsBuilder()
+        .include((args.length > 0) ? args[0] : BenchmarkMain.class.getPackage().getName())
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(opts).run();
+  }
+}
@@ -0,0 +1,92 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.protocol.BinaryCodec;
+import com.magnet.mmx.protocol.Constants.MessageState;
+import com.magnet.mmx.protocol.MsgsState;
+
+/**
+ * A bulk message state response in JSON versus the binary encoding.  The
+ * encoded sizes are printed at setup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BinaryCodecBenchmark {
+  @Param({ "10", "1000" })
+  public int msgs;
+
+  private MsgsState.Response mResponse;
+  private String mJson;
+  private byte[] mBinary;
+
+  @Setup
+  public void setup() {
+    MessageState[] states = MessageState.values();
+    mResponse = new MsgsState.Response();
+    for (int i = 0; i < msgs; i++) {
+      MsgsState.MessageStatusList list = new MsgsState.MessageStatusList(3);
+      for (int j = 0; j < 3; j++) {
+        list.add(new MsgsState.MessageStatus()
+            .setState(states[(i + j) % states.length])
+            .setRecipient("user"+j+"%appid"));
+      }
+      mResponse.put("msg-"+i, list);
+    }
+    mJson = mResponse.toJson();
+    mBinary = BinaryCodec.toBytes(mResponse);
+    System.out.println("\nmsgs="+msgs+": json="+mJson.length()+" bytes, binary="+
+        mBinary.length+" bytes");
+  }
+
+  @Benchmark
+  public String encodeJson() {
+    return mResponse.toJson();
+  }
+
+  @Benchmark
+  public MsgsState.Response decodeJson() {
+    return MsgsState.Response.fromJson(mJson);
+  }
+
+  @Benchmark
+  public byte[] encodeBinary() {
+    return BinaryCodec.toBytes(mResponse);
+  }
+
+  @Benchmark
+  public MsgsState.Response decodeBinary() throws Exception {
+    return BinaryCodec.fromBytes(mBinary, MsgsState.Response.class);
+  }
+}
@@ -0,0 +1,104 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.protocol.Payload;
+import com.magnet.mmx.util.Compressor;
+import com.magnet.mmx.util.Converter;
+
+/**
+ * Compression of text payloads: the base64 Converter round-trip, the pooled
+ * byte array codec, and a Payload streamed through the compressor into a
+ * sink without buffering.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressorBenchmark {
+  @Param({ BenchData.SIZE_1K, BenchData.SIZE_THRESHOLD, BenchData.SIZE_MAX })
+  public int size;
+
+  private final static OutputStream NULL_STREAM = new OutputStream() {
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+  };
+
+  private String mText;
+  private String mDeflated;
+  private byte[] mPlain;
+  private byte[] mZipped;
+  private Payload mPayload;
+  private Compressor mFast;
+
+  @Setup
+  public void setup() throws Exception {
+    mText = BenchData.text(size);
+    mDeflated = Converter.Deflator.convert(mText).toString();
+    mPlain = mText.getBytes("UTF-8");
+    mZipped = Compressor.DEFAULT.compress(mPlain, 0, mPlain.length);
+    mPayload = new Payload("text", mText);
+    mFast = new Compressor(Deflater.BEST_SPEED);
+  }
+
+  @Benchmark
+  public CharSequence deflator() {
+    return Converter.Deflator.convert(mText);
+  }
+
+  @Benchmark
+  public CharSequence inflator() {
+    return Converter.Inflator.convert(mDeflated);
+  }
+
+  @Benchmark
+  public byte[] compressBytes() {
+    return Compressor.DEFAULT.compress(mPlain, 0, mPlain.length);
+  }
+
+  @Benchmark
+  public byte[] decompressBytes() throws Exception {
+    return Compressor.DEFAULT.decompress(mZipped, 0, mZipped.length);
+  }
+
+  @Benchmark
+  public long payloadCompressed() throws Exception {
+    return mPayload.writeCompressed(NULL_STREAM, mFast);
+  }
+}
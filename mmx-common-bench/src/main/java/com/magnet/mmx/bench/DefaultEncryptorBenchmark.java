@@ -0,0 +1,151 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.util.DefaultEncryptor;
+import com.magnet.mmx.util.EncryptorConfig;
+
+/**
+ * Encryption and decryption of binary payloads with the default cipher, and
+ * with the segmented AES-GCM mode in memory and file-to-file.  The buffer
+ * benchmarks encrypt and decrypt between direct buffers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DefaultEncryptorBenchmark {
+  @Param({ BenchData.SIZE_1K, BenchData.SIZE_THRESHOLD, BenchData.SIZE_MAX })
+  public int size;
+
+  private DefaultEncryptor mEncryptor;
+  private byte[] mPlain;
+  private byte[] mCipher;
+  private String mCipherStr;
+  private DefaultEncryptor mAeadEncryptor;
+  private byte[] mAeadCipher;
+  private File mPlainFile;
+  private File mCipherFile;
+  private File mOutFile;
+  private ByteBuffer mPlainBuf;
+  private ByteBuffer mCipherBuf;
+  private ByteBuffer mOutBuf;
+
+  @Setup
+  public void setup() throws Exception {
+    byte[] key = BenchData.bytes(EncryptorConfig.DEFAULT_KEY_SIZE);
+    mEncryptor = new DefaultEncryptor(key);
+    mPlain = BenchData.bytes(size);
+    mCipher = mEncryptor.encode(mPlain);
+    mCipherStr = mEncryptor.encodeToString(mPlain);
+
+    EncryptorConfig aeadCfg = new EncryptorConfig();
+    aeadCfg.setMode(EncryptorConfig.MODE_GCM);
+    mAeadEncryptor = new DefaultEncryptor(aeadCfg, key);
+    mAeadCipher = mAeadEncryptor.encode(mPlain);
+    mPlainFile = BenchData.tempFile("benchPlain", mPlain);
+    mCipherFile = BenchData.tempFile("benchCipher", new byte[0]);
+    mAeadEncryptor.encodeFile(mPlainFile, mCipherFile);
+    mOutFile = BenchData.tempFile("benchOut", new byte[0]);
+
+    mPlainBuf = ByteBuffer.allocateDirect(size);
+    mPlainBuf.put(mPlain).flip();
+    mCipherBuf = ByteBuffer.allocateDirect(mEncryptor.getEncryptedSize(size));
+    mEncryptor.encrypt(mPlainBuf, mCipherBuf);
+    mCipherBuf.flip();
+    mOutBuf = ByteBuffer.allocateDirect(mCipherBuf.capacity());
+  }
+
+  @TearDown
+  public void tearDown() {
+    mPlainFile.delete();
+    mCipherFile.delete();
+    mOutFile.delete();
+  }
+
+  @Benchmark
+  public byte[] encode() {
+    return mEncryptor.encode(mPlain);
+  }
+
+  @Benchmark
+  public byte[] decode() {
+    return mEncryptor.decode(mCipher);
+  }
+
+  @Benchmark
+  public String encodeToString() {
+    return mEncryptor.encodeToString(mPlain);
+  }
+
+  @Benchmark
+  public byte[] decodeFromString() {
+    return mEncryptor.decodeFromString(mCipherStr);
+  }
+
+  @Benchmark
+  public byte[] encodeAead() {
+    return mAeadEncryptor.encode(mPlain);
+  }
+
+  @Benchmark
+  public byte[] decodeAead() {
+    return mAeadEncryptor.decode(mAeadCipher);
+  }
+
+  @Benchmark
+  public long encodeFileAead() throws Exception {
+    return mAeadEncryptor.encodeFile(mPlainFile, mOutFile);
+  }
+
+  @Benchmark
+  public long decodeFileAead() throws Exception {
+    return mAeadEncryptor.decodeFile(mCipherFile, mOutFile);
+  }
+
+  @Benchmark
+  public int encryptBuffer() throws Exception {
+    mPlainBuf.rewind();
+    mOutBuf.clear();
+    return mEncryptor.encrypt(mPlainBuf, mOutBuf);
+  }
+
+  @Benchmark
+  public int decryptBuffer() throws Exception {
+    mCipherBuf.rewind();
+    mOutBuf.clear();
+    return mEncryptor.decrypt(mCipherBuf, mOutBuf);
+  }
+}
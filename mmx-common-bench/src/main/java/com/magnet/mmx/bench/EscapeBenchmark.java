@@ -0,0 +1,112 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.util.Utils;
+
+/**
+ * XML escaping of stanza text and JID node escaping of user ID's by Utils and
+ * by the former switch-based code.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EscapeBenchmark {
+  @Param({ BenchData.SIZE_1K, BenchData.SIZE_THRESHOLD })
+  public int size;
+
+  private String mText;
+  private String mPlainText;
+  private CharBuffer mBuffer;
+  private final String mUserId = "john.doe%a1b2c3d4e5";
+  private final String mEmailId = "john.doe@example.com";
+
+  @Setup
+  public void setup() {
+    mText = BenchData.text(size);
+    mPlainText = mText.replaceAll("[<>&\"']", "_");
+    mBuffer = CharBuffer.allocate(8192);
+  }
+
+  @Benchmark
+  public CharSequence escapeForXML() {
+    return Utils.escapeForXML(mText);
+  }
+
+  @Benchmark
+  public CharSequence escapeForXMLLegacy() {
+    return LegacyUtils.escapeForXML(mText);
+  }
+
+  @Benchmark
+  public CharSequence escapeForXMLPlain() {
+    return Utils.escapeForXML(mPlainText);
+  }
+
+  @Benchmark
+  public CharSequence escapeForXMLPlainLegacy() {
+    return LegacyUtils.escapeForXML(mPlainText);
+  }
+
+  @Benchmark
+  public int escapeForXMLBuffer() {
+    int total = 0;
+    for (int i = 0, len = mText.length(); i < len; ) {
+      i = Utils.escapeForXML(mText, i, len, mBuffer);
+      total += mBuffer.position();
+      mBuffer.clear();
+    }
+    return total;
+  }
+
+  @Benchmark
+  public String escapeNode() {
+    return Utils.escapeNode(mUserId);
+  }
+
+  @Benchmark
+  public String escapeNodeLegacy() {
+    return LegacyUtils.escapeNode(mUserId);
+  }
+
+  @Benchmark
+  public String escapeNodeEmail() {
+    return Utils.escapeNode(mEmailId);
+  }
+
+  @Benchmark
+  public String escapeNodeEmailLegacy() {
+    return LegacyUtils.escapeNode(mEmailId);
+  }
+}
@@ -0,0 +1,122 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.util.DisposableTextFile;
+import com.magnet.mmx.util.FileCharSequence;
+
+/**
+ * Scanning and building a 16-bit Unicode file by the paged FileCharSequence
+ * and by the original char-by-char implementation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileCharSequenceBenchmark {
+  private final static int PIECE = 64;
+
+  @Param({ BenchData.SIZE_1K, BenchData.SIZE_THRESHOLD, BenchData.SIZE_MAX })
+  public int size;
+
+  private String mText;
+  private FileCharSequence mPaged;
+  private LegacyFileCharSequence mLegacy;
+
+  @Setup
+  public void setup() throws IOException {
+    mText = BenchData.text(size);
+    File file = BenchData.tempFile("benchChars", mText.getBytes("UTF-16BE"));
+    // Never deleted by finish(); the file is removed on exit.
+    mPaged = new FileCharSequence(new DisposableTextFile(file.getPath(), false));
+    mLegacy = new LegacyFileCharSequence(new DisposableTextFile(file.getPath(), false));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    mPaged.close();
+    mLegacy.close();
+  }
+
+  @Benchmark
+  public int scan() {
+    int sum = 0;
+    for (int i = 0, n = mPaged.length(); i < n; i++) {
+      sum += mPaged.charAt(i);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int scanLegacy() {
+    int sum = 0;
+    for (int i = 0, n = mLegacy.length(); i < n; i++) {
+      sum += mLegacy.charAt(i);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int append() throws IOException {
+    File file = File.createTempFile("benchAppend", ".dat");
+    FileCharSequence fcs = new FileCharSequence(
+        new DisposableTextFile(file.getPath(), true));
+    try {
+      for (int i = 0; i < size; i += PIECE) {
+        fcs.append(mText, i, Math.min(size, i + PIECE));
+      }
+      fcs.flush();
+      return fcs.length();
+    } finally {
+      fcs.close();
+    }
+  }
+
+  @Benchmark
+  public int appendLegacy() throws IOException {
+    File file = File.createTempFile("benchAppend", ".dat");
+    LegacyFileCharSequence fcs = new LegacyFileCharSequence(
+        new DisposableTextFile(file.getPath(), true));
+    try {
+      for (int i = 0; i < size; i += PIECE) {
+        fcs.append(mText, i, Math.min(size, i + PIECE));
+      }
+      return fcs.length();
+    } finally {
+      fcs.close();
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.util.DisposableBinFile;
+import com.magnet.mmx.util.DisposableTextFile;
+import com.magnet.mmx.util.FileUtil;
+
+/**
+ * XML encoding of large text and binary payloads for the stanza.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileUtilBenchmark {
+  @Param({ BenchData.SIZE_1K, BenchData.SIZE_THRESHOLD, BenchData.SIZE_MAX })
+  public int size;
+
+  private String mText;
+  private DisposableTextFile mTextFile;
+  private DisposableBinFile mBinFile;
+
+  @Setup
+  public void setup() throws IOException {
+    mText = BenchData.text(size);
+    File text = BenchData.tempFile("benchText", mText.getBytes("UTF-8"));
+    File bin = BenchData.tempFile("benchBin", BenchData.bytes(size));
+    // Never deleted by finish(); the files are removed on exit.
+    mTextFile = new DisposableTextFile(text.getPath(), false);
+    mBinFile = new DisposableBinFile(bin.getPath(), false);
+  }
+
+  @Benchmark
+  public CharBuffer encodeCharSequence() {
+    return FileUtil.encodeForXml(mText);
+  }
+
+  @Benchmark
+  public StringBuilder encodeCharSequenceStream() {
+    StringBuilder xsb = new StringBuilder(size + size / 4);
+    FileUtil.encodeForXml(mText, xsb);
+    return xsb;
+  }
+
+  @Benchmark
+  public StringBuilder encodeTextFile() {
+    StringBuilder xsb = new StringBuilder(size + size / 4);
+    FileUtil.encodeForXml(mTextFile, xsb);
+    return xsb;
+  }
+
+  @Benchmark
+  public StringBuilder encodeBinFile() {
+    StringBuilder xsb = new StringBuilder((size + 2) / 3 * 4);
+    FileUtil.encodeForXml(mBinFile, xsb);
+    return xsb;
+  }
+}
@@ -0,0 +1,120 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.magnet.mmx.protocol.TopicAction;
+import com.magnet.mmx.util.GsonData;
+import com.magnet.mmx.util.TimeUtil;
+
+/**
+ * Round-trip of a fetch response through the GsonData singleton (streaming
+ * adapters) and through a reflective Gson with the same date format.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GsonDataBenchmark {
+  @Param({ BenchData.SIZE_1K, BenchData.SIZE_THRESHOLD, BenchData.SIZE_MAX })
+  public int size;
+
+  // The GsonData configuration without the streaming protocol adapters.
+  private final static Gson sReflective = new GsonBuilder()
+    .registerTypeAdapter(Date.class, new JsonSerializer<Date>() {
+      @Override
+      public JsonElement serialize(Date date, Type type,
+          JsonSerializationContext context) {
+        return new JsonPrimitive(TimeUtil.toString(date));
+      }
+    })
+    .registerTypeAdapter(Date.class, new JsonDeserializer<Date>() {
+      @Override
+      public Date deserialize(JsonElement json, Type type,
+          JsonDeserializationContext context) {
+        return TimeUtil.toDate(json.getAsString());
+      }
+    })
+    .create();
+
+  private TopicAction.FetchResponse mResponse;
+  private String mJson;
+
+  @Setup
+  public void setup() {
+    mResponse = BenchData.fetchResponse(size);
+    mJson = mResponse.toJson();
+  }
+
+  @Benchmark
+  public String toJson() {
+    return GsonData.getGson().toJson(mResponse);
+  }
+
+  @Benchmark
+  public TopicAction.FetchResponse fromJson() {
+    return TopicAction.FetchResponse.fromJson(mJson);
+  }
+
+  @Benchmark
+  public int fromJsonStream(Blackhole bh) {
+    int count = 0;
+    TopicAction.FetchStream stream = TopicAction.FetchResponse.stream(
+        new StringReader(mJson));
+    while (stream.hasNext()) {
+      bh.consume(stream.next());
+      ++count;
+    }
+    return count;
+  }
+
+  @Benchmark
+  public String toJsonReflective() {
+    return sReflective.toJson(mResponse);
+  }
+
+  @Benchmark
+  public TopicAction.FetchResponse fromJsonReflective() {
+    return sReflective.fromJson(mJson, TopicAction.FetchResponse.class);
+  }
+}
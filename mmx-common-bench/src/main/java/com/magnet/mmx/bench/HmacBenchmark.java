@@ -0,0 +1,69 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.util.HmacEngine;
+
+/**
+ * Signature check of a request with a cached key versus a new Mac per call.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HmacBenchmark {
+  private final static String KEY = "a1b2c3d4-e5f6-7890-abcd-ef0123456789";
+
+  private byte[] mData;
+  private byte[] mSig;
+
+  @Setup
+  public void setup() throws Exception {
+    mData = BenchData.text(256).getBytes("UTF-8");
+    mSig = HmacEngine.SHA256.sign(KEY, mData);
+  }
+
+  @Benchmark
+  public boolean verifyUncached() throws Exception {
+    Mac mac = Mac.getInstance(HmacEngine.HMAC_SHA256);
+    mac.init(new SecretKeySpec(KEY.getBytes("UTF-8"), HmacEngine.HMAC_SHA256));
+    return MessageDigest.isEqual(mac.doFinal(mData), mSig);
+  }
+
+  @Benchmark
+  public boolean verifyCached() throws Exception {
+    return HmacEngine.SHA256.verify(KEY, mData, 0, mData.length, mSig);
+  }
+}
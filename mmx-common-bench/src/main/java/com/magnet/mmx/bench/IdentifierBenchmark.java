@@ -0,0 +1,75 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.protocol.MMXChannelId;
+import com.magnet.mmx.protocol.MMXid;
+
+/**
+ * Parsing and decoding of the identifiers that the server builds repeatedly
+ * for the same channels and users.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdentifierBenchmark {
+  private final static String CHANNEL_ID = "john.doe\\40magnet.com/Sports.Scores";
+  private final static String CHANNEL_JSON =
+      "{\"channelName\":\"Sports.Scores\",\"userId\":\"john.doe\\\\40magnet.com\"}";
+
+  private MMXChannelId mChannel;
+
+  @Setup
+  public void setup() {
+    mChannel = MMXChannelId.parse(CHANNEL_ID);
+  }
+
+  @Benchmark
+  public MMXChannelId parseChannelId() {
+    return MMXChannelId.parse(CHANNEL_ID);
+  }
+
+  @Benchmark
+  public MMXChannelId channelIdFromJson() {
+    return MMXChannelId.fromJson(CHANNEL_JSON);
+  }
+
+  @Benchmark
+  public boolean channelIdEquals() {
+    return mChannel.equals(MMXChannelId.parse(CHANNEL_ID));
+  }
+
+  @Benchmark
+  public MMXid newMMXid() {
+    return new MMXid("John.Doe", "device-0123456789", null);
+  }
+}
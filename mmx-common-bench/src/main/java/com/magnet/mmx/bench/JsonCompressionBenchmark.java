@@ -0,0 +1,102 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.protocol.ChannelAction;
+import com.magnet.mmx.protocol.DevTags;
+import com.magnet.mmx.protocol.MsgAck;
+import com.magnet.mmx.protocol.MsgTags;
+import com.magnet.mmx.protocol.PingPong;
+import com.magnet.mmx.util.CompressionDictionary;
+import com.magnet.mmx.util.Compressor;
+import com.magnet.mmx.util.GsonData;
+
+/**
+ * CPU cost of compressing small control messages with and without the preset
+ * dictionary.  The compression ratio of each message is printed at setup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonCompressionBenchmark {
+  @Param({ "MsgAck", "MsgTags", "DevTags", "SubscribeRequest", "PingPong" })
+  public String message;
+
+  private byte[] mJson;
+  private byte[] mZipped;
+  private Compressor mPlainCompressor;
+
+  @Setup
+  public void setup() throws Exception {
+    String json;
+    if ("MsgAck".equals(message)) {
+      json = new MsgAck("user1%appid", "user2%appid", "a1b2c3d4e5f6").toJson();
+    } else if ("MsgTags".equals(message)) {
+      json = new MsgTags(MsgTags.IdType.message, "a1b2c3d4e5f6",
+          Arrays.asList("urgent", "sports"), new Date(0)).toJson();
+    } else if ("DevTags".equals(message)) {
+      json = new DevTags("device-0123456789", Arrays.asList("android", "beta"),
+          new Date(0)).toJson();
+    } else if ("SubscribeRequest".equals(message)) {
+      json = new ChannelAction.SubscribeRequest("user1", "news", "device-0123456789")
+          .toJson();
+    } else {
+      json = GsonData.getGson().toJson(new PingPong("user1%appid", "ping-1", "hello"));
+    }
+    mJson = json.getBytes("UTF-8");
+    mZipped = CompressionDictionary.CURRENT.compress(mJson, 0, mJson.length);
+    mPlainCompressor = new Compressor(Deflater.BEST_COMPRESSION);
+    int plain = mPlainCompressor.compress(mJson, 0, mJson.length).length;
+    System.out.println("\n"+message+": json="+mJson.length+" bytes, deflate="+
+        plain+" bytes, dictionary="+mZipped.length+" bytes, ratio="+
+        String.format("%.2f", (double) mZipped.length / mJson.length));
+  }
+
+  @Benchmark
+  public byte[] deflate() {
+    return mPlainCompressor.compress(mJson, 0, mJson.length);
+  }
+
+  @Benchmark
+  public byte[] deflateDictionary() {
+    return CompressionDictionary.CURRENT.compress(mJson, 0, mJson.length);
+  }
+
+  @Benchmark
+  public byte[] inflateDictionary() throws Exception {
+    return CompressionDictionary.decompress(mZipped, 0, mZipped.length);
+  }
+}
@@ -0,0 +1,78 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.protocol.Constants;
+import com.magnet.mmx.util.NameValidator;
+import com.magnet.mmx.util.TagUtil;
+import com.magnet.mmx.util.TopicHelper;
+
+/**
+ * Topic name validation with a regex matcher versus the lookup table, and
+ * the validation of a large tag list.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NameValidatorBenchmark {
+  private final static Pattern PATTERN = Pattern.compile(
+      TopicHelper.TOPIC_NAME_PATTERN_STRING);
+  private final static String NAME = "sports.scores-2015_finals";
+
+  private final List<String> mTags = new ArrayList<String>();
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < 1000; i++) {
+      mTags.add("tag-"+i);
+    }
+  }
+
+  @Benchmark
+  public boolean validateByRegex() {
+    return !NAME.isEmpty() && NAME.length() <= Constants.MMX_MAX_TOPIC_LEN &&
+        PATTERN.matcher(NAME).matches();
+  }
+
+  @Benchmark
+  public boolean validateByTable() {
+    return NameValidator.TOPIC.isValid(NAME);
+  }
+
+  @Benchmark
+  public int validateTags() {
+    return TagUtil.indexOfInvalidTag(mTags);
+  }
+}
@@ -0,0 +1,77 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.util.AppTopic;
+import com.magnet.mmx.util.NodePath;
+import com.magnet.mmx.util.TopicHelper;
+
+/**
+ * A routing decision on a pubsub node ID: parsing into objects versus
+ * parsing into a reusable view.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NodePathBenchmark {
+  private final static String APP_ID = "i1cglsw8dsa";
+  private final static String USER_ID = "john.doe";
+  private final static String NAME = "sports.scores";
+  private final static String NODE_ID = "/"+APP_ID+"/"+USER_ID+"/"+NAME;
+
+  private final NodePath mPath = new NodePath();
+  private final StringBuilder mBuf = new StringBuilder(64);
+
+  @Benchmark
+  public boolean parseTopic() {
+    AppTopic topic = TopicHelper.parseTopic(NODE_ID);
+    return topic.getAppId().equals(APP_ID) &&
+        USER_ID.equalsIgnoreCase(topic.getUserId()) &&
+        NAME.equalsIgnoreCase(topic.getName());
+  }
+
+  @Benchmark
+  public boolean parseNodePath() {
+    return mPath.parse(NODE_ID) && mPath.appIdEquals(APP_ID) &&
+        mPath.userIdEquals(USER_ID) && mPath.nameEquals(NAME);
+  }
+
+  @Benchmark
+  public String makeTopic() {
+    return TopicHelper.makeTopic(APP_ID, USER_ID, NAME);
+  }
+
+  @Benchmark
+  public int appendNode() {
+    mBuf.setLength(0);
+    return NodePath.appendNode(mBuf, APP_ID, USER_ID, NAME).length();
+  }
+}
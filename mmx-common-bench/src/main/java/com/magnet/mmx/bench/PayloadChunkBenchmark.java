@@ -0,0 +1,120 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.protocol.Payload;
+import com.magnet.mmx.protocol.PayloadAssembler;
+import com.magnet.mmx.protocol.PayloadChunker;
+import com.magnet.mmx.util.DisposableBinFile;
+
+/**
+ * Chunking a file payload and reassembling it in reverse order, with the
+ * memory-mapped chunker and with a heap copy of the whole payload.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayloadChunkBenchmark {
+  private final static int CHUNK_SIZE = 64 * 1024;
+
+  @Param({ BenchData.SIZE_1K, BenchData.SIZE_THRESHOLD, BenchData.SIZE_MAX })
+  public int size;
+
+  private DisposableBinFile mSrcFile;
+  private DisposableBinFile mDstFile;
+
+  @Setup
+  public void setup() throws IOException {
+    File src = BenchData.tempFile("benchChunkSrc", BenchData.bytes(size));
+    File dst = BenchData.tempFile("benchChunkDst", new byte[0]);
+    // Never deleted by finish(); the files are removed on exit.
+    mSrcFile = new DisposableBinFile(src.getPath(), false);
+    mDstFile = new DisposableBinFile(dst.getPath(), false);
+  }
+
+  @Benchmark
+  public Payload chunkAndAssemble() throws IOException {
+    Payload payload = new Payload("bench", mSrcFile);
+    PayloadChunker chunker = new PayloadChunker(payload, CHUNK_SIZE);
+    PayloadChunker.Chunk[] chunks = new PayloadChunker.Chunk[chunker.getChunkCount()];
+    try {
+      for (int i = 0; chunker.hasNext(); i++) {
+        chunks[i] = chunker.next();
+      }
+    } finally {
+      chunker.close();
+    }
+    PayloadAssembler assembler = PayloadAssembler.forFile("bench",
+        payload.getCid(), payload.getDataSize(), mDstFile);
+    try {
+      for (int i = chunks.length; --i >= 0; ) {
+        assembler.add(chunks[i]);
+      }
+      return assembler.getPayload();
+    } finally {
+      assembler.close();
+    }
+  }
+
+  @Benchmark
+  public byte[][] heapCopy() throws IOException {
+    byte[] data = new byte[size];
+    RandomAccessFile in = new RandomAccessFile(mSrcFile, "r");
+    try {
+      in.readFully(data);
+    } finally {
+      in.close();
+    }
+    int count = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    byte[][] chunks = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      chunks[i] = Arrays.copyOfRange(data, i * CHUNK_SIZE,
+          Math.min(size, (i + 1) * CHUNK_SIZE));
+    }
+    RandomAccessFile out = new RandomAccessFile(mDstFile, "rw");
+    try {
+      out.setLength(size);
+      for (int i = count; --i >= 0; ) {
+        out.seek(i * CHUNK_SIZE);
+        out.write(chunks[i]);
+      }
+    } finally {
+      out.close();
+    }
+    return chunks;
+  }
+}
@@ -0,0 +1,111 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.protocol.Constants;
+import com.magnet.mmx.protocol.GCMPayload;
+import com.magnet.mmx.protocol.MMXTypeMapper;
+import com.magnet.mmx.protocol.PushMessage;
+import com.magnet.mmx.protocol.PushMessageEncoder;
+import com.magnet.mmx.util.GsonData;
+import com.magnet.mmx.util.InvalidMessageException;
+import com.magnet.mmx.util.UnknownTypeException;
+
+/**
+ * Encoding and decoding of push messages.  A push message is limited to
+ * {@link PushMessage#MAX_SIZE}, so the larger sizes measure how much an
+ * oversized push costs before it is rejected.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PushMessageBenchmark {
+  @Param({ BenchData.SIZE_1K, BenchData.SIZE_THRESHOLD, BenchData.SIZE_MAX })
+  public int size;
+
+  private GCMPayload mPayload;
+  private String mPushMsg;
+  private final List<String> mBatch = new ArrayList<String>();
+  private final List<PushMessage> mResults = new ArrayList<PushMessage>();
+  private final PushMessageEncoder mTruncator = new PushMessageEncoder(
+      PushMessage.MAX_SIZE, true);
+
+  @Setup
+  public void setup() {
+    Map<String, Object> mmx = new HashMap<String, Object>();
+    mmx.put(Constants.PAYLOAD_ID_KEY, "bench-push-id");
+    mmx.put(Constants.PAYLOAD_TYPE_KEY, "bench");
+    mPayload = new GCMPayload();
+    mPayload.setTitle("Benchmark");
+    mPayload.setBody(BenchData.text(size));
+    mPayload.setMmx(mmx);
+    // Build the push message by hand; the encoder would reject large payloads.
+    mPushMsg = "mmx:"+PushMessage.Action.PUSH.getCode()+':'+
+        Constants.PingPongCommand.ping.name()+"\r\n"+
+        GsonData.getGson().toJson(mPayload);
+    for (int i = 0; i < 100; i++) {
+      mBatch.add(mPushMsg);
+    }
+  }
+
+  @Benchmark
+  public String encode() {
+    try {
+      return PushMessage.encode(PushMessage.Action.PUSH,
+          Constants.PingPongCommand.ping.name(), mPayload);
+    } catch (InvalidMessageException e) {
+      return null;
+    }
+  }
+
+  @Benchmark
+  public String encodeTruncated() throws InvalidMessageException {
+    return mTruncator.encode(PushMessage.Action.PUSH,
+        Constants.PingPongCommand.ping.name(), mPayload);
+  }
+
+  @Benchmark
+  public PushMessage decode() throws InvalidMessageException, UnknownTypeException {
+    return PushMessage.decode(mPushMsg, MMXTypeMapper.getInstance());
+  }
+
+  @Benchmark
+  public int decodeBatch() {
+    mResults.clear();
+    return PushMessage.decode(mBatch, MMXTypeMapper.getInstance(), mResults);
+  }
+}
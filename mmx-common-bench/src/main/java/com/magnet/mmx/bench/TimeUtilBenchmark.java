@@ -0,0 +1,95 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.EmptyStackException;
+import java.util.Stack;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.util.TimeUtil;
+
+/**
+ * ISO-8601 date formatting and parsing by TimeUtil and by the former pool of
+ * SimpleDateFormat, shared by 4 threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class TimeUtilBenchmark {
+  private final static Stack<SimpleDateFormat> sPool = new Stack<SimpleDateFormat>();
+
+  private final Date mDate = new Date(1420070400123L);
+  private final String mIsoDate = TimeUtil.toString(mDate);
+
+  private static SimpleDateFormat legacyPop() {
+    try {
+      return sPool.pop();
+    } catch (EmptyStackException e) {
+      SimpleDateFormat fmtr = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+      fmtr.setTimeZone(TimeZone.getTimeZone("UTC"));
+      return fmtr;
+    }
+  }
+
+  @Benchmark
+  public String format() {
+    return TimeUtil.toString(mDate);
+  }
+
+  @Benchmark
+  public Date parse() {
+    return TimeUtil.toDate(mIsoDate);
+  }
+
+  @Benchmark
+  public String formatLegacy() {
+    SimpleDateFormat fmtr = legacyPop();
+    try {
+      return fmtr.format(mDate);
+    } finally {
+      sPool.push(fmtr);
+    }
+  }
+
+  @Benchmark
+  public Date parseLegacy() throws ParseException {
+    SimpleDateFormat fmtr = legacyPop();
+    try {
+      return fmtr.parse(mIsoDate);
+    } finally {
+      sPool.push(fmtr);
+    }
+  }
+}
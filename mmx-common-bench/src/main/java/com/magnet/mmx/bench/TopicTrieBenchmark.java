@@ -0,0 +1,117 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.magnet.mmx.util.TopicHelper;
+import com.magnet.mmx.util.TopicTrie;
+
+/**
+ * Resolving the subscribed topics of an OS collection in an app with many
+ * topics: a linear scan of the node IDs versus a trie lookup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TopicTrieBenchmark {
+  private final static String APP_ID = "i1cglsw8dsa";
+  private final static String[] OS_TYPES = { "android", "ios", "windows" };
+
+  @Param({ "1000", "100000" })
+  public int mTopics;
+
+  private final Map<String, String> mMap = new HashMap<String, String>();
+  private final TopicTrie<String> mTrie = new TopicTrie<String>();
+  private final List<String> mResult = new ArrayList<String>();
+  private String mPrefix;
+  private String mPublish;
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < mTopics; i++) {
+      String name = TopicHelper.TOPIC_OS + OS_TYPES[i % OS_TYPES.length] +
+          TopicHelper.TOPIC_DELIM + (i / OS_TYPES.length);
+      String nodeId = TopicHelper.makeTopic(APP_ID, null, name);
+      mMap.put(nodeId, nodeId);
+      mTrie.put(nodeId, nodeId);
+    }
+    String all = TopicHelper.makeTopic(APP_ID, null, TopicHelper.TOPIC_OS +
+        "android" + TopicHelper.TOPIC_DELIM + TopicHelper.TOPIC_LEAF_ALL);
+    mMap.put(all, all);
+    mTrie.put(all, all);
+    mPrefix = TopicHelper.makeTopic(APP_ID, null, TopicHelper.TOPIC_OS + "ios");
+    mPublish = TopicHelper.makeTopic(APP_ID, null, TopicHelper.TOPIC_OS +
+        "android" + TopicHelper.TOPIC_DELIM + "7");
+  }
+
+  @Benchmark
+  public int matchByScan() {
+    mResult.clear();
+    String parent = mPublish.substring(0, mPublish.lastIndexOf(
+        TopicHelper.TOPIC_DELIM) + 1);
+    for (String nodeId : mMap.keySet()) {
+      if (nodeId.equals(mPublish) ||
+          nodeId.equals(parent + TopicHelper.TOPIC_LEAF_ALL)) {
+        mResult.add(mMap.get(nodeId));
+      }
+    }
+    return mResult.size();
+  }
+
+  @Benchmark
+  public int matchByTrie() {
+    mResult.clear();
+    return mTrie.match(mPublish, mResult);
+  }
+
+  @Benchmark
+  public int prefixByScan() {
+    mResult.clear();
+    String prefix = mPrefix + TopicHelper.TOPIC_DELIM;
+    for (Map.Entry<String, String> entry : mMap.entrySet()) {
+      if (entry.getKey().startsWith(prefix)) {
+        mResult.add(entry.getValue());
+      }
+    }
+    return mResult.size();
+  }
+
+  @Benchmark
+  public int prefixByTrie() {
+    mResult.clear();
+    return mTrie.getUnder(mPrefix, mResult);
+  }
+}
@@ -15,6 +15,9 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
@@ -68,4 +71,12 @@ public class APNS extends JSONifiable {
   public static APNS fromJson(String json) {
     return GsonData.getGson().fromJson(json, APNS.class);
   }
+
+  public static APNS fromJson(Reader reader) {
+    return GsonData.fromJson(reader, APNS.class);
+  }
+
+  public static APNS fromJson(InputStream is) {
+    return GsonData.fromJson(is, APNS.class);
+  }
 }
@@ -19,6 +19,8 @@ import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.Date;
 
 /**
@@ -154,6 +156,14 @@ public class AppCreate {
     public static Request fromJson(String json) {
       return GsonData.getGson().fromJson(json, Request.class);
     }
+
+    public static Request fromJson(Reader reader) {
+      return GsonData.fromJson(reader, Request.class);
+    }
+
+    public static Request fromJson(InputStream is) {
+      return GsonData.fromJson(is, Request.class);
+    }
   }
 
   /**
@@ -219,5 +229,13 @@ public class AppCreate {
     public static Response fromJson(String json) {
       return GsonData.getGson().fromJson(json, Response.class);
     }
+
+    public static Response fromJson(Reader reader) {
+      return GsonData.fromJson(reader, Response.class);
+    }
+
+    public static Response fromJson(InputStream is) {
+      return GsonData.fromJson(is, Response.class);
+    }
   }
 }
@@ -15,6 +15,9 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
@@ -43,6 +46,14 @@ public class AppRead extends JSONifiable {
     public static Request fromJson(String json) {
       return GsonData.getGson().fromJson(json, Request.class);
     }
+
+    public static Request fromJson(Reader reader) {
+      return GsonData.fromJson(reader, Request.class);
+    }
+
+    public static Request fromJson(InputStream is) {
+      return GsonData.fromJson(is, Request.class);
+    }
   }
 
   /**
@@ -217,5 +228,13 @@ public class AppRead extends JSONifiable {
     public static Response fromJson(String json) {
       return GsonData.getGson().fromJson(json, Response.class);
     }
+
+    public static Response fromJson(Reader reader) {
+      return GsonData.fromJson(reader, Response.class);
+    }
+
+    public static Response fromJson(InputStream is) {
+      return GsonData.fromJson(is, Response.class);
+    }
   }
 }
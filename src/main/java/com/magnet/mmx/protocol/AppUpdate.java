@@ -15,6 +15,9 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
@@ -79,4 +82,12 @@ public class AppUpdate extends JSONifiable {
   public static AppUpdate fromJson(String json) {
     return GsonData.getGson().fromJson(json, AppUpdate.class);
   }
+
+  public static AppUpdate fromJson(Reader reader) {
+    return GsonData.fromJson(reader, AppUpdate.class);
+  }
+
+  public static AppUpdate fromJson(InputStream is) {
+    return GsonData.fromJson(is, AppUpdate.class);
+  }
 }
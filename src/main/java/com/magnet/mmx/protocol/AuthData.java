@@ -15,6 +15,9 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
@@ -77,4 +80,12 @@ public class AuthData extends JSONifiable {
   public static AuthData fromJson(String json) {
     return GsonData.getGson().fromJson(json, AuthData.class);
   }
+
+  public static AuthData fromJson(Reader reader) {
+    return GsonData.fromJson(reader, AuthData.class);
+  }
+
+  public static AuthData fromJson(InputStream is) {
+    return GsonData.fromJson(is, AuthData.class);
+  }
 }
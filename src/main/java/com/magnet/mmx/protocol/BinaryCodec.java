@@ -0,0 +1,481 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.protocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.magnet.mmx.protocol.Constants.MessageState;
+import com.magnet.mmx.util.GsonData;
+
+/**
+ * @hide
+ * A compact binary encoding of the high-frequency protocol classes, an
+ * alternative to the JSON form selected by {@link #CONTENT_TYPE}.  An encoded
+ * object starts with the {@link #VERSION} byte followed by its fields in a
+ * fixed order: numbers are unsigned varints, strings are the varint of the
+ * UTF-8 length plus one (zero for null) followed by the bytes, dates are
+ * zigzag varints of the epoch milliseconds plus one (zero for null), and
+ * lists and maps are the varint of the size plus one followed by the
+ * elements.  An enum is its ordinal plus one, so new constants must be
+ * appended.  Decoding an encoded object yields the same JSON as the
+ * original.  The channel of a {@link PubSubNotification} is encoded by its
+ * name and user ID if it is exactly an {@link MMXChannelId}; a derived class,
+ * e.g. {@link ChannelInfo}, is encoded by its class name and its JSON form.
+ * Corrupted data fails with a {@link StreamCorruptedException} or an
+ * {@link EOFException}.
+ * <p>
+ * The supported classes are {@link MsgAck}, {@link MsgsState.Request},
+ * {@link MsgsState.Response}, {@link DevTags} and {@link PubSubNotification}.
+ */
+public class BinaryCodec {
+  /**
+   * The content type of the binary encoding; the JSON form is
+   * {@link GsonData#CONTENT_TYPE_JSON}.
+   */
+  public final static String CONTENT_TYPE = "application/x-mmx-binary";
+  /**
+   * The version of the binary encoding.
+   */
+  public final static int VERSION = 1;
+
+  // The initial capacity of a decoded list or map and the buffer of a string
+  // are capped, so a corrupted size fails on the truncated data rather than
+  // on the allocation.
+  private final static int MAX_INITIAL_CAPACITY = 1024;
+  private final static int MAX_CHUNK_SIZE = 8192;
+  private final static MessageState[] STATES = MessageState.values();
+  // The tags of the channel in a PubSubNotification.
+  private final static int CHANNEL_NULL = 0;
+  private final static int CHANNEL_ID = 1;
+  private final static int CHANNEL_JSON = 2;
+
+  /**
+   * Check if a class has the binary encoding.
+   * @param clz The protocol class.
+   * @return true if supported; otherwise, false.
+   */
+  public static boolean isSupported(Class<?> clz) {
+    return clz == MsgAck.class || clz == MsgsState.Request.class ||
+        clz == MsgsState.Response.class || clz == DevTags.class ||
+        clz == PubSubNotification.class;
+  }
+
+  /**
+   * Encode a protocol object.
+   * @param obj A non-null object of a supported class.
+   * @return The encoded bytes.
+   * @throws IllegalArgumentException The class is not supported.
+   * @see #isSupported(Class)
+   */
+  public static byte[] toBytes(Object obj) {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(128);
+    try {
+      write(obj, bos);
+    } catch (IOException e) {
+      // Not possible with a ByteArrayOutputStream.
+      throw new IllegalStateException(e);
+    }
+    return bos.toByteArray();
+  }
+
+  /**
+   * Encode a protocol object to an output stream.  The stream is not closed.
+   * @param obj A non-null object of a supported class.
+   * @param os The output stream.
+   * @throws IOException
+   * @throws IllegalArgumentException The class is not supported.
+   * @see #isSupported(Class)
+   */
+  public static void write(Object obj, OutputStream os) throws IOException {
+    Class<?> clz = obj.getClass();
+    if (clz == MsgAck.class) {
+      os.write(VERSION);
+      writeMsgAck((MsgAck) obj, os);
+    } else if (clz == MsgsState.Request.class) {
+      os.write(VERSION);
+      writeStringList((MsgsState.Request) obj, os);
+    } else if (clz == MsgsState.Response.class) {
+      os.write(VERSION);
+      writeMsgsStateResponse((MsgsState.Response) obj, os);
+    } else if (clz == DevTags.class) {
+      os.write(VERSION);
+      writeDevTags((DevTags) obj, os);
+    } else if (clz == PubSubNotification.class) {
+      os.write(VERSION);
+      writePubSubNotification((PubSubNotification) obj, os);
+    } else {
+      throw new IllegalArgumentException("Unsupported class: "+clz.getName());
+    }
+  }
+
+  /**
+   * Decode a protocol object.
+   * @param data The encoded bytes.
+   * @param clz The class of the object.
+   * @return The decoded object.
+   * @throws IOException The data is truncated or corrupted.
+   * @throws IllegalArgumentException The class is not supported.
+   */
+  public static <T> T fromBytes(byte[] data, Class<T> clz) throws IOException {
+    return read(new ByteArrayInputStream(data), clz);
+  }
+
+  /**
+   * Decode a protocol object from an input stream.  The stream is not closed.
+   * @param is The input stream.
+   * @param clz The class of the object.
+   * @return The decoded object.
+   * @throws IOException The data is truncated or corrupted.
+   * @throws IllegalArgumentException The class is not supported.
+   */
+  public static <T> T read(InputStream is, Class<T> clz) throws IOException {
+    if (!isSupported(clz)) {
+      throw new IllegalArgumentException("Unsupported class: "+clz.getName());
+    }
+    int version = readByte(is);
+    if (version != VERSION) {
+      throw new StreamCorruptedException("Unsupported version: "+version);
+    }
+    Object obj;
+    try {
+      if (clz == MsgAck.class) {
+        obj = readMsgAck(is);
+      } else if (clz == MsgsState.Request.class) {
+        obj = readMsgsStateRequest(is);
+      } else if (clz == MsgsState.Response.class) {
+        obj = readMsgsStateResponse(is);
+      } else if (clz == DevTags.class) {
+        obj = readDevTags(is);
+      } else {
+        obj = readPubSubNotification(is);
+      }
+    } catch (RuntimeException e) {
+      // A constructor rejected the decoded values.
+      throw new StreamCorruptedException(e.getMessage());
+    }
+    return clz.cast(obj);
+  }
+
+  //
+  // Protocol classes.
+  //
+
+  private static void writeMsgAck(MsgAck ack, OutputStream os)
+      throws IOException {
+    writeString(ack.getFrom(), os);
+    writeString(ack.getTo(), os);
+    writeString(ack.getMsgId(), os);
+  }
+
+  private static MsgAck readMsgAck(InputStream is) throws IOException {
+    String from = readString(is);
+    String to = readString(is);
+    String msgId = readString(is);
+    return new MsgAck(from, to, msgId);
+  }
+
+  private static MsgsState.Request readMsgsStateRequest(InputStream is)
+      throws IOException {
+    int size = readSize(is);
+    if (size < 0) {
+      throw new StreamCorruptedException("Null request");
+    }
+    MsgsState.Request request = new MsgsState.Request(
+        Math.min(size, MAX_INITIAL_CAPACITY));
+    for (int i = 0; i < size; i++) {
+      request.add(readString(is));
+    }
+    return request;
+  }
+
+  private static void writeMsgsStateResponse(MsgsState.Response resp,
+      OutputStream os) throws IOException {
+    writeSize(resp.size(), os);
+    for (Map.Entry<String, MsgsState.MessageStatusList> entry : resp.entrySet()) {
+      writeString(String.valueOf(entry.getKey()), os);
+      MsgsState.MessageStatusList list = entry.getValue();
+      if (list == null) {
+        writeSize(-1, os);
+        continue;
+      }
+      writeSize(list.size(), os);
+      for (MsgsState.MessageStatus status : list) {
+        if (status == null) {
+          os.write(0);
+        } else {
+          os.write(1);
+          MessageState state = status.getState();
+          writeVarint((state == null) ? 0 : state.ordinal() + 1, os);
+          writeString(status.getRecipient(), os);
+        }
+      }
+    }
+  }
+
+  private static MsgsState.Response readMsgsStateResponse(InputStream is)
+      throws IOException {
+    int size = readSize(is);
+    if (size < 0) {
+      throw new StreamCorruptedException("Null response");
+    }
+    MsgsState.Response resp = new MsgsState.Response(
+        Math.min(size, MAX_INITIAL_CAPACITY) * 4 / 3 + 1);
+    for (int i = 0; i < size; i++) {
+      String msgId = readString(is);
+      int count = readSize(is);
+      if (count < 0) {
+        resp.put(msgId, null);
+        continue;
+      }
+      MsgsState.MessageStatusList list = new MsgsState.MessageStatusList(
+          Math.min(count, MAX_INITIAL_CAPACITY));
+      for (int j = 0; j < count; j++) {
+        if (readByte(is) == 0) {
+          list.add(null);
+          continue;
+        }
+        long state = readVarint(is);
+        // An unknown state is read as null like the JSON form.
+        list.add(new MsgsState.MessageStatus()
+            .setState((state > 0 && state <= STATES.length) ?
+                STATES[(int) state - 1] : null)
+            .setRecipient(readString(is)));
+      }
+      resp.put(msgId, list);
+    }
+    return resp;
+  }
+
+  private static void writeDevTags(DevTags devTags, OutputStream os)
+      throws IOException {
+    writeString(devTags.getDevId(), os);
+    writeStringList(devTags.getTags(), os);
+    writeDate(devTags.getLastModTime(), os);
+  }
+
+  private static DevTags readDevTags(InputStream is) throws IOException {
+    String devId = readString(is);
+    List<String> tags = readStringList(is);
+    Date lastModTime = readDate(is);
+    return new DevTags(devId, tags, lastModTime);
+  }
+
+  private static void writePubSubNotification(PubSubNotification notif,
+      OutputStream os) throws IOException {
+    MMXChannel channel = notif.getChannel();
+    if (channel == null) {
+      os.write(CHANNEL_NULL);
+    } else if (channel.getClass() == MMXChannelId.class) {
+      os.write(CHANNEL_ID);
+      writeString(channel.getName(), os);
+      writeString(((MMXChannelId) channel).getEscUserId(), os);
+    } else {
+      // A derived class (e.g. ChannelInfo) has more fields; keep them in JSON.
+      os.write(CHANNEL_JSON);
+      writeString(channel.getClass().getName(), os);
+      writeString(GsonData.getGson().toJson(channel), os);
+    }
+    writeDate(notif.getPublishDate(), os);
+    writeString(notif.getText(), os);
+    writeString(notif.getTitle(), os);
+    writeString(notif.getBody(), os);
+  }
+
+  private static PubSubNotification readPubSubNotification(InputStream is)
+      throws IOException {
+    MMXChannelId channel;
+    int tag = readByte(is);
+    if (tag == CHANNEL_NULL) {
+      channel = null;
+    } else if (tag == CHANNEL_ID) {
+      String name = readString(is);
+      String escUserId = readString(is);
+      channel = MMXChannelId.fromFields(escUserId, name);
+    } else if (tag == CHANNEL_JSON) {
+      Class<? extends MMXChannelId> clz = readChannelClass(is);
+      channel = GsonData.getGson().fromJson(readString(is), clz);
+    } else {
+      throw new StreamCorruptedException("Invalid channel tag: "+tag);
+    }
+    Date pubDate = readDate(is);
+    String text = readString(is);
+    String title = readString(is);
+    String body = readString(is);
+    return new PubSubNotification(channel, pubDate, text, title, body);
+  }
+
+  // Only the classes derived from MMXChannelId are accepted.
+  private static Class<? extends MMXChannelId> readChannelClass(InputStream is)
+      throws IOException {
+    String name = readString(is);
+    Class<?> clz;
+    try {
+      clz = (name == null) ? null :
+        Class.forName(name, false, BinaryCodec.class.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      throw new StreamCorruptedException("Unknown channel class: "+name);
+    }
+    if (clz == null || !MMXChannelId.class.isAssignableFrom(clz)) {
+      throw new StreamCorruptedException("Invalid channel class: "+name);
+    }
+    return clz.asSubclass(MMXChannelId.class);
+  }
+
+  //
+  // Primitives.
+  //
+
+  private static void writeVarint(long value, OutputStream os)
+      throws IOException {
+    while ((value & ~0x7fL) != 0) {
+      os.write((int) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    os.write((int) value);
+  }
+
+  private static long readVarint(InputStream is) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = readByte(is);
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new StreamCorruptedException("Malformed varint");
+  }
+
+  private static int readByte(InputStream is) throws IOException {
+    int b = is.read();
+    if (b < 0) {
+      throw new EOFException("Truncated data");
+    }
+    return b;
+  }
+
+  // A size of -1 is null.
+  private static void writeSize(int size, OutputStream os) throws IOException {
+    writeVarint(size + 1L, os);
+  }
+
+  private static int readSize(InputStream is) throws IOException {
+    long size = readVarint(is) - 1;
+    if (size < -1 || size > Integer.MAX_VALUE) {
+      throw new StreamCorruptedException("Invalid size: "+size);
+    }
+    return (int) size;
+  }
+
+  private static void writeString(String str, OutputStream os)
+      throws IOException {
+    if (str == null) {
+      writeSize(-1, os);
+      return;
+    }
+    byte[] bytes = str.getBytes(GsonData.UTF8);
+    writeSize(bytes.length, os);
+    os.write(bytes);
+  }
+
+  private static String readString(InputStream is) throws IOException {
+    int len = readSize(is);
+    if (len < 0) {
+      return null;
+    }
+    if (is instanceof ByteArrayInputStream && len > is.available()) {
+      throw new StreamCorruptedException("Invalid string length: "+len);
+    }
+    if (len <= MAX_CHUNK_SIZE) {
+      byte[] bytes = new byte[len];
+      readFully(is, bytes, len);
+      return new String(bytes, GsonData.UTF8);
+    }
+    // The length is not trusted; grow with the data actually read.
+    byte[] chunk = new byte[MAX_CHUNK_SIZE];
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(MAX_CHUNK_SIZE);
+    for (int remain = len, n; remain > 0; remain -= n) {
+      n = Math.min(remain, MAX_CHUNK_SIZE);
+      readFully(is, chunk, n);
+      baos.write(chunk, 0, n);
+    }
+    return new String(baos.toByteArray(), GsonData.UTF8);
+  }
+
+  private static void readFully(InputStream is, byte[] bytes, int len)
+      throws IOException {
+    for (int n, off = 0; off < len; off += n) {
+      if ((n = is.read(bytes, off, len - off)) < 0) {
+        throw new EOFException("Truncated data");
+      }
+    }
+  }
+
+  private static void writeStringList(List<String> list, OutputStream os)
+      throws IOException {
+    if (list == null) {
+      writeSize(-1, os);
+      return;
+    }
+    writeSize(list.size(), os);
+    for (String str : list) {
+      writeString(str, os);
+    }
+  }
+
+  private static List<String> readStringList(InputStream is)
+      throws IOException {
+    int size = readSize(is);
+    if (size < 0) {
+      return null;
+    }
+    List<String> list = new ArrayList<String>(
+        Math.min(size, MAX_INITIAL_CAPACITY));
+    for (int i = 0; i < size; i++) {
+      list.add(readString(is));
+    }
+    return list;
+  }
+
+  private static void writeDate(Date date, OutputStream os)
+      throws IOException {
+    if (date == null) {
+      os.write(0);
+      return;
+    }
+    long millis = date.getTime();
+    writeVarint(((millis << 1) ^ (millis >> 63)) + 1, os);
+  }
+
+  private static Date readDate(InputStream is) throws IOException {
+    long zigzag = readVarint(is);
+    if (zigzag == 0) {
+      return null;
+    }
+    zigzag -= 1;
+    return new Date((zigzag >>> 1) ^ -(zigzag & 1));
+  }
+}
@@ -16,13 +16,19 @@
 package com.magnet.mmx.protocol;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
 import com.magnet.mmx.protocol.SearchAction.Match;
 import com.magnet.mmx.protocol.SearchAction.MultiValues;
 import com.magnet.mmx.protocol.SearchAction.Operator;
 import com.magnet.mmx.protocol.SearchAction.SingleValue;
 import com.magnet.mmx.util.GsonData;
+import com.magnet.mmx.util.JsonArrayIterator;
 import com.magnet.mmx.util.JSONifiable;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
@@ -153,6 +159,20 @@ public class ChannelAction {
     public static ChannelTags fromJson(String json) {
       return GsonData.getGson().fromJson(json, ChannelTags.class);
     }
+
+    /**
+     * @hide
+     */
+    public static ChannelTags fromJson(Reader reader) {
+      return GsonData.fromJson(reader, ChannelTags.class);
+    }
+
+    /**
+     * @hide
+     */
+    public static ChannelTags fromJson(InputStream is) {
+      return GsonData.fromJson(is, ChannelTags.class);
+    }
   }
 
   /**
@@ -250,6 +270,14 @@ public class ChannelAction {
     public static CreateRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, CreateRequest.class);
     }
+
+    public static CreateRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, CreateRequest.class);
+    }
+
+    public static CreateRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, CreateRequest.class);
+    }
   }
 
   /**
@@ -291,6 +319,14 @@ public class ChannelAction {
     public static DeleteRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, DeleteRequest.class);
     }
+
+    public static DeleteRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, DeleteRequest.class);
+    }
+
+    public static DeleteRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, DeleteRequest.class);
+    }
   }
 
   /**
@@ -325,6 +361,14 @@ public class ChannelAction {
     public static RetractAllRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, RetractAllRequest.class);
     }
+
+    public static RetractAllRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, RetractAllRequest.class);
+    }
+
+    public static RetractAllRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, RetractAllRequest.class);
+    }
   }
 
   /**
@@ -368,6 +412,14 @@ public class ChannelAction {
     public static RetractRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, RetractRequest.class);
     }
+
+    public static RetractRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, RetractRequest.class);
+    }
+
+    public static RetractRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, RetractRequest.class);
+    }
   }
 
   /**
@@ -392,6 +444,14 @@ public class ChannelAction {
     public static GetChannelsRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, GetChannelsRequest.class);
     }
+
+    public static GetChannelsRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, GetChannelsRequest.class);
+    }
+
+    public static GetChannelsRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, GetChannelsRequest.class);
+    }
   }
   
   public static class GetChannelsResponse extends ArrayList<ChannelInfo> {
@@ -402,6 +462,14 @@ public class ChannelAction {
     public static GetChannelsResponse fromJson(String json) {
       return GsonData.getGson().fromJson(json, GetChannelsResponse.class);
     }
+
+    public static GetChannelsResponse fromJson(Reader reader) {
+      return GsonData.fromJson(reader, GetChannelsResponse.class);
+    }
+
+    public static GetChannelsResponse fromJson(InputStream is) {
+      return GsonData.fromJson(is, GetChannelsResponse.class);
+    }
   }
   
   /**
@@ -443,6 +511,14 @@ public class ChannelAction {
     public static ItemsByIdsRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, ItemsByIdsRequest.class);
     }
+
+    public static ItemsByIdsRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, ItemsByIdsRequest.class);
+    }
+
+    public static ItemsByIdsRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, ItemsByIdsRequest.class);
+    }
   }
   
   /**
@@ -531,6 +607,14 @@ public class ChannelAction {
     public static ListRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, ListRequest.class);
     }
+
+    public static ListRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, ListRequest.class);
+    }
+
+    public static ListRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, ListRequest.class);
+    }
   }
 
   /**
@@ -557,6 +641,14 @@ public class ChannelAction {
     public static ListResponse fromJson(String json) {
       return GsonData.getGson().fromJson(json, ListResponse.class);
     }
+
+    public static ListResponse fromJson(Reader reader) {
+      return GsonData.fromJson(reader, ListResponse.class);
+    }
+
+    public static ListResponse fromJson(InputStream is) {
+      return GsonData.fromJson(is, ListResponse.class);
+    }
   }
 
   /**
@@ -639,6 +731,14 @@ public class ChannelAction {
     public static SubscribeRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, SubscribeRequest.class);
     }
+
+    public static SubscribeRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, SubscribeRequest.class);
+    }
+
+    public static SubscribeRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, SubscribeRequest.class);
+    }
   }
 
   /**
@@ -692,6 +792,14 @@ public class ChannelAction {
     public static SubscribeResponse fromJson(String json) {
       return GsonData.getGson().fromJson(json, SubscribeResponse.class);
     }
+
+    public static SubscribeResponse fromJson(Reader reader) {
+      return GsonData.fromJson(reader, SubscribeResponse.class);
+    }
+
+    public static SubscribeResponse fromJson(InputStream is) {
+      return GsonData.fromJson(is, SubscribeResponse.class);
+    }
   }
 
   /**
@@ -754,6 +862,14 @@ public class ChannelAction {
     public static UnsubscribeRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, UnsubscribeRequest.class);
     }
+
+    public static UnsubscribeRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, UnsubscribeRequest.class);
+    }
+
+    public static UnsubscribeRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, UnsubscribeRequest.class);
+    }
   }
 
   /**
@@ -783,6 +899,14 @@ public class ChannelAction {
     public static UnsubscribeForDevRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, UnsubscribeForDevRequest.class);
     }
+
+    public static UnsubscribeForDevRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, UnsubscribeForDevRequest.class);
+    }
+
+    public static UnsubscribeForDevRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, UnsubscribeForDevRequest.class);
+    }
   }
 
   /**
@@ -826,6 +950,14 @@ public class ChannelAction {
     public static SummaryRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, SummaryRequest.class);
     }
+
+    public static SummaryRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, SummaryRequest.class);
+    }
+
+    public static SummaryRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, SummaryRequest.class);
+    }
   }
 
   /**
@@ -1001,6 +1133,14 @@ public class ChannelAction {
     public static ChannelQueryRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, ChannelQueryRequest.class);
     }
+
+    public static ChannelQueryRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, ChannelQueryRequest.class);
+    }
+
+    public static ChannelQueryRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, ChannelQueryRequest.class);
+    }
   }
 
   /**
@@ -1076,6 +1216,20 @@ public class ChannelAction {
     public static ChannelQueryResponse fromJson(String json) {
       return GsonData.getGson().fromJson(json, ChannelQueryResponse.class);
     }
+
+    /**
+     * @hide
+     */
+    public static ChannelQueryResponse fromJson(Reader reader) {
+      return GsonData.fromJson(reader, ChannelQueryResponse.class);
+    }
+
+    /**
+     * @hide
+     */
+    public static ChannelQueryResponse fromJson(InputStream is) {
+      return GsonData.fromJson(is, ChannelQueryResponse.class);
+    }
   }
 
   /**
@@ -1238,6 +1392,14 @@ public class ChannelAction {
     public static FetchRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, FetchRequest.class);
     }
+
+    public static FetchRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, FetchRequest.class);
+    }
+
+    public static FetchRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, FetchRequest.class);
+    }
   }
 
   /**
@@ -1325,6 +1487,80 @@ public class ChannelAction {
     public static FetchResponse fromJson(String json) {
       return GsonData.getGson().fromJson(json, FetchResponse.class);
     }
+
+    public static FetchResponse fromJson(Reader reader) {
+      return GsonData.fromJson(reader, FetchResponse.class);
+    }
+
+    public static FetchResponse fromJson(InputStream is) {
+      return GsonData.fromJson(is, FetchResponse.class);
+    }
+
+    /**
+     * Decode the published items one at a time from a JSON fetch response
+     * without holding all items in memory.  The caller should close the
+     * returned iterator.
+     * @param reader A reader with the JSON fetch response.
+     * @return An iterator of the published items.
+     * @see FetchStream
+     */
+    public static FetchStream stream(Reader reader) {
+      return new FetchStream(reader);
+    }
+
+    /**
+     * Decode the published items one at a time from a UTF-8 JSON fetch
+     * response.  The caller should close the returned iterator.
+     * @param is An input stream with the UTF-8 JSON fetch response.
+     * @return An iterator of the published items.
+     */
+    public static FetchStream stream(InputStream is) {
+      return new FetchStream(new InputStreamReader(is, GsonData.UTF8));
+    }
+  }
+
+  /**
+   * @hide
+   * An iterator of the published items from a JSON fetch response.  The user
+   * ID, channel name and total count are available before the first item; if
+   * the response does not have the items as the last property, the trailing
+   * properties are available after {@link #hasNext()} returns false.
+   */
+  public static class FetchStream extends JsonArrayIterator<MMXPublishedItem> {
+    private String mUserId;
+    private String mChannel;
+    private int mTotal;
+
+    FetchStream(Reader reader) {
+      super(reader, "items", ProtocolAdapters.CHANNEL_ITEM);
+      start();
+    }
+
+    @Override
+    protected void readProperty(String name, JsonReader reader)
+                                throws IOException {
+      if (name.equals("userId")) {
+        mUserId = ProtocolAdapters.readString(reader);
+      } else if (name.equals("channelName")) {
+        mChannel = ProtocolAdapters.readString(reader);
+      } else if (name.equals("totalCount")) {
+        mTotal = ProtocolAdapters.readInt(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+
+    public String getUserId() {
+      return mUserId;
+    }
+
+    public String getChannel() {
+      return mChannel;
+    }
+
+    public int getTotal() {
+      return mTotal;
+    }
   }
   
   /**
@@ -1388,6 +1624,14 @@ public class ChannelAction {
     public static SubscribersRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, SubscribersRequest.class);
     }
+
+    public static SubscribersRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, SubscribersRequest.class);
+    }
+
+    public static SubscribersRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, SubscribersRequest.class);
+    }
   }
   
   /**
@@ -1421,5 +1665,13 @@ public class ChannelAction {
     public static SubscribersResponse fromJson(String json) {
       return GsonData.getGson().fromJson(json, SubscribersResponse.class);
     }
+
+    public static SubscribersResponse fromJson(Reader reader) {
+      return GsonData.fromJson(reader, SubscribersResponse.class);
+    }
+
+    public static SubscribersResponse fromJson(InputStream is) {
+      return GsonData.fromJson(is, SubscribersResponse.class);
+    }
   }
 }
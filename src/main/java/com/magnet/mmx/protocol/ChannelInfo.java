@@ -58,6 +58,11 @@ public class ChannelInfo extends MMXChannelId implements MMXChannel {
     mCollection = isCollection;
   }
 
+  ChannelInfo(boolean isCollection) {
+    // Used by ProtocolAdapters for a channel without a name.
+    mCollection = isCollection;
+  }
+
   /**
    * Check if this channel is a collection (i.e. for subscription only.)
    * @return true for subscribe only; false for publishing and subscription.
@@ -14,6 +14,9 @@
  */
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
@@ -45,4 +48,12 @@ public class DevId extends JSONifiable {
   public static DevId fromJson(String json) {
     return GsonData.getGson().fromJson(json, DevId.class);
   }
+
+  public static DevId fromJson(Reader reader) {
+    return GsonData.fromJson(reader, DevId.class);
+  }
+
+  public static DevId fromJson(InputStream is) {
+    return GsonData.fromJson(is, DevId.class);
+  }
 }
@@ -14,6 +14,9 @@
  */
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 
@@ -40,6 +43,14 @@ public class DevReg extends DeviceInfo {
     return GsonData.getGson().fromJson(json, DevReg.class);
   }
 
+  public static DevReg fromJson(Reader reader) {
+    return GsonData.fromJson(reader, DevReg.class);
+  }
+
+  public static DevReg fromJson(InputStream is) {
+    return GsonData.fromJson(is, DevReg.class);
+  }
+
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder()
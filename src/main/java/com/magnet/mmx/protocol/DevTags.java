@@ -15,6 +15,8 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.Date;
 import java.util.List;
 
@@ -86,4 +88,12 @@ public class DevTags extends DevId {
   public static DevTags fromJson(String json) {
     return GsonData.getGson().fromJson(json, DevTags.class);
   }
+
+  public static DevTags fromJson(Reader reader) {
+    return GsonData.fromJson(reader, DevTags.class);
+  }
+
+  public static DevTags fromJson(InputStream is) {
+    return GsonData.fromJson(is, DevTags.class);
+  }
 }
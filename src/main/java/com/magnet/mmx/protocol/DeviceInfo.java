@@ -19,6 +19,8 @@ import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.List;
 import java.util.Map;
 
@@ -293,6 +295,14 @@ public class DeviceInfo extends JSONifiable {
   public static DeviceInfo fromJson(String json) {
     return GsonData.getGson().fromJson(json, DeviceInfo.class);
   }
+
+  public static DeviceInfo fromJson(Reader reader) {
+    return GsonData.fromJson(reader, DeviceInfo.class);
+  }
+
+  public static DeviceInfo fromJson(InputStream is) {
+    return GsonData.fromJson(is, DeviceInfo.class);
+  }
   
   @Override
   public String toString() {
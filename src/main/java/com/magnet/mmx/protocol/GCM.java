@@ -15,6 +15,9 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
@@ -52,4 +55,12 @@ public class GCM extends JSONifiable {
   public static GCM fromJson(String json) {
     return GsonData.getGson().fromJson(json, GCM.class);
   }
+
+  public static GCM fromJson(Reader reader) {
+    return GsonData.fromJson(reader, GCM.class);
+  }
+
+  public static GCM fromJson(InputStream is) {
+    return GsonData.fromJson(is, GCM.class);
+  }
 }
@@ -15,6 +15,9 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
@@ -265,4 +268,18 @@ public class GeoLoc extends JSONifiable {
   public static GeoLoc fromJson(String json) {
     return GsonData.getGson().fromJson(json, GeoLoc.class);
   }
+
+  /**
+   * @hide
+   */
+  public static GeoLoc fromJson(Reader reader) {
+    return GsonData.fromJson(reader, GeoLoc.class);
+  }
+
+  /**
+   * @hide
+   */
+  public static GeoLoc fromJson(InputStream is) {
+    return GsonData.fromJson(is, GeoLoc.class);
+  }
 }
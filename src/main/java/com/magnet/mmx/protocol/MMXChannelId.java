@@ -15,9 +15,13 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.Utils;
+import com.magnet.mmx.util.WeakInterner;
 
 /**
  * @hide
@@ -34,8 +38,12 @@ public class MMXChannelId implements MMXChannel {
   @SerializedName("userId")
   protected String mEscUserId; // null or XEP-0106 conformed user ID.
 
+  // Canonical instances by their string representation.
+  private final static WeakInterner<MMXChannelId> sPool =
+      new WeakInterner<MMXChannelId>();
+
   MMXChannelId() {
-    // Used by MMXTopicId as a transformation.
+    // Used by MMXTopicId as a transformation and by fromFields().
   }
 
   /**
@@ -157,18 +165,47 @@ public class MMXChannelId implements MMXChannel {
   
   /**
    * Convert a string representation of channel identifier to the object.
+   * The instance is canonical for the string and may be shared, so the same
+   * string yields the same instance while it is in use.
    * @param channelId The value from {@link #toString()}
    * @return A MMXChannel object.
    * @see #toString()
    */
   public static MMXChannelId parse(String channelId) {
+    MMXChannelId id = sPool.get(channelId);
+    if (id != null) {
+      return id;
+    }
     int slash = channelId.indexOf('/');
     if ((slash == 1) && (channelId.charAt(0) == '*')) {
-      return new MMXChannelId(channelId.substring(slash+1));
+      id = new MMXChannelId(channelId.substring(slash+1));
     } else if (slash >= 1) {
-      return new MMXChannelId(channelId.substring(0, slash), channelId.substring(slash+1));
+      id = new MMXChannelId(channelId.substring(0, slash), channelId.substring(slash+1));
+    } else {
+      throw new IllegalArgumentException("Not a valid channel format: "+channelId);
+    }
+    return sPool.intern(channelId, id);
+  }
+
+  /**
+   * @hide
+   * Get the canonical instance for the fields from JSON.  The fields are kept
+   * as is, like the reflective deserialization.
+   * @param escUserId null or the escaped user ID.
+   * @param channel The channel name.
+   * @return The canonical or a new instance.
+   */
+  static MMXChannelId fromFields(String escUserId, String channel) {
+    if (channel == null || channel.isEmpty() || (escUserId != null &&
+        (escUserId.isEmpty() || escUserId.equals("*") ||
+         escUserId.indexOf('@') >= 0 || escUserId.indexOf('/') >= 0))) {
+      // Not round-trippable through parse(); not interned.
+      MMXChannelId id = new MMXChannelId();
+      id.mChannel = channel;
+      id.mEscUserId = escUserId;
+      return id;
     }
-    throw new IllegalArgumentException("Not a valid channel format: "+channelId);
+    return parse((escUserId == null) ? "*/"+channel : escUserId+'/'+channel);
   }
   
   /**
@@ -177,4 +214,18 @@ public class MMXChannelId implements MMXChannel {
   public static MMXChannelId fromJson(String json) {
     return GsonData.getGson().fromJson(json, MMXChannelId.class);
   }
+
+  /**
+   * @hide
+   */
+  public static MMXChannelId fromJson(Reader reader) {
+    return GsonData.fromJson(reader, MMXChannelId.class);
+  }
+
+  /**
+   * @hide
+   */
+  public static MMXChannelId fromJson(InputStream is) {
+    return GsonData.fromJson(is, MMXChannelId.class);
+  }
 }
@@ -15,6 +15,8 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.Arrays;
 
 import com.google.gson.annotations.SerializedName;
@@ -169,4 +171,12 @@ public class MMXError extends JSONifiable {
   public static MMXError fromJson(String json) {
     return GsonData.getGson().fromJson(json, MMXError.class);
   }
+
+  public static MMXError fromJson(Reader reader) {
+    return GsonData.fromJson(reader, MMXError.class);
+  }
+
+  public static MMXError fromJson(InputStream is) {
+    return GsonData.fromJson(is, MMXError.class);
+  }
 }
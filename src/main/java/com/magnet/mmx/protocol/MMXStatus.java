@@ -15,6 +15,9 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
@@ -74,6 +77,20 @@ public class MMXStatus extends JSONifiable implements StatusCode {
   public static MMXStatus fromJson(String json) {
     return GsonData.getGson().fromJson(json, MMXStatus.class);
   }
+
+  /**
+   * @hide
+   */
+  public static MMXStatus fromJson(Reader reader) {
+    return GsonData.fromJson(reader, MMXStatus.class);
+  }
+
+  /**
+   * @hide
+   */
+  public static MMXStatus fromJson(InputStream is) {
+    return GsonData.fromJson(is, MMXStatus.class);
+  }
   
   @Override
   public String toString() {
@@ -15,9 +15,13 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.Utils;
+import com.magnet.mmx.util.WeakInterner;
 
 /**
  * @hide
@@ -35,6 +39,14 @@ public class MMXTopicId implements MMXTopic {
   @SerializedName("userId")
   protected String mEscUserId; // null or XEP-0106 conformed user ID.
 
+  // Canonical instances by their string representation.
+  private final static WeakInterner<MMXTopicId> sPool =
+      new WeakInterner<MMXTopicId>();
+
+  MMXTopicId() {
+    // Used by fromFields().
+  }
+
   /**
    * @hide
    * Constructor to convert MMXTopic into MMXTopicId
@@ -167,18 +179,47 @@ public class MMXTopicId implements MMXTopic {
   
   /**
    * Convert a string representation of topic identifier to the object.
+   * The instance is canonical for the string and may be shared, so the same
+   * string yields the same instance while it is in use.
    * @param topicId The value from {@link #toString()}
    * @return A MMXTopic object.
    * @see #toString()
    */
   public static MMXTopicId parse(String topicId) {
+    MMXTopicId id = sPool.get(topicId);
+    if (id != null) {
+      return id;
+    }
     int slash = topicId.indexOf('/');
     if ((slash == 1) && (topicId.charAt(0) == '*')) {
-      return new MMXTopicId(topicId.substring(slash+1));
+      id = new MMXTopicId(topicId.substring(slash+1));
     } else if (slash >= 1) {
-      return new MMXTopicId(topicId.substring(0, slash), topicId.substring(slash+1));
+      id = new MMXTopicId(topicId.substring(0, slash), topicId.substring(slash+1));
+    } else {
+      throw new IllegalArgumentException("Not a valid topic format: "+topicId);
+    }
+    return sPool.intern(topicId, id);
+  }
+
+  /**
+   * @hide
+   * Get the canonical instance for the fields from JSON.  The fields are kept
+   * as is, like the reflective deserialization.
+   * @param escUserId null or the escaped user ID.
+   * @param topic The topic name.
+   * @return The canonical or a new instance.
+   */
+  static MMXTopicId fromFields(String escUserId, String topic) {
+    if (topic == null || topic.isEmpty() || (escUserId != null &&
+        (escUserId.isEmpty() || escUserId.equals("*") ||
+         escUserId.indexOf('@') >= 0 || escUserId.indexOf('/') >= 0))) {
+      // Not round-trippable through parse(); not interned.
+      MMXTopicId id = new MMXTopicId();
+      id.mTopic = topic;
+      id.mEscUserId = escUserId;
+      return id;
     }
-    throw new IllegalArgumentException("Not a valid topic format: "+topicId);
+    return parse((escUserId == null) ? "*/"+topic : escUserId+'/'+topic);
   }
   
   /**
@@ -188,6 +229,20 @@ public class MMXTopicId implements MMXTopic {
     return GsonData.getGson().fromJson(json, MMXTopicId.class);
   }
 
+  /**
+   * @hide
+   */
+  public static MMXTopicId fromJson(Reader reader) {
+    return GsonData.fromJson(reader, MMXTopicId.class);
+  }
+
+  /**
+   * @hide
+   */
+  public static MMXTopicId fromJson(InputStream is) {
+    return GsonData.fromJson(is, MMXTopicId.class);
+  }
+
   /**
    * Transform this object to MMXChannelId.
    * @return
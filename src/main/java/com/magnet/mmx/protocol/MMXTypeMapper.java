@@ -15,6 +15,7 @@
 
 package com.magnet.mmx.protocol;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -31,27 +32,35 @@ import com.magnet.mmx.util.TypeMapper;
  * </pre>
  */
 public class MMXTypeMapper extends TypeMapper {
-  private final static Map<String, String> sMap = new HashMap<String, String>() {{
-//    put(Constants.PingPongCommand.ping.toString(), PingPong.class.getName());
-//    put(Constants.PingPongCommand.pong.toString(), PingPong.class.getName());
-//    put(Constants.PingPongCommand.pingpong.toString(), PingPong.class.getName());
-    put(Constants.PingPongCommand.ping.toString(), GCMPayload.class.getName());
-    put(Notification.getType(), Notification.class.getName());
-    put(Constants.PingPongCommand.retrieve.toString(), GCMPayload.class.getName());
-    put(MMXError.getType(), MMXError.class.getName());
-    put(GeoLoc.getType(), GeoLoc.class.getName());
-    put(PubSubNotification.getType(), PubSubNotification.class.getName());
-  }};
+  private final static Map<String, String> sMap = new HashMap<String, String>();
+  static {
+//    sMap.put(Constants.PingPongCommand.ping.toString(), PingPong.class.getName());
+//    sMap.put(Constants.PingPongCommand.pong.toString(), PingPong.class.getName());
+//    sMap.put(Constants.PingPongCommand.pingpong.toString(), PingPong.class.getName());
+    sMap.put(Constants.PingPongCommand.ping.toString(), GCMPayload.class.getName());
+    sMap.put(Notification.getType(), Notification.class.getName());
+    sMap.put(Constants.PingPongCommand.retrieve.toString(), GCMPayload.class.getName());
+    sMap.put(MMXError.getType(), MMXError.class.getName());
+    sMap.put(GeoLoc.getType(), GeoLoc.class.getName());
+    sMap.put(PubSubNotification.getType(), PubSubNotification.class.getName());
+  }
   
   private static MMXTypeMapper sInstance = new MMXTypeMapper();
 
+  // All built-in types are resolved up front.
   private MMXTypeMapper() {
     super();
+    preload();
   }
   
   protected String getClassNameByType(String type) {
     return sMap.get(type);
   }
+
+  @Override
+  protected Collection<String> getTypes() {
+    return sMap.keySet();
+  }
   
   public static MMXTypeMapper getInstance() {
     return sInstance;
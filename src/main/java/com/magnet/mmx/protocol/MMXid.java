@@ -15,11 +15,14 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.io.Serializable;
 import java.util.Map;
 
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
+import com.magnet.mmx.util.WeakInterner;
 
 /**
  * This class represents an identifier for an MMX user or MMX end-point.  The
@@ -41,6 +44,9 @@ public class MMXid implements Serializable {
   @SerializedName("displayName")
   private String mDisplayName;
 
+  // The canonical lower case user IDs by the original user IDs.
+  private final static WeakInterner<String> sUserIds = new WeakInterner<String>();
+
 //  /**
 //   * Construct an identifier for a user without a display name.  The
 //   * <code>userId</code> must be in the un-escaped format and it will be
@@ -63,11 +69,24 @@ public class MMXid implements Serializable {
     if (userId == null) {
       throw new IllegalArgumentException("User ID cannot be null");
     }
-    mUserId = userId.toLowerCase();
+    mUserId = toLowerCase(userId);
     mDeviceId = deviceId;
     mDisplayName = displayName;
   }
 
+  private static String toLowerCase(String userId) {
+    String lower = sUserIds.get(userId);
+    if (lower == null) {
+      lower = userId.toLowerCase();
+      if (lower == userId) {
+        // Already in lower case; nothing to share.
+        return userId;
+      }
+      lower = sUserIds.intern(userId, lower);
+    }
+    return lower;
+  }
+
   /**
    * Get the user ID.  When comparing the user ID, make sure that it is case
    * insensitive.
@@ -190,6 +209,15 @@ public class MMXid implements Serializable {
     return GsonData.getGson().toJson(this);
   }
 
+  /**
+   * @hide
+   * Write the JSON representation to an Appendable.
+   * @param writer A writer or a string builder.
+   */
+  public void writeJson(Appendable writer) {
+    GsonData.toJson(this, writer);
+  }
+
   /**
    * Convert the string format "userID[/deviceID][#displayName]" into the
    * identifier object.  This is the counterpart of {@link #toString()}.
@@ -224,6 +252,20 @@ public class MMXid implements Serializable {
     return GsonData.getGson().fromJson(json, MMXid.class);
   }
 
+  /**
+   * @hide
+   */
+  public static MMXid fromJson(Reader reader) {
+    return GsonData.fromJson(reader, MMXid.class);
+  }
+
+  /**
+   * @hide
+   */
+  public static MMXid fromJson(InputStream is) {
+    return GsonData.fromJson(is, MMXid.class);
+  }
+
   /**
    * @hide
    * Convert a Map into MMXid object.
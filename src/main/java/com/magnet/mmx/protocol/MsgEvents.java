@@ -15,6 +15,8 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.Date;
 import java.util.List;
 
@@ -84,4 +86,12 @@ public class MsgEvents extends MsgId {
   public static MsgEvents fromJson(String json) {
     return GsonData.getGson().fromJson(json, MsgEvents.class);
   }
+
+  public static MsgEvents fromJson(Reader reader) {
+    return GsonData.fromJson(reader, MsgEvents.class);
+  }
+
+  public static MsgEvents fromJson(InputStream is) {
+    return GsonData.fromJson(is, MsgEvents.class);
+  }
 }
@@ -15,6 +15,9 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
@@ -73,4 +76,12 @@ public class MsgId extends JSONifiable {
   public static MsgId fromJson(String json) {
     return GsonData.getGson().fromJson(json, MsgId.class);
   }
+
+  public static MsgId fromJson(Reader reader) {
+    return GsonData.fromJson(reader, MsgId.class);
+  }
+
+  public static MsgId fromJson(InputStream is) {
+    return GsonData.fromJson(is, MsgId.class);
+  }
 }
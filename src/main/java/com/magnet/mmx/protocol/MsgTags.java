@@ -15,6 +15,8 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.Date;
 import java.util.List;
 
@@ -84,4 +86,12 @@ public class MsgTags extends MsgId {
   public static MsgTags fromJson(String json) {
     return GsonData.getGson().fromJson(json, MsgTags.class);
   }
+
+  public static MsgTags fromJson(Reader reader) {
+    return GsonData.fromJson(reader, MsgTags.class);
+  }
+
+  public static MsgTags fromJson(InputStream is) {
+    return GsonData.fromJson(is, MsgTags.class);
+  }
 }
@@ -15,6 +15,8 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -48,9 +50,21 @@ public class MsgsState {
       return GsonData.getGson().fromJson(json, Request.class);
     }
 
+    public static Request fromJson(Reader reader) {
+      return GsonData.fromJson(reader, Request.class);
+    }
+
+    public static Request fromJson(InputStream is) {
+      return GsonData.fromJson(is, Request.class);
+    }
+
     public String toJson() {
       return GsonData.getGson().toJson(this);
     }
+
+    public void writeJson(Appendable writer) {
+      GsonData.toJson(this, writer);
+    }
   }
 
   /**
@@ -90,6 +104,14 @@ public class MsgsState {
     public static MessageStatusList fromJson(String json) {
       return GsonData.getGson().fromJson(json, MessageStatusList.class);
     }
+
+    public static MessageStatusList fromJson(Reader reader) {
+      return GsonData.fromJson(reader, MessageStatusList.class);
+    }
+
+    public static MessageStatusList fromJson(InputStream is) {
+      return GsonData.fromJson(is, MessageStatusList.class);
+    }
   }
   
   /**
@@ -107,9 +129,21 @@ public class MsgsState {
     public String toJson() {
       return GsonData.getGson().toJson(this);
     }
+
+    public void writeJson(Appendable writer) {
+      GsonData.toJson(this, writer);
+    }
     
     public static Response fromJson(String json) {
       return GsonData.getGson().fromJson(json, Response.class);
     }
+
+    public static Response fromJson(Reader reader) {
+      return GsonData.fromJson(reader, Response.class);
+    }
+
+    public static Response fromJson(InputStream is) {
+      return GsonData.fromJson(is, Response.class);
+    }
   }
 }
@@ -19,6 +19,8 @@ import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,6 +40,14 @@ public class MyAppsRead extends JSONifiable {
     public static Request fromJson(String json) {
       return GsonData.getGson().fromJson(json, Request.class);
     }
+
+    public static Request fromJson(Reader reader) {
+      return GsonData.fromJson(reader, Request.class);
+    }
+
+    public static Request fromJson(InputStream is) {
+      return GsonData.fromJson(is, Request.class);
+    }
   }
 
   public static class Response extends JSONifiable {
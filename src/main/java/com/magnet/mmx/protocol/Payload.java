@@ -16,12 +16,17 @@
 package com.magnet.mmx.protocol;
 
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.io.Serializable;
 import java.io.StringBufferInputStream;
 import java.util.Date;
 
+import com.magnet.mmx.util.Compressor;
 import com.magnet.mmx.util.DisposableFile;
 import com.magnet.mmx.util.FileUtil;
 
@@ -104,6 +109,24 @@ public class Payload implements Serializable {
     mDataSize = (int) file.length();
   }
 
+  /**
+   * @hide
+   * Constructor for a chunk of a text payload.
+   * @param msgType
+   * @param data The chunk data.
+   * @param offset The offset of the chunk in the payload.
+   * @param size The total size of the payload.
+   * @param cid
+   */
+  Payload(String msgType, CharSequence data, int offset, int size, String cid) {
+    mMsgType = msgType;
+    mData = data;
+    mCid = cid;
+    mDataOffset = offset;
+    mDataLen = data.length();
+    mDataSize = size;
+  }
+
   /**
    * Get the sent time.  The time is based on the system clock of the sending
    * device, so it may not be accurate.
@@ -179,7 +202,29 @@ public class Payload implements Serializable {
    * @return The text
    */
   public String getDataAsString() {
-    if (mFile != null) {
+    if (mFile != null && isFileChunk()) {
+      StringBuilder sb = new StringBuilder(mDataLen);
+      Reader reader = null;
+      try {
+        reader = new InputStreamReader(openFile());
+        char[] buf = new char[8192];
+        int n;
+        while ((n = reader.read(buf)) >= 0) {
+          sb.append(buf, 0, n);
+        }
+        return sb.toString();
+      } catch (IOException e) {
+        return null;
+      } finally {
+        if (reader != null) {
+          try {
+            reader.close();
+          } catch (IOException e) {
+            // Ignored.
+          }
+        }
+      }
+    } else if (mFile != null) {
       StringBuilder sb = new StringBuilder((int) mFile.length());
       if (FileUtil.copyFromFile(mFile, sb, null) < 0) {
         return null;
@@ -200,7 +245,7 @@ public class Payload implements Serializable {
    */
   public InputStream getDataAsInputStream() throws IOException {
     if (mFile != null) {
-      return new FileInputStream(mFile);
+      return openFile();
     } else if (mData != null) {
       return new StringBufferInputStream(mData.toString());
     } else {
@@ -208,6 +253,113 @@ public class Payload implements Serializable {
     }
   }
 
+  /**
+   * Check if the payload is large enough to be compressed on the way out,
+   * i.e. greater than {@link Constants#PAYLOAD_THRESHOLD}.
+   * @return true if the payload should be compressed.
+   */
+  public boolean isCompressible() {
+    return mDataSize > Constants.PAYLOAD_THRESHOLD;
+  }
+
+  /**
+   * Compress the text encoded payload in UTF-8 to an output stream without
+   * buffering the whole payload.  The output stream is not closed.
+   * @param os The output stream for the compressed data.
+   * @param compressor The compressor, e.g. {@link Compressor#DEFAULT}.
+   * @return Number of compressed bytes written, or 0 if there is no payload.
+   * @throws IOException
+   */
+  public long writeCompressed(OutputStream os, Compressor compressor)
+                                throws IOException {
+    if (mFile != null) {
+      InputStream is = openFile();
+      try {
+        return compressor.compress(is, os);
+      } finally {
+        is.close();
+      }
+    } else if (mData != null) {
+      return compressor.compress(mData, os);
+    } else {
+      return 0;
+    }
+  }
+
+  // A chunk of a file covers [mDataOffset, mDataOffset+mDataLen) of the file.
+  private boolean isFileChunk() {
+    return mDataOffset != 0 || mDataLen != mDataSize;
+  }
+
+  // Open the file, or the range of the chunk in the file.
+  private InputStream openFile() throws IOException {
+    FileInputStream fis = new FileInputStream(mFile);
+    if (!isFileChunk()) {
+      return fis;
+    }
+    try {
+      fis.getChannel().position(mDataOffset);
+    } catch (IOException e) {
+      fis.close();
+      throw e;
+    }
+    return new RangeInputStream(fis, mDataLen);
+  }
+
+  // An input stream limited to the length of a chunk.
+  private static class RangeInputStream extends FilterInputStream {
+    private int mRemaining;
+
+    RangeInputStream(InputStream is, int len) {
+      super(is);
+      mRemaining = len;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (mRemaining <= 0) {
+        return -1;
+      }
+      int c = in.read();
+      if (c >= 0) {
+        --mRemaining;
+      }
+      return c;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (mRemaining <= 0) {
+        return -1;
+      }
+      int n = in.read(b, off, Math.min(len, mRemaining));
+      if (n > 0) {
+        mRemaining -= n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = in.skip(Math.min(n, mRemaining));
+      mRemaining -= (int) skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return Math.min(in.available(), mRemaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+
   /**
    * The String representative of this object for debug purpose.
    */
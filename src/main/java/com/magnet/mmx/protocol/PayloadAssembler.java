@@ -0,0 +1,284 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.protocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.magnet.mmx.util.DisposableFile;
+import com.magnet.mmx.util.DisposableTextFile;
+import com.magnet.mmx.util.FileCharSequence;
+
+/**
+ * @hide
+ * Reassemble the chunks of a payload into a file.  The chunks may arrive in
+ * any order and duplicates are harmless; each chunk is written to its
+ * position in the file, so the heap usage is bounded by a small buffer
+ * regardless of the payload size.  A byte payload is assembled into a plain
+ * file; a char payload is assembled into a 16-bit Unicode file which is
+ * returned as a {@link FileCharSequence}.
+ * <pre>
+ * PayloadAssembler assembler = PayloadAssembler.forFile(mtype, cid, size, file);
+ * ...
+ * if (assembler.add(offset, chunkData)) {
+ *   Payload payload = assembler.getPayload();
+ * }
+ * </pre>
+ * @see PayloadChunker
+ */
+public class PayloadAssembler implements Closeable {
+  private final static int BUFFER_CHARS = 8192;
+
+  private final String mMsgType;
+  private final String mCid;
+  private final int mSize;
+  private final int mShift;     // 0 for bytes, 1 for 16-bit chars
+  private final DisposableFile mFile;
+  private final TreeMap<Integer, Integer> mRanges = new TreeMap<Integer, Integer>();
+  private RandomAccessFile mRandAccFile;
+  private FileChannel mChannel;
+  private ByteBuffer mBuffer;
+  private int mReceived;
+
+  private PayloadAssembler(String msgType, String cid, int size,
+                            DisposableFile file, int shift) throws IOException {
+    if (size < 0) {
+      throw new IllegalArgumentException("Invalid payload size: "+size);
+    }
+    mMsgType = msgType;
+    mCid = cid;
+    mSize = size;
+    mShift = shift;
+    mFile = file;
+    mRandAccFile = new RandomAccessFile(file, "rw");
+    mRandAccFile.setLength((long) size << shift);
+    mChannel = mRandAccFile.getChannel();
+  }
+
+  /**
+   * Create an assembler for a file-backed payload.  The offsets and sizes are
+   * in bytes.
+   * @param msgType The payload type.
+   * @param cid The chunk ID.
+   * @param size The total payload size in bytes.
+   * @param file The file to be assembled into.
+   * @return An assembler.
+   * @throws IOException Unable to create the file.
+   */
+  public static PayloadAssembler forFile(String msgType, String cid, int size,
+                                  DisposableFile file) throws IOException {
+    return new PayloadAssembler(msgType, cid, size, file, 0);
+  }
+
+  /**
+   * Create an assembler for a CharSequence-backed payload.  The offsets and
+   * sizes are in chars.
+   * @param msgType The payload type.
+   * @param cid The chunk ID.
+   * @param size The total payload size in chars.
+   * @param file The file to be assembled into as 16-bit Unicode.
+   * @return An assembler.
+   * @throws IOException Unable to create the file.
+   */
+  public static PayloadAssembler forChars(String msgType, String cid, int size,
+                                  DisposableTextFile file) throws IOException {
+    return new PayloadAssembler(msgType, cid, size, file, 1);
+  }
+
+  public String getCid() {
+    return mCid;
+  }
+
+  /**
+   * Get the total number of bytes or chars received, excluding duplicates.
+   * @return The number of bytes or chars received.
+   */
+  public int getReceived() {
+    return mReceived;
+  }
+
+  /**
+   * Check if all chunks have been received.
+   * @return true if the payload is complete.
+   */
+  public boolean isComplete() {
+    return mReceived == mSize;
+  }
+
+  /**
+   * Add a chunk from {@link PayloadChunker}.
+   * @param chunk A chunk.
+   * @return true if the payload is complete.
+   * @throws IOException
+   */
+  public boolean add(PayloadChunker.Chunk chunk) throws IOException {
+    ByteBuffer bytes = chunk.getBytes();
+    if (bytes != null) {
+      return add(chunk.getOffset(), bytes);
+    } else {
+      return add(chunk.getOffset(), chunk.getChars());
+    }
+  }
+
+  /**
+   * Add a chunk of bytes to a file-backed payload.
+   * @param offset The offset of the chunk in bytes.
+   * @param data The remaining bytes of the chunk.
+   * @return true if the payload is complete.
+   * @throws IOException
+   */
+  public boolean add(int offset, ByteBuffer data) throws IOException {
+    if (mShift != 0) {
+      throw new IllegalStateException("Not a file-backed payload");
+    }
+    int len = data.remaining();
+    checkRange(offset, len);
+    ByteBuffer src = data.duplicate();
+    long pos = offset;
+    while (src.hasRemaining()) {
+      pos += mChannel.write(src, pos);
+    }
+    return received(offset, len);
+  }
+
+  /**
+   * Add a chunk of chars to a CharSequence-backed payload.
+   * @param offset The offset of the chunk in chars.
+   * @param data The chars of the chunk.
+   * @return true if the payload is complete.
+   * @throws IOException
+   */
+  public boolean add(int offset, CharSequence data) throws IOException {
+    if (mShift != 1) {
+      throw new IllegalStateException("Not a CharSequence-backed payload");
+    }
+    int len = data.length();
+    checkRange(offset, len);
+    if (mBuffer == null) {
+      mBuffer = ByteBuffer.allocate(BUFFER_CHARS << 1);
+    }
+    mBuffer.clear();
+    CharBuffer cb = mBuffer.asCharBuffer();
+    CharBuffer src = (data instanceof CharBuffer) ?
+        ((CharBuffer) data).duplicate() : null;
+    int srcLimit = (src != null) ? src.limit() : 0;
+    for (int start = 0; start < len; ) {
+      int n = Math.min(BUFFER_CHARS, len - start);
+      cb.clear();
+      if (src != null) {
+        src.limit(src.position() + n);
+        cb.put(src);
+        src.limit(srcLimit);
+      } else {
+        for (int i = start, end = start + n; i < end; i++) {
+          cb.put(data.charAt(i));
+        }
+      }
+      mBuffer.clear();
+      mBuffer.limit(n << 1);
+      long pos = (long) (offset + start) << 1;
+      while (mBuffer.hasRemaining()) {
+        pos += mChannel.write(mBuffer, pos);
+      }
+      start += n;
+    }
+    return received(offset, len);
+  }
+
+  /**
+   * Get the assembled payload.  The file is closed.  A char payload is backed
+   * by a {@link FileCharSequence} which should be closed by the consumer.
+   * @return The assembled payload.
+   * @throws IllegalStateException Some chunks are missing.
+   * @throws IOException
+   */
+  public Payload getPayload() throws IOException {
+    if (!isComplete()) {
+      throw new IllegalStateException("Incomplete payload: received "+
+          mReceived+" of "+mSize);
+    }
+    closeFile();
+    Payload payload;
+    if (mShift == 0) {
+      payload = new Payload(mMsgType, mFile);
+    } else {
+      payload = new Payload(mMsgType,
+          new FileCharSequence((DisposableTextFile) mFile));
+    }
+    payload.setCid(mCid);
+    return payload;
+  }
+
+  /**
+   * Close the file.  If the payload is incomplete, the file is disposed.
+   */
+  @Override
+  public void close() throws IOException {
+    closeFile();
+    if (!isComplete()) {
+      mFile.finish();
+    }
+  }
+
+  private void closeFile() throws IOException {
+    mChannel = null;
+    if (mRandAccFile != null) {
+      mRandAccFile.close();
+      mRandAccFile = null;
+    }
+  }
+
+  private void checkRange(int offset, int len) throws IOException {
+    if (mChannel == null) {
+      throw new IOException("Assembler is closed");
+    }
+    if (offset < 0 || len < 0 || offset > mSize - len) {
+      throw new IllegalArgumentException("Invalid chunk "+offset+"/"+len+"/"+
+          mSize);
+    }
+  }
+
+  // Merge [offset, offset+len) into the received ranges and update the total.
+  private boolean received(int offset, int len) {
+    if (len == 0) {
+      return isComplete();
+    }
+    int start = offset;
+    int end = offset + len;
+    Map.Entry<Integer, Integer> prev = mRanges.floorEntry(start);
+    if (prev != null && prev.getValue() >= start) {
+      start = prev.getKey();
+      end = Math.max(end, prev.getValue());
+      mReceived -= prev.getValue() - prev.getKey();
+      mRanges.remove(prev.getKey());
+    }
+    Map.Entry<Integer, Integer> next;
+    while ((next = mRanges.ceilingEntry(start)) != null && next.getKey() <= end) {
+      end = Math.max(end, next.getValue());
+      mReceived -= next.getValue() - next.getKey();
+      mRanges.remove(next.getKey());
+    }
+    mRanges.put(start, end);
+    mReceived += end - start;
+    return isComplete();
+  }
+}
@@ -0,0 +1,256 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.protocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import com.magnet.mmx.util.DisposableFile;
+import com.magnet.mmx.util.FileCharSequence;
+
+/**
+ * @hide
+ * Cut a payload into fixed-size chunks without copying the data.  A chunk of
+ * a file-backed payload is a read-only memory-mapped region of the file; a
+ * chunk of a CharSequence-backed payload is a CharBuffer view of the sequence
+ * (or a memory-mapped region if it is a {@link FileCharSequence}.)  The offset
+ * and length of a chunk are in the unit of the payload: bytes for a file and
+ * chars for a CharSequence, as in {@link Payload#getDataSize()}.
+ * <pre>
+ * PayloadChunker chunker = new PayloadChunker(payload, 64 * 1024);
+ * try {
+ *   while (chunker.hasNext()) {
+ *     send(chunker.next().toPayload());
+ *   }
+ * } finally {
+ *   chunker.close();
+ * }
+ * </pre>
+ * @see PayloadAssembler
+ */
+public class PayloadChunker implements Iterator<PayloadChunker.Chunk>, Closeable {
+  private final String mMsgType;
+  private final String mCid;
+  private final int mSize;
+  private final int mChunkSize;
+  private final DisposableFile mFile;
+  private final CharSequence mData;
+  private RandomAccessFile mRandAccFile;
+  private FileChannel mChannel;
+  private int mOffset;
+
+  /**
+   * A chunk of a payload.  The data is either a read-only ByteBuffer or a
+   * CharBuffer which shares the content with the payload.
+   */
+  public static class Chunk {
+    private final PayloadChunker mChunker;
+    private final int mOffset;
+    private final ByteBuffer mBytes;
+    private final CharBuffer mChars;
+
+    Chunk(PayloadChunker chunker, int offset, ByteBuffer bytes,
+          CharBuffer chars) {
+      mChunker = chunker;
+      mOffset = offset;
+      mBytes = bytes;
+      mChars = chars;
+    }
+
+    public String getMsgType() {
+      return mChunker.mMsgType;
+    }
+
+    public String getCid() {
+      return mChunker.mCid;
+    }
+
+    /**
+     * Get the offset of this chunk in the payload.
+     * @return The offset.
+     */
+    public int getOffset() {
+      return mOffset;
+    }
+
+    /**
+     * Get the length of this chunk.
+     * @return The length.
+     */
+    public int getLength() {
+      return (mBytes != null) ? mBytes.remaining() : mChars.remaining();
+    }
+
+    /**
+     * Get the total size of the payload.
+     * @return The payload size.
+     */
+    public int getSize() {
+      return mChunker.mSize;
+    }
+
+    /**
+     * Get the memory-mapped data of a file-backed payload.
+     * @return A read-only buffer, or null if the payload is a CharSequence.
+     */
+    public ByteBuffer getBytes() {
+      return (mBytes == null) ? null : mBytes.duplicate();
+    }
+
+    /**
+     * Get the data of a CharSequence-backed payload.
+     * @return A char buffer, or null if the payload is a file.
+     */
+    public CharBuffer getChars() {
+      return (mChars == null) ? null : mChars.duplicate();
+    }
+
+    /**
+     * Format for the chunk attribute.
+     * @return The chunk attribute in "offset/len/size" format.
+     * @see Payload#formatChunk()
+     */
+    public String formatChunk() {
+      return mOffset+"/"+getLength()+"/"+mChunker.mSize;
+    }
+
+    /**
+     * Convert this chunk to a Payload carrying the chunk attributes.  A chunk
+     * of a file refers to the region in the original file; its data accessors
+     * read that region only.  A chunk of chars is copied into a String.
+     * @return A payload for this chunk.
+     */
+    public Payload toPayload() {
+      if (mChars != null) {
+        // A CharBuffer is not serializable.
+        return new Payload(mChunker.mMsgType, mChars.toString(), mOffset,
+            mChunker.mSize, mChunker.mCid);
+      } else {
+        return new Payload(mChunker.mMsgType, mChunker.mFile, mOffset,
+            mBytes.remaining(), mChunker.mCid);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "[ cid="+getCid()+", chunk="+formatChunk()+" ]";
+    }
+  }
+
+  /**
+   * Constructor.  If the payload has no chunk ID, a random one is assigned to
+   * the payload.
+   * @param payload A payload backed by a file or a CharSequence.
+   * @param chunkSize The maximum size of each chunk.
+   * @throws IOException Unable to open the file.
+   */
+  public PayloadChunker(Payload payload, int chunkSize) throws IOException {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Invalid chunk size: "+chunkSize);
+    }
+    if (payload.getCid() == null) {
+      payload.setCid(UUID.randomUUID().toString());
+    }
+    mMsgType = payload.getMsgType();
+    mCid = payload.getCid();
+    mChunkSize = chunkSize;
+    mFile = payload.getFile();
+    mData = payload.getData();
+    if (mFile != null) {
+      mSize = (int) mFile.length();
+      mRandAccFile = new RandomAccessFile(mFile, "r");
+      mChannel = mRandAccFile.getChannel();
+    } else {
+      mSize = (mData != null) ? mData.length() : 0;
+    }
+  }
+
+  /**
+   * Get the number of chunks.
+   * @return The number of chunks.
+   */
+  public int getChunkCount() {
+    return (mSize + mChunkSize - 1) / mChunkSize;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return mOffset < mSize;
+  }
+
+  /**
+   * Get the next chunk.
+   * @throws NoSuchElementException No more chunk.
+   * @throws IllegalStateException Unable to map the file or the chunker is
+   *          closed.
+   */
+  @Override
+  public Chunk next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    int offset = mOffset;
+    int len = Math.min(mChunkSize, mSize - offset);
+    Chunk chunk;
+    try {
+      if (mFile != null) {
+        if (mChannel == null) {
+          throw new IllegalStateException("Chunker is closed");
+        }
+        chunk = new Chunk(this, offset,
+            mChannel.map(MapMode.READ_ONLY, offset, len), null);
+      } else if (mData instanceof FileCharSequence) {
+        chunk = new Chunk(this, offset, null,
+            ((FileCharSequence) mData).map(MapMode.READ_ONLY, offset, len));
+      } else {
+        chunk = new Chunk(this, offset, null,
+            CharBuffer.wrap(mData, offset, offset + len));
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to map chunk "+offset+"/"+len, e);
+    }
+    mOffset += len;
+    return chunk;
+  }
+
+  /**
+   * Not supported.
+   */
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Close the file.  The mapped chunks remain valid.
+   */
+  @Override
+  public void close() throws IOException {
+    mChannel = null;
+    if (mRandAccFile != null) {
+      mRandAccFile.close();
+      mRandAccFile = null;
+    }
+  }
+}
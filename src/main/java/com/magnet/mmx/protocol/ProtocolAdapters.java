@@ -0,0 +1,1223 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.protocol;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.magnet.mmx.protocol.Constants.MessageState;
+import com.magnet.mmx.protocol.TopicAction.PublisherType;
+import com.magnet.mmx.util.GsonData;
+
+/**
+ * @hide
+ * Hand-written streaming adapters for the protocol classes on the hot path of
+ * the server.  The adapters read and write the JSON directly from a JsonReader
+ * or to a JsonWriter without reflection, and they produce the same JSON as the
+ * reflective adapters: the field names come from the @SerializedName of each
+ * class, null fields are omitted and unknown fields are skipped.  The
+ * {@link #FACTORY} is registered in {@link com.magnet.mmx.util.GsonData}.
+ */
+public class ProtocolAdapters {
+  /**
+   * The factory for all streaming adapters.  It only matches the exact
+   * classes, so any derived class still goes through the reflective adapter.
+   */
+  public final static TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+      Class<? super T> clz = type.getRawType();
+      if (clz == TopicAction.MMXPublishedItem.class) {
+        return (TypeAdapter<T>) TOPIC_ITEM;
+      } else if (clz == TopicAction.FetchResponse.class) {
+        return (TypeAdapter<T>) TOPIC_FETCH_RESPONSE;
+      } else if (clz == ChannelAction.MMXPublishedItem.class) {
+        return (TypeAdapter<T>) CHANNEL_ITEM;
+      } else if (clz == ChannelAction.FetchResponse.class) {
+        return (TypeAdapter<T>) CHANNEL_FETCH_RESPONSE;
+      } else if (clz == TopicInfo.class) {
+        return (TypeAdapter<T>) TOPIC_INFO;
+      } else if (clz == TopicAction.ListResponse.class) {
+        return (TypeAdapter<T>) new TopicInfoListAdapter<TopicAction.ListResponse>(gson) {
+          @Override
+          TopicAction.ListResponse newList() {
+            return new TopicAction.ListResponse();
+          }
+        };
+      } else if (clz == TopicAction.GetTopicsResponse.class) {
+        return (TypeAdapter<T>) new TopicInfoListAdapter<TopicAction.GetTopicsResponse>(gson) {
+          @Override
+          TopicAction.GetTopicsResponse newList() {
+            return new TopicAction.GetTopicsResponse();
+          }
+        };
+      } else if (clz == ChannelInfo.class) {
+        return (TypeAdapter<T>) CHANNEL_INFO;
+      } else if (clz == ChannelAction.ListResponse.class) {
+        return (TypeAdapter<T>) new ChannelInfoListAdapter<ChannelAction.ListResponse>(gson) {
+          @Override
+          ChannelAction.ListResponse newList() {
+            return new ChannelAction.ListResponse();
+          }
+        };
+      } else if (clz == ChannelAction.GetChannelsResponse.class) {
+        return (TypeAdapter<T>) new ChannelInfoListAdapter<ChannelAction.GetChannelsResponse>(gson) {
+          @Override
+          ChannelAction.GetChannelsResponse newList() {
+            return new ChannelAction.GetChannelsResponse();
+          }
+        };
+      } else if (clz == UserInfo.class) {
+        return (TypeAdapter<T>) USER_INFO;
+      } else if (clz == TopicAction.SubscribersResponse.class) {
+        return (TypeAdapter<T>) TOPIC_SUBSCRIBERS_RESPONSE;
+      } else if (clz == ChannelAction.SubscribersResponse.class) {
+        return (TypeAdapter<T>) CHANNEL_SUBSCRIBERS_RESPONSE;
+      } else if (clz == DeviceInfo.class) {
+        return (TypeAdapter<T>) DEVICE_INFO;
+      } else if (clz == DevReg.class) {
+        return (TypeAdapter<T>) DEV_REG;
+      } else if (clz == MsgsState.Request.class) {
+        return (TypeAdapter<T>) MSGS_STATE_REQUEST;
+      } else if (clz == MsgsState.MessageStatus.class) {
+        return (TypeAdapter<T>) MESSAGE_STATUS;
+      } else if (clz == MsgsState.MessageStatusList.class) {
+        return (TypeAdapter<T>) MESSAGE_STATUS_LIST;
+      } else if (clz == MsgsState.Response.class) {
+        return (TypeAdapter<T>) MSGS_STATE_RESPONSE;
+      } else if (clz == MMXChannelId.class) {
+        return (TypeAdapter<T>) CHANNEL_ID;
+      } else if (clz == MMXTopicId.class) {
+        return (TypeAdapter<T>) TOPIC_ID;
+      }
+      return null;
+    }
+  };
+
+  //
+  // PubSub published items and fetch responses.
+  //
+
+  // The published items of topics and channels have the same properties.
+  static abstract class PublishedItemAdapter<I> extends TypeAdapter<I> {
+    abstract String getItemId(I item);
+    abstract String getPublisher(I item);
+    abstract Date getCreationDate(I item);
+    abstract String getPayloadXml(I item);
+    abstract I newItem(String itemId, String publisher, Date creationDate,
+                        String payloadXml);
+
+    @Override
+    public void write(JsonWriter out, I item) throws IOException {
+      if (item == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("itemId").value(getItemId(item));
+      out.name("publisher").value(getPublisher(item));
+      writeDate(out.name("creationDate"), getCreationDate(item));
+      out.name("payloadXML").value(getPayloadXml(item));
+      out.endObject();
+    }
+
+    @Override
+    public I read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      String itemId = null, publisher = null, payloadXml = null;
+      Date creationDate = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (name.equals("itemId")) {
+          itemId = readString(in);
+        } else if (name.equals("publisher")) {
+          publisher = readString(in);
+        } else if (name.equals("creationDate")) {
+          creationDate = readDate(in);
+        } else if (name.equals("payloadXML")) {
+          payloadXml = readString(in);
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return newItem(itemId, publisher, creationDate, payloadXml);
+    }
+  }
+
+  final static PublishedItemAdapter<TopicAction.MMXPublishedItem> TOPIC_ITEM =
+      new PublishedItemAdapter<TopicAction.MMXPublishedItem>() {
+    @Override
+    String getItemId(TopicAction.MMXPublishedItem item) {
+      return item.getItemId();
+    }
+
+    @Override
+    String getPublisher(TopicAction.MMXPublishedItem item) {
+      return item.getPublisher();
+    }
+
+    @Override
+    Date getCreationDate(TopicAction.MMXPublishedItem item) {
+      return item.getCreationDate();
+    }
+
+    @Override
+    String getPayloadXml(TopicAction.MMXPublishedItem item) {
+      return item.getPayloadXml();
+    }
+
+    @Override
+    TopicAction.MMXPublishedItem newItem(String itemId, String publisher,
+        Date creationDate, String payloadXml) {
+      return new TopicAction.MMXPublishedItem(itemId, publisher, creationDate,
+          payloadXml);
+    }
+  };
+
+  final static PublishedItemAdapter<ChannelAction.MMXPublishedItem> CHANNEL_ITEM =
+      new PublishedItemAdapter<ChannelAction.MMXPublishedItem>() {
+    @Override
+    String getItemId(ChannelAction.MMXPublishedItem item) {
+      return item.getItemId();
+    }
+
+    @Override
+    String getPublisher(ChannelAction.MMXPublishedItem item) {
+      return item.getPublisher();
+    }
+
+    @Override
+    Date getCreationDate(ChannelAction.MMXPublishedItem item) {
+      return item.getCreationDate();
+    }
+
+    @Override
+    String getPayloadXml(ChannelAction.MMXPublishedItem item) {
+      return item.getPayloadXml();
+    }
+
+    @Override
+    ChannelAction.MMXPublishedItem newItem(String itemId, String publisher,
+        Date creationDate, String payloadXml) {
+      return new ChannelAction.MMXPublishedItem(itemId, publisher, creationDate,
+          payloadXml);
+    }
+  };
+
+  // The fetch responses of topics and channels differ in the property name
+  // and the item class only.  The items are always written last, so a
+  // streaming reader gets the other properties before the (potentially huge)
+  // items.
+  static abstract class FetchResponseAdapter<R, I> extends TypeAdapter<R> {
+    private final String mNameKey;
+    private final TypeAdapter<I> mItemAdapter;
+
+    FetchResponseAdapter(String nameKey, TypeAdapter<I> itemAdapter) {
+      mNameKey = nameKey;
+      mItemAdapter = itemAdapter;
+    }
+
+    abstract String getUserId(R resp);
+    abstract String getName(R resp);
+    abstract int getTotal(R resp);
+    abstract List<I> getItems(R resp);
+    abstract R newResponse(String userId, String name, int total,
+                            List<I> items);
+
+    @Override
+    public void write(JsonWriter out, R resp) throws IOException {
+      if (resp == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("userId").value(getUserId(resp));
+      out.name(mNameKey).value(getName(resp));
+      out.name("totalCount").value(getTotal(resp));
+      List<I> items = getItems(resp);
+      if (items != null) {
+        out.name("items").beginArray();
+        for (I item : items) {
+          mItemAdapter.write(out, item);
+        }
+        out.endArray();
+      }
+      out.endObject();
+    }
+
+    @Override
+    public R read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      String userId = null, nodeName = null;
+      int total = 0;
+      List<I> items = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (name.equals("userId")) {
+          userId = readString(in);
+        } else if (name.equals(mNameKey)) {
+          nodeName = readString(in);
+        } else if (name.equals("totalCount")) {
+          total = readInt(in);
+        } else if (name.equals("items")) {
+          items = readList(in, mItemAdapter);
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return newResponse(userId, nodeName, total, items);
+    }
+  }
+
+  final static TypeAdapter<TopicAction.FetchResponse> TOPIC_FETCH_RESPONSE =
+      new FetchResponseAdapter<TopicAction.FetchResponse,
+                               TopicAction.MMXPublishedItem>("topicName", TOPIC_ITEM) {
+    @Override
+    String getUserId(TopicAction.FetchResponse resp) {
+      return resp.getUserId();
+    }
+
+    @Override
+    String getName(TopicAction.FetchResponse resp) {
+      return resp.getTopic();
+    }
+
+    @Override
+    int getTotal(TopicAction.FetchResponse resp) {
+      return resp.getTotal();
+    }
+
+    @Override
+    List<TopicAction.MMXPublishedItem> getItems(TopicAction.FetchResponse resp) {
+      return resp.getItems();
+    }
+
+    @Override
+    TopicAction.FetchResponse newResponse(String userId, String name, int total,
+        List<TopicAction.MMXPublishedItem> items) {
+      return new TopicAction.FetchResponse(userId, name, total, items);
+    }
+  };
+
+  final static TypeAdapter<ChannelAction.FetchResponse> CHANNEL_FETCH_RESPONSE =
+      new FetchResponseAdapter<ChannelAction.FetchResponse,
+                               ChannelAction.MMXPublishedItem>("channelName", CHANNEL_ITEM) {
+    @Override
+    String getUserId(ChannelAction.FetchResponse resp) {
+      return resp.getUserId();
+    }
+
+    @Override
+    String getName(ChannelAction.FetchResponse resp) {
+      return resp.getChannel();
+    }
+
+    @Override
+    int getTotal(ChannelAction.FetchResponse resp) {
+      return resp.getTotal();
+    }
+
+    @Override
+    List<ChannelAction.MMXPublishedItem> getItems(ChannelAction.FetchResponse resp) {
+      return resp.getItems();
+    }
+
+    @Override
+    ChannelAction.FetchResponse newResponse(String userId, String name, int total,
+        List<ChannelAction.MMXPublishedItem> items) {
+      return new ChannelAction.FetchResponse(userId, name, total, items);
+    }
+  };
+
+  //
+  // Topic and channel listings.
+  //
+
+  // The properties of a TopicInfo or a ChannelInfo.
+  static class InfoFields {
+    boolean collection, persistent, subEnabled;
+    int maxItems, maxPayloadSize;
+    String desc, creator, name, userId;
+    Date creationDate, modifiedDate;
+    PublisherType pubType;
+  }
+
+  // TopicInfo and ChannelInfo have the same properties under a few different
+  // names.
+  static abstract class InfoAdapter<T> extends TypeAdapter<T> {
+    private final String mPubTypeKey;
+    private final String mCreatorKey;
+    private final String mNameKey;
+
+    InfoAdapter(String pubTypeKey, String creatorKey, String nameKey) {
+      mPubTypeKey = pubTypeKey;
+      mCreatorKey = creatorKey;
+      mNameKey = nameKey;
+    }
+
+    abstract InfoFields toFields(T info);
+    abstract T newInfo(InfoFields fields);
+
+    @Override
+    public void write(JsonWriter out, T info) throws IOException {
+      if (info == null) {
+        out.nullValue();
+        return;
+      }
+      InfoFields fields = toFields(info);
+      out.beginObject();
+      out.name("isCollection").value(fields.collection);
+      out.name("description").value(fields.desc);
+      out.name("isPersistent").value(fields.persistent);
+      out.name("maxItems").value(fields.maxItems);
+      out.name("maxPayloadSize").value(fields.maxPayloadSize);
+      writeDate(out.name("creationDate"), fields.creationDate);
+      writeDate(out.name("modificationDate"), fields.modifiedDate);
+      writeEnum(out.name(mPubTypeKey), fields.pubType);
+      out.name(mCreatorKey).value(fields.creator);
+      out.name("subscriptionEnabled").value(fields.subEnabled);
+      out.name(mNameKey).value(fields.name);
+      out.name("userId").value(fields.userId);
+      out.endObject();
+    }
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      InfoFields fields = new InfoFields();
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (name.equals("isCollection")) {
+          fields.collection = readBoolean(in);
+        } else if (name.equals("description")) {
+          fields.desc = readString(in);
+        } else if (name.equals("isPersistent")) {
+          fields.persistent = readBoolean(in);
+        } else if (name.equals("maxItems")) {
+          fields.maxItems = readInt(in);
+        } else if (name.equals("maxPayloadSize")) {
+          fields.maxPayloadSize = readInt(in);
+        } else if (name.equals("creationDate")) {
+          fields.creationDate = readDate(in);
+        } else if (name.equals("modificationDate")) {
+          fields.modifiedDate = readDate(in);
+        } else if (name.equals(mPubTypeKey)) {
+          fields.pubType = readEnum(in, PublisherType.class);
+        } else if (name.equals(mCreatorKey)) {
+          fields.creator = readString(in);
+        } else if (name.equals("subscriptionEnabled")) {
+          fields.subEnabled = readBoolean(in);
+        } else if (name.equals(mNameKey)) {
+          fields.name = readString(in);
+        } else if (name.equals("userId")) {
+          fields.userId = readString(in);
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return newInfo(fields);
+    }
+  }
+
+  final static TypeAdapter<TopicInfo> TOPIC_INFO = new InfoAdapter<TopicInfo>(
+      "publisherType", "creator", "topicName") {
+    @Override
+    InfoFields toFields(TopicInfo info) {
+      InfoFields fields = new InfoFields();
+      fields.collection = info.isCollection();
+      fields.desc = info.getDescription();
+      fields.persistent = info.isPersistent();
+      fields.maxItems = info.getMaxItems();
+      fields.maxPayloadSize = info.getMaxPayloadSize();
+      fields.creationDate = info.getCreationDate();
+      fields.modifiedDate = info.getModifiedDate();
+      fields.pubType = info.getPublisherType();
+      fields.creator = info.getCreator();
+      fields.subEnabled = info.isSubscriptionEnabled();
+      fields.name = info.getName();
+      fields.userId = info.getEscUserId();
+      return fields;
+    }
+
+    @Override
+    TopicInfo newInfo(InfoFields fields) {
+      TopicInfo info;
+      if (fields.name == null || fields.name.isEmpty()) {
+        // Keep the fields as is like the reflective deserialization.
+        info = new TopicInfo(fields.collection);
+        info.mTopic = fields.name;
+        info.mEscUserId = fields.userId;
+      } else {
+        info = new TopicInfo(fields.userId, fields.name, fields.collection);
+      }
+      return info
+        .setDescription(fields.desc)
+        .setPersistent(fields.persistent)
+        .setMaxItems(fields.maxItems)
+        .setMaxPayloadSize(fields.maxPayloadSize)
+        .setCreationDate(fields.creationDate)
+        .setModifiedDate(fields.modifiedDate)
+        .setPublisherType(fields.pubType)
+        .setCreator(fields.creator)
+        .setSubscriptionEnabled(fields.subEnabled);
+    }
+  };
+
+  final static TypeAdapter<ChannelInfo> CHANNEL_INFO = new InfoAdapter<ChannelInfo>(
+      "publishPermission", "creatorUserId", "channelName") {
+    @Override
+    InfoFields toFields(ChannelInfo info) {
+      InfoFields fields = new InfoFields();
+      fields.collection = info.isCollection();
+      fields.desc = info.getDescription();
+      fields.persistent = info.isPersistent();
+      fields.maxItems = info.getMaxItems();
+      fields.maxPayloadSize = info.getMaxPayloadSize();
+      fields.creationDate = info.getCreationDate();
+      fields.modifiedDate = info.getModifiedDate();
+      fields.pubType = info.getPublishPermission();
+      fields.creator = info.getCreator();
+      fields.subEnabled = info.isSubscriptionEnabled();
+      fields.name = info.getName();
+      fields.userId = info.getEscUserId();
+      return fields;
+    }
+
+    @Override
+    ChannelInfo newInfo(InfoFields fields) {
+      ChannelInfo info;
+      if (fields.name == null || fields.name.isEmpty()) {
+        // Keep the fields as is like the reflective deserialization.
+        info = new ChannelInfo(fields.collection);
+        info.mChannel = fields.name;
+        info.mEscUserId = fields.userId;
+      } else {
+        info = new ChannelInfo(fields.userId, fields.name, fields.collection);
+      }
+      return info
+        .setDescription(fields.desc)
+        .setPersistent(fields.persistent)
+        .setMaxItems(fields.maxItems)
+        .setMaxPayloadSize(fields.maxPayloadSize)
+        .setCreationDate(fields.creationDate)
+        .setModifiedDate(fields.modifiedDate)
+        .setPublishPermission(fields.pubType)
+        .setCreator(fields.creator)
+        .setSubscriptionEnabled(fields.subEnabled);
+    }
+  };
+
+  // A list of TopicInfo or ChannelInfo.  A derived class of the info (e.g.
+  // with subscription count) is delegated to its own adapter.
+  static abstract class InfoListAdapter<I, L extends List<I>>
+      extends TypeAdapter<L> {
+    private final Gson mGson;
+    private final Class<I> mInfoClass;
+    private final TypeAdapter<I> mInfoAdapter;
+
+    InfoListAdapter(Gson gson, Class<I> infoClass, TypeAdapter<I> infoAdapter) {
+      mGson = gson;
+      mInfoClass = infoClass;
+      mInfoAdapter = infoAdapter;
+    }
+
+    abstract L newList();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void write(JsonWriter out, L list) throws IOException {
+      if (list == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginArray();
+      for (I info : list) {
+        if (info == null || info.getClass() == mInfoClass) {
+          mInfoAdapter.write(out, info);
+        } else {
+          ((TypeAdapter<I>) mGson.getAdapter(info.getClass())).write(out, info);
+        }
+      }
+      out.endArray();
+    }
+
+    @Override
+    public L read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      L list = newList();
+      in.beginArray();
+      while (in.hasNext()) {
+        list.add(mInfoAdapter.read(in));
+      }
+      in.endArray();
+      return list;
+    }
+  }
+
+  static abstract class TopicInfoListAdapter<L extends List<TopicInfo>>
+      extends InfoListAdapter<TopicInfo, L> {
+    TopicInfoListAdapter(Gson gson) {
+      super(gson, TopicInfo.class, TOPIC_INFO);
+    }
+  }
+
+  static abstract class ChannelInfoListAdapter<L extends List<ChannelInfo>>
+      extends InfoListAdapter<ChannelInfo, L> {
+    ChannelInfoListAdapter(Gson gson) {
+      super(gson, ChannelInfo.class, CHANNEL_INFO);
+    }
+  }
+
+  //
+  // Subscribers.
+  //
+
+  final static TypeAdapter<UserInfo> USER_INFO = new TypeAdapter<UserInfo>() {
+    @Override
+    public void write(JsonWriter out, UserInfo info) throws IOException {
+      if (info == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("email").value(info.getEmail());
+      out.name("displayName").value(info.getDisplayName());
+      out.name("userId").value(info.getUserId());
+      out.name("phone").value(info.getPhone());
+      out.endObject();
+    }
+
+    @Override
+    public UserInfo read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      UserInfo info = new UserInfo();
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (name.equals("email")) {
+          info.setEmail(readString(in));
+        } else if (name.equals("displayName")) {
+          info.setDisplayName(readString(in));
+        } else if (name.equals("userId")) {
+          info.setUserId(readString(in));
+        } else if (name.equals("phone")) {
+          info.setPhone(readString(in));
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return info;
+    }
+  };
+
+  // The subscribers responses of topics and channels have the same
+  // properties.
+  static abstract class SubscribersAdapter<R extends MMXStatus>
+      extends TypeAdapter<R> {
+    abstract List<UserInfo> getSubscribers(R resp);
+    abstract int getTotal(R resp);
+    abstract R newResponse(List<UserInfo> subscribers, int total);
+
+    @Override
+    public void write(JsonWriter out, R resp) throws IOException {
+      if (resp == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      writeUserInfoList(out.name("subscribers"), getSubscribers(resp));
+      out.name("totalCount").value(getTotal(resp));
+      out.name("message").value(resp.getMessage());
+      out.name("code").value(resp.getCode());
+      out.endObject();
+    }
+
+    @Override
+    public R read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      List<UserInfo> subscribers = null;
+      int total = 0, code = 0;
+      String message = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (name.equals("subscribers")) {
+          subscribers = readList(in, USER_INFO);
+        } else if (name.equals("totalCount")) {
+          total = readInt(in);
+        } else if (name.equals("message")) {
+          message = readString(in);
+        } else if (name.equals("code")) {
+          code = readInt(in);
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      R resp = newResponse(subscribers, total);
+      resp.setMessage(message);
+      resp.setCode(code);
+      return resp;
+    }
+  }
+
+  final static TypeAdapter<TopicAction.SubscribersResponse> TOPIC_SUBSCRIBERS_RESPONSE =
+      new SubscribersAdapter<TopicAction.SubscribersResponse>() {
+    @Override
+    List<UserInfo> getSubscribers(TopicAction.SubscribersResponse resp) {
+      return resp.getSubscribers();
+    }
+
+    @Override
+    int getTotal(TopicAction.SubscribersResponse resp) {
+      return resp.getTotal();
+    }
+
+    @Override
+    TopicAction.SubscribersResponse newResponse(List<UserInfo> subscribers,
+                                                 int total) {
+      return new TopicAction.SubscribersResponse().setSubscribers(subscribers)
+          .setTotal(total);
+    }
+  };
+
+  final static TypeAdapter<ChannelAction.SubscribersResponse> CHANNEL_SUBSCRIBERS_RESPONSE =
+      new SubscribersAdapter<ChannelAction.SubscribersResponse>() {
+    @Override
+    List<UserInfo> getSubscribers(ChannelAction.SubscribersResponse resp) {
+      return resp.getSubscribers();
+    }
+
+    @Override
+    int getTotal(ChannelAction.SubscribersResponse resp) {
+      return resp.getTotal();
+    }
+
+    @Override
+    ChannelAction.SubscribersResponse newResponse(List<UserInfo> subscribers,
+                                                   int total) {
+      return new ChannelAction.SubscribersResponse().setSubscribers(subscribers)
+          .setTotal(total);
+    }
+  };
+
+  //
+  // Device registration.
+  //
+
+  final static TypeAdapter<DeviceInfo> DEVICE_INFO = new TypeAdapter<DeviceInfo>() {
+    @Override
+    public void write(JsonWriter out, DeviceInfo info) throws IOException {
+      if (info == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      writeDeviceInfo(out, info);
+      out.endObject();
+    }
+
+    @Override
+    public DeviceInfo read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      DeviceInfo info = new DeviceInfo();
+      in.beginObject();
+      while (in.hasNext()) {
+        if (!readDeviceInfo(in, in.nextName(), info)) {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return info;
+    }
+  };
+
+  final static TypeAdapter<DevReg> DEV_REG = new TypeAdapter<DevReg>() {
+    @Override
+    public void write(JsonWriter out, DevReg devReg) throws IOException {
+      if (devReg == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("apiKey").value(devReg.getApiKey());
+      writeDeviceInfo(out, devReg);
+      out.endObject();
+    }
+
+    @Override
+    public DevReg read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      DevReg devReg = new DevReg();
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (name.equals("apiKey")) {
+          devReg.setApiKey(readString(in));
+        } else if (!readDeviceInfo(in, name, devReg)) {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return devReg;
+    }
+  };
+
+  //
+  // Message states.
+  //
+
+  final static TypeAdapter<MsgsState.Request> MSGS_STATE_REQUEST =
+      new TypeAdapter<MsgsState.Request>() {
+    @Override
+    public void write(JsonWriter out, MsgsState.Request request)
+        throws IOException {
+      writeStringList(out, request);
+    }
+
+    @Override
+    public MsgsState.Request read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      MsgsState.Request request = new MsgsState.Request();
+      in.beginArray();
+      while (in.hasNext()) {
+        request.add(readString(in));
+      }
+      in.endArray();
+      return request;
+    }
+  };
+
+  final static TypeAdapter<MsgsState.MessageStatus> MESSAGE_STATUS =
+      new TypeAdapter<MsgsState.MessageStatus>() {
+    @Override
+    public void write(JsonWriter out, MsgsState.MessageStatus status)
+        throws IOException {
+      if (status == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      writeEnum(out.name("state"), status.getState());
+      out.name("recipient").value(status.getRecipient());
+      out.endObject();
+    }
+
+    @Override
+    public MsgsState.MessageStatus read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      MsgsState.MessageStatus status = new MsgsState.MessageStatus();
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (name.equals("state")) {
+          status.setState(readEnum(in, MessageState.class));
+        } else if (name.equals("recipient")) {
+          status.setRecipient(readString(in));
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return status;
+    }
+  };
+
+  final static TypeAdapter<MsgsState.MessageStatusList> MESSAGE_STATUS_LIST =
+      new TypeAdapter<MsgsState.MessageStatusList>() {
+    @Override
+    public void write(JsonWriter out, MsgsState.MessageStatusList list)
+        throws IOException {
+      if (list == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginArray();
+      for (MsgsState.MessageStatus status : list) {
+        MESSAGE_STATUS.write(out, status);
+      }
+      out.endArray();
+    }
+
+    @Override
+    public MsgsState.MessageStatusList read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      MsgsState.MessageStatusList list = new MsgsState.MessageStatusList();
+      in.beginArray();
+      while (in.hasNext()) {
+        list.add(MESSAGE_STATUS.read(in));
+      }
+      in.endArray();
+      return list;
+    }
+  };
+
+  final static TypeAdapter<MsgsState.Response> MSGS_STATE_RESPONSE =
+      new TypeAdapter<MsgsState.Response>() {
+    @Override
+    public void write(JsonWriter out, MsgsState.Response resp)
+        throws IOException {
+      if (resp == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      for (Map.Entry<String, MsgsState.MessageStatusList> entry : resp.entrySet()) {
+        out.name(String.valueOf(entry.getKey()));
+        MESSAGE_STATUS_LIST.write(out, entry.getValue());
+      }
+      out.endObject();
+    }
+
+    @Override
+    public MsgsState.Response read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      MsgsState.Response resp = new MsgsState.Response();
+      in.beginObject();
+      while (in.hasNext()) {
+        String msgId = in.nextName();
+        resp.put(msgId, MESSAGE_STATUS_LIST.read(in));
+      }
+      in.endObject();
+      return resp;
+    }
+  };
+
+  //
+  // Identifiers; the decoded instances are canonical.
+  //
+
+  final static TypeAdapter<MMXChannelId> CHANNEL_ID =
+      new TypeAdapter<MMXChannelId>() {
+    @Override
+    public void write(JsonWriter out, MMXChannelId id) throws IOException {
+      if (id == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("channelName").value(id.getName());
+      out.name("userId").value(id.getEscUserId());
+      out.endObject();
+    }
+
+    @Override
+    public MMXChannelId read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      String channel = null, userId = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (name.equals("channelName")) {
+          channel = readString(in);
+        } else if (name.equals("userId")) {
+          userId = readString(in);
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return MMXChannelId.fromFields(userId, channel);
+    }
+  };
+
+  final static TypeAdapter<MMXTopicId> TOPIC_ID = new TypeAdapter<MMXTopicId>() {
+    @Override
+    public void write(JsonWriter out, MMXTopicId id) throws IOException {
+      if (id == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("topicName").value(id.getName());
+      out.name("userId").value(id.getEscUserId());
+      out.endObject();
+    }
+
+    @Override
+    public MMXTopicId read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      String topic = null, userId = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (name.equals("topicName")) {
+          topic = readString(in);
+        } else if (name.equals("userId")) {
+          userId = readString(in);
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return MMXTopicId.fromFields(userId, topic);
+    }
+  };
+
+  //
+  // Helpers shared by the adapters.
+  //
+
+  private static void writeDeviceInfo(JsonWriter out, DeviceInfo info)
+      throws IOException {
+    out.name("devId").value(info.getDevId());
+    out.name("displayName").value(info.getDisplayName());
+    out.name("modelInfo").value(info.getModelInfo());
+    out.name("osType").value(info.getOsType());
+    out.name("osVersion").value(info.getOsVersion());
+    out.name("versionMajor").value(info.getVersionMajor());
+    out.name("versionMinor").value(info.getVersionMinor());
+    out.name("pushType").value(info.getPushType());
+    out.name("pushToken").value(info.getPushToken());
+    out.name("phoneNumber").value(info.getPhoneNumber());
+    out.name("carrierInfo").value(info.getCarrierInfo());
+    Map<String, String> extras = info.getExtras();
+    if (extras != null) {
+      out.name("extras").beginObject();
+      for (Map.Entry<String, String> entry : extras.entrySet()) {
+        out.name(String.valueOf(entry.getKey())).value(entry.getValue());
+      }
+      out.endObject();
+    }
+    List<String> tags = info.getTags();
+    if (tags != null) {
+      writeStringList(out.name("tags"), tags);
+    }
+  }
+
+  // Return false if the property is not a DeviceInfo property.
+  private static boolean readDeviceInfo(JsonReader in, String name,
+      DeviceInfo info) throws IOException {
+    if (name.equals("devId")) {
+      info.setDevId(readString(in));
+    } else if (name.equals("displayName")) {
+      info.setDisplayName(readString(in));
+    } else if (name.equals("modelInfo")) {
+      info.setModelInfo(readString(in));
+    } else if (name.equals("osType")) {
+      info.setOsType(readString(in));
+    } else if (name.equals("osVersion")) {
+      info.setOsVersion(readString(in));
+    } else if (name.equals("versionMajor")) {
+      info.setVersionMajor(readInt(in));
+    } else if (name.equals("versionMinor")) {
+      info.setVersionMinor(readInt(in));
+    } else if (name.equals("pushType")) {
+      info.setPushType(readString(in));
+    } else if (name.equals("pushToken")) {
+      info.setPushToken(readString(in));
+    } else if (name.equals("phoneNumber")) {
+      info.setPhoneNumber(readString(in));
+    } else if (name.equals("carrierInfo")) {
+      info.setCarrierInfo(readString(in));
+    } else if (name.equals("extras")) {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        info.setExtras(null);
+      } else {
+        Map<String, String> extras = new HashMap<String, String>();
+        in.beginObject();
+        while (in.hasNext()) {
+          String key = in.nextName();
+          extras.put(key, readString(in));
+        }
+        in.endObject();
+        info.setExtras(extras);
+      }
+    } else if (name.equals("tags")) {
+      info.setTags(readStringList(in));
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  private static void writeUserInfoList(JsonWriter out, List<UserInfo> list)
+      throws IOException {
+    if (list == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginArray();
+    for (UserInfo info : list) {
+      USER_INFO.write(out, info);
+    }
+    out.endArray();
+  }
+
+  static void writeStringList(JsonWriter out, List<String> list)
+      throws IOException {
+    if (list == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginArray();
+    for (String value : list) {
+      out.value(value);
+    }
+    out.endArray();
+  }
+
+  static List<String> readStringList(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    List<String> list = new ArrayList<String>();
+    in.beginArray();
+    while (in.hasNext()) {
+      list.add(readString(in));
+    }
+    in.endArray();
+    return list;
+  }
+
+  static <T> List<T> readList(JsonReader in, TypeAdapter<T> adapter)
+      throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    List<T> list = new ArrayList<T>();
+    in.beginArray();
+    while (in.hasNext()) {
+      list.add(adapter.read(in));
+    }
+    in.endArray();
+    return list;
+  }
+
+  static String readString(JsonReader in) throws IOException {
+    JsonToken token = in.peek();
+    if (token == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    if (token == JsonToken.BOOLEAN) {
+      return Boolean.toString(in.nextBoolean());
+    }
+    return in.nextString();
+  }
+
+  static int readInt(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return 0;
+    }
+    return in.nextInt();
+  }
+
+  static boolean readBoolean(JsonReader in) throws IOException {
+    JsonToken token = in.peek();
+    if (token == JsonToken.NULL) {
+      in.nextNull();
+      return false;
+    }
+    if (token == JsonToken.STRING) {
+      return Boolean.parseBoolean(in.nextString());
+    }
+    return in.nextBoolean();
+  }
+
+  static void writeDate(JsonWriter out, Date date) throws IOException {
+    GsonData.DATE_ADAPTER.write(out, date);
+  }
+
+  // An invalid date is read as null.
+  static Date readDate(JsonReader in) throws IOException {
+    return GsonData.DATE_ADAPTER.read(in);
+  }
+
+  static void writeEnum(JsonWriter out, Enum<?> value) throws IOException {
+    out.value((value == null) ? null : value.name());
+  }
+
+  // An unknown constant is read as null like the Gson enum adapter.
+  static <E extends Enum<E>> E readEnum(JsonReader in, Class<E> clz)
+      throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    String name = in.nextString();
+    try {
+      return Enum.valueOf(clz, name);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
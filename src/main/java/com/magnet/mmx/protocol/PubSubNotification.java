@@ -65,6 +65,19 @@ public class PubSubNotification {
     mBody = body;
   }
 
+  /**
+   * @hide
+   * Constructor with all fields for the binary decoding.
+   */
+  PubSubNotification(MMXChannelId channel, Date pubDate, String text,
+                      String title, String body) {
+    mChannel = channel;
+    mPublishDate = pubDate;
+    mText = text;
+    mTitle = title;
+    mBody = body;
+  }
+
   /**
    * @hide
    * Constructor with a Topic object for wake-up (silent notification.)
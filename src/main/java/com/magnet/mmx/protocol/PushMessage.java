@@ -15,9 +15,13 @@
 
 package com.magnet.mmx.protocol;
 
-import java.io.BufferedReader;
 import java.io.Serializable;
 import java.io.StringReader;
+import java.util.List;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.InvalidMessageException;
@@ -36,6 +40,16 @@ public class PushMessage implements Serializable {
    * Maximum push message size.  It is the minimum of APNS and GCM max sizes.
    */
   public final static int MAX_SIZE = 2048;
+  final static String HEADER_PREFIX = "mmx:";
+  private final static TypeAdapter<GCMPayload> GCM_PAYLOAD_ADAPTER =
+      GsonData.getGson().getAdapter(GCMPayload.class);
+  private final static ThreadLocal<PushMessageEncoder> sEncoder =
+      new ThreadLocal<PushMessageEncoder>() {
+    @Override
+    protected PushMessageEncoder initialValue() {
+      return new PushMessageEncoder(MAX_SIZE, false);
+    }
+  };
   private Action mAction;
   private String mType;
   private Object mPayload;
@@ -90,7 +104,8 @@ public class PushMessage implements Serializable {
   }
   
   /**
-   * Get the payload object.  It is always a type of GCMPayload.
+   * Get the payload object.  It is a GCMPayload unless the type is mapped to
+   * another class by the TypeMapper used in decoding.
    * @return
    */
   public Object getPayload() {
@@ -114,63 +129,132 @@ public class PushMessage implements Serializable {
    * @param type A unique payload type or null.
    * @param payload A POJO, or null.
    * @return An encoded string to be sent as push message.
-   * @throws InvalidMessageException The payload is too large.
+   * @throws InvalidMessageException The payload exceeds {@link #MAX_SIZE}
+   *          bytes in UTF-8.
+   * @see PushMessageEncoder
    */
   public static String encode(Action action, String type, Object payload) 
                                 throws InvalidMessageException {
-    StringBuilder sb = new StringBuilder();
-    sb.append("mmx:")
-      .append(action.getCode());
-    if (type != null) {
-      sb.append(':')
-        .append(type);
-    }
-    sb.append("\r\n");
-    if (type != null && payload != null) {
-      GsonData.getGson().toJson(payload, sb);
-    }
-    if (sb.length() > MAX_SIZE) {
-      throw new InvalidMessageException("The payload is too large for push message");
-    }
-    return sb.toString();
+    return sEncoder.get().encode(action, type, payload);
   }
   
   /**
-   * Decode an MMX push message into a payload type and payload object.  Current
-   * implementation is to have payload in GCMPayload class.  In the future, the
-   * payload can have different types using the MMXTypeMapper for mapping.
+   * Decode an MMX push message into a payload type and payload object.  The
+   * header "mmx:&lt;action&gt;[:&lt;type&gt;]" is parsed by scanning the
+   * characters, and the payload is deserialized from the rest of the message
+   * by the type adapter of the class mapped from the type.  If the type is
+   * absent or it is not mappable, the payload is a GCMPayload.  Any data
+   * after the payload is rejected.
    * @param pushMsg The encoded push message string.
-   * @param mapper Not used, but it maps a type to a class.
+   * @param mapper A mapper from a type to a class, or null for GCMPayload.
    * @return A PushMessage.
-   * @throws InvalidMessageException A malformed push message.
-   * @throws UnknownTypeException Cannot find a class for the type.
+   * @throws InvalidMessageException A malformed push message, or a payload
+   *          followed by trailing data.
+   * @throws UnknownTypeException Not thrown; an unmappable type is decoded as
+   *          a GCMPayload.  It is kept for source compatibility.
    * @see MMXTypeMapper
    */
   public static PushMessage decode(String pushMsg, TypeMapper mapper)
       throws InvalidMessageException, UnknownTypeException {
-    BufferedReader reader = new BufferedReader(new StringReader(pushMsg));
+    int len = pushMsg.length();
+    int eol = 0;
+    char c;
+    while (eol < len && (c = pushMsg.charAt(eol)) != '\r' && c != '\n') {
+      ++eol;
+    }
+    // The header is "mmx:" followed by the action and an optional type.
+    if (!pushMsg.startsWith(HEADER_PREFIX) || eol < HEADER_PREFIX.length()) {
+      throw new InvalidMessageException("Malformed MMX Push Message");
+    }
+    int actionStart = HEADER_PREFIX.length();
+    int actionEnd = indexOfColon(pushMsg, actionStart, eol);
+    int typeStart = (actionEnd < eol) ? actionEnd + 1 : eol;
+    int typeEnd = indexOfColon(pushMsg, typeStart, eol);
+    if (actionEnd == actionStart && typeEnd == typeStart &&
+        indexOfNonColon(pushMsg, typeEnd, eol) == eol) {
+      // Nothing but delimiters after "mmx:".
+      throw new InvalidMessageException("Malformed MMX Push Message");
+    }
+    Action action = (actionEnd - actionStart == 1 &&
+        pushMsg.regionMatches(true, actionStart, Action.WAKEUP.getCode(), 0, 1)) ?
+            Action.WAKEUP : Action.PUSH;
+    String type = (typeEnd > typeStart) ?
+        pushMsg.substring(typeStart, typeEnd) : null;
+
+    int bodyStart = eol;
+    if (bodyStart < len && pushMsg.charAt(bodyStart++) == '\r' &&
+        bodyStart < len && pushMsg.charAt(bodyStart) == '\n') {
+      ++bodyStart;
+    }
     try {
-      String[] tokens = reader.readLine().split(":");
-      if (tokens == null || tokens.length < 2 || !tokens[0].equals("mmx")) {
-        throw new InvalidMessageException("Malformed MMX Push Message");
-      }
       Object payload = null;
-      String type = null;
-      Action action = tokens[1].equalsIgnoreCase(Action.WAKEUP.getCode()) ?
-          Action.WAKEUP : Action.PUSH;
-      if (tokens.length >= 3 && !tokens[2].isEmpty()) {
-        type = tokens[2];
+      if (!isBlank(pushMsg, bodyStart, len)) {
+        TypeMapper.Mapping mapping = (mapper == null) ? null :
+          mapper.getMapping(type);
+        TypeAdapter<?> adapter = (mapping != null) ? mapping.getAdapter() :
+          GCM_PAYLOAD_ADAPTER;
+        StringReader reader = new StringReader(pushMsg);
+        reader.skip(bodyStart);
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(true);
+        payload = adapter.read(jsonReader);
+        if (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+          throw new InvalidMessageException("Trailing data after the payload");
+        }
       }
-      // Always to use GCMPayload class.
-      payload = GsonData.getGson().fromJson(reader, GCMPayload.class);
       return new PushMessage(action, type, payload);
-    } catch (InvalidMessageException e) {
-      throw e;
-    } catch (UnknownTypeException e) {
-      throw e;
     } catch (Throwable e) {
       throw new InvalidMessageException("Cannot decode push message", e);
     }
   }
-}
 
+  /**
+   * Decode a batch of push messages with the same mapper.  A malformed push
+   * message does not fail the batch; it is decoded as null instead.
+   * @param pushMsgs A list of encoded push message strings.
+   * @param mapper A mapper from a type to a class, or null for GCMPayload.
+   * @param results A list to be appended with the decoded messages in order.
+   * @return The number of push messages decoded successfully.
+   * @see #decode(String, TypeMapper)
+   */
+  public static int decode(List<String> pushMsgs, TypeMapper mapper,
+                            List<? super PushMessage> results) {
+    int count = 0;
+    for (int i = 0, n = pushMsgs.size(); i < n; i++) {
+      PushMessage pushMessage = null;
+      try {
+        pushMessage = decode(pushMsgs.get(i), mapper);
+        ++count;
+      } catch (InvalidMessageException e) {
+        // Leave it as null.
+      } catch (UnknownTypeException e) {
+        // Leave it as null.
+      }
+      results.add(pushMessage);
+    }
+    return count;
+  }
+
+  private static int indexOfColon(String str, int start, int end) {
+    while (start < end && str.charAt(start) != ':') {
+      ++start;
+    }
+    return start;
+  }
+
+  private static int indexOfNonColon(String str, int start, int end) {
+    while (start < end && str.charAt(start) == ':') {
+      ++start;
+    }
+    return start;
+  }
+
+  private static boolean isBlank(String str, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (!Character.isWhitespace(str.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,239 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.protocol;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.google.gson.JsonIOException;
+import com.magnet.mmx.util.GsonData;
+import com.magnet.mmx.util.InvalidMessageException;
+
+/**
+ * @hide
+ * A size-aware encoder of MMX push messages.  The message is serialized into
+ * a bounded, reusable buffer while its UTF-8 length is counted, and the
+ * serialization stops as soon as the limit is passed, so an oversized payload
+ * is rejected without serializing all of it.  APNS and GCM limit the push
+ * messages in bytes, so the limit is in UTF-8 bytes rather than chars.
+ * <p>
+ * In the truncating mode, the body of an oversized GCMPayload is shortened to
+ * fit instead of failing.  This class is not thread safe; use one encoder per
+ * thread.
+ * @see PushMessage#encode(PushMessage.Action, String, Object)
+ */
+public class PushMessageEncoder {
+  /**
+   * Raised by the buffer when the limit is passed.  It is shared and has no
+   * stack trace because it only unwinds the serialization.
+   */
+  @SuppressWarnings("serial")
+  private final static IOException OVERFLOW = new IOException(
+      "Push message limit exceeded") {
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+  };
+
+  private final static String TRUNCATED = "...";
+
+  private final BoundedWriter mWriter;
+  private final boolean mTruncate;
+
+  // A bounded char buffer counting the UTF-8 bytes written.
+  private static class BoundedWriter extends Writer {
+    private final char[] mBuf;
+    private final int mMaxBytes;
+    private int mCount;
+    private int mBytes;
+
+    BoundedWriter(int maxBytes) {
+      mMaxBytes = maxBytes;
+      // A char is at least one byte, so it never holds more than maxBytes chars.
+      mBuf = new char[maxBytes];
+    }
+
+    void reset() {
+      mCount = 0;
+      mBytes = 0;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+      append((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      for (int i = off, end = off + len; i < end; i++) {
+        append(cbuf[i]);
+      }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+      for (int i = off, end = off + len; i < end; i++) {
+        append(str.charAt(i));
+      }
+    }
+
+    @Override
+    public Writer append(CharSequence csq) throws IOException {
+      String str = String.valueOf(csq);
+      write(str, 0, str.length());
+      return this;
+    }
+
+    @Override
+    public Writer append(CharSequence csq, int start, int end) throws IOException {
+      String str = String.valueOf(csq);
+      write(str, start, end - start);
+      return this;
+    }
+
+    @Override
+    public Writer append(char c) throws IOException {
+      // A surrogate pair is 4 bytes in UTF-8; count 2 bytes for each half.
+      mBytes += (c < 0x80) ? 1 : ((c < 0x800 ||
+          (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)) ? 2 : 3);
+      if (mBytes > mMaxBytes) {
+        throw OVERFLOW;
+      }
+      mBuf[mCount++] = c;
+      return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  /**
+   * Constructor.
+   * @param maxBytes The maximum size of a push message in UTF-8 bytes.
+   * @param truncate true to truncate the body of a GCMPayload to fit;
+   *          false to fail an oversized message.
+   */
+  public PushMessageEncoder(int maxBytes, boolean truncate) {
+    mWriter = new BoundedWriter(maxBytes);
+    mTruncate = truncate;
+  }
+
+  /**
+   * Get the UTF-8 length of the last encoded push message.
+   * @return The number of bytes.
+   */
+  public int getByteLength() {
+    return mWriter.mBytes;
+  }
+
+  /**
+   * Encode a payload type and payload object into an MMX push message.
+   * @param action WAKEUP or PUSH
+   * @param type A unique payload type or null.
+   * @param payload A POJO, or null.
+   * @return An encoded string to be sent as push message.
+   * @throws InvalidMessageException The payload is too large.
+   * @see PushMessage#encode(PushMessage.Action, String, Object)
+   */
+  public String encode(PushMessage.Action action, String type, Object payload)
+      throws InvalidMessageException {
+    if (tryEncode(action, type, payload)) {
+      return toMessage();
+    }
+    if (mTruncate && type != null && payload instanceof GCMPayload) {
+      String body = ((GCMPayload) payload).getBody();
+      if (body != null && truncate(action, type, (GCMPayload) payload, body)) {
+        return toMessage();
+      }
+    }
+    throw new InvalidMessageException("The payload is too large for push message");
+  }
+
+  // Binary search the longest prefix of the body that fits.
+  private boolean truncate(PushMessage.Action action, String type,
+                            GCMPayload payload, String body) {
+    GCMPayload copy = copyOf(payload);
+    int low = 0;
+    int high = body.length();
+    int fit = -1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      copy.setBody(truncate(body, mid));
+      if (tryEncode(action, type, copy)) {
+        fit = mid;
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    if (fit < 0) {
+      return false;
+    }
+    copy.setBody(truncate(body, fit));
+    return tryEncode(action, type, copy);
+  }
+
+  private boolean tryEncode(PushMessage.Action action, String type,
+                             Object payload) {
+    BoundedWriter writer = mWriter;
+    writer.reset();
+    try {
+      writer.append(PushMessage.HEADER_PREFIX).append(action.getCode());
+      if (type != null) {
+        writer.append(':').append(type);
+      }
+      writer.append("\r\n");
+      if (type != null && payload != null) {
+        GsonData.getGson().toJson(payload, writer);
+      }
+      return true;
+    } catch (IOException e) {
+      return false;
+    } catch (JsonIOException e) {
+      if (e.getCause() == OVERFLOW) {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  private String toMessage() {
+    return new String(mWriter.mBuf, 0, mWriter.mCount);
+  }
+
+  private static String truncate(String body, int len) {
+    if (len > 0 && Character.isHighSurrogate(body.charAt(len - 1))) {
+      --len;
+    }
+    return body.substring(0, len) + TRUNCATED;
+  }
+
+  private static GCMPayload copyOf(GCMPayload payload) {
+    GCMPayload copy = new GCMPayload();
+    copy.setTitle(payload.getTitle());
+    copy.setIcon(payload.getIcon());
+    copy.setSound(payload.getSound());
+    copy.setBadge(payload.getBadge());
+    copy.setMmx(payload.getMmx());
+    return copy;
+  }
+}
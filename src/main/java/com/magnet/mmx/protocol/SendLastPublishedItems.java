@@ -15,6 +15,8 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.Date;
 
 import com.google.gson.annotations.SerializedName;
@@ -72,4 +74,12 @@ public class SendLastPublishedItems extends JSONifiable {
   public static SendLastPublishedItems fromJson(String json) {
     return GsonData.getGson().fromJson(json, SendLastPublishedItems.class);
   }
+
+  public static SendLastPublishedItems fromJson(Reader reader) {
+    return GsonData.fromJson(reader, SendLastPublishedItems.class);
+  }
+
+  public static SendLastPublishedItems fromJson(InputStream is) {
+    return GsonData.fromJson(is, SendLastPublishedItems.class);
+  }
 }
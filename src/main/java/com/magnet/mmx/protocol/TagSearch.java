@@ -15,6 +15,8 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.List;
 
 import com.google.gson.annotations.SerializedName;
@@ -58,4 +60,12 @@ public class TagSearch extends JSONifiable {
   public static TagSearch fromJson(String json) {
     return GsonData.getGson().fromJson(json, TagSearch.class);
   }
+
+  public static TagSearch fromJson(Reader reader) {
+    return GsonData.fromJson(reader, TagSearch.class);
+  }
+
+  public static TagSearch fromJson(InputStream is) {
+    return GsonData.fromJson(is, TagSearch.class);
+  }
 }
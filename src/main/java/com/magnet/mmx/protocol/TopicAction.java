@@ -15,6 +15,10 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
@@ -22,11 +26,13 @@ import java.util.HashMap;
 import java.util.List;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
 import com.magnet.mmx.protocol.SearchAction.Match;
 import com.magnet.mmx.protocol.SearchAction.MultiValues;
 import com.magnet.mmx.protocol.SearchAction.Operator;
 import com.magnet.mmx.protocol.SearchAction.SingleValue;
 import com.magnet.mmx.util.GsonData;
+import com.magnet.mmx.util.JsonArrayIterator;
 import com.magnet.mmx.util.JSONifiable;
 
 /**
@@ -176,6 +182,20 @@ public class TopicAction {
     public static TopicTags fromJson(String json) {
       return GsonData.getGson().fromJson(json, TopicTags.class);
     }
+
+    /**
+     * @hide
+     */
+    public static TopicTags fromJson(Reader reader) {
+      return GsonData.fromJson(reader, TopicTags.class);
+    }
+
+    /**
+     * @hide
+     */
+    public static TopicTags fromJson(InputStream is) {
+      return GsonData.fromJson(is, TopicTags.class);
+    }
   }
 
   /**
@@ -273,6 +293,14 @@ public class TopicAction {
     public static CreateRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, CreateRequest.class);
     }
+
+    public static CreateRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, CreateRequest.class);
+    }
+
+    public static CreateRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, CreateRequest.class);
+    }
   }
 
   /**
@@ -314,6 +342,14 @@ public class TopicAction {
     public static DeleteRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, DeleteRequest.class);
     }
+
+    public static DeleteRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, DeleteRequest.class);
+    }
+
+    public static DeleteRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, DeleteRequest.class);
+    }
   }
 
   /**
@@ -348,6 +384,14 @@ public class TopicAction {
     public static RetractAllRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, RetractAllRequest.class);
     }
+
+    public static RetractAllRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, RetractAllRequest.class);
+    }
+
+    public static RetractAllRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, RetractAllRequest.class);
+    }
   }
 
   /**
@@ -391,6 +435,14 @@ public class TopicAction {
     public static RetractRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, RetractRequest.class);
     }
+
+    public static RetractRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, RetractRequest.class);
+    }
+
+    public static RetractRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, RetractRequest.class);
+    }
   }
 
   /**
@@ -415,6 +467,14 @@ public class TopicAction {
     public static GetTopicsRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, GetTopicsRequest.class);
     }
+
+    public static GetTopicsRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, GetTopicsRequest.class);
+    }
+
+    public static GetTopicsRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, GetTopicsRequest.class);
+    }
   }
   
   public static class GetTopicsResponse extends ArrayList<TopicInfo> {
@@ -425,6 +485,14 @@ public class TopicAction {
     public static GetTopicsResponse fromJson(String json) {
       return GsonData.getGson().fromJson(json, GetTopicsResponse.class);
     }
+
+    public static GetTopicsResponse fromJson(Reader reader) {
+      return GsonData.fromJson(reader, GetTopicsResponse.class);
+    }
+
+    public static GetTopicsResponse fromJson(InputStream is) {
+      return GsonData.fromJson(is, GetTopicsResponse.class);
+    }
   }
   
   /**
@@ -466,6 +534,14 @@ public class TopicAction {
     public static ItemsByIdsRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, ItemsByIdsRequest.class);
     }
+
+    public static ItemsByIdsRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, ItemsByIdsRequest.class);
+    }
+
+    public static ItemsByIdsRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, ItemsByIdsRequest.class);
+    }
   }
   
   /**
@@ -554,6 +630,14 @@ public class TopicAction {
     public static ListRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, ListRequest.class);
     }
+
+    public static ListRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, ListRequest.class);
+    }
+
+    public static ListRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, ListRequest.class);
+    }
   }
 
   /**
@@ -581,6 +665,14 @@ public class TopicAction {
     public static ListResponse fromJson(String json) {
       return GsonData.getGson().fromJson(json, ListResponse.class);
     }
+
+    public static ListResponse fromJson(Reader reader) {
+      return GsonData.fromJson(reader, ListResponse.class);
+    }
+
+    public static ListResponse fromJson(InputStream is) {
+      return GsonData.fromJson(is, ListResponse.class);
+    }
   }
 
   /**
@@ -663,6 +755,14 @@ public class TopicAction {
     public static SubscribeRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, SubscribeRequest.class);
     }
+
+    public static SubscribeRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, SubscribeRequest.class);
+    }
+
+    public static SubscribeRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, SubscribeRequest.class);
+    }
   }
 
   /**
@@ -716,6 +816,14 @@ public class TopicAction {
     public static SubscribeResponse fromJson(String json) {
       return GsonData.getGson().fromJson(json, SubscribeResponse.class);
     }
+
+    public static SubscribeResponse fromJson(Reader reader) {
+      return GsonData.fromJson(reader, SubscribeResponse.class);
+    }
+
+    public static SubscribeResponse fromJson(InputStream is) {
+      return GsonData.fromJson(is, SubscribeResponse.class);
+    }
   }
 
   /**
@@ -778,6 +886,14 @@ public class TopicAction {
     public static UnsubscribeRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, UnsubscribeRequest.class);
     }
+
+    public static UnsubscribeRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, UnsubscribeRequest.class);
+    }
+
+    public static UnsubscribeRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, UnsubscribeRequest.class);
+    }
   }
 
   /**
@@ -807,6 +923,14 @@ public class TopicAction {
     public static UnsubscribeForDevRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, UnsubscribeForDevRequest.class);
     }
+
+    public static UnsubscribeForDevRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, UnsubscribeForDevRequest.class);
+    }
+
+    public static UnsubscribeForDevRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, UnsubscribeForDevRequest.class);
+    }
   }
 
   /**
@@ -850,6 +974,14 @@ public class TopicAction {
     public static SummaryRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, SummaryRequest.class);
     }
+
+    public static SummaryRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, SummaryRequest.class);
+    }
+
+    public static SummaryRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, SummaryRequest.class);
+    }
   }
 
   /**
@@ -1031,6 +1163,14 @@ public class TopicAction {
     public static TopicSearchRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, TopicSearchRequest.class);
     }
+
+    public static TopicSearchRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, TopicSearchRequest.class);
+    }
+
+    public static TopicSearchRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, TopicSearchRequest.class);
+    }
   }
 
   /**
@@ -1079,6 +1219,14 @@ public class TopicAction {
     public static TopicQueryRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, TopicQueryRequest.class);
     }
+
+    public static TopicQueryRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, TopicQueryRequest.class);
+    }
+
+    public static TopicQueryRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, TopicQueryRequest.class);
+    }
   }
 
   /**
@@ -1154,6 +1302,20 @@ public class TopicAction {
     public static TopicQueryResponse fromJson(String json) {
       return GsonData.getGson().fromJson(json, TopicQueryResponse.class);
     }
+
+    /**
+     * @hide
+     */
+    public static TopicQueryResponse fromJson(Reader reader) {
+      return GsonData.fromJson(reader, TopicQueryResponse.class);
+    }
+
+    /**
+     * @hide
+     */
+    public static TopicQueryResponse fromJson(InputStream is) {
+      return GsonData.fromJson(is, TopicQueryResponse.class);
+    }
   }
 
   /**
@@ -1316,6 +1478,14 @@ public class TopicAction {
     public static FetchRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, FetchRequest.class);
     }
+
+    public static FetchRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, FetchRequest.class);
+    }
+
+    public static FetchRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, FetchRequest.class);
+    }
   }
 
   /**
@@ -1403,6 +1573,80 @@ public class TopicAction {
     public static FetchResponse fromJson(String json) {
       return GsonData.getGson().fromJson(json, FetchResponse.class);
     }
+
+    public static FetchResponse fromJson(Reader reader) {
+      return GsonData.fromJson(reader, FetchResponse.class);
+    }
+
+    public static FetchResponse fromJson(InputStream is) {
+      return GsonData.fromJson(is, FetchResponse.class);
+    }
+
+    /**
+     * Decode the published items one at a time from a JSON fetch response
+     * without holding all items in memory.  The caller should close the
+     * returned iterator.
+     * @param reader A reader with the JSON fetch response.
+     * @return An iterator of the published items.
+     * @see FetchStream
+     */
+    public static FetchStream stream(Reader reader) {
+      return new FetchStream(reader);
+    }
+
+    /**
+     * Decode the published items one at a time from a UTF-8 JSON fetch
+     * response.  The caller should close the returned iterator.
+     * @param is An input stream with the UTF-8 JSON fetch response.
+     * @return An iterator of the published items.
+     */
+    public static FetchStream stream(InputStream is) {
+      return new FetchStream(new InputStreamReader(is, GsonData.UTF8));
+    }
+  }
+
+  /**
+   * @hide
+   * An iterator of the published items from a JSON fetch response.  The user
+   * ID, topic name and total count are available before the first item; if
+   * the response does not have the items as the last property, the trailing
+   * properties are available after {@link #hasNext()} returns false.
+   */
+  public static class FetchStream extends JsonArrayIterator<MMXPublishedItem> {
+    private String mUserId;
+    private String mTopic;
+    private int mTotal;
+
+    FetchStream(Reader reader) {
+      super(reader, "items", ProtocolAdapters.TOPIC_ITEM);
+      start();
+    }
+
+    @Override
+    protected void readProperty(String name, JsonReader reader)
+                                throws IOException {
+      if (name.equals("userId")) {
+        mUserId = ProtocolAdapters.readString(reader);
+      } else if (name.equals("topicName")) {
+        mTopic = ProtocolAdapters.readString(reader);
+      } else if (name.equals("totalCount")) {
+        mTotal = ProtocolAdapters.readInt(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+
+    public String getUserId() {
+      return mUserId;
+    }
+
+    public String getTopic() {
+      return mTopic;
+    }
+
+    public int getTotal() {
+      return mTotal;
+    }
   }
   
   /**
@@ -1466,6 +1710,14 @@ public class TopicAction {
     public static SubscribersRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, SubscribersRequest.class);
     }
+
+    public static SubscribersRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, SubscribersRequest.class);
+    }
+
+    public static SubscribersRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, SubscribersRequest.class);
+    }
   }
   
   /**
@@ -1499,5 +1751,13 @@ public class TopicAction {
     public static SubscribersResponse fromJson(String json) {
       return GsonData.getGson().fromJson(json, SubscribersResponse.class);
     }
+
+    public static SubscribersResponse fromJson(Reader reader) {
+      return GsonData.fromJson(reader, SubscribersResponse.class);
+    }
+
+    public static SubscribersResponse fromJson(InputStream is) {
+      return GsonData.fromJson(is, SubscribersResponse.class);
+    }
   }
 }
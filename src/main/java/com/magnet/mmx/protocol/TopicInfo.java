@@ -58,6 +58,11 @@ public class TopicInfo extends MMXTopicId implements MMXTopic {
     mCollection = isCollection;
   }
 
+  TopicInfo(boolean isCollection) {
+    // Used by ProtocolAdapters for a topic without a name.
+    mCollection = isCollection;
+  }
+
   /**
    * Check if this topic is a collection (i.e. for subscription only.)
    * @return true for subscribe only; false for publishing and subscription.
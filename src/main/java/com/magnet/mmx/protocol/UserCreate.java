@@ -21,6 +21,8 @@ import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
 import com.magnet.mmx.util.TagUtil;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.List;
 import java.util.Map;
 
@@ -241,5 +243,13 @@ public class UserCreate extends JSONifiable {
   public static UserCreate fromJson(String json) {
     return GsonData.getGson().fromJson(json, UserCreate.class);
   }
+
+  public static UserCreate fromJson(Reader reader) {
+    return GsonData.fromJson(reader, UserCreate.class);
+  }
+
+  public static UserCreate fromJson(InputStream is) {
+    return GsonData.fromJson(is, UserCreate.class);
+  }
   
 }
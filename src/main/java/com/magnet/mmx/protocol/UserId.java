@@ -14,6 +14,9 @@
  */
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
@@ -45,4 +48,12 @@ public class UserId extends JSONifiable {
   public static UserId fromJson(String json) {
     return GsonData.getGson().fromJson(json, UserId.class);
   }
+
+  public static UserId fromJson(Reader reader) {
+    return GsonData.fromJson(reader, UserId.class);
+  }
+
+  public static UserId fromJson(InputStream is) {
+    return GsonData.fromJson(is, UserId.class);
+  }
 }
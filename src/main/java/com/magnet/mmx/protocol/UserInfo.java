@@ -15,6 +15,9 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
+
 import com.google.gson.annotations.SerializedName;
 import com.magnet.mmx.util.GsonData;
 import com.magnet.mmx.util.JSONifiable;
@@ -129,4 +132,18 @@ public class UserInfo extends JSONifiable {
   public static UserInfo fromJson(String json) {
     return GsonData.getGson().fromJson(json, UserInfo.class);
   }
+
+  /**
+   * @hide
+   */
+  public static UserInfo fromJson(Reader reader) {
+    return GsonData.fromJson(reader, UserInfo.class);
+  }
+
+  /**
+   * @hide
+   */
+  public static UserInfo fromJson(InputStream is) {
+    return GsonData.fromJson(is, UserInfo.class);
+  }
 }
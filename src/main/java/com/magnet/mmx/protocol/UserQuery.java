@@ -15,6 +15,8 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.List;
 
 import com.google.gson.annotations.SerializedName;
@@ -70,6 +72,14 @@ public class UserQuery {
     public static SearchRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, SearchRequest.class);
     }
+
+    public static SearchRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, SearchRequest.class);
+    }
+
+    public static SearchRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, SearchRequest.class);
+    }
   }
   
   /**
@@ -186,6 +196,20 @@ public class UserQuery {
     public static Search fromJson(String json) {
       return GsonData.getGson().fromJson(json, Search.class);
     }
+
+    /**
+     * @hide
+     */
+    public static Search fromJson(Reader reader) {
+      return GsonData.fromJson(reader, Search.class);
+    }
+
+    /**
+     * @hide
+     */
+    public static Search fromJson(InputStream is) {
+      return GsonData.fromJson(is, Search.class);
+    }
   }
   
   /**
@@ -255,6 +279,20 @@ public class UserQuery {
     public static BulkSearchRequest fromJson(String json) {
       return GsonData.getGson().fromJson(json, BulkSearchRequest.class);
     }
+
+    /**
+     * @hide
+     */
+    public static BulkSearchRequest fromJson(Reader reader) {
+      return GsonData.fromJson(reader, BulkSearchRequest.class);
+    }
+
+    /**
+     * @hide
+     */
+    public static BulkSearchRequest fromJson(InputStream is) {
+      return GsonData.fromJson(is, BulkSearchRequest.class);
+    }
   }
   
   /**
@@ -312,5 +350,19 @@ public class UserQuery {
     public static Response fromJson(String json) {
       return GsonData.getGson().fromJson(json, Response.class);
     }
+
+    /**
+     * @hide
+     */
+    public static Response fromJson(Reader reader) {
+      return GsonData.fromJson(reader, Response.class);
+    }
+
+    /**
+     * @hide
+     */
+    public static Response fromJson(InputStream is) {
+      return GsonData.fromJson(is, Response.class);
+    }
   }
 }
@@ -15,6 +15,8 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.Map;
 
 import com.google.gson.annotations.SerializedName;
@@ -98,4 +100,12 @@ public class UserReset extends JSONifiable {
   public static UserReset fromJson(String json) {
     return GsonData.getGson().fromJson(json, UserReset.class);
   }
+
+  public static UserReset fromJson(Reader reader) {
+    return GsonData.fromJson(reader, UserReset.class);
+  }
+
+  public static UserReset fromJson(InputStream is) {
+    return GsonData.fromJson(is, UserReset.class);
+  }
 }
@@ -15,6 +15,8 @@
 
 package com.magnet.mmx.protocol;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.Date;
 import java.util.List;
 
@@ -76,4 +78,12 @@ public class UserTags extends JSONifiable {
   public static UserTags fromJson(String json) {
     return GsonData.getGson().fromJson(json, UserTags.class);
   }
+
+  public static UserTags fromJson(Reader reader) {
+    return GsonData.fromJson(reader, UserTags.class);
+  }
+
+  public static UserTags fromJson(InputStream is) {
+    return GsonData.fromJson(is, UserTags.class);
+  }
 }
@@ -564,22 +564,14 @@ public class Base64
    * writing it to the <code>encoded</code> ByteBuffer.
    * This is an experimental feature. Currently it does not
    * pass along any options (such as {@link #DO_BREAK_LINES}
-   * or {@link #GZIP}.
+   * or {@link #GZIP}.  It is done by {@link Base64Codec}.
    *
    * @param raw input buffer
    * @param encoded output buffer
    * @since 2.3
    */
   public static void encode( java.nio.ByteBuffer raw, java.nio.ByteBuffer encoded ){
-    byte[] raw3 = new byte[3];
-    byte[] enc4 = new byte[4];
-
-    while( raw.hasRemaining() ){
-      int rem = Math.min(3,raw.remaining());
-      raw.get(raw3,0,rem);
-      Base64.encode3to4(enc4, raw3, rem, Base64.NO_OPTIONS );
-      encoded.put(enc4);
-    }   // end input remaining
+    Base64Codec.encode( raw, encoded );
   }
 
 
@@ -588,24 +580,14 @@ public class Base64
    * writing it to the <code>encoded</code> CharBuffer.
    * This is an experimental feature. Currently it does not
    * pass along any options (such as {@link #DO_BREAK_LINES}
-   * or {@link #GZIP}.
+   * or {@link #GZIP}.  It is done by {@link Base64Codec}.
    *
    * @param raw input buffer
    * @param encoded output buffer
    * @since 2.3
    */
   public static void encode( java.nio.ByteBuffer raw, java.nio.CharBuffer encoded ){
-    byte[] raw3 = new byte[3];
-    byte[] enc4 = new byte[4];
-
-    while( raw.hasRemaining() ){
-      int rem = Math.min(3,raw.remaining());
-      raw.get(raw3,0,rem);
-      Base64.encode3to4(enc4, raw3, rem, Base64.NO_OPTIONS );
-      for( int i = 0; i < 4; i++ ){
-        encoded.put( (char)(enc4[i] & 0xFF) );
-      }
-    }   // end input remaining
+    Base64Codec.encode( raw, encoded );
   }
 
 
@@ -0,0 +1,601 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A table-driven Base64 codec with the standard alphabet and padding, and
+ * without line breaks.  It works directly on heap or direct ByteBuffer,
+ * CharBuffer and arrays without any intermediate copy; whole 3-byte groups
+ * are processed in a tight loop over the backing arrays when available.  The
+ * output is identical to {@link Base64#encodeBytes(byte[])}.
+ * <p>
+ * The static methods process a complete input.  The {@link Encoder} and
+ * {@link Decoder} keep a partial group between calls, so an input can be
+ * processed in arbitrary pieces (e.g. from a file channel) with fixed size
+ * buffers.
+ * <pre>
+ * Base64Codec.Encoder encoder = new Base64Codec.Encoder();
+ * while (channel.read(in) &gt;= 0) {
+ *   in.flip();
+ *   while (!encoder.encode(in, out, false)) {
+ *     drain(out);
+ *   }
+ *   in.compact();
+ * }
+ * while (!encoder.encode(in, out, true)) {
+ *   drain(out);
+ * }
+ * </pre>
+ */
+public class Base64Codec {
+  private final static byte[] ALPHABET = new byte[64];
+  private final static char[] ALPHABET_CHARS =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+  private final static byte PAD = '=';
+  private final static Charset US_ASCII = Charset.forName("US-ASCII");
+
+  // Decoding table indexed by an ASCII char: a 6-bit value or one of below.
+  private final static int INVALID = -1;
+  private final static int WHITE_SPACE = -2;
+  private final static int PADDING = -3;
+  private final static int[] DECODABET = new int[256];
+  static {
+    for (int i = 0; i < ALPHABET_CHARS.length; i++) {
+      ALPHABET[i] = (byte) ALPHABET_CHARS[i];
+    }
+    Arrays.fill(DECODABET, INVALID);
+    for (int i = 0; i < ALPHABET_CHARS.length; i++) {
+      DECODABET[ALPHABET_CHARS[i]] = i;
+    }
+    DECODABET[' '] = WHITE_SPACE;
+    DECODABET['\t'] = WHITE_SPACE;
+    DECODABET['\r'] = WHITE_SPACE;
+    DECODABET['\n'] = WHITE_SPACE;
+    DECODABET['\f'] = WHITE_SPACE;
+    DECODABET[PAD] = PADDING;
+  }
+
+  /**
+   * Get the encoded length of the data.
+   * @param len The data length in bytes.
+   * @return The number of Base64 chars including the padding.
+   */
+  public static int encodedLength(int len) {
+    return (len + 2) / 3 * 4;
+  }
+
+  /**
+   * Get the maximum decoded length of the Base64 data.
+   * @param len The number of Base64 chars.
+   * @return The maximum number of bytes.
+   */
+  public static int maxDecodedLength(int len) {
+    return (len + 3) / 4 * 3;
+  }
+
+  /**
+   * Encode all remaining bytes of <code>src</code> into <code>dst</code>.
+   * @param src The data to be encoded.
+   * @param dst The buffer with at least {@link #encodedLength(int)} bytes
+   *          remaining.
+   * @throws BufferOverflowException The destination is too small.
+   */
+  public static void encode(ByteBuffer src, ByteBuffer dst) {
+    if (!new Encoder().encode(src, dst, true)) {
+      throw new BufferOverflowException();
+    }
+  }
+
+  /**
+   * Encode all remaining bytes of <code>src</code> into <code>dst</code>.
+   * @param src The data to be encoded.
+   * @param dst The buffer with at least {@link #encodedLength(int)} chars
+   *          remaining.
+   * @throws BufferOverflowException The destination is too small.
+   */
+  public static void encode(ByteBuffer src, CharBuffer dst) {
+    if (!new Encoder().encode(src, dst, true)) {
+      throw new BufferOverflowException();
+    }
+  }
+
+  /**
+   * Encode a byte array into a char array.
+   * @param src The data.
+   * @param offset The offset of the data.
+   * @param len The length of the data.
+   * @param dst The destination with {@link #encodedLength(int)} chars from
+   *          <code>dstOffset</code>.
+   * @param dstOffset The offset in the destination.
+   * @return The offset after the encoded chars.
+   * @throws BufferOverflowException The destination is too small.
+   */
+  public static int encode(byte[] src, int offset, int len, char[] dst,
+                            int dstOffset) {
+    CharBuffer cb = CharBuffer.wrap(dst, dstOffset, dst.length - dstOffset);
+    encode(ByteBuffer.wrap(src, offset, len), cb);
+    return cb.position();
+  }
+
+  /**
+   * Encode a byte array to a Base64 string.
+   * @param src The data.
+   * @param offset The offset of the data.
+   * @param len The length of the data.
+   * @return A Base64 string.
+   */
+  public static String encodeToString(byte[] src, int offset, int len) {
+    return encodeToString(ByteBuffer.wrap(src, offset, len));
+  }
+
+  /**
+   * Encode the remaining bytes of a buffer to a Base64 string.
+   * @param src The data.
+   * @return A Base64 string.
+   */
+  public static String encodeToString(ByteBuffer src) {
+    ByteBuffer bb = ByteBuffer.allocate(encodedLength(src.remaining()));
+    encode(src, bb);
+    return new String(bb.array(), US_ASCII);
+  }
+
+  /**
+   * Decode all remaining Base64 bytes of <code>src</code> into
+   * <code>dst</code>.  White spaces are ignored.
+   * @param src The Base64 data in ASCII.
+   * @param dst The buffer with at least {@link #maxDecodedLength(int)} bytes
+   *          remaining.
+   * @throws IllegalArgumentException Invalid Base64 data.
+   * @throws BufferOverflowException The destination is too small.
+   */
+  public static void decode(ByteBuffer src, ByteBuffer dst) {
+    if (!new Decoder().decode(src, dst, true)) {
+      throw new BufferOverflowException();
+    }
+  }
+
+  /**
+   * Decode all remaining Base64 chars of <code>src</code> into
+   * <code>dst</code>.  White spaces are ignored.
+   * @param src The Base64 chars.
+   * @param dst The buffer with at least {@link #maxDecodedLength(int)} bytes
+   *          remaining.
+   * @throws IllegalArgumentException Invalid Base64 data.
+   * @throws BufferOverflowException The destination is too small.
+   */
+  public static void decode(CharBuffer src, ByteBuffer dst) {
+    if (!new Decoder().decode(src, dst, true)) {
+      throw new BufferOverflowException();
+    }
+  }
+
+  /**
+   * Decode a Base64 char sequence.  White spaces are ignored.
+   * @param src The Base64 chars.
+   * @return The decoded bytes.
+   * @throws IllegalArgumentException Invalid Base64 data.
+   */
+  public static byte[] decode(CharSequence src) {
+    ByteBuffer bb = ByteBuffer.allocate(maxDecodedLength(src.length()));
+    decode((src instanceof CharBuffer) ? ((CharBuffer) src).duplicate() :
+            CharBuffer.wrap(src), bb);
+    if (bb.position() == bb.capacity()) {
+      return bb.array();
+    }
+    byte[] result = new byte[bb.position()];
+    System.arraycopy(bb.array(), 0, result, 0, result.length);
+    return result;
+  }
+
+  /**
+   * An incremental Base64 encoder.  Up to 2 trailing bytes of the input are
+   * kept until more input is available or the end of input.  This class is
+   * not thread safe.
+   */
+  public static class Encoder {
+    private final static int TAIL_DONE = 0;
+    private final static int TAIL_FULL = 1;
+    private final static int TAIL_FLUSH = 2;
+
+    private int mBits;
+    private int mPending;       // number of bytes in mBits
+
+    /**
+     * Encode the remaining bytes of <code>src</code> into <code>dst</code>.
+     * @param src The data to be encoded.
+     * @param dst The destination buffer.
+     * @param endOfInput true if no more input after <code>src</code>.
+     * @return true if all input is consumed (and flushed at the end of input),
+     *          false if the destination is full.
+     */
+    public boolean encode(ByteBuffer src, ByteBuffer dst, boolean endOfInput) {
+      if (mPending != 0) {
+        if (dst.remaining() < 4) {
+          return false;
+        }
+        if (!fillPending(src, endOfInput)) {
+          return true;
+        }
+        putGroup(dst, mBits, mPending);
+        mPending = 0;
+      }
+      int groups = Math.min(src.remaining() / 3, dst.remaining() / 4);
+      if (src.hasArray() && dst.hasArray()) {
+        byte[] in = src.array();
+        byte[] out = dst.array();
+        int i = src.arrayOffset() + src.position();
+        int o = dst.arrayOffset() + dst.position();
+        for (int end = i + groups * 3; i < end; i += 3, o += 4) {
+          int bits = ((in[i] & 0xff) << 16) | ((in[i+1] & 0xff) << 8) |
+                     (in[i+2] & 0xff);
+          out[o] = ALPHABET[bits >>> 18];
+          out[o+1] = ALPHABET[(bits >>> 12) & 0x3f];
+          out[o+2] = ALPHABET[(bits >>> 6) & 0x3f];
+          out[o+3] = ALPHABET[bits & 0x3f];
+        }
+        src.position(src.position() + groups * 3);
+        dst.position(dst.position() + groups * 4);
+      } else {
+        for (int g = 0; g < groups; g++) {
+          putGroup(dst, getGroup(src), 3);
+        }
+      }
+      switch (tail(src, dst.remaining(), endOfInput)) {
+      case TAIL_FULL:
+        return false;
+      case TAIL_FLUSH:
+        putGroup(dst, mBits, mPending);
+        mPending = 0;
+        return true;
+      default:
+        return true;
+      }
+    }
+
+    /**
+     * Encode the remaining bytes of <code>src</code> into <code>dst</code>.
+     * @param src The data to be encoded.
+     * @param dst The destination buffer.
+     * @param endOfInput true if no more input after <code>src</code>.
+     * @return true if all input is consumed (and flushed at the end of input),
+     *          false if the destination is full.
+     */
+    public boolean encode(ByteBuffer src, CharBuffer dst, boolean endOfInput) {
+      if (mPending != 0) {
+        if (dst.remaining() < 4) {
+          return false;
+        }
+        if (!fillPending(src, endOfInput)) {
+          return true;
+        }
+        putGroup(dst, mBits, mPending);
+        mPending = 0;
+      }
+      int groups = Math.min(src.remaining() / 3, dst.remaining() / 4);
+      if (src.hasArray() && dst.hasArray()) {
+        byte[] in = src.array();
+        char[] out = dst.array();
+        int i = src.arrayOffset() + src.position();
+        int o = dst.arrayOffset() + dst.position();
+        for (int end = i + groups * 3; i < end; i += 3, o += 4) {
+          int bits = ((in[i] & 0xff) << 16) | ((in[i+1] & 0xff) << 8) |
+                     (in[i+2] & 0xff);
+          out[o] = ALPHABET_CHARS[bits >>> 18];
+          out[o+1] = ALPHABET_CHARS[(bits >>> 12) & 0x3f];
+          out[o+2] = ALPHABET_CHARS[(bits >>> 6) & 0x3f];
+          out[o+3] = ALPHABET_CHARS[bits & 0x3f];
+        }
+        src.position(src.position() + groups * 3);
+        dst.position(dst.position() + groups * 4);
+      } else {
+        for (int g = 0; g < groups; g++) {
+          putGroup(dst, getGroup(src), 3);
+        }
+      }
+      switch (tail(src, dst.remaining(), endOfInput)) {
+      case TAIL_FULL:
+        return false;
+      case TAIL_FLUSH:
+        putGroup(dst, mBits, mPending);
+        mPending = 0;
+        return true;
+      default:
+        return true;
+      }
+    }
+
+    /**
+     * Discard any pending bytes.
+     */
+    public void reset() {
+      mBits = 0;
+      mPending = 0;
+    }
+
+    // Fill up the pending group from the input.  Return true if the group is
+    // ready to be written: it is complete, or it is the end of input.
+    private boolean fillPending(ByteBuffer src, boolean endOfInput) {
+      while (mPending < 3 && src.hasRemaining()) {
+        mBits |= (src.get() & 0xff) << (16 - 8 * mPending++);
+      }
+      return mPending == 3 || endOfInput;
+    }
+
+    // Handle the input after the whole groups: the destination is full if
+    // there are more whole groups or no room for the last partial group;
+    // otherwise, the 1 or 2 remaining bytes become pending.
+    private int tail(ByteBuffer src, int room, boolean endOfInput) {
+      int n = src.remaining();
+      if (n >= 3 || (n > 0 && endOfInput && room < 4)) {
+        return TAIL_FULL;
+      }
+      if (n == 0) {
+        return TAIL_DONE;
+      }
+      mBits = (src.get() & 0xff) << 16;
+      mPending = 1;
+      if (n == 2) {
+        mBits |= (src.get() & 0xff) << 8;
+        mPending = 2;
+      }
+      return endOfInput ? TAIL_FLUSH : TAIL_DONE;
+    }
+
+    private static int getGroup(ByteBuffer src) {
+      return ((src.get() & 0xff) << 16) | ((src.get() & 0xff) << 8) |
+             (src.get() & 0xff);
+    }
+
+    // Write a group of 1 to 3 bytes in the high bits of a 24-bit value.
+    private static void putGroup(ByteBuffer dst, int bits, int n) {
+      dst.put(ALPHABET[bits >>> 18]);
+      dst.put(ALPHABET[(bits >>> 12) & 0x3f]);
+      dst.put((n > 1) ? ALPHABET[(bits >>> 6) & 0x3f] : PAD);
+      dst.put((n > 2) ? ALPHABET[bits & 0x3f] : PAD);
+    }
+
+    private static void putGroup(CharBuffer dst, int bits, int n) {
+      dst.put(ALPHABET_CHARS[bits >>> 18]);
+      dst.put(ALPHABET_CHARS[(bits >>> 12) & 0x3f]);
+      dst.put((n > 1) ? ALPHABET_CHARS[(bits >>> 6) & 0x3f] : (char) PAD);
+      dst.put((n > 2) ? ALPHABET_CHARS[bits & 0x3f] : (char) PAD);
+    }
+  }
+
+  /**
+   * An incremental Base64 decoder.  White spaces are ignored and a partial
+   * group is kept until more input is available or the end of input.  The
+   * padding is optional at the end of input.  This class is not thread safe.
+   */
+  public static class Decoder {
+    private int mBits;
+    private int mCount;         // number of 6-bit values in mBits
+    private boolean mPadded;
+
+    /**
+     * Decode the remaining Base64 bytes of <code>src</code> into
+     * <code>dst</code>.
+     * @param src The Base64 data in ASCII.
+     * @param dst The destination buffer.
+     * @param endOfInput true if no more input after <code>src</code>.
+     * @return true if all input is consumed (and flushed at the end of input),
+     *          false if the destination is full.
+     * @throws IllegalArgumentException Invalid Base64 data.
+     */
+    public boolean decode(ByteBuffer src, ByteBuffer dst, boolean endOfInput) {
+      while (true) {
+        if (mCount == 0 && !mPadded && dst.hasArray()) {
+          // Decode the whole groups without white spaces.
+          byte[] out = dst.array();
+          int o = dst.arrayOffset() + dst.position();
+          int groups = Math.min(src.remaining() / 4, dst.remaining() / 3);
+          int g = 0;
+          if (src.hasArray()) {
+            byte[] in = src.array();
+            for (int i = src.arrayOffset() + src.position(), bits; g < groups;
+                 g++, i += 4, o += 3) {
+              if ((bits = (DECODABET[in[i] & 0xff] << 18) |
+                          (DECODABET[in[i+1] & 0xff] << 12) |
+                          (DECODABET[in[i+2] & 0xff] << 6) |
+                          DECODABET[in[i+3] & 0xff]) < 0) {
+                break;
+              }
+              out[o] = (byte) (bits >>> 16);
+              out[o+1] = (byte) (bits >>> 8);
+              out[o+2] = (byte) bits;
+            }
+          } else {
+            for (int i = src.position(), bits; g < groups; g++, i += 4, o += 3) {
+              if ((bits = (DECODABET[src.get(i) & 0xff] << 18) |
+                          (DECODABET[src.get(i+1) & 0xff] << 12) |
+                          (DECODABET[src.get(i+2) & 0xff] << 6) |
+                          DECODABET[src.get(i+3) & 0xff]) < 0) {
+                break;
+              }
+              out[o] = (byte) (bits >>> 16);
+              out[o+1] = (byte) (bits >>> 8);
+              out[o+2] = (byte) bits;
+            }
+          }
+          src.position(src.position() + g * 4);
+          dst.position(dst.position() + g * 3);
+        }
+        if (!src.hasRemaining()) {
+          break;
+        }
+        int pos = src.position();
+        if (!step(DECODABET[src.get(pos) & 0xff], src.get(pos), dst)) {
+          return false;
+        }
+        src.position(pos + 1);
+      }
+      return finish(dst, endOfInput);
+    }
+
+    /**
+     * Decode the remaining Base64 chars of <code>src</code> into
+     * <code>dst</code>.
+     * @param src The Base64 chars.
+     * @param dst The destination buffer.
+     * @param endOfInput true if no more input after <code>src</code>.
+     * @return true if all input is consumed (and flushed at the end of input),
+     *          false if the destination is full.
+     * @throws IllegalArgumentException Invalid Base64 data.
+     */
+    public boolean decode(CharBuffer src, ByteBuffer dst, boolean endOfInput) {
+      while (true) {
+        if (mCount == 0 && !mPadded && dst.hasArray()) {
+          byte[] out = dst.array();
+          int o = dst.arrayOffset() + dst.position();
+          int groups = Math.min(src.remaining() / 4, dst.remaining() / 3);
+          int g = 0;
+          if (src.hasArray()) {
+            char[] in = src.array();
+            for (int i = src.arrayOffset() + src.position(), bits; g < groups;
+                 g++, i += 4, o += 3) {
+              if ((bits = quad(in[i], in[i+1], in[i+2], in[i+3])) < 0) {
+                break;
+              }
+              out[o] = (byte) (bits >>> 16);
+              out[o+1] = (byte) (bits >>> 8);
+              out[o+2] = (byte) bits;
+            }
+          } else {
+            // e.g. a wrapped String
+            for (int i = src.position(), bits; g < groups; g++, i += 4, o += 3) {
+              if ((bits = quad(src.get(i), src.get(i+1), src.get(i+2),
+                               src.get(i+3))) < 0) {
+                break;
+              }
+              out[o] = (byte) (bits >>> 16);
+              out[o+1] = (byte) (bits >>> 8);
+              out[o+2] = (byte) bits;
+            }
+          }
+          src.position(src.position() + g * 4);
+          dst.position(dst.position() + g * 3);
+        }
+        if (!src.hasRemaining()) {
+          break;
+        }
+        int pos = src.position();
+        char c = src.get(pos);
+        if (!step((c > 0xff) ? INVALID : DECODABET[c], c, dst)) {
+          return false;
+        }
+        src.position(pos + 1);
+      }
+      return finish(dst, endOfInput);
+    }
+
+    /**
+     * Discard any partial group.
+     */
+    public void reset() {
+      mBits = 0;
+      mCount = 0;
+      mPadded = false;
+    }
+
+    // Decode 4 chars to a 24-bit value; negative if any is not in the
+    // alphabet.
+    private static int quad(char c0, char c1, char c2, char c3) {
+      if ((c0 | c1 | c2 | c3) > 0xff) {
+        return INVALID;
+      }
+      return (DECODABET[c0] << 18) | (DECODABET[c1] << 12) |
+             (DECODABET[c2] << 6) | DECODABET[c3];
+    }
+
+    // Accept one decoded value.  Return false if no room for the output.
+    private boolean step(int value, int c, ByteBuffer dst) {
+      if (value >= 0) {
+        if (mPadded) {
+          throw new IllegalArgumentException("Base64 data after padding");
+        }
+        if (mCount < 3) {
+          mBits = (mBits << 6) | value;
+          ++mCount;
+          return true;
+        }
+        if (dst.remaining() < 3) {
+          return false;
+        }
+        int bits = (mBits << 6) | value;
+        dst.put((byte) (bits >>> 16));
+        dst.put((byte) (bits >>> 8));
+        dst.put((byte) bits);
+        mBits = 0;
+        mCount = 0;
+        return true;
+      }
+      switch (value) {
+      case WHITE_SPACE:
+        return true;
+      case PADDING:
+        if (!mPadded) {
+          if (mCount < 2) {
+            throw new IllegalArgumentException("Invalid Base64 padding");
+          }
+          if (!flushPartial(dst)) {
+            return false;
+          }
+          mPadded = true;
+        }
+        return true;
+      default:
+        throw new IllegalArgumentException("Invalid Base64 char: 0x"+
+            Integer.toHexString(c));
+      }
+    }
+
+    // Write the 1 or 2 bytes from a partial group of 2 or 3 values.
+    private boolean flushPartial(ByteBuffer dst) {
+      if (dst.remaining() < mCount - 1) {
+        return false;
+      }
+      if (mCount == 2) {
+        dst.put((byte) (mBits >>> 4));
+      } else {
+        dst.put((byte) (mBits >>> 10));
+        dst.put((byte) (mBits >>> 2));
+      }
+      mBits = 0;
+      mCount = 0;
+      return true;
+    }
+
+    private boolean finish(ByteBuffer dst, boolean endOfInput) {
+      if (!endOfInput) {
+        return true;
+      }
+      if (mCount == 1) {
+        throw new IllegalArgumentException("Truncated Base64 data");
+      }
+      if (mCount > 1 && !flushPartial(dst)) {
+        return false;
+      }
+      reset();
+      return true;
+    }
+  }
+}
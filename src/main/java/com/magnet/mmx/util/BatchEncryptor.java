@@ -0,0 +1,228 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Encrypt a batch of payloads in parallel, e.g. a message fanned out to many
+ * devices.  The batch is split into one contiguous chunk per worker; the
+ * calling thread encrypts the first chunk itself.  Since each
+ * {@link DefaultEncryptor} keeps its cipher state per thread, a worker reuses
+ * its cipher for the whole chunk.  The results are returned in the order of
+ * the input.  The executor is not owned by this class and is not shut down.
+ */
+public class BatchEncryptor {
+  /**
+   * The minimum number of payloads per chunk; a smaller batch is encrypted
+   * by the calling thread.
+   */
+  public final static int MIN_CHUNK_SIZE = 16;
+
+  /**
+   * A plain data with its own encryptor, e.g. the encryptor with the key of
+   * the recipient's app.
+   */
+  public static class Item {
+    private final DefaultEncryptor mEncryptor;
+    private final byte[] mPlain;
+
+    /**
+     * Constructor.
+     * @param encryptor The encryptor for this plain data.
+     * @param plain The plain data.
+     */
+    public Item(DefaultEncryptor encryptor, byte[] plain) {
+      mEncryptor = encryptor;
+      mPlain = plain;
+    }
+
+    /**
+     * Get the encryptor.
+     * @return The encryptor.
+     */
+    public DefaultEncryptor getEncryptor() {
+      return mEncryptor;
+    }
+
+    /**
+     * Get the plain data.
+     * @return The plain data.
+     */
+    public byte[] getPlain() {
+      return mPlain;
+    }
+  }
+
+  private interface Job {
+    Object encrypt(int index);
+  }
+
+  private final ExecutorService mExecutor;
+  private final int mParallelism;
+
+  /**
+   * Constructor with the parallelism of the number of processors.
+   * @param executor The executor for the worker tasks.
+   */
+  public BatchEncryptor(ExecutorService executor) {
+    this(executor, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructor.
+   * @param executor The executor for the worker tasks.
+   * @param parallelism The maximum number of chunks in a batch, including the
+   *                    one encrypted by the calling thread.
+   */
+  public BatchEncryptor(ExecutorService executor, int parallelism) {
+    if (executor == null) {
+      throw new IllegalArgumentException("Executor cannot be null");
+    }
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Invalid parallelism: "+parallelism);
+    }
+    mExecutor = executor;
+    mParallelism = parallelism;
+  }
+
+  /**
+   * Encrypt the plain data with the same encryptor.
+   * @param encryptor The encryptor.
+   * @param plains A list of plain data.
+   * @return A list of encrypted data in the same order.
+   * @throws InterruptedException
+   * @see DefaultEncryptor#encode(byte[])
+   */
+  public List<byte[]> encode(final DefaultEncryptor encryptor,
+                              final List<byte[]> plains)
+                                  throws InterruptedException {
+    return Arrays.asList((byte[][]) run(new Job() {
+      public Object encrypt(int index) {
+        return encryptor.encode(plains.get(index));
+      }
+    }, new byte[plains.size()][]));
+  }
+
+  /**
+   * Encrypt the plain data with their own encryptors.
+   * @param items A list of encryptor and plain data pairs.
+   * @return A list of encrypted data in the same order.
+   * @throws InterruptedException
+   * @see DefaultEncryptor#encode(byte[])
+   */
+  public List<byte[]> encode(final List<Item> items)
+                              throws InterruptedException {
+    return Arrays.asList((byte[][]) run(new Job() {
+      public Object encrypt(int index) {
+        Item item = items.get(index);
+        return item.mEncryptor.encode(item.mPlain);
+      }
+    }, new byte[items.size()][]));
+  }
+
+  /**
+   * Encrypt the plain data with the same encryptor to base64 strings.
+   * @param encryptor The encryptor.
+   * @param plains A list of plain data.
+   * @return A list of encrypted data in base64 in the same order.
+   * @throws InterruptedException
+   * @see DefaultEncryptor#encodeToString(byte[])
+   */
+  public List<String> encodeToString(final DefaultEncryptor encryptor,
+                                      final List<byte[]> plains)
+                                          throws InterruptedException {
+    return Arrays.asList((String[]) run(new Job() {
+      public Object encrypt(int index) {
+        return encryptor.encodeToString(plains.get(index));
+      }
+    }, new String[plains.size()]));
+  }
+
+  /**
+   * Encrypt the plain data with their own encryptors to base64 strings.
+   * @param items A list of encryptor and plain data pairs.
+   * @return A list of encrypted data in base64 in the same order.
+   * @throws InterruptedException
+   * @see DefaultEncryptor#encodeToString(byte[])
+   */
+  public List<String> encodeToString(final List<Item> items)
+                                      throws InterruptedException {
+    return Arrays.asList((String[]) run(new Job() {
+      public Object encrypt(int index) {
+        Item item = items.get(index);
+        return item.mEncryptor.encodeToString(item.mPlain);
+      }
+    }, new String[items.size()]));
+  }
+
+  // Split the batch into chunks, run all but the first chunk in the executor
+  // and wait for them.  A failure in any chunk is rethrown.
+  private Object[] run(final Job job, final Object[] results)
+                        throws InterruptedException {
+    final int count = results.length;
+    int chunks = Math.min(mParallelism,
+        (count + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE);
+    if (chunks <= 1) {
+      encrypt(job, results, 0, count);
+      return results;
+    }
+    List<Future<?>> futures = new ArrayList<Future<?>>(chunks - 1);
+    try {
+      for (int i = 1; i < chunks; i++) {
+        final int start = (int) ((long) count * i / chunks);
+        final int end = (int) ((long) count * (i + 1) / chunks);
+        futures.add(mExecutor.submit(new Runnable() {
+          public void run() {
+            encrypt(job, results, start, end);
+          }
+        }));
+      }
+      encrypt(job, results, 0, count / chunks);
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new RuntimeException(cause);
+        }
+      }
+      return results;
+    } finally {
+      // No-op for the completed tasks.
+      for (Future<?> future : futures) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  private static void encrypt(Job job, Object[] results, int start, int end) {
+    for (int i = start; i < end; i++) {
+      results[i] = job.encrypt(i);
+    }
+  }
+}
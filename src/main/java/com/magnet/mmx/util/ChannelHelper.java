@@ -17,9 +17,6 @@ package com.magnet.mmx.util;
 
 import com.magnet.mmx.protocol.*;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * @hide
  * A helper class for channels in PubSub.  There are two formats for user channel:
@@ -40,8 +37,6 @@ public class ChannelHelper {
   public final static String CHANNEL_LEAF_ALL = "_all_";            // a leaf node
   public final static String CHANNEL_NAME_PATTERN_STRING = "^[a-zA-Z0-9_\\.\\-]*$";
 
-  private static final Pattern CHANNEL_NAME_PATTERN = Pattern.compile(CHANNEL_NAME_PATTERN_STRING);
-
 
   // the node is formulated as follows:
   // /<appId>/*/com.magnet.os/<osType>
@@ -140,6 +135,7 @@ public class ChannelHelper {
    * channel.
    * @param channel A XMPP PubSub nodeID string.
    * @return An AppChannel object, or null if not an MMX channel.
+   * @see NodePath for parsing without allocation.
    */
   public static AppChannel parseChannel(String channel) {
     if (channel.charAt(0) != CHANNEL_DELIM)
@@ -311,30 +307,7 @@ public class ChannelHelper {
    * @throws IllegalArgumentException Channel cannot start or end with '/'.
    */
   public static String normalizePath(String path) {
-    if (path == null || path.isEmpty()) {
-      throw new IllegalArgumentException("Channel cannot be null or empty");
-    }
-    if (path.charAt(0) == ChannelHelper.CHANNEL_DELIM ||
-        path.charAt(path.length()-1) == ChannelHelper.CHANNEL_DELIM) {
-      throw new IllegalArgumentException("Channel cannot start or end with '/'");
-    }
-    StringBuilder sb = new StringBuilder(path.length());
-    char prev = '\0';
-    for (char c : path.toCharArray()) {
-      if (c == ChannelHelper.CHANNEL_DELIM) {
-        if (prev == ChannelHelper.CHANNEL_DELIM) {
-          continue;
-        }
-      } else {
-        if (prev == ChannelHelper.CHANNEL_DELIM) {
-          sb.append(ChannelHelper.CHANNEL_DELIM);
-        }
-        //MOB-2406:No longer lower case channel names
-        sb.append(c);
-      }
-      prev = c;
-    }
-    return sb.toString();
+    return NameValidator.CHANNEL.normalizePath(path);
   }
   
   /**
@@ -344,18 +317,7 @@ public class ChannelHelper {
    * @throws IllegalArgumentException Channel cannot contain '/'.
    */
   public static void checkPathAllowed(String channel) {
-    if (channel == null || channel.isEmpty()) {
-      throw new IllegalArgumentException("The channel name cannot be null or empty");
-    }
-    if (channel.length() > Constants.MMX_MAX_CHANNEL_LEN) {
-      throw new IllegalArgumentException("The length of channel name exceeds "+Constants.MMX_MAX_CHANNEL_LEN);
-    }
-    if (CHANNEL_RESTRICTED_NAME) {
-      if (channel.indexOf(ChannelHelper.CHANNEL_DELIM) >= 0) {
-        throw new IllegalArgumentException(
-            "The path syntax is disabled; channel cannot contain '/'");
-      }
-    }
+    NameValidator.CHANNEL.checkPathAllowed(channel, CHANNEL_RESTRICTED_NAME);
   }
 
   public static boolean validatePublisherType(String publisherType) {
@@ -377,14 +339,6 @@ public class ChannelHelper {
    * @return true if the channel name is valid. false if the channel name is invalid.
    */
   public static boolean validateApplicationChannelName (String channelName) {
-    if (channelName == null || channelName.isEmpty()) {
-      return false;
-    }
-    int length = channelName.length();
-    if (length > Constants.MMX_MAX_CHANNEL_LEN) {
-      return false;
-    }
-    Matcher matcher = CHANNEL_NAME_PATTERN.matcher(channelName);
-    return matcher.matches();
+    return NameValidator.CHANNEL.isValid(channelName);
   }
 }
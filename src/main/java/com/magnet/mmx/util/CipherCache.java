@@ -0,0 +1,154 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * @hide
+ * The per-thread Cipher, Mac and MessageDigest instances shared by all
+ * encryptors.  They are not thread safe and are expensive to look up.  A
+ * Cipher or a Mac keeps its key, so they are cached by the algorithm and the
+ * key, in the access order and up to {@link #MAX_KEYS} per thread like the
+ * Macs in {@link HmacEngine}.  A pooled thread never retains more keys
+ * however many encryptors come and go.
+ */
+class CipherCache {
+  /**
+   * The maximum number of keyed Ciphers and Macs cached per thread.
+   */
+  final static int MAX_KEYS = 16;
+
+  // The transformation of a Cipher or the algorithm of a Mac, and the key.
+  private static class Key {
+    private final String mTransform;
+    private final SecretKeySpec mKey;
+
+    Key(String transform, SecretKeySpec key) {
+      mTransform = transform;
+      mKey = key;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return mTransform.equals(other.mTransform) && mKey.equals(other.mKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return mTransform.hashCode() * 31 + mKey.hashCode();
+    }
+  }
+
+  private static class Ciphers extends LinkedHashMap<Key, Object> {
+    private static final long serialVersionUID = 1L;
+
+    Ciphers() {
+      super(16, 0.75f, true);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+      return size() > MAX_KEYS;
+    }
+  }
+
+  private final static ThreadLocal<Ciphers> sCiphers =
+      new ThreadLocal<Ciphers>() {
+    @Override
+    protected Ciphers initialValue() {
+      return new Ciphers();
+    }
+  };
+  // The digests are not keyed; there is one per algorithm.
+  private final static ThreadLocal<Map<String, MessageDigest>> sDigests =
+      new ThreadLocal<Map<String, MessageDigest>>() {
+    @Override
+    protected Map<String, MessageDigest> initialValue() {
+      return new HashMap<String, MessageDigest>(4);
+    }
+  };
+
+  /**
+   * Get the Cipher of the calling thread for a transformation and a key.  The
+   * caller must initialize it before each use.
+   * @param transform The transformation, e.g. "AES/CBC/PKCS5Padding".
+   * @param key The secret key.
+   * @return A Cipher.
+   * @throws GeneralSecurityException
+   */
+  static Cipher getCipher(String transform, SecretKeySpec key)
+      throws GeneralSecurityException {
+    Ciphers ciphers = sCiphers.get();
+    Key cacheKey = new Key(transform, key);
+    Cipher cipher = (Cipher) ciphers.get(cacheKey);
+    if (cipher == null) {
+      cipher = Cipher.getInstance(transform);
+      ciphers.put(cacheKey, cipher);
+    }
+    return cipher;
+  }
+
+  /**
+   * Get the Mac of the calling thread for an algorithm and a key.  It is
+   * initialized with the key and ready to use.
+   * @param algo The MAC algorithm, e.g. "HmacSHA256".
+   * @param key The secret key.
+   * @return A Mac.
+   * @throws GeneralSecurityException
+   */
+  static Mac getMac(String algo, SecretKeySpec key)
+      throws GeneralSecurityException {
+    Ciphers ciphers = sCiphers.get();
+    Key cacheKey = new Key(algo, key);
+    Mac mac = (Mac) ciphers.get(cacheKey);
+    if (mac == null) {
+      mac = Mac.getInstance(algo);
+      mac.init(key);
+      ciphers.put(cacheKey, mac);
+    }
+    return mac;
+  }
+
+  /**
+   * Get the MessageDigest of the calling thread for an algorithm.
+   * @param algo The digest algorithm, e.g. "MD5".
+   * @return A MessageDigest.
+   * @throws NoSuchAlgorithmException
+   */
+  static MessageDigest getDigest(String algo) throws NoSuchAlgorithmException {
+    Map<String, MessageDigest> digests = sDigests.get();
+    MessageDigest digest = digests.get(algo);
+    if (digest == null) {
+      digest = MessageDigest.getInstance(algo);
+      digests.put(algo, digest);
+    }
+    return digest;
+  }
+}
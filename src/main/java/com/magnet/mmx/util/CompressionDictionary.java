@@ -0,0 +1,141 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+/**
+ * Versioned preset dictionaries for compressing small JSON bodies of the
+ * protocol classes.  A compressed body starts with one byte of the dictionary
+ * version followed by a zlib stream primed with that dictionary, so a peer can
+ * decompress any version it knows.  A published version must never change;
+ * a new dictionary is added as a new version and becomes {@link #CURRENT}
+ * once all peers know it.
+ */
+public class CompressionDictionary {
+  public final static int VERSION_1 = 1;
+
+  // The protocol field names and namespaces of the version 1.  Deflate refers
+  // back at most 32KB and prefers the closest match, so the most frequent
+  // strings are at the end.
+  private final static String DICT_V1 =
+      "com.magnet:appreg com.magnet:dev com.magnet:user com.magnet:auth " +
+      "com.magnet:msg:action com.magnet:msg:payload com.magnet:msg:state " +
+      "com.magnet:msg:ack com.magnet:msg:push com.magnet:msg:wakeup " +
+      "com.magnet:msg:signal com.magnet:pubsub com.magnet:ctx " +
+      "\"callbackURL\":\"\"client\":\"\"text\":\"\"pushType\":\"" +
+      "\"pushToken\":\"\"osType\":\"ANDROID\"osType\":\"IOS\"" +
+      "\"displayName\":\"\"description\":\"\"creationDate\":\"" +
+      "\"modificationDate\":\"\"isPersistent\":\"isCollection\":" +
+      "\"maxItems\":\"itemIds\":[\"\"subscriptionId\":\"\"appId\":\"" +
+      "\"apiKey\":\"\"since\":\"\"until\":\"\"offset\":\"limit\":" +
+      "\"totalCount\":\"isPersonal\":false,\"isPersonal\":true," +
+      "\"errorOnDup\":false,\"errorOnDup\":true,\"type\":\"\"code\":" +
+      "\"message\":\"\"from\":\"\"to\":\"\"id\":\"\"topicName\":\"" +
+      "\"idType\":\"message\"lastModTime\":\"\"tags\":[\"\"devId\":\"" +
+      "\"msgId\":\"\"channelName\":\"\"userId\":\"";
+
+  private final static Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * The version 1 dictionary.
+   */
+  public final static CompressionDictionary V1 =
+      new CompressionDictionary(VERSION_1, DICT_V1);
+
+  /**
+   * The dictionary used for compression.
+   */
+  public final static CompressionDictionary CURRENT = V1;
+
+  private final int mVersion;
+  private final Compressor mCompressor;
+
+  private CompressionDictionary(int version, String dictionary) {
+    mVersion = version;
+    mCompressor = new Compressor(Deflater.BEST_COMPRESSION,
+        dictionary.getBytes(UTF8));
+  }
+
+  /**
+   * Get a dictionary by its version.
+   * @param version The dictionary version.
+   * @return The dictionary, or null if the version is unknown.
+   */
+  public static CompressionDictionary get(int version) {
+    switch (version) {
+    case VERSION_1:
+      return V1;
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * Get the version of this dictionary.
+   * @return The version.
+   */
+  public int getVersion() {
+    return mVersion;
+  }
+
+  /**
+   * Get the compressor primed with this dictionary.  The compressed data has
+   * no version byte.
+   * @return The compressor.
+   */
+  public Compressor getCompressor() {
+    return mCompressor;
+  }
+
+  /**
+   * Compress a range of bytes prefixed with the version of this dictionary.
+   * @param data The uncompressed data.
+   * @param offset The offset of the data.
+   * @param len The length of the data.
+   * @return The version byte followed by the compressed data.
+   */
+  public byte[] compress(byte[] data, int offset, int len) {
+    byte[] zipped = mCompressor.compress(data, offset, len);
+    byte[] result = new byte[zipped.length + 1];
+    result[0] = (byte) mVersion;
+    System.arraycopy(zipped, 0, result, 1, zipped.length);
+    return result;
+  }
+
+  /**
+   * Decompress the data with the dictionary of the version in its first byte.
+   * @param data The version byte followed by the compressed data.
+   * @param offset The offset of the data.
+   * @param len The length of the data.
+   * @return The uncompressed data.
+   * @throws DataFormatException Unknown dictionary version or corrupted data.
+   */
+  public static byte[] decompress(byte[] data, int offset, int len)
+                                    throws DataFormatException {
+    if (len < 1) {
+      throw new DataFormatException("Missing dictionary version");
+    }
+    int version = data[offset] & 0xff;
+    CompressionDictionary dict = get(version);
+    if (dict == null) {
+      throw new DataFormatException("Unknown dictionary version: "+version);
+    }
+    return dict.mCompressor.decompress(data, offset + 1, len - 1);
+  }
+}
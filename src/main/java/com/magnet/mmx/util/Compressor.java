@@ -0,0 +1,378 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * A zlib compression stage with pooled {@link Deflater} and {@link Inflater}
+ * instances.  The streams can be stacked with the other streams, e.g. to
+ * compress before encryption:
+ * <pre>
+ * OutputStream os = compressor.compressStream(encryptor.encodeStream(out));
+ * </pre>
+ * The pooled instance is returned when the stream is closed; an unclosed
+ * stream merely loses its instance to the garbage collector.  The output is
+ * the same zlib format as {@link Converter#Deflator}.
+ */
+public class Compressor {
+  /**
+   * The maximum number of idle instances of each kind kept in a pool.
+   */
+  public final static int MAX_POOL_SIZE = 16;
+  private final static int BUF_SIZE = 8192;
+  private final static Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * A compressor with the default level.
+   */
+  public final static Compressor DEFAULT = new Compressor(Deflater.DEFAULT_COMPRESSION);
+  /**
+   * A compressor favouring speed over ratio.
+   */
+  public final static Compressor FAST = new Compressor(Deflater.BEST_SPEED);
+
+  private final int mLevel;
+  private final byte[] mDictionary;
+  private final ConcurrentLinkedQueue<Deflater> mDeflaters =
+      new ConcurrentLinkedQueue<Deflater>();
+  private final AtomicInteger mNumDeflaters = new AtomicInteger();
+  private final ConcurrentLinkedQueue<Inflater> mInflaters =
+      new ConcurrentLinkedQueue<Inflater>();
+  private final AtomicInteger mNumInflaters = new AtomicInteger();
+
+  private class PooledDeflaterOutputStream extends DeflaterOutputStream {
+    private boolean mClosed;
+
+    PooledDeflaterOutputStream(OutputStream os, Deflater deflater) {
+      super(os, deflater, BUF_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (mClosed) {
+        return;
+      }
+      mClosed = true;
+      try {
+        super.close();
+      } finally {
+        releaseDeflater(def);
+      }
+    }
+  }
+
+  private class PooledInflaterInputStream extends InflaterInputStream {
+    private boolean mClosed;
+
+    PooledInflaterInputStream(InputStream is, Inflater inflater) {
+      super(is, inflater, BUF_SIZE);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n < 0 && inf.needsDictionary()) {
+        // The zlib header asks for the preset dictionary.
+        if (mDictionary == null) {
+          throw new ZipException("Missing preset dictionary");
+        }
+        inf.setDictionary(mDictionary);
+        n = super.read(b, off, len);
+      }
+      return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (mClosed) {
+        return;
+      }
+      mClosed = true;
+      try {
+        super.close();
+      } finally {
+        releaseInflater(inf);
+      }
+    }
+  }
+
+  /**
+   * Constructor.
+   * @param level The compression level from {@link Deflater#BEST_SPEED} to
+   *              {@link Deflater#BEST_COMPRESSION}, or
+   *              {@link Deflater#DEFAULT_COMPRESSION}.
+   */
+  public Compressor(int level) {
+    this(level, null);
+  }
+
+  /**
+   * Constructor with a preset dictionary.  Both ends must use the same
+   * dictionary; the zlib header only carries its checksum.
+   * @param level The compression level from {@link Deflater#BEST_SPEED} to
+   *              {@link Deflater#BEST_COMPRESSION}, or
+   *              {@link Deflater#DEFAULT_COMPRESSION}.
+   * @param dictionary null or the preset dictionary, with the most common
+   *                   strings at the end.
+   * @see CompressionDictionary
+   */
+  public Compressor(int level, byte[] dictionary) {
+    if ((level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) &&
+        level != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level: "+level);
+    }
+    mLevel = level;
+    mDictionary = dictionary;
+  }
+
+  /**
+   * Get the compression level.
+   * @return The compression level.
+   */
+  public int getLevel() {
+    return mLevel;
+  }
+
+  /**
+   * Wrap an output stream so that the data written to it is compressed.
+   * Closing the returned stream finishes the compression and closes
+   * <code>os</code>.
+   * @param os The output stream for the compressed data.
+   * @return An output stream for the uncompressed data.
+   */
+  public OutputStream compressStream(OutputStream os) {
+    return new PooledDeflaterOutputStream(os, acquireDeflater());
+  }
+
+  /**
+   * Wrap an input stream of compressed data.  Closing the returned stream
+   * closes <code>is</code>.
+   * @param is The input stream of the compressed data.
+   * @return An input stream of the uncompressed data.
+   */
+  public InputStream decompressStream(InputStream is) {
+    return new PooledInflaterInputStream(is, acquireInflater());
+  }
+
+  /**
+   * Compress all data from an input stream to an output stream with constant
+   * memory.  Neither stream is closed.
+   * @param is The uncompressed data.
+   * @param os The output stream for the compressed data.
+   * @return Number of compressed bytes written.
+   * @throws IOException
+   */
+  public long compress(InputStream is, OutputStream os) throws IOException {
+    Deflater deflater = acquireDeflater();
+    try {
+      byte[] ibuf = new byte[BUF_SIZE];
+      byte[] obuf = new byte[BUF_SIZE];
+      long total = 0;
+      int n;
+      while ((n = is.read(ibuf)) >= 0) {
+        deflater.setInput(ibuf, 0, n);
+        while (!deflater.needsInput()) {
+          total += drain(deflater, obuf, os);
+        }
+      }
+      deflater.finish();
+      while (!deflater.finished()) {
+        total += drain(deflater, obuf, os);
+      }
+      return total;
+    } finally {
+      releaseDeflater(deflater);
+    }
+  }
+
+  /**
+   * Compress a text in UTF-8 to an output stream without converting the whole
+   * text to bytes.  The output stream is not closed.
+   * @param text The uncompressed text, e.g. a {@link FileCharSequence}.
+   * @param os The output stream for the compressed data.
+   * @return Number of compressed bytes written.
+   * @throws IOException
+   */
+  public long compress(CharSequence text, OutputStream os) throws IOException {
+    Deflater deflater = acquireDeflater();
+    try {
+      DeflaterOutputStream dos = new DeflaterOutputStream(os, deflater, BUF_SIZE);
+      Writer writer = new OutputStreamWriter(dos, UTF8);
+      for (int i = 0, len = text.length(); i < len; i += BUF_SIZE) {
+        writer.append(text, i, Math.min(len, i + BUF_SIZE));
+      }
+      writer.flush();
+      dos.finish();
+      return deflater.getBytesWritten();
+    } finally {
+      releaseDeflater(deflater);
+    }
+  }
+
+  /**
+   * Decompress all data from an input stream to an output stream with
+   * constant memory.  Neither stream is closed.
+   * @param is The compressed data.
+   * @param os The output stream for the uncompressed data.
+   * @return Number of uncompressed bytes written.
+   * @throws IOException Error in I/O, or the data is corrupted.
+   */
+  public long decompress(InputStream is, OutputStream os) throws IOException {
+    Inflater inflater = acquireInflater();
+    InputStream dis = new PooledInflaterInputStream(is, inflater);
+    try {
+      byte[] buf = new byte[BUF_SIZE];
+      long total = 0;
+      int n;
+      while ((n = dis.read(buf)) >= 0) {
+        os.write(buf, 0, n);
+        total += n;
+      }
+      return total;
+    } finally {
+      releaseInflater(inflater);
+    }
+  }
+
+  /**
+   * Compress a range of bytes.
+   * @param data The uncompressed data.
+   * @param offset The offset of the data.
+   * @param len The length of the data.
+   * @return The compressed data.
+   */
+  public byte[] compress(byte[] data, int offset, int len) {
+    Deflater deflater = acquireDeflater();
+    try {
+      deflater.setInput(data, offset, len);
+      deflater.finish();
+      // Incompressible data grows by a few bytes per 16KB block.
+      byte[] result = new byte[len + (len >> 12) + 64];
+      int total = 0;
+      while (!deflater.finished()) {
+        if (total == result.length) {
+          result = Arrays.copyOf(result, result.length * 2);
+        }
+        total += deflater.deflate(result, total, result.length - total);
+      }
+      return Arrays.copyOf(result, total);
+    } finally {
+      releaseDeflater(deflater);
+    }
+  }
+
+  /**
+   * Decompress a range of bytes.
+   * @param data The compressed data.
+   * @param offset The offset of the data.
+   * @param len The length of the data.
+   * @return The uncompressed data.
+   * @throws DataFormatException The data is corrupted or truncated.
+   */
+  public byte[] decompress(byte[] data, int offset, int len)
+                            throws DataFormatException {
+    Inflater inflater = acquireInflater();
+    try {
+      inflater.setInput(data, offset, len);
+      byte[] result = new byte[Math.max(64, len * 4)];
+      int total = 0;
+      while (!inflater.finished()) {
+        if (total == result.length) {
+          result = Arrays.copyOf(result, result.length * 2);
+        }
+        int n = inflater.inflate(result, total, result.length - total);
+        if (n == 0 && inflater.needsDictionary()) {
+          if (mDictionary == null) {
+            throw new DataFormatException("Missing preset dictionary");
+          }
+          inflater.setDictionary(mDictionary);
+        } else if (n == 0 && !inflater.finished() && inflater.needsInput()) {
+          // An empty stream is finished and needs no more input at once.
+          throw new DataFormatException("Truncated compressed data");
+        }
+        total += n;
+      }
+      return (total == result.length) ? result : Arrays.copyOf(result, total);
+    } finally {
+      releaseInflater(inflater);
+    }
+  }
+
+  private static int drain(Deflater deflater, byte[] buf, OutputStream os)
+                            throws IOException {
+    int n = deflater.deflate(buf, 0, buf.length);
+    os.write(buf, 0, n);
+    return n;
+  }
+
+  private Deflater acquireDeflater() {
+    Deflater deflater = mDeflaters.poll();
+    if (deflater == null) {
+      deflater = new Deflater(mLevel);
+    } else {
+      mNumDeflaters.decrementAndGet();
+    }
+    // A reset clears the dictionary, so it is set on every use.
+    if (mDictionary != null) {
+      deflater.setDictionary(mDictionary);
+    }
+    return deflater;
+  }
+
+  private void releaseDeflater(Deflater deflater) {
+    if (mNumDeflaters.incrementAndGet() > MAX_POOL_SIZE) {
+      mNumDeflaters.decrementAndGet();
+      deflater.end();
+      return;
+    }
+    deflater.reset();
+    mDeflaters.offer(deflater);
+  }
+
+  private Inflater acquireInflater() {
+    Inflater inflater = mInflaters.poll();
+    if (inflater == null) {
+      return new Inflater();
+    }
+    mNumInflaters.decrementAndGet();
+    return inflater;
+  }
+
+  private void releaseInflater(Inflater inflater) {
+    if (mNumInflaters.incrementAndGet() > MAX_POOL_SIZE) {
+      mNumInflaters.decrementAndGet();
+      inflater.end();
+      return;
+    }
+    inflater.reset();
+    mInflaters.offer(inflater);
+  }
+}
@@ -15,12 +15,10 @@
 
 package com.magnet.mmx.util;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.charset.Charset;
 //import java.util.LinkedList;
 //import java.util.Random;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterOutputStream;
+import java.util.zip.DataFormatException;
 
 /**
  * This interface defines the conversion interface.  Currently only XML encoder
@@ -46,34 +44,70 @@ public interface Converter {
 //  };
   
   /**
-   * Compress text and encoded to base64.
+   * Compress UTF-8 text and encoded to base64.
+   * @see Compressor#DEFAULT
    */
   public static Converter Deflator = new Converter() {
+    private final Charset UTF8 = Charset.forName("UTF-8");
+
     public CharSequence convert(CharSequence text) {
+      byte[] data = text.toString().getBytes(UTF8);
+      byte[] zipped = Compressor.DEFAULT.compress(data, 0, data.length);
+      return Base64Codec.encodeToString(zipped, 0, zipped.length);
+    }
+  };
+  
+  /**
+   * Decode the base64 text and uncompress the decoded UTF-8 text.
+   * @see Compressor#DEFAULT
+   */
+  public static Converter Inflator = new Converter() {
+    private final Charset UTF8 = Charset.forName("UTF-8");
+
+    public CharSequence convert(CharSequence base64Text) {
       try {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream(text.length());
-        DeflaterOutputStream dos = new DeflaterOutputStream(bos);
-        dos.write(text.toString().getBytes());
-        dos.close();
-        return Base64.encodeBytes(bos.toByteArray());
-      } catch (IOException e) {
+        byte[] zipped = Base64Codec.decode(base64Text);
+        byte[] data = Compressor.DEFAULT.decompress(zipped, 0, zipped.length);
+        return new String(data, UTF8);
+      } catch (IllegalArgumentException e) {
+        return null;
+      } catch (DataFormatException e) {
         return null;
       }
     }
   };
   
   /**
-   * Decode the base64 text and uncompress the decoded text.
+   * Compress small UTF-8 JSON text with the current preset dictionary and
+   * encode to base64.  The first decoded byte is the dictionary version.
+   * @see CompressionDictionary#CURRENT
    */
-  public static Converter Inflator = new Converter() {
+  public static Converter JsonDeflator = new Converter() {
+    private final Charset UTF8 = Charset.forName("UTF-8");
+
+    public CharSequence convert(CharSequence text) {
+      byte[] data = text.toString().getBytes(UTF8);
+      byte[] zipped = CompressionDictionary.CURRENT.compress(data, 0, data.length);
+      return Base64Codec.encodeToString(zipped, 0, zipped.length);
+    }
+  };
+  
+  /**
+   * Decode the base64 text and uncompress it with the dictionary of its
+   * version.  It returns null if the dictionary version is unknown.
+   * @see CompressionDictionary#decompress(byte[], int, int)
+   */
+  public static Converter JsonInflator = new Converter() {
+    private final Charset UTF8 = Charset.forName("UTF-8");
+
     public CharSequence convert(CharSequence base64Text) {
       try {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream(512);
-        InflaterOutputStream ios = new InflaterOutputStream(bos);
-        ios.write(Base64.decode(base64Text.toString()));
-        ios.close();
-        return new String(bos.toByteArray());
-      } catch (IOException e) {
+        byte[] zipped = Base64Codec.decode(base64Text);
+        byte[] data = CompressionDictionary.decompress(zipped, 0, zipped.length);
+        return new String(data, UTF8);
+      } catch (IllegalArgumentException e) {
+        return null;
+      } catch (DataFormatException e) {
         return null;
       }
     }
@@ -18,39 +18,37 @@ package com.magnet.mmx.util;
 
 import com.magnet.mmx.util.Base64;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SignatureException;
 
 
 public class CryptoUtil {
-  private static final String HMAC_SHA1_ALGORITHM = "HmacSHA1";
 
+  /**
+   * Generate a HMAC-SHA1 signature with a cached key.
+   * @param data The data in UTF-8.
+   * @param key The secret key in UTF-8.
+   * @return A base64 encoded signature.
+   * @throws SignatureException
+   * @see HmacEngine#SHA1
+   */
   public static String generateHmacSha1(String data, String key) throws SignatureException {
-    String result;
-    try {
-
-      SecretKeySpec secretKeySpecKey = new SecretKeySpec(key.getBytes(), HMAC_SHA1_ALGORITHM);
-
-      Mac mac = Mac.getInstance(HMAC_SHA1_ALGORITHM);
-      mac.init(secretKeySpecKey);
-
-      // compute the hmac on data
-      byte[] bHmac = mac.doFinal(data.getBytes());
-
-      // stringify it
-      result = Base64.encodeBytes(bHmac);
-
-    } catch (Exception e) {
-      throw new SignatureException("Failed to generate HMAC-SHA1 : " + e.getMessage());
-    }
-    return result;
+    return HmacEngine.SHA1.signToString(key, data);
+  }
 
+  /**
+   * Generate a HMAC-SHA256 signature with a cached key.
+   * @param data The data in UTF-8.
+   * @param key The secret key in UTF-8.
+   * @return A base64 encoded signature.
+   * @throws SignatureException
+   * @see HmacEngine#SHA256
+   */
+  public static String generateHmacSha256(String data, String key) throws SignatureException {
+    return HmacEngine.SHA256.signToString(key, data);
   }
-  
+
   /**
    * Hash the value with MD5.
    * @param value
@@ -21,22 +21,34 @@ import javax.crypto.CipherOutputStream;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
-import java.util.Arrays;
-import java.util.Locale;
 
 /**
  * The default encryptor implementation for Android and J2SE.
+ * <p>
+ * If the mode in {@link EncryptorConfig} is {@link EncryptorConfig#MODE_GCM},
+ * the data is encrypted in authenticated segments with a versioned header, so
+ * a large payload can be encrypted, decrypted and verified in constant memory
+ * by the stream, channel or file methods.  The decryption tells the format
+ * apart by the header, so the data encrypted by the legacy CBC mode with the
+ * same key can still be decrypted.
  */
 public class DefaultEncryptor {
 
@@ -51,71 +63,91 @@ public class DefaultEncryptor {
   // (i.e. no data integrity)
   private final int headerSize;
 
+  private static final int STREAM_BUF_SIZE = 8192;
   private static final int LEN_STR_SIZE = 10; // length of cipher in string
                                               // format
-  private static final StringBuffer FORMAT_STR = new StringBuffer();
-  static {
-    // format the length string for header
-    FORMAT_STR.append("%0").append(LEN_STR_SIZE).append("d");
-  }
+  // The platform default, used when the configured algorithm is unavailable.
+  private static SecureRandom sDefaultRandom;
 
   private final StringBuffer transform = new StringBuffer();
+  private final String cipherTransform;
+  private final SecureRandom random;
+  private final SegmentedCipher segments;
 
-  private byte[] doEncrypt(byte[] arg) throws Exception {
-
-    Cipher encoder = Cipher.getInstance(getCipherTranformation());
-    initEncryptParams(encoder, buildIvParameter());
+  private byte[] encrypt(byte[] arg) throws Exception {
+    if (encConfig.isAead()) {
+      return segments.encrypt(arg, encConfig.getSegmentSize());
+    }
+    return doEncrypt(arg);
+  }
 
-    byte[] cipherTxt = encoder.doFinal(arg);
-    // prepend the header bytes
-    // result = HEADER + CIPHER
-    EncHeader header = new EncHeader(encoder.getIV(), cipherTxt);
-    ByteArrayOutputStream bos = new ByteArrayOutputStream(headerSize
-        + cipherTxt.length);
-    try {
-      header.write(bos);
-      bos.write(cipherTxt);
-      return bos.toByteArray();
-    } finally {
-      bos.close();
+  private byte[] decrypt(byte[] arg) throws Exception {
+    if (SegmentedCipher.isSegmented(arg, 0, arg.length)) {
+      try {
+        return segments.decrypt(arg);
+      } catch (IOException e) {
+        // A legacy message may start with the magic by chance.
+        try {
+          return doDecrypt(arg);
+        } catch (Exception le) {
+          throw e;
+        }
+      }
     }
+    return doDecrypt(arg);
   }
 
-  private byte[] doDecrypt(byte[] arg) throws Exception {
-    ByteArrayInputStream bis = new ByteArrayInputStream(arg);
-    try {
-      final byte[] header_buf = new byte[headerSize];
-      byte[] cipherText = null;
+  private byte[] doEncrypt(byte[] arg) throws Exception {
 
-      // read the header
-      if (headerSize != bis.read(header_buf, 0, headerSize)) {
-        throw new IOException("data corrupted; invalid header");
-      }
+    Cipher encoder = getCipher();
+    IvParameterSpec iv = buildIvParameter();
+    initEncryptParams(encoder, iv);
+
+    // result = HEADER + CIPHER, where HEADER = DIGEST + IV + CIPHER_LENGTH
+    byte[] result = new byte[headerSize + encoder.getOutputSize(arg.length)];
+    int cipherLen = encoder.doFinal(arg, 0, arg.length, result, headerSize);
+    if (headerSize + cipherLen != result.length) {
+      byte[] buf = new byte[headerSize + cipherLen];
+      System.arraycopy(result, 0, buf, 0, buf.length);
+      result = buf;
+    }
+    MessageDigest digestProvider = getDigest();
+    digestProvider.update(result, headerSize, cipherLen);
+    digestProvider.digest(result, 0, digestSize);
+    System.arraycopy(iv.getIV(), 0, result, digestSize,
+        EncryptorConfig.DEFAULT_IV_LEN);
+    putLength(result, digestSize + EncryptorConfig.DEFAULT_IV_LEN, cipherLen);
+    return result;
+  }
 
-      // parse header
-      EncHeader header = parseHeader(header_buf);
-      // read the cipher text
-      cipherText = new byte[header.mCipherLen];
-      if (header.mCipherLen != bis.read(cipherText)) {
-        throw new IOException("data corrupted; size mismatch");
-      }
+  private byte[] doDecrypt(byte[] arg) throws Exception {
+    if (arg.length < headerSize) {
+      throw new IOException("data corrupted; invalid header");
+    }
+    int cipherLen = getLength(arg, digestSize + EncryptorConfig.DEFAULT_IV_LEN);
+    if (cipherLen < 0) {
+      throw new SecurityException("encrypted data header is corrupt");
+    }
+    if (arg.length - headerSize < cipherLen) {
+      throw new IOException("data corrupted; size mismatch");
+    }
 
-      // validate data integrity
-      MessageDigest digestProvider = MessageDigest.getInstance(encConfig
-          .getHashAlgo());
-      final byte[] calc_digest = digestProvider.digest(cipherText);
-      digestProvider.reset();
-      if (!Arrays.equals(calc_digest, header.mDigest)) {
-        throw new IOException("data corrupted; invalid data");
-      }
-      // initialize iv in cipher
-      Cipher decoder = Cipher.getInstance(getCipherTranformation());
-      initDecryptParams(decoder, header.mIv);
-      byte[] cipherTxt = decoder.doFinal(cipherText);
-      return cipherTxt;
-    } finally {
-      bis.close();
+    // validate data integrity
+    MessageDigest digestProvider = getDigest();
+    digestProvider.update(arg, headerSize, cipherLen);
+    final byte[] calc_digest = digestProvider.digest();
+    int diff = 0;
+    for (int i = 0; i < digestSize; i++) {
+      diff |= calc_digest[i] ^ arg[i];
+    }
+    if (diff != 0) {
+      throw new IOException("data corrupted; invalid data");
     }
+    // initialize iv in cipher
+    Cipher decoder = getCipher();
+    decoder.init(Cipher.DECRYPT_MODE, keySpec, new IvParameterSpec(arg,
+        digestSize, EncryptorConfig.DEFAULT_IV_LEN));
+    return decoder.doFinal(arg, headerSize, cipherLen);
   }
 
   private EncryptorConfig encConfig;
@@ -140,17 +172,44 @@ public class DefaultEncryptor {
       throw new InvalidKeyException();
     }
     encConfig = cfg;
-    transform.append(encConfig.getAlgo()).append("/")
-        .append(encConfig.getMode()).append("/").append(encConfig.getPadding());
+    if (encConfig.isAead()) {
+      // for the legacy data
+      transform.append(encConfig.getAlgo()).append("/")
+          .append(EncryptorConfig.DEFAULT_MODE).append("/")
+          .append(EncryptorConfig.DEFAULT_PADDING);
+    } else {
+      transform.append(encConfig.getAlgo()).append("/")
+          .append(encConfig.getMode()).append("/").append(encConfig.getPadding());
+    }
+    cipherTransform = transform.toString();
 
     MessageDigest digestProvider = MessageDigest.getInstance(encConfig
         .getHashAlgo());
     digestSize = digestProvider.getDigestLength();
     headerSize = EncryptorConfig.DEFAULT_IV_LEN + LEN_STR_SIZE + digestSize;
     this.keySpec = new SecretKeySpec(key, encConfig.getAlgo());
+    this.random = getRandom(encConfig.getRandomAlgo());
+    // Accept the segments of the peers with the default configuration too.
+    this.segments = new SegmentedCipher(keySpec, encConfig.getAlgo(),
+        Math.max(encConfig.getSegmentSize(),
+            EncryptorConfig.DEFAULT_SEGMENT_SIZE), random);
 
     // attempt to get instance to validate impl for specified algorithm exists
     Cipher.getInstance(getCipherTranformation());
+    if (encConfig.isAead()) {
+      if (encConfig.getSegmentSize() <= 0 ||
+          encConfig.getSegmentSize() > SegmentedCipher.MAX_SEGMENT_SIZE) {
+        throw new IllegalArgumentException("Invalid segment size: "+
+            encConfig.getSegmentSize());
+      }
+      try {
+        segments.validate();
+      } catch (NoSuchPaddingException e) {
+        throw e;
+      } catch (GeneralSecurityException e) {
+        throw new NoSuchAlgorithmException(e.getMessage());
+      }
+    }
   }
 
   /**
@@ -183,8 +242,8 @@ public class DefaultEncryptor {
     }
 
     try {
-      byte[] bResult = doEncrypt(plain);
-      String result = Base64.encodeBytes(bResult);
+      byte[] bResult = encrypt(plain);
+      String result = Base64Codec.encodeToString(bResult, 0, bResult.length);
       return result;
     } catch (Exception e) {
       throw new RuntimeException(e);
@@ -203,7 +262,7 @@ public class DefaultEncryptor {
     }
 
     try {
-      byte[] bResult = doEncrypt(plain);
+      byte[] bResult = encrypt(plain);
       return bResult;
 
     } catch (Exception e) {
@@ -224,8 +283,8 @@ public class DefaultEncryptor {
       return cipherTxt.toString().getBytes();
     }
     try {
-      final byte[] txt = Base64.decode(cipherTxt.toString());
-      byte[] result = doDecrypt(txt);
+      final byte[] txt = Base64Codec.decode(cipherTxt);
+      byte[] result = decrypt(txt);
       return result;
     } catch (Exception e) {
       throw new RuntimeException(e);
@@ -242,13 +301,174 @@ public class DefaultEncryptor {
       return cipherData;
     }
     try {
-      byte[] bResult = doDecrypt(cipherData);
+      byte[] bResult = decrypt(cipherData);
       return bResult;
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Get the buffer size required by {@link #encrypt(ByteBuffer, ByteBuffer)}
+   * for the plain data of <code>plainLen</code> bytes.
+   * @param plainLen The plain data length.
+   * @return The maximum encrypted size including the header.
+   */
+  public int getEncryptedSize(int plainLen) {
+    long size;
+    if (encConfig.isAead()) {
+      size = SegmentedCipher.encryptedSize(plainLen, encConfig.getSegmentSize());
+    } else {
+      int blockSize = getCipher().getBlockSize();
+      size = (long) headerSize + plainLen;
+      if (blockSize > 0) {
+        size += blockSize - (plainLen % blockSize);
+      }
+    }
+    if (plainLen < 0 || size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid data length: "+plainLen);
+    }
+    return (int) size;
+  }
+
+  /**
+   * Get the buffer size required by {@link #decrypt(ByteBuffer, ByteBuffer)}
+   * for the encrypted data of <code>encryptedLen</code> bytes.
+   * @param encryptedLen The encrypted data length including the header.
+   * @return The maximum plain data size.
+   */
+  public int getDecryptedSize(int encryptedLen) {
+    return Math.max(0, encryptedLen - Math.min(headerSize,
+        SegmentedCipher.HEADER_SIZE));
+  }
+
+  /**
+   * Encrypt the remaining data in <code>src</code> and write the header and
+   * the encrypted data into <code>dst</code> without any intermediate copy.
+   * Either buffer may be direct.  On return, <code>src</code> is consumed and
+   * the position of <code>dst</code> is advanced.
+   * @param src The plain data.
+   * @param dst A buffer with at least {@link #getEncryptedSize(int)} bytes
+   *            remaining.
+   * @return Number of bytes written to <code>dst</code>.
+   * @throws BufferOverflowException <code>dst</code> is too small; neither
+   *            buffer is changed.
+   * @throws IOException
+   */
+  public int encrypt(ByteBuffer src, ByteBuffer dst) throws IOException {
+    if (dst.remaining() < getEncryptedSize(src.remaining())) {
+      throw new BufferOverflowException();
+    }
+    try {
+      if (encConfig.isAead()) {
+        return segments.encrypt(src, dst, encConfig.getSegmentSize());
+      }
+
+      Cipher encoder = getCipher();
+      IvParameterSpec iv = buildIvParameter();
+      initEncryptParams(encoder, iv);
+      int start = dst.position();
+      dst.position(start + headerSize);
+      int cipherLen = encoder.doFinal(src, dst);
+
+      // HEADER = DIGEST + IV + CIPHER_LENGTH
+      byte[] header = new byte[headerSize];
+      ByteBuffer cipherBuf = dst.duplicate();
+      cipherBuf.position(start + headerSize);
+      cipherBuf.limit(start + headerSize + cipherLen);
+      MessageDigest digestProvider = getDigest();
+      digestProvider.update(cipherBuf);
+      digestProvider.digest(header, 0, digestSize);
+      System.arraycopy(iv.getIV(), 0, header, digestSize,
+          EncryptorConfig.DEFAULT_IV_LEN);
+      putLength(header, digestSize + EncryptorConfig.DEFAULT_IV_LEN, cipherLen);
+      ByteBuffer headerBuf = dst.duplicate();
+      headerBuf.position(start);
+      headerBuf.put(header);
+      return headerSize + cipherLen;
+    } catch (GeneralSecurityException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Decrypt and verify the remaining data in <code>src</code>, and write the
+   * plain data into <code>dst</code>.  Either buffer may be direct.  The data
+   * can be in the segmented or the legacy format.  On return,
+   * <code>src</code> is consumed and the position of <code>dst</code> is
+   * advanced.
+   * @param src The header and the encrypted data.
+   * @param dst A buffer with at least {@link #getDecryptedSize(int)} bytes
+   *            remaining.
+   * @return Number of bytes written to <code>dst</code>.
+   * @throws BufferOverflowException <code>dst</code> is too small; neither
+   *            buffer is changed.
+   * @throws IOException The data is corrupted or tampered.
+   */
+  public int decrypt(ByteBuffer src, ByteBuffer dst) throws IOException {
+    if (dst.remaining() < getDecryptedSize(src.remaining())) {
+      throw new BufferOverflowException();
+    }
+    if (SegmentedCipher.isSegmented(src)) {
+      int srcPos = src.position();
+      int dstPos = dst.position();
+      try {
+        return segments.decrypt(src, dst);
+      } catch (IOException e) {
+        // A legacy message may start with the magic by chance.
+        src.position(srcPos);
+        dst.position(dstPos);
+        try {
+          return doDecrypt(src, dst);
+        } catch (IOException le) {
+          src.position(srcPos);
+          dst.position(dstPos);
+          throw e;
+        }
+      }
+    }
+    return doDecrypt(src, dst);
+  }
+
+  private int doDecrypt(ByteBuffer src, ByteBuffer dst) throws IOException {
+    if (src.remaining() < headerSize) {
+      throw new IOException("data corrupted; invalid header");
+    }
+    byte[] header = new byte[headerSize];
+    src.get(header);
+    int cipherLen = getLength(header, digestSize + EncryptorConfig.DEFAULT_IV_LEN);
+    if (cipherLen < 0) {
+      throw new IOException("data corrupted; invalid header");
+    }
+    if (src.remaining() < cipherLen) {
+      throw new IOException("data corrupted; size mismatch");
+    }
+    int limit = src.limit();
+    src.limit(src.position() + cipherLen);
+    try {
+      // validate data integrity
+      ByteBuffer cipherBuf = src.duplicate();
+      MessageDigest digestProvider = getDigest();
+      digestProvider.update(cipherBuf);
+      final byte[] calc_digest = digestProvider.digest();
+      int diff = 0;
+      for (int i = 0; i < digestSize; i++) {
+        diff |= calc_digest[i] ^ header[i];
+      }
+      if (diff != 0) {
+        throw new IOException("data corrupted; invalid data");
+      }
+      Cipher decoder = getCipher();
+      decoder.init(Cipher.DECRYPT_MODE, keySpec, new IvParameterSpec(header,
+          digestSize, EncryptorConfig.DEFAULT_IV_LEN));
+      return decoder.doFinal(src, dst);
+    } catch (GeneralSecurityException e) {
+      throw new IOException("data corrupted; invalid data", e);
+    } finally {
+      src.limit(limit);
+    }
+  }
+
   /**
    * Decrypt inputstream.
    * @param is InputStream that feeds encrypted data
@@ -262,8 +482,23 @@ public class DefaultEncryptor {
     try {
       final byte[] header_buf = new byte[headerSize];
 
-      // read the header
-      if (headerSize != is.read(header_buf, 0, headerSize)) {
+      // read the header; the segmented header is shorter
+      if (SegmentedCipher.HEADER_SIZE != readFully(is, header_buf, 0,
+          SegmentedCipher.HEADER_SIZE)) {
+        throw new IOException("data corrupted; invalid header");
+      }
+      int offset = SegmentedCipher.HEADER_SIZE;
+      if (SegmentedCipher.isSegmented(header_buf, 0, header_buf.length)) {
+        try {
+          return segments.decryptVerifiedStream(is, header_buf);
+        } catch (SegmentedCipher.UnverifiedDataException e) {
+          // A legacy message may start with the magic by chance; start over.
+          is = e.getRawData();
+          offset = 0;
+        }
+      }
+      if (headerSize - offset != readFully(is, header_buf, offset,
+          headerSize - offset)) {
         throw new IOException("data corrupted; invalid header");
       }
 
@@ -277,6 +512,8 @@ public class DefaultEncryptor {
       initDecryptParams(decoder, header.mIv);
 
       return new CipherInputStream(is, decoder);
+    } catch (IOException e) {
+      throw e;
     } catch (Exception e) {
       throw new IOException(e);
     }
@@ -292,6 +529,9 @@ public class DefaultEncryptor {
     if (os == null) {
       return null;
     }
+    if (encConfig.isAead()) {
+      return segments.encryptStream(os, encConfig.getSegmentSize());
+    }
     try {
       Cipher encoder = Cipher.getInstance(getCipherTranformation());
       IvParameterSpec iv = buildIvParameter();
@@ -307,56 +547,207 @@ public class DefaultEncryptor {
     }
   }
 
-  private String getCipherTranformation() {
-    return transform.toString();
+  /**
+   * Encrypt all data from a channel to another channel in authenticated
+   * segments with constant memory.  The segmented format is always used
+   * regardless of the mode in the configuration.  The channels are not closed.
+   * @param src The channel of the plain data.
+   * @param dst The channel for the encrypted data.
+   * @return Number of plain bytes encrypted.
+   * @throws IOException
+   */
+  public long encodeChannel(ReadableByteChannel src, WritableByteChannel dst)
+      throws IOException {
+    SegmentedCipher.SegmentOutputStream os = segments.encryptStream(
+        Channels.newOutputStream(dst), encConfig.getSegmentSize());
+    ByteBuffer buf = ByteBuffer.allocate(STREAM_BUF_SIZE);
+    long total = 0;
+    int n;
+    while ((n = src.read(buf)) >= 0) {
+      os.write(buf.array(), 0, n);
+      total += n;
+      buf.clear();
+    }
+    os.finish();
+    return total;
   }
 
-  private EncHeader parseHeader(final byte[] header_buf) {
-    if (header_buf.length != headerSize) {
-      throw new RuntimeException(new SecurityException(
-          "encrypted data header is corrupt"));
+  /**
+   * Decrypt and verify all data in the segmented format from a channel to
+   * another channel with constant memory.  The channels are not closed.
+   * @param src The channel of the encrypted data.
+   * @param dst The channel for the plain data.
+   * @return Number of plain bytes decrypted.
+   * @throws IOException Error in I/O, or the data is corrupted or tampered.
+   */
+  public long decodeChannel(ReadableByteChannel src, WritableByteChannel dst)
+      throws IOException {
+    InputStream is = Channels.newInputStream(src);
+    byte[] header = new byte[SegmentedCipher.HEADER_SIZE];
+    if (header.length != readFully(is, header, 0, header.length)) {
+      throw new IOException("data corrupted; invalid header");
+    }
+    is = segments.decryptStream(is, header);
+    byte[] buf = new byte[STREAM_BUF_SIZE];
+    long total = 0;
+    int n;
+    while ((n = is.read(buf)) >= 0) {
+      ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+      while (bb.hasRemaining()) {
+        dst.write(bb);
+      }
+      total += n;
     }
+    return total;
+  }
 
+  /**
+   * Encrypt a file to another file in authenticated segments.
+   * @param src The plain file.
+   * @param dst The encrypted file.
+   * @return Number of plain bytes encrypted.
+   * @throws IOException
+   * @see #encodeChannel(ReadableByteChannel, WritableByteChannel)
+   */
+  public long encodeFile(File src, File dst) throws IOException {
+    FileInputStream fis = new FileInputStream(src);
     try {
-      EncHeader result = new EncHeader();
-      ByteArrayInputStream bis = new ByteArrayInputStream(header_buf);
-      if (digestSize != bis.read(result.mDigest)) {
-        throw new RuntimeException(new SecurityException(
-            "encrypted data header is corrupt"));
+      FileOutputStream fos = new FileOutputStream(dst);
+      try {
+        return encodeChannel(fis.getChannel(), fos.getChannel());
+      } finally {
+        fos.close();
       }
+    } finally {
+      fis.close();
+    }
+  }
 
-      if (EncryptorConfig.DEFAULT_IV_LEN != bis.read(result.mIv)) {
-        throw new RuntimeException(new SecurityException(
-            "encrypted data header is corrupt"));
+  /**
+   * Decrypt and verify a file in the segmented format to another file.  If
+   * the data is corrupted, the partially decrypted file is deleted.
+   * @param src The encrypted file.
+   * @param dst The plain file.
+   * @return Number of plain bytes decrypted.
+   * @throws IOException Error in I/O, or the data is corrupted or tampered.
+   * @see #decodeChannel(ReadableByteChannel, WritableByteChannel)
+   */
+  public long decodeFile(File src, File dst) throws IOException {
+    boolean success = false;
+    FileInputStream fis = new FileInputStream(src);
+    try {
+      FileOutputStream fos = new FileOutputStream(dst);
+      try {
+        long total = decodeChannel(fis.getChannel(), fos.getChannel());
+        success = true;
+        return total;
+      } finally {
+        fos.close();
+        if (!success) {
+          dst.delete();
+        }
       }
+    } finally {
+      fis.close();
+    }
+  }
 
-      // cipher length in string format comes third
-      byte[] len_buf = new byte[LEN_STR_SIZE];
-      if (LEN_STR_SIZE != bis.read(len_buf)) {
-        throw new RuntimeException(new SecurityException(
-            "encrypted data header is corrupt"));
+  private static int readFully(InputStream is, byte[] buf, int offset, int len)
+      throws IOException {
+    int total = 0;
+    while (total < len) {
+      int n = is.read(buf, offset + total, len - total);
+      if (n < 0) {
+        break;
       }
+      total += n;
+    }
+    return total;
+  }
 
-      // parse the string containing length
-      String len_str = new String(len_buf, "UTF-8");
-      result.mCipherLen = Integer.parseInt(len_str);
+  private String getCipherTranformation() {
+    return cipherTransform;
+  }
 
-      return result;
-    } catch (Exception e) {
+  // Cipher and MessageDigest are not thread safe; each thread shares a
+  // bounded set of them across all encryptors.
+  private Cipher getCipher() {
+    try {
+      return CipherCache.getCipher(cipherTransform, keySpec);
+    } catch (GeneralSecurityException e) {
       throw new RuntimeException(e);
     }
   }
 
-  private IvParameterSpec buildIvParameter() {
-    // generate a random number for iv
-    byte[] iv = new byte[EncryptorConfig.DEFAULT_IV_LEN];
-    SecureRandom random;
+  private MessageDigest getDigest() {
     try {
-      random = SecureRandom.getInstance(EncryptorConfig.DEFAULT_RANDOM_ALGO);
+      return CipherCache.getDigest(encConfig.getHashAlgo());
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private EncHeader parseHeader(final byte[] header_buf) {
+    if (header_buf.length != headerSize) {
+      throw new RuntimeException(new SecurityException(
+          "encrypted data header is corrupt"));
+    }
+
+    EncHeader result = new EncHeader();
+    System.arraycopy(header_buf, 0, result.mDigest, 0, digestSize);
+    System.arraycopy(header_buf, digestSize, result.mIv, 0,
+        EncryptorConfig.DEFAULT_IV_LEN);
+    // cipher length in string format comes third
+    result.mCipherLen = getLength(header_buf,
+        digestSize + EncryptorConfig.DEFAULT_IV_LEN);
+    if (result.mCipherLen < 0) {
+      throw new RuntimeException(new SecurityException(
+          "encrypted data header is corrupt"));
+    }
+    return result;
+  }
+
+  // Write the length as LEN_STR_SIZE zero-padded ASCII digits.
+  private static void putLength(byte[] buf, int offset, int len) {
+    for (int i = offset + LEN_STR_SIZE - 1; i >= offset; i--) {
+      buf[i] = (byte) ('0' + len % 10);
+      len /= 10;
+    }
+  }
+
+  // Parse the LEN_STR_SIZE ASCII digits; return -1 if invalid.
+  private static int getLength(byte[] buf, int offset) {
+    long len = 0;
+    for (int i = offset, end = offset + LEN_STR_SIZE; i < end; i++) {
+      int d = buf[i] - '0';
+      if (d < 0 || d > 9) {
+        return -1;
+      }
+      len = len * 10 + d;
+    }
+    return (len > Integer.MAX_VALUE) ? -1 : (int) len;
+  }
+
+  // Get a SecureRandom for the algorithm, or the shared platform default if
+  // the algorithm is not available.  SecureRandom is thread safe and it is
+  // self-seeded on first use.
+  private static SecureRandom getRandom(String algo) {
+    try {
+      return SecureRandom.getInstance(algo);
     } catch (NoSuchAlgorithmException e1) {
       // default to whatever is available
-      random = new SecureRandom();
+      synchronized (DefaultEncryptor.class) {
+        if (sDefaultRandom == null) {
+          sDefaultRandom = new SecureRandom();
+        }
+        return sDefaultRandom;
+      }
     }
+  }
+
+  private IvParameterSpec buildIvParameter() {
+    // generate a random number for iv
+    byte[] iv = new byte[EncryptorConfig.DEFAULT_IV_LEN];
     random.nextBytes(iv);
     IvParameterSpec ivParam = new IvParameterSpec(iv);
     return ivParam;
@@ -391,20 +782,6 @@ public class DefaultEncryptor {
       mIv = new byte[EncryptorConfig.DEFAULT_IV_LEN];
     }
 
-    EncHeader(byte[] iv, byte[] cipherBuf) {
-      mIv = iv;
-      mCipherLen = cipherBuf.length;
-      // calculate digest
-      MessageDigest digestProvider = null;
-      try {
-        digestProvider = MessageDigest.getInstance(encConfig.getHashAlgo());
-      } catch (NoSuchAlgorithmException e) {
-        throw new RuntimeException(e);
-      }
-      mDigest = digestProvider.digest(cipherBuf);
-      digestProvider.reset();
-    }
-
     EncHeader(byte[] iv) {
       // this is for stream based ciphers; initialize only IV; other fields are
       // not used
@@ -414,9 +791,8 @@ public class DefaultEncryptor {
     }
 
     private void write(OutputStream os) throws IOException {
-      String len_str = String.format(Locale.US, FORMAT_STR.toString(),
-          mCipherLen);
-      byte[] len_buf = len_str.getBytes("UTF-8");
+      byte[] len_buf = new byte[LEN_STR_SIZE];
+      putLength(len_buf, 0, mCipherLen);
       os.write(mDigest);
       os.write(mIv);
       os.write(len_buf);
@@ -33,6 +33,14 @@ public class EncryptorConfig {
   //for AES; always 16; should not be configurable
   public static final int DEFAULT_IV_LEN = 16; 
 
+  /**
+   * The authenticated encryption mode.  The data is encrypted in segments by
+   * GCM without padding, and the padding and hash algorithm are not used.
+   */
+  public static final String MODE_GCM = "GCM";
+  // segment size for the GCM mode
+  public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
   public static final String CIPHER_KEY = "cipherKey";
   public static final String NONCE = "nonce";
   public static final String ALGO = "algo";
@@ -46,6 +54,7 @@ public class EncryptorConfig {
   private String algo;
   private String randomAlgo;
   private String hashAlgo;
+  private int segmentSize;
 
   public EncryptorConfig() {
     // initialize with default values
@@ -55,6 +64,15 @@ public class EncryptorConfig {
     algo = DEFAULT_ALGO;
     randomAlgo = DEFAULT_RANDOM_ALGO;
     hashAlgo = DEFAULT_HASH_ALGO;
+    segmentSize = DEFAULT_SEGMENT_SIZE;
+  }
+
+  /**
+   * Is the authenticated encryption mode {@link #MODE_GCM}?
+   * @return true if the mode is GCM.
+   */
+  public boolean isAead() {
+    return MODE_GCM.equalsIgnoreCase(mode);
   }
 
   public int getKeySize() {
@@ -81,6 +99,10 @@ public class EncryptorConfig {
     return hashAlgo;
   }
 
+  public int getSegmentSize() {
+    return segmentSize;
+  }
+
   public void setKeySize(int keySize) {
     this.keySize = keySize;
   }
@@ -104,4 +126,13 @@ public class EncryptorConfig {
   public void setHashAlgo(String hashAlgo) {
     this.hashAlgo = hashAlgo;
   }
+
+  /**
+   * Set the plain data size of each segment in the {@link #MODE_GCM} mode.
+   * A larger segment has less overhead but needs more memory for streaming.
+   * @param segmentSize The segment size in bytes, up to 16MB.
+   */
+  public void setSegmentSize(int segmentSize) {
+    this.segmentSize = segmentSize;
+  }
 }
@@ -20,17 +20,42 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * A CharSequence backing by a 16-bit Unicode file.  Caller can use
  * {@link FileUtil#copyToCharsFile(java.io.File, java.io.File, Converter)} to
  * convert a UTF-8 file to 16-bit Unicode file.
+ * <p>
+ * The file is accessed through memory-mapped pages of {@link #PAGE_CHARS}
+ * chars; a small LRU of pages is kept, so a sequential or localized access
+ * by {@link #charAt(int)} is amortized O(1) without any system call.  The
+ * appended chars are buffered and written in bulk.  This class is not thread
+ * safe.
  */
 public class FileCharSequence implements CharSequence, Appendable, Closeable {
+  /**
+   * Number of chars in a memory-mapped page.
+   */
+  public final static int PAGE_CHARS = 32 * 1024;
+  private final static int PAGE_SHIFT = 15;
+  private final static int MAX_PAGES = 16;
+  private final static int APPEND_CHARS = 8 * 1024;
+
   private DisposableTextFile mFile;
   private RandomAccessFile mRandAccFile;
-  
+  private FileChannel mChannel;
+  private int mFileChars;             // number of chars written to the file
+  private final LinkedHashMap<Integer, CharBuffer> mPages;
+  private int mCurPageNo = -1;
+  private CharBuffer mCurPage;
+  private char[] mAppendBuf;
+  private int mAppendLen;
+  private ByteBuffer mWriteBuf;
+
   /**
    * Constructor with a disposable 16-bit Unicode text file.
    * @param file A 16-bit Unicode text file.
@@ -39,6 +64,16 @@ public class FileCharSequence implements CharSequence, Appendable, Closeable {
   public FileCharSequence(DisposableTextFile file) throws IOException {
     mFile = file;
     mRandAccFile = new RandomAccessFile(mFile, "rw");
+    mChannel = mRandAccFile.getChannel();
+    mFileChars = (int) (mRandAccFile.length() / 2);
+    mPages = new LinkedHashMap<Integer, CharBuffer>(MAX_PAGES, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, CharBuffer> eldest) {
+        return size() > MAX_PAGES;
+      }
+    };
   }
 
   /**
@@ -46,40 +81,76 @@ public class FileCharSequence implements CharSequence, Appendable, Closeable {
    * @return Number of chars.
    */
   public int length() {
-    return (int) mFile.length() / 2;
+    return mFileChars + mAppendLen;
   }
 
   /**
    * Get a character at the zero-based <code>index</code>.
    * @param index A zero-based index
+   * @throws IndexOutOfBoundsException
    */
   public char charAt(int index) {
-    try {
-      mRandAccFile.seek(index*2);
-      return mRandAccFile.readChar();
-    } catch (IOException e) {
-      e.printStackTrace();
+    if (index < 0 || index >= length()) {
+      throw new IndexOutOfBoundsException("index="+index+", length="+length());
+    }
+    if (index >= mFileChars) {
+      return mAppendBuf[index - mFileChars];
+    }
+    int pageNo = index >>> PAGE_SHIFT;
+    CharBuffer page = (pageNo == mCurPageNo) ? mCurPage : getPage(pageNo);
+    if (page == null) {
       return 0;
     }
+    return page.get(index & (PAGE_CHARS - 1));
   }
 
   /**
    * Get a sub-sequence from <code>start</code> (inclusive) to <code>end</code>
-   * (exclusive) from the file.
+   * (exclusive) from the file.  A sub-sequence within a page shares the
+   * memory-mapped content; otherwise, the chars are copied.
    * @param start An inclusive starting index.
    * @param end An exclusive ending index.
+   * @throws IndexOutOfBoundsException
    */
   public CharSequence subSequence(int start, int end) {
-    try {
-      int len = end - start;
-      mRandAccFile.seek(start*2);
-      byte[] buf = new byte[len*2];
-      mRandAccFile.readFully(buf);
-      return ByteBuffer.wrap(buf).asCharBuffer();
-    } catch (IOException e) {
-      e.printStackTrace();
-      return null;
+    if (start < 0 || end > length() || start > end) {
+      throw new IndexOutOfBoundsException("start="+start+", end="+end+
+          ", length="+length());
+    }
+    int pageNo = start >>> PAGE_SHIFT;
+    if (end <= mFileChars && (end == start ||
+                              ((end - 1) >>> PAGE_SHIFT) == pageNo)) {
+      CharBuffer page = getPage(pageNo);
+      if (page == null) {
+        return null;
+      }
+      CharBuffer cb = page.duplicate();
+      int base = pageNo << PAGE_SHIFT;
+      cb.limit(end - base);
+      cb.position(start - base);
+      return cb.slice();
     }
+    char[] buf = new char[end - start];
+    int n = 0;
+    for (int i = start; i < end && i < mFileChars; ) {
+      pageNo = i >>> PAGE_SHIFT;
+      CharBuffer page = getPage(pageNo);
+      if (page == null) {
+        return null;
+      }
+      CharBuffer cb = page.duplicate();
+      int base = pageNo << PAGE_SHIFT;
+      int len = Math.min(end, base + cb.limit()) - i;
+      cb.position(i - base);
+      cb.get(buf, n, len);
+      n += len;
+      i += len;
+    }
+    if (n < buf.length) {
+      System.arraycopy(mAppendBuf, Math.max(start - mFileChars, 0), buf, n,
+          buf.length - n);
+    }
+    return CharBuffer.wrap(buf);
   }
 
   /**
@@ -87,12 +158,10 @@ public class FileCharSequence implements CharSequence, Appendable, Closeable {
    * @param csq A char sequence.
    */
   public Appendable append(CharSequence csq) throws IOException {
-    if (mRandAccFile == null) {
-      throw new IOException("File is closed");
+    if (csq == null) {
+      csq = "null";
     }
-    mRandAccFile.seek(mRandAccFile.length());
-    mRandAccFile.writeChars(csq.toString());
-    return this;
+    return append(csq, 0, csq.length());
   }
 
   /**
@@ -107,8 +176,27 @@ public class FileCharSequence implements CharSequence, Appendable, Closeable {
     if (mRandAccFile == null) {
       throw new IOException("File is closed");
     }
-    mRandAccFile.seek(mRandAccFile.length());
-    mRandAccFile.writeChars(csq.subSequence(start, end).toString());
+    if (csq == null) {
+      csq = "null";
+    }
+    if (mAppendBuf == null) {
+      mAppendBuf = new char[APPEND_CHARS];
+    }
+    while (start < end) {
+      if (mAppendLen == APPEND_CHARS) {
+        flush();
+      }
+      int n = Math.min(end - start, APPEND_CHARS - mAppendLen);
+      if (csq instanceof String) {
+        ((String) csq).getChars(start, start + n, mAppendBuf, mAppendLen);
+      } else {
+        for (int i = 0; i < n; i++) {
+          mAppendBuf[mAppendLen + i] = csq.charAt(start + i);
+        }
+      }
+      mAppendLen += n;
+      start += n;
+    }
     return this;
   }
 
@@ -120,13 +208,53 @@ public class FileCharSequence implements CharSequence, Appendable, Closeable {
     if (mRandAccFile == null) {
       throw new IOException("File is closed");
     }
-    mRandAccFile.seek(mRandAccFile.length());
-    mRandAccFile.writeChar(c);
+    if (mAppendBuf == null) {
+      mAppendBuf = new char[APPEND_CHARS];
+    } else if (mAppendLen == APPEND_CHARS) {
+      flush();
+    }
+    mAppendBuf[mAppendLen++] = c;
     return this;
   }
 
   /**
-   * Map the 16-bit Unicode file content to memory.
+   * Write the buffered chars to the file.
+   * @throws IOException
+   */
+  public void flush() throws IOException {
+    if (mAppendLen == 0) {
+      return;
+    }
+    if (mRandAccFile == null) {
+      throw new IOException("File is closed");
+    }
+    if (mWriteBuf == null) {
+      mWriteBuf = ByteBuffer.allocate(APPEND_CHARS * 2);
+    }
+    ByteBuffer bb = mWriteBuf;
+    bb.clear();
+    bb.asCharBuffer().put(mAppendBuf, 0, mAppendLen);
+    bb.limit(mAppendLen * 2);
+    long pos = (long) mFileChars * 2;
+    while (bb.hasRemaining()) {
+      pos += mChannel.write(bb, pos);
+    }
+    // The last page may have been mapped partially; remap it when needed.
+    int lastPageNo = (mFileChars - 1) >>> PAGE_SHIFT;
+    if (mFileChars > 0 && (mFileChars & (PAGE_CHARS - 1)) != 0) {
+      mPages.remove(lastPageNo);
+      if (mCurPageNo == lastPageNo) {
+        mCurPageNo = -1;
+        mCurPage = null;
+      }
+    }
+    mFileChars += mAppendLen;
+    mAppendLen = 0;
+  }
+
+  /**
+   * Map the 16-bit Unicode file content to memory.  Any buffered chars are
+   * written to the file first.
    * @param mode
    * @param pos Starting position in the unit of char.
    * @param size Number of characters
@@ -138,7 +266,8 @@ public class FileCharSequence implements CharSequence, Appendable, Closeable {
     if (mRandAccFile == null) {
       throw new IOException("File is closed");
     }
-    return mRandAccFile.getChannel().map(mode, pos*2, size*2).asCharBuffer();
+    flush();
+    return mChannel.map(mode, pos*2, size*2).asCharBuffer();
   }
 
   /**
@@ -146,8 +275,16 @@ public class FileCharSequence implements CharSequence, Appendable, Closeable {
    */
   public void close() throws IOException {
     if (mRandAccFile != null) {
-      mRandAccFile.close();
-      mRandAccFile = null;
+      try {
+        flush();
+      } finally {
+        mRandAccFile.close();
+        mRandAccFile = null;
+        mChannel = null;
+        mPages.clear();
+        mCurPageNo = -1;
+        mCurPage = null;
+      }
     }
     mFile.finish();
   }
@@ -166,4 +303,26 @@ public class FileCharSequence implements CharSequence, Appendable, Closeable {
       return subSequence(0, len).toString();
     }
   }
+
+  // Get a memory-mapped page from the LRU or map it.
+  private CharBuffer getPage(int pageNo) {
+    CharBuffer page = mPages.get(pageNo);
+    if (page == null) {
+      if (mChannel == null) {
+        throw new IllegalStateException("File is closed");
+      }
+      long start = (long) pageNo << PAGE_SHIFT;
+      int len = (int) Math.min(PAGE_CHARS, mFileChars - start);
+      try {
+        page = mChannel.map(MapMode.READ_ONLY, start * 2, len * 2).asCharBuffer();
+      } catch (IOException e) {
+        e.printStackTrace();
+        return null;
+      }
+      mPages.put(pageNo, page);
+    }
+    mCurPageNo = pageNo;
+    mCurPage = page;
+    return page;
+  }
 }
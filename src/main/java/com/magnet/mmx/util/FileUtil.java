@@ -22,11 +22,17 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 
 /**
  * File Utilities to encode binary file to base64 file, or vice versa, convert
@@ -36,6 +42,8 @@ import java.nio.channels.FileChannel.MapMode;
  */
 public class FileUtil {
   private final static String TAG = "FileUtil";
+  private final static Charset UTF8 = Charset.forName("UTF-8");
+  private final static int XML_BUF_CHARS = 8192;
 
   /**
    * Encode a binary file to a base64 UTF-8 file.
@@ -48,21 +56,25 @@ public class FileUtil {
     FileOutputStream fos = null;
     try {
       int total = 0;
-      ByteBuffer ibbuf = ByteBuffer.allocate(8190); // must be multiple of 3
-      ByteBuffer obbuf = ByteBuffer.allocate((ibbuf.capacity()+2)/3*4);  // must be 3:4 ratio
+      ByteBuffer ibbuf = ByteBuffer.allocate(8190);
+      ByteBuffer obbuf = ByteBuffer.allocate(8192);
+      Base64Codec.Encoder encoder = new Base64Codec.Encoder();
       fis = new FileInputStream(src);
       FileChannel fic = fis.getChannel();
       fos = new FileOutputStream(dst);
-      while (fic.read(ibbuf) > 0) {
-        ibbuf.limit(ibbuf.position());
-        ibbuf.rewind();
-        Base64.encode(ibbuf, obbuf);
-        fos.write(obbuf.array(), 0, obbuf.position());
-        total += obbuf.position();
-        ibbuf.clear();
-        obbuf.clear();
-      }
-      return total;
+      boolean eof;
+      do {
+        eof = (fic.read(ibbuf) < 0);
+        ibbuf.flip();
+        while (!encoder.encode(ibbuf, obbuf, eof)) {
+          fos.write(obbuf.array(), 0, obbuf.position());
+          total += obbuf.position();
+          obbuf.clear();
+        }
+        ibbuf.compact();
+      } while (!eof);
+      fos.write(obbuf.array(), 0, obbuf.position());
+      return total + obbuf.position();
     } finally {
       if (fos != null) {
         fos.close();
@@ -83,15 +95,30 @@ public class FileUtil {
     FileInputStream fis = null;
     FileOutputStream fos = null;
     try {
-      int n, total = 0;
-      byte[] ibuf = new byte[8192];       // must be multiple of 4
+      int total = 0;
+      ByteBuffer ibbuf = ByteBuffer.allocate(8192);
+      ByteBuffer obbuf = ByteBuffer.allocate(6144);
+      Base64Codec.Decoder decoder = new Base64Codec.Decoder();
       fis = new FileInputStream(src);
+      FileChannel fic = fis.getChannel();
       fos = new FileOutputStream(dst);
-      while ((n = fis.read(ibuf, 0, ibuf.length)) > 0) {
-        byte[] obuf = Base64.decode(ibuf, 0, n, Base64.NO_OPTIONS);
-        fos.write(obuf, 0, obuf.length);
-        total += obuf.length;
-      }
+      boolean eof;
+      do {
+        eof = (fic.read(ibbuf) < 0);
+        ibbuf.flip();
+        boolean done;
+        do {
+          try {
+            done = decoder.decode(ibbuf, obbuf, eof);
+          } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+          }
+          fos.write(obbuf.array(), 0, obbuf.position());
+          total += obbuf.position();
+          obbuf.clear();
+        } while (!done);
+        ibbuf.compact();
+      } while (!eof);
       return total;
     } finally {
       if (fos != null) {
@@ -103,6 +130,52 @@ public class FileUtil {
     }
   }
 
+  /**
+   * Compress a file to another file.
+   * @param src The uncompressed file.
+   * @param dst The file to hold the compressed data.
+   * @param compressor The compressor, e.g. {@link Compressor#DEFAULT}.
+   * @return The compressed content length.
+   * @throws IOException
+   */
+  public static long compressFile(File src, File dst, Compressor compressor)
+                                  throws IOException {
+    FileInputStream fis = new FileInputStream(src);
+    try {
+      FileOutputStream fos = new FileOutputStream(dst);
+      try {
+        return compressor.compress(fis, fos);
+      } finally {
+        fos.close();
+      }
+    } finally {
+      fis.close();
+    }
+  }
+
+  /**
+   * Decompress a file to another file.
+   * @param src The compressed file.
+   * @param dst The file to hold the uncompressed data.
+   * @param compressor The compressor, e.g. {@link Compressor#DEFAULT}.
+   * @return The uncompressed content length.
+   * @throws IOException Error in I/O, or the data is corrupted.
+   */
+  public static long decompressFile(File src, File dst, Compressor compressor)
+                                    throws IOException {
+    FileInputStream fis = new FileInputStream(src);
+    try {
+      FileOutputStream fos = new FileOutputStream(dst);
+      try {
+        return compressor.decompress(fis, fos);
+      } finally {
+        fos.close();
+      }
+    } finally {
+      fis.close();
+    }
+  }
+
   /**
    * Copy a UTF-8 file content into an appendable object (e.g. StringBuilder.)
    * @param file A text source file.
@@ -256,28 +329,71 @@ public class FileUtil {
 
   /**
    * @hide
-   * Encode the content in <code>file</code> for XML using memory-mapped I/O and
-   * append the encoded content to the XML StringBuilder.  If the file content
-   * is binary, it will be base64 encoded; otherwise, it will be XML escaped.
-   * Note, the caller is responsible to dispose the <code>file</code>.
-   * @param file
+   * Encode the content in <code>file</code> for XML and append the encoded
+   * content to the XML StringBuilder.  If the file content is binary, it will
+   * be base64 encoded; otherwise, it will be XML escaped.  The content is
+   * streamed through a fixed buffer without any temporary file.  Note, the
+   * caller is responsible to dispose the <code>file</code>.
+   * @param file A UTF-8 or binary file.
    * @param xsb A lazy string builder
-   * @return
+   * @return Number of encoded characters appended, or -1 for error.
    */
   public static int encodeForXml(DisposableFile file, Appendable xsb) {
-    CharBuffer cb = encodeForXml(file);
-    if (cb == null) {
-      return -1;
-    }
+    FileInputStream fis = null;
     try {
-      xsb.append(cb);
-      return cb.limit();
+      fis = new FileInputStream(file);
+      return encodeFile(fis.getChannel(), file.isBinary(), true, xsb);
     } catch (IOException e) {
       e.printStackTrace();
       return -1;
+    } finally {
+      if (fis != null) {
+        try {
+          fis.close();
+        } catch (IOException e) {
+          // Ignored.
+        }
+      }
     }
   }
-  
+
+  /**
+   * @hide
+   * Escape the text from <code>reader</code> for XML in a single pass through
+   * a fixed buffer and append the escaped text to the XML StringBuilder.  The
+   * reader is not closed.
+   * @param reader A text reader.
+   * @param xsb A lazy string builder.
+   * @return Number of escaped characters appended.
+   * @throws IOException
+   */
+  public static int encodeForXml(Reader reader, Appendable xsb)
+                                  throws IOException {
+    XmlEscaper escaper = new XmlEscaper(xsb, true);
+    char[] buf = new char[XML_BUF_CHARS];
+    int n;
+    while ((n = reader.read(buf)) >= 0) {
+      escaper.write(buf, 0, n);
+    }
+    return escaper.finish();
+  }
+
+  /**
+   * @hide
+   * Decode the UTF-8 content from <code>channel</code>, escape it for XML in
+   * a single pass through fixed buffers and append the escaped text to the
+   * XML StringBuilder.  Malformed input is replaced.  The channel is not
+   * closed.
+   * @param channel A channel of UTF-8 content.
+   * @param xsb A lazy string builder.
+   * @return Number of escaped characters appended.
+   * @throws IOException
+   */
+  public static int encodeForXml(ReadableByteChannel channel, Appendable xsb)
+                                  throws IOException {
+    return encodeFile(channel, false, true, xsb);
+  }
+
   /**
    * @hide
    * Encode the content in <code>file</code> for XML using memory-mapped I/O.
@@ -301,46 +417,51 @@ public class FileUtil {
    * @return Memory-mapped encoded content.
    */
   public static CharBuffer encodeFile(DisposableFile file, boolean xmlEsc) {
-    File outfile = null;
+    FileInputStream fis = null;
+    FileCharSequence fcsq = null;
     try {
-      outfile = File.createTempFile("tmpEncXmlFile", ".dat");
-      outfile.deleteOnExit();
-      if (!file.isBinary()) {
-        copyToCharsFile(file, outfile, xmlEsc ? Converter.XmlEncoder : null);
-      } else {
-        Base64.encodeFileToCharsFile(file.getPath(), outfile.getPath());
-      }
+      File tmpfile = File.createTempFile("tmpEncXmlFile", ".dat");
+      tmpfile.deleteOnExit();
+      fcsq = new FileCharSequence(new DisposableTextFile(tmpfile.getPath(), true));
+      fis = new FileInputStream(file);
+      encodeFile(fis.getChannel(), file.isBinary(), xmlEsc, fcsq);
       // Memory-map the chars file.
-      CharBuffer cb = mmapCharsFile(outfile);
-      return cb;
+      return fcsq.map(MapMode.READ_ONLY, 0, fcsq.length());
     } catch (IOException e) {
       e.printStackTrace();
       return null;
     } finally {
-      if (outfile != null) {
-        outfile.delete();
+      if (fis != null) {
+        try {
+          fis.close();
+        } catch (IOException e) {
+          // Ignored.
+        }
+      }
+      if (fcsq != null) {
+        try {
+          fcsq.close();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
       }
     }
   }
 
   /**
    * @hide
-   * Encode large <code>cs</code> to XML-safe content using temporary
-   * memory-mapped I/O and append the encoded content to a lazy XML
-   * StringBuilder.
+   * Encode <code>cs</code> to XML-safe content in a single pass and append
+   * the encoded content to a lazy XML StringBuilder.
    * @param cs A large text char sequence.
    * @param xsb A lazy string builder.
-   * @return
+   * @return Number of escaped characters appended, or -1 for error.
    * @see MMXXmlStringBuilder
    */
   public static int encodeForXml(CharSequence cs, Appendable xsb) {
-    CharBuffer cb = encodeForXml(cs);
-    if (cb == null) {
-      return -1;
-    }
     try {
-      xsb.append(cb);
-      return cb.limit();
+      XmlEscaper escaper = new XmlEscaper(xsb, true);
+      escaper.write(cs);
+      return escaper.finish();
     } catch (IOException e) {
       e.printStackTrace();
       return -1;
@@ -360,18 +481,11 @@ public class FileUtil {
       File tmpfile = File.createTempFile("tmpEncXmlChars", ".dat");
       tmpfile.deleteOnExit();
       fcsq = new FileCharSequence(new DisposableTextFile(tmpfile.getPath(), true));
-      int total = 0;
-      int len = cs.length();
-      while (len > 0) {
-        int n = Math.min(8192, len);
-        fcsq.append(Converter.XmlEncoder.convert(
-            cs.subSequence(total, total+n)).toString());
-        total += n;
-        len -= n;
-      }
+      XmlEscaper escaper = new XmlEscaper(fcsq, true);
+      escaper.write(cs);
+      escaper.finish();
       // Memory-map the chars file.
-      CharBuffer cb = fcsq.map(MapMode.READ_ONLY, 0, total);
-      return cb;
+      return fcsq.map(MapMode.READ_ONLY, 0, fcsq.length());
     } catch (IOException e) {
       e.printStackTrace();
       return null;
@@ -386,18 +500,117 @@ public class FileUtil {
     }
   }
 
-  // Memory map a chars file that it can be used as in-memory CharSequence.
-  private static CharBuffer mmapCharsFile(File file) throws IOException {
-    FileInputStream fis = null;
-    try {
-      fis = new FileInputStream(file);
-      FileChannel fch = fis.getChannel();
-      MappedByteBuffer bbuf = fch.map(MapMode.READ_ONLY, 0, file.length());
-      return bbuf.asCharBuffer();
-    } finally {
-      if (fis != null) {
-        fis.close();
+  // Stream the content from a channel to an appendable: base64 encode the
+  // binary content, or decode the UTF-8 content with optional XML escape.
+  private static int encodeFile(ReadableByteChannel channel, boolean binary,
+                      boolean xmlEsc, Appendable dst) throws IOException {
+    if (binary) {
+      ByteBuffer ibbuf = ByteBuffer.allocate(8190);
+      CharBuffer ocbuf = CharBuffer.allocate(XML_BUF_CHARS);
+      Base64Codec.Encoder encoder = new Base64Codec.Encoder();
+      int total = 0;
+      boolean eof;
+      do {
+        eof = (channel.read(ibbuf) < 0);
+        ibbuf.flip();
+        while (!encoder.encode(ibbuf, ocbuf, eof)) {
+          appendChars(dst, ocbuf.array(), 0, ocbuf.position());
+          total += ocbuf.position();
+          ocbuf.clear();
+        }
+        ibbuf.compact();
+      } while (!eof);
+      appendChars(dst, ocbuf.array(), 0, ocbuf.position());
+      return total + ocbuf.position();
+    }
+
+    XmlEscaper escaper = new XmlEscaper(dst, xmlEsc);
+    CharsetDecoder decoder = UTF8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    ByteBuffer bb = ByteBuffer.allocate(XML_BUF_CHARS);
+    CharBuffer cb = CharBuffer.allocate(XML_BUF_CHARS);
+    CoderResult cr;
+    boolean eof;
+    do {
+      eof = (channel.read(bb) < 0);
+      bb.flip();
+      do {
+        cr = decoder.decode(bb, cb, eof);
+        escaper.write(cb.array(), 0, cb.position());
+        cb.clear();
+      } while (cr.isOverflow());
+      bb.compact();
+    } while (!eof);
+    do {
+      cr = decoder.flush(cb);
+      escaper.write(cb.array(), 0, cb.position());
+      cb.clear();
+    } while (cr.isOverflow());
+    return escaper.finish();
+  }
+
+  // Append chars to an appendable without creating an intermediate String.
+  static void appendChars(Appendable dst, char[] buf, int offset, int len)
+                          throws IOException {
+    if (dst instanceof StringBuilder) {
+      ((StringBuilder) dst).append(buf, offset, len);
+    } else if (dst instanceof Writer) {
+      ((Writer) dst).write(buf, offset, len);
+    } else if (dst instanceof StringBuffer) {
+      ((StringBuffer) dst).append(buf, offset, len);
+    } else {
+      dst.append(CharBuffer.wrap(buf, offset, len));
+    }
+  }
+
+  // A single-pass XML escaper with a fixed output buffer.
+  private static class XmlEscaper {
+    private final Appendable mDst;
+    private final boolean mEscape;
+    private final CharBuffer mOut = CharBuffer.allocate(XML_BUF_CHARS);
+    private int mTotal;
+
+    XmlEscaper(Appendable dst, boolean escape) {
+      mDst = dst;
+      mEscape = escape;
+    }
+
+    void write(CharSequence cs) throws IOException {
+      if (!mEscape) {
+        flush();
+        mDst.append(cs);
+        mTotal += cs.length();
+        return;
       }
+      for (int i = 0, len = cs.length();
+           (i = Utils.escapeForXML(cs, i, len, mOut)) < len; ) {
+        flush();
+      }
+    }
+
+    void write(char[] in, int offset, int len) throws IOException {
+      if (!mEscape) {
+        flush();
+        appendChars(mDst, in, offset, len);
+        mTotal += len;
+        return;
+      }
+      for (int i = offset, end = offset + len;
+           (i = Utils.escapeForXML(in, i, end, mOut)) < end; ) {
+        flush();
+      }
+    }
+
+    void flush() throws IOException {
+      appendChars(mDst, mOut.array(), 0, mOut.position());
+      mTotal += mOut.position();
+      mOut.clear();
+    }
+
+    int finish() throws IOException {
+      flush();
+      return mTotal;
     }
   }
 }
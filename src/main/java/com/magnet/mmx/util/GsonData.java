@@ -17,15 +17,20 @@ package com.magnet.mmx.util;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.magnet.mmx.protocol.ProtocolAdapters;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.Date;
 import java.util.Map;
 
@@ -47,7 +52,32 @@ import java.util.Map;
  */
 public class GsonData {
   public final static String CONTENT_TYPE_JSON = "application/json";
+  public final static Charset UTF8 = Charset.forName("UTF-8");
   
+  /**
+   * The streaming adapter for Date in ISO-8601 UTC format.  An invalid date
+   * is read as null.
+   */
+  public final static TypeAdapter<Date> DATE_ADAPTER = new TypeAdapter<Date>() {
+    @Override
+    public void write(JsonWriter out, Date date) throws IOException {
+      if (date == null) {
+        out.nullValue();
+      } else {
+        out.value(TimeUtil.toString(date));
+      }
+    }
+
+    @Override
+    public Date read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      return TimeUtil.toDate(in.nextString());
+    }
+  };
+
   private static Gson sGson;
 
   static {
@@ -55,8 +85,8 @@ public class GsonData {
 //    sDateTimeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
 //    sDateTimeFormat.setTimeZone(utc);
     GsonBuilder builder = new GsonBuilder();
-    builder.registerTypeAdapter(Date.class, new DateSerializer());
-    builder.registerTypeAdapter(Date.class, new DateDeserializer());
+    builder.registerTypeAdapter(Date.class, DATE_ADAPTER);
+    builder.registerTypeAdapterFactory(ProtocolAdapters.FACTORY);
     sGson = builder.create();
   }
 
@@ -68,27 +98,6 @@ public class GsonData {
     return sGson;
   }
   
-  private static class DateSerializer implements JsonSerializer<Date> {
-    @Override
-    public JsonElement serialize(Date date, Type typeOfDate,
-        JsonSerializationContext context) {
-      return new JsonPrimitive(TimeUtil.toString(date));
-    }
-  }
-
-  private static class DateDeserializer implements JsonDeserializer<Date> {
-    @Override
-    public Date deserialize(JsonElement json, Type typeOfT,
-      JsonDeserializationContext context) throws JsonParseException {
-      String datestr = json.getAsJsonPrimitive().getAsString();
-      Date date = TimeUtil.toDate(datestr);
-      if (date == null) {
-        new JsonParseException("Invalid date: "+datestr);
-      }
-      return date;
-    }
-  }
-
   /**
    * Convert a Map into an object of class <code>clz</code>.  Note, this method
    * is just a convenient utility and not designed to handle large object.
@@ -99,4 +108,52 @@ public class GsonData {
   public static <T> T fromMap(Map<String, ? super Object> map, Class<T> clz) {
     return (map == null) ? null : sGson.fromJson(sGson.toJson(map), clz);
   }
+
+  /**
+   * Write an object as JSON to an Appendable (e.g. a Writer or a
+   * StringBuilder) without building an intermediate String.
+   * @param obj An object to be serialized.
+   * @param writer A writer or a string builder.
+   * @throws com.google.gson.JsonIOException Error in writing.
+   */
+  public static void toJson(Object obj, Appendable writer) {
+    sGson.toJson(obj, writer);
+  }
+
+  /**
+   * Write an object as JSON to an output stream in the specified character
+   * set.  The stream is flushed but not closed.
+   * @param obj An object to be serialized.
+   * @param os An output stream.
+   * @param charset The character set, typically {@link #UTF8}.
+   * @throws IOException Error in writing.
+   */
+  public static void toJson(Object obj, OutputStream os, Charset charset)
+                              throws IOException {
+    Writer writer = new OutputStreamWriter(os, charset);
+    sGson.toJson(obj, writer);
+    writer.flush();
+  }
+
+  /**
+   * Read an object of class <code>clz</code> from a JSON reader.  The reader
+   * is not closed.
+   * @param reader A reader with JSON content.
+   * @param clz The class of the object.
+   * @return An object of a specified class, or null if the reader is empty.
+   */
+  public static <T> T fromJson(Reader reader, Class<T> clz) {
+    return sGson.fromJson(reader, clz);
+  }
+
+  /**
+   * Read an object of class <code>clz</code> from a UTF-8 JSON input stream.
+   * The stream is not closed.
+   * @param is An input stream with UTF-8 JSON content.
+   * @param clz The class of the object.
+   * @return An object of a specified class, or null if the stream is empty.
+   */
+  public static <T> T fromJson(InputStream is, Class<T> clz) {
+    return sGson.fromJson(new InputStreamReader(is, UTF8), clz);
+  }
 }
@@ -0,0 +1,321 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.NoSuchAlgorithmException;
+import java.security.SignatureException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * HMAC signing and verification with a bounded cache of initialized
+ * {@link Mac} instances.  Each thread keeps one LRU cache shared by all
+ * engines and keyed by the algorithm and the key, so signing with a cached key
+ * needs no lookup of the provider and no key setup.  The cache holds up to the
+ * largest <code>maxKeys</code> of the engines, so a pooled thread never
+ * retains more keys however many engines come and go.  The methods writing into a caller-provided
+ * array and the <code>verify</code> methods do not allocate once the key is
+ * cached.  String keys and data are encoded in UTF-8.
+ */
+public class HmacEngine {
+  public final static String HMAC_SHA1 = "HmacSHA1";
+  public final static String HMAC_SHA256 = "HmacSHA256";
+  /**
+   * The default number of keys cached per thread.
+   */
+  public final static int DEFAULT_MAX_KEYS = 64;
+
+  /**
+   * A shared HMAC-SHA1 engine.
+   */
+  public final static HmacEngine SHA1 = new HmacEngine(HMAC_SHA1, DEFAULT_MAX_KEYS);
+  /**
+   * A shared HMAC-SHA256 engine.
+   */
+  public final static HmacEngine SHA256 = new HmacEngine(HMAC_SHA256, DEFAULT_MAX_KEYS);
+
+  private final static Charset UTF8 = Charset.forName("UTF-8");
+
+  private static class MacKey {
+    private final String mAlgorithm;
+    private final String mKey;
+
+    MacKey(String algorithm, String key) {
+      mAlgorithm = algorithm;
+      mKey = key;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof MacKey)) {
+        return false;
+      }
+      MacKey other = (MacKey) obj;
+      return mAlgorithm.equals(other.mAlgorithm) && mKey.equals(other.mKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return mAlgorithm.hashCode() * 31 + mKey.hashCode();
+    }
+  }
+
+  // The per-thread state: the initialized Mac by algorithm and key in the
+  // access order, and a scratch buffer for verification.
+  private static class MacCache extends LinkedHashMap<MacKey, Mac> {
+    private static final long serialVersionUID = 1L;
+    private byte[] mScratch = new byte[32];
+
+    MacCache() {
+      super(16, 0.75f, true);
+    }
+
+    byte[] getScratch(int len) {
+      if (mScratch.length < len) {
+        mScratch = new byte[len];
+      }
+      return mScratch;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<MacKey, Mac> eldest) {
+      return size() > sMaxKeys;
+    }
+  }
+
+  private static volatile int sMaxKeys;
+  private final static ThreadLocal<MacCache> sCache =
+      new ThreadLocal<MacCache>() {
+    @Override
+    protected MacCache initialValue() {
+      return new MacCache();
+    }
+  };
+
+  private final String mAlgorithm;
+  private final int mMacLength;
+
+  /**
+   * Constructor.
+   * @param algorithm The HMAC algorithm, e.g. {@link #HMAC_SHA256}.
+   * @param maxKeys The minimum number of keys cached per thread.
+   * @throws IllegalArgumentException The algorithm is not available or
+   *                                  maxKeys is invalid.
+   */
+  public HmacEngine(String algorithm, int maxKeys) {
+    if (maxKeys <= 0) {
+      throw new IllegalArgumentException("Invalid maxKeys: "+maxKeys);
+    }
+    try {
+      mMacLength = Mac.getInstance(algorithm).getMacLength();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalArgumentException("Unsupported algorithm: "+algorithm, e);
+    }
+    mAlgorithm = algorithm;
+    synchronized (HmacEngine.class) {
+      sMaxKeys = Math.max(sMaxKeys, maxKeys);
+    }
+  }
+
+  /**
+   * Get the HMAC algorithm.
+   * @return The algorithm name.
+   */
+  public String getAlgorithm() {
+    return mAlgorithm;
+  }
+
+  /**
+   * Get the length of the signature in bytes.
+   * @return The signature length.
+   */
+  public int getMacLength() {
+    return mMacLength;
+  }
+
+  /**
+   * Sign the data and return the signature in base64.
+   * @param key The secret key.
+   * @param data The data in UTF-8.
+   * @return A base64 encoded signature.
+   * @throws SignatureException
+   */
+  public String signToString(String key, String data) throws SignatureException {
+    return Base64.encodeBytes(sign(key, data.getBytes(UTF8)));
+  }
+
+  /**
+   * Sign the data.
+   * @param key The secret key.
+   * @param data The data.
+   * @return The signature.
+   * @throws SignatureException
+   */
+  public byte[] sign(String key, byte[] data) throws SignatureException {
+    byte[] sig = new byte[mMacLength];
+    sign(key, data, 0, data.length, sig, 0);
+    return sig;
+  }
+
+  /**
+   * Sign the remaining data in the buffer.  The buffer position is advanced
+   * to its limit.
+   * @param key The secret key.
+   * @param data The data.
+   * @return The signature.
+   * @throws SignatureException
+   */
+  public byte[] sign(String key, ByteBuffer data) throws SignatureException {
+    byte[] sig = new byte[mMacLength];
+    sign(key, data, sig, 0);
+    return sig;
+  }
+
+  /**
+   * Sign a range of the data into a caller-provided array.
+   * @param key The secret key.
+   * @param data The data.
+   * @param offset The offset of the data.
+   * @param len The length of the data.
+   * @param sig The array for the signature.
+   * @param sigOffset The offset in <code>sig</code>.
+   * @return The signature length.
+   * @throws SignatureException
+   */
+  public int sign(String key, byte[] data, int offset, int len, byte[] sig,
+                   int sigOffset) throws SignatureException {
+    Mac mac = getMac(sCache.get(), key);
+    try {
+      mac.update(data, offset, len);
+      mac.doFinal(sig, sigOffset);
+      return mMacLength;
+    } catch (Exception e) {
+      mac.reset();
+      throw new SignatureException("Failed to generate "+mAlgorithm+" : "+
+          e.getMessage());
+    }
+  }
+
+  /**
+   * Sign the remaining data in the buffer into a caller-provided array.  The
+   * buffer position is advanced to its limit.
+   * @param key The secret key.
+   * @param data The data.
+   * @param sig The array for the signature.
+   * @param sigOffset The offset in <code>sig</code>.
+   * @return The signature length.
+   * @throws SignatureException
+   */
+  public int sign(String key, ByteBuffer data, byte[] sig, int sigOffset)
+                  throws SignatureException {
+    Mac mac = getMac(sCache.get(), key);
+    try {
+      mac.update(data);
+      mac.doFinal(sig, sigOffset);
+      return mMacLength;
+    } catch (Exception e) {
+      mac.reset();
+      throw new SignatureException("Failed to generate "+mAlgorithm+" : "+
+          e.getMessage());
+    }
+  }
+
+  /**
+   * Verify a base64 encoded signature of the data.
+   * @param key The secret key.
+   * @param data The data in UTF-8.
+   * @param sig The base64 encoded signature.
+   * @return true if the signature matches; otherwise, false.
+   * @throws SignatureException
+   */
+  public boolean verify(String key, String data, String sig)
+                        throws SignatureException {
+    byte[] sigBytes;
+    try {
+      sigBytes = Base64.decode(sig);
+    } catch (Exception e) {
+      return false;
+    }
+    byte[] bytes = data.getBytes(UTF8);
+    return verify(key, bytes, 0, bytes.length, sigBytes);
+  }
+
+  /**
+   * Verify the signature of a range of the data.  The comparison takes the
+   * same time wherever the signatures differ.
+   * @param key The secret key.
+   * @param data The data.
+   * @param offset The offset of the data.
+   * @param len The length of the data.
+   * @param sig The signature to be verified.
+   * @return true if the signature matches; otherwise, false.
+   * @throws SignatureException
+   */
+  public boolean verify(String key, byte[] data, int offset, int len,
+                         byte[] sig) throws SignatureException {
+    byte[] scratch = sCache.get().getScratch(mMacLength);
+    sign(key, data, offset, len, scratch, 0);
+    return isEqual(scratch, mMacLength, sig);
+  }
+
+  /**
+   * Verify the signature of the remaining data in the buffer.  The buffer
+   * position is advanced to its limit.
+   * @param key The secret key.
+   * @param data The data.
+   * @param sig The signature to be verified.
+   * @return true if the signature matches; otherwise, false.
+   * @throws SignatureException
+   */
+  public boolean verify(String key, ByteBuffer data, byte[] sig)
+                        throws SignatureException {
+    byte[] scratch = sCache.get().getScratch(mMacLength);
+    sign(key, data, scratch, 0);
+    return isEqual(scratch, mMacLength, sig);
+  }
+
+  private Mac getMac(MacCache cache, String key) throws SignatureException {
+    MacKey cacheKey = new MacKey(mAlgorithm, key);
+    Mac mac = cache.get(cacheKey);
+    if (mac == null) {
+      try {
+        mac = Mac.getInstance(mAlgorithm);
+        mac.init(new SecretKeySpec(key.getBytes(UTF8), mAlgorithm));
+      } catch (Exception e) {
+        throw new SignatureException("Failed to generate "+mAlgorithm+" : "+
+            e.getMessage());
+      }
+      cache.put(cacheKey, mac);
+    }
+    return mac;
+  }
+
+  private static boolean isEqual(byte[] expected, int len, byte[] actual) {
+    if (actual == null || actual.length != len) {
+      return false;
+    }
+    int diff = 0;
+    for (int i = 0; i < len; i++) {
+      diff |= expected[i] ^ actual[i];
+    }
+    return diff == 0;
+  }
+}
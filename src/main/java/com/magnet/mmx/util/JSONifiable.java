@@ -15,6 +15,10 @@
 package com.magnet.mmx.util;
 
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
 import com.magnet.mmx.util.GsonData;
 
 public abstract class JSONifiable {
@@ -22,4 +26,25 @@ public abstract class JSONifiable {
 	public String toJson() {
     return GsonData.getGson().toJson(this);
   }
+
+  /**
+   * Write the JSON representation to an Appendable (e.g. a Writer or a
+   * StringBuilder) without building an intermediate String.
+   * @param writer A writer or a string builder.
+   * @throws com.google.gson.JsonIOException Error in writing.
+   */
+  public void writeJson(Appendable writer) {
+    GsonData.toJson(this, writer);
+  }
+
+  /**
+   * Write the JSON representation to an output stream in the specified
+   * character set.  The stream is flushed but not closed.
+   * @param os An output stream.
+   * @param charset The character set, typically UTF-8.
+   * @throws IOException Error in writing.
+   */
+  public void writeJson(OutputStream os, Charset charset) throws IOException {
+    GsonData.toJson(this, os, charset);
+  }
 }
@@ -0,0 +1,184 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * @hide
+ * A pull-style iterator over the elements of an array property in a JSON
+ * object.  The elements are decoded one at a time, so an arbitrarily large
+ * array can be processed with bounded memory.  The other properties of the
+ * object are passed to {@link #readProperty(String, JsonReader)}; those in
+ * front of the array are available before the first element, those after the
+ * array are available when {@link #hasNext()} returns false.
+ * <pre>
+ * JsonArrayIterator&lt;Item&gt; it = ...;
+ * try {
+ *   while (it.hasNext()) {
+ *     process(it.next());
+ *   }
+ * } finally {
+ *   it.close();
+ * }
+ * </pre>
+ * @param <T> The element type.
+ */
+public class JsonArrayIterator<T> implements Iterator<T>, Closeable {
+  private final JsonReader mReader;
+  private final String mArrayName;
+  private final TypeAdapter<T> mAdapter;
+  private boolean mStarted;
+  private boolean mInArray;
+  private boolean mDone;
+
+  /**
+   * Constructor.  Nothing is read until {@link #start()} or the first
+   * {@link #hasNext()}.
+   * @param reader A reader positioned at the beginning of a JSON object.
+   * @param arrayName The name of the array property.
+   * @param adapter The adapter to decode each element.
+   */
+  public JsonArrayIterator(Reader reader, String arrayName,
+                            TypeAdapter<T> adapter) {
+    mReader = new JsonReader(reader);
+    mArrayName = arrayName;
+    mAdapter = adapter;
+  }
+
+  /**
+   * Read the properties in front of the array.  It is called implicitly by
+   * {@link #hasNext()}; a subclass may call it at the end of its constructor
+   * to make the leading properties available immediately.
+   * @throws JsonIOException Error in reading.
+   * @throws JsonSyntaxException Malformed JSON.
+   */
+  protected void start() {
+    if (mStarted) {
+      return;
+    }
+    mStarted = true;
+    try {
+      if (mReader.peek() == JsonToken.NULL) {
+        mReader.nextNull();
+        mDone = true;
+        return;
+      }
+      mReader.beginObject();
+      advance();
+    } catch (IOException e) {
+      throw wrap(e);
+    }
+  }
+
+  /**
+   * Handle a property other than the array.  The default implementation skips
+   * the value.  An implementation must consume exactly one value.
+   * @param name The property name.
+   * @param reader The reader positioned at the property value.
+   * @throws IOException
+   */
+  protected void readProperty(String name, JsonReader reader)
+                              throws IOException {
+    reader.skipValue();
+  }
+
+  // Read the properties until the beginning of the array or the end of the
+  // object.
+  private void advance() throws IOException {
+    while (mReader.hasNext()) {
+      String name = mReader.nextName();
+      if (!name.equals(mArrayName)) {
+        readProperty(name, mReader);
+      } else if (mReader.peek() == JsonToken.NULL) {
+        mReader.nextNull();
+      } else {
+        mReader.beginArray();
+        mInArray = true;
+        return;
+      }
+    }
+    mReader.endObject();
+    mDone = true;
+  }
+
+  @Override
+  public boolean hasNext() {
+    start();
+    try {
+      while (!mDone) {
+        if (mInArray) {
+          if (mReader.hasNext()) {
+            return true;
+          }
+          mReader.endArray();
+          mInArray = false;
+        }
+        advance();
+      }
+      return false;
+    } catch (IOException e) {
+      throw wrap(e);
+    }
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    try {
+      return mAdapter.read(mReader);
+    } catch (IOException e) {
+      throw wrap(e);
+    }
+  }
+
+  /**
+   * Not supported.
+   */
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Close the underlying reader.
+   */
+  @Override
+  public void close() throws IOException {
+    mStarted = mDone = true;
+    mReader.close();
+  }
+
+  private static RuntimeException wrap(IOException e) {
+    if (e instanceof MalformedJsonException) {
+      return new JsonSyntaxException(e);
+    }
+    return new JsonIOException(e);
+  }
+}
@@ -0,0 +1,235 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import java.util.List;
+
+import com.magnet.mmx.protocol.Constants;
+
+/**
+ * @hide
+ * A single-pass validator for topic names, channel names and tags.  The
+ * character class of {@link TopicHelper#TOPIC_NAME_PATTERN_STRING} is
+ * precompiled into an ASCII lookup table, so the length, the characters and
+ * the path delimiters are checked in one loop without a regex matcher.
+ */
+public class NameValidator {
+  private final static char DELIM = TopicHelper.TOPIC_DELIM;
+
+  // Flags of the ASCII lookup table.
+  private final static byte NAME_CHAR = 0x1;      // [a-zA-Z0-9_.-]
+  private final static byte DELIM_CHAR = 0x2;     // '/'
+
+  private final static byte[] ASCII = new byte[128];
+  static {
+    for (char c = 'a'; c <= 'z'; c++) {
+      ASCII[c] = NAME_CHAR;
+    }
+    for (char c = 'A'; c <= 'Z'; c++) {
+      ASCII[c] = NAME_CHAR;
+    }
+    for (char c = '0'; c <= '9'; c++) {
+      ASCII[c] = NAME_CHAR;
+    }
+    ASCII['_'] = NAME_CHAR;
+    ASCII['.'] = NAME_CHAR;
+    ASCII['-'] = NAME_CHAR;
+    ASCII[DELIM] = DELIM_CHAR;
+  }
+
+  // The results of a scan.
+  private final static int VALID = 0;
+  private final static int EMPTY = 1;
+  private final static int TOO_LONG = 2;
+  private final static int BAD_CHAR = 3;
+  private final static int HAS_DELIM = 4;
+
+  /**
+   * The validator for topic names.
+   */
+  public final static NameValidator TOPIC = new NameValidator("topic",
+      Constants.MMX_MAX_TOPIC_LEN);
+  /**
+   * The validator for channel names.
+   */
+  public final static NameValidator CHANNEL = new NameValidator("channel",
+      Constants.MMX_MAX_CHANNEL_LEN);
+  /**
+   * The validator for tags; a tag has no restriction on its characters.
+   */
+  public final static NameValidator TAG = new NameValidator("tag",
+      Constants.MMX_MAX_TAG_LEN);
+
+  private final String mKind;
+  private final String mTitle;
+  private final int mMaxLen;
+
+  /**
+   * Constructor.
+   * @param kind The kind of the names in lower case for the error messages.
+   * @param maxLen The maximum length of a name.
+   */
+  public NameValidator(String kind, int maxLen) {
+    mKind = kind;
+    mTitle = Character.toUpperCase(kind.charAt(0)) + kind.substring(1);
+    mMaxLen = maxLen;
+  }
+
+  /**
+   * Get the maximum length of a name.
+   * @return The maximum length.
+   */
+  public int getMaxLength() {
+    return mMaxLen;
+  }
+
+  /**
+   * Check if a name is not empty, not too long and it has the characters in
+   * {@link TopicHelper#TOPIC_NAME_PATTERN_STRING} only.
+   * @param name A name or null.
+   * @return true if valid; otherwise, false.
+   */
+  public boolean isValid(CharSequence name) {
+    return scan(name, true, false) == VALID;
+  }
+
+  /**
+   * Validate a name against the length and optionally the path syntax.
+   * @param name A name.
+   * @param restricted true if the path syntax is disabled.
+   * @throws IllegalArgumentException The name is empty, too long or it
+   *          contains '/' while the path syntax is disabled.
+   */
+  public void checkPathAllowed(CharSequence name, boolean restricted) {
+    switch (scan(name, false, !restricted)) {
+    case EMPTY:
+      throw new IllegalArgumentException("The "+mKind+" name cannot be null or empty");
+    case TOO_LONG:
+      throw new IllegalArgumentException("The length of "+mKind+" name exceeds "+mMaxLen);
+    case HAS_DELIM:
+      throw new IllegalArgumentException(
+          "The path syntax is disabled; "+mKind+" cannot contain '/'");
+    }
+  }
+
+  /**
+   * Normalize a path by collapsing all contiguous '/'.  The path cannot be
+   * empty, start or end with '/'.  A path without contiguous '/' is returned
+   * as is.
+   * @param path A path.
+   * @return A normalized path.
+   * @throws IllegalArgumentException The path is null or empty, or it starts
+   *          or ends with '/'.
+   */
+  public String normalizePath(String path) {
+    if (path == null || path.isEmpty()) {
+      throw new IllegalArgumentException(mTitle+" cannot be null or empty");
+    }
+    int len = path.length();
+    if (path.charAt(0) == DELIM || path.charAt(len - 1) == DELIM) {
+      throw new IllegalArgumentException(mTitle+" cannot start or end with '/'");
+    }
+    StringBuilder sb = null;
+    for (int i = 1; i < len; i++) {
+      char c = path.charAt(i);
+      if (c == DELIM && path.charAt(i - 1) == DELIM) {
+        if (sb == null) {
+          sb = new StringBuilder(len).append(path, 0, i);
+        }
+      } else if (sb != null) {
+        sb.append(c);
+      }
+    }
+    return (sb == null) ? path : sb.toString();
+  }
+
+  /**
+   * Validate a name against the length only.  A null name is skipped.
+   * @param name A name or null.
+   * @throws IllegalArgumentException The name is empty or too long.
+   */
+  public void validateLength(CharSequence name) {
+    if (name == null) {
+      return;
+    }
+    int len = name.length();
+    if (len == 0) {
+      throw new IllegalArgumentException("The "+mKind+" name cannot be empty");
+    }
+    if (len > mMaxLen) {
+      throw new IllegalArgumentException("The length of "+mKind+" name exceeds "+mMaxLen);
+    }
+  }
+
+  /**
+   * Find the first name in a list that is empty or too long.  The null names
+   * are skipped.  It is the batch form of {@link #validateLength(CharSequence)}
+   * for large lists, e.g. tags, without an exception per name.
+   * @param names A list of names.
+   * @return The index of the first invalid name, or -1 if all are valid.
+   */
+  public int indexOfInvalidLength(List<? extends CharSequence> names) {
+    for (int i = 0, n = names.size(); i < n; i++) {
+      CharSequence name = names.get(i);
+      int len;
+      if (name != null && ((len = name.length()) == 0 || len > mMaxLen)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Find the first name in a list that is not valid by
+   * {@link #isValid(CharSequence)}.
+   * @param names A list of names.
+   * @return The index of the first invalid name, or -1 if all are valid.
+   */
+  public int indexOfInvalid(List<? extends CharSequence> names) {
+    for (int i = 0, n = names.size(); i < n; i++) {
+      if (scan(names.get(i), true, false) != VALID) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // Check the length, the character class and the delimiter in one pass.
+  private int scan(CharSequence name, boolean nameChars, boolean allowDelim) {
+    int len;
+    if (name == null || (len = name.length()) == 0) {
+      return EMPTY;
+    }
+    if (len > mMaxLen) {
+      return TOO_LONG;
+    }
+    if (!nameChars && allowDelim) {
+      return VALID;
+    }
+    for (int i = 0; i < len; i++) {
+      char c = name.charAt(i);
+      int flags = (c < 128) ? ASCII[c] : 0;
+      if (flags == DELIM_CHAR) {
+        if (!allowDelim) {
+          return nameChars ? BAD_CHAR : HAS_DELIM;
+        }
+      } else if (nameChars && flags != NAME_CHAR) {
+        return BAD_CHAR;
+      }
+    }
+    return VALID;
+  }
+}
@@ -0,0 +1,338 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import com.magnet.mmx.protocol.MMXChannelId;
+import com.magnet.mmx.protocol.MMXTopicId;
+
+/**
+ * @hide
+ * A reusable flyweight view of a PubSub node ID "/appID/*&#x002Fname" or
+ * "/appID/userID/name" as used by {@link TopicHelper} and
+ * {@link ChannelHelper}.  Parsing only records the offsets of the app ID, the
+ * user ID and the name in the source, and the comparisons and hash codes work
+ * on those ranges, so routing decisions need no allocation.  The user ID and
+ * the name are compared case-insensitively like {@link MMXTopicId} and
+ * {@link MMXChannelId}; the app ID is compared exactly.  This class is not
+ * thread safe; the source must not change while it is viewed.
+ * <pre>
+ * NodePath path = new NodePath();
+ * if (path.parse(nodeId) &amp;&amp; path.appIdEquals(appId)) {
+ *   ...
+ * }
+ * </pre>
+ */
+public class NodePath {
+  private final static char DELIM = TopicHelper.TOPIC_DELIM;
+  private final static char FOR_APP = TopicHelper.TOPIC_FOR_APP;
+
+  private CharSequence mSrc;
+  private int mAppStart;
+  private int mUserStart;
+  private int mNameStart;
+  private int mEnd;
+
+  /**
+   * Default constructor for an empty view.
+   */
+  public NodePath() {
+  }
+
+  /**
+   * Parse a node ID into this view.  The rules are the same as
+   * {@link TopicHelper#parseTopic(String)} and
+   * {@link ChannelHelper#parseChannel(String)}.
+   * @param nodeId A node ID.
+   * @return true if it is an MMX node; otherwise, false and the view is empty.
+   */
+  public boolean parse(CharSequence nodeId) {
+    return parse(nodeId, 0, nodeId.length());
+  }
+
+  /**
+   * Parse a range of a char sequence as a node ID into this view.
+   * @param src The source.
+   * @param start The start of the node ID.
+   * @param end The end of the node ID.
+   * @return true if it is an MMX node; otherwise, false and the view is empty.
+   */
+  public boolean parse(CharSequence src, int start, int end) {
+    mSrc = null;
+    if (start >= end || src.charAt(start) != DELIM) {
+      return false;
+    }
+    int index1 = indexOf(src, start + 1, end);
+    if (index1 < 0) {
+      return false;
+    }
+    int index2 = indexOf(src, index1 + 1, end);
+    if (index2 < 0 || index2 == index1 + 1) {
+      return false;
+    }
+    mSrc = src;
+    mAppStart = start + 1;
+    mUserStart = index1 + 1;
+    mNameStart = index2 + 1;
+    mEnd = end;
+    return true;
+  }
+
+  /**
+   * Check if this view holds a parsed node ID.
+   * @return true if parsed successfully.
+   */
+  public boolean isValid() {
+    return mSrc != null;
+  }
+
+  /**
+   * Get the viewed source.
+   * @return The source, or null if not valid.
+   */
+  public CharSequence getSource() {
+    return mSrc;
+  }
+
+  /**
+   * @return The start offset of the app ID in the source.
+   */
+  public int getAppIdStart() {
+    return mAppStart;
+  }
+
+  /**
+   * @return The end offset (exclusive) of the app ID in the source.
+   */
+  public int getAppIdEnd() {
+    return mUserStart - 1;
+  }
+
+  /**
+   * @return The start offset of the user ID or "*" in the source.
+   */
+  public int getUserIdStart() {
+    return mUserStart;
+  }
+
+  /**
+   * @return The end offset (exclusive) of the user ID or "*" in the source.
+   */
+  public int getUserIdEnd() {
+    return mNameStart - 1;
+  }
+
+  /**
+   * @return The start offset of the name in the source.
+   */
+  public int getNameStart() {
+    return mNameStart;
+  }
+
+  /**
+   * @return The end offset (exclusive) of the name in the source.
+   */
+  public int getNameEnd() {
+    return mEnd;
+  }
+
+  /**
+   * Check if the node is under a user name-space.
+   * @return true for a user node, false for a global node.
+   */
+  public boolean isUserNode() {
+    return mSrc.charAt(mUserStart) != FOR_APP;
+  }
+
+  /**
+   * Compare the app ID exactly.
+   * @param appId An app ID.
+   * @return true if equal.
+   */
+  public boolean appIdEquals(CharSequence appId) {
+    return regionEquals(false, mAppStart, getAppIdEnd(), appId, 0,
+        appId.length());
+  }
+
+  /**
+   * Compare the escaped user ID case-insensitively.
+   * @param userId null for a global node, or an escaped user ID.
+   * @return true if equal.
+   */
+  public boolean userIdEquals(CharSequence userId) {
+    if (userId == null) {
+      return !isUserNode();
+    }
+    return isUserNode() && regionEquals(true, mUserStart, getUserIdEnd(),
+        userId, 0, userId.length());
+  }
+
+  /**
+   * Compare the name case-insensitively.
+   * @param name A topic or channel name.
+   * @return true if equal.
+   */
+  public boolean nameEquals(CharSequence name) {
+    return regionEquals(true, mNameStart, mEnd, name, 0, name.length());
+  }
+
+  /**
+   * Check if the name is a path under a parent path, e.g. "a/b/c" is under
+   * "a/b" and "a".
+   * @param parent A parent path without the trailing '/'.
+   * @return true if the name is under the parent path.
+   */
+  public boolean isNameUnder(CharSequence parent) {
+    int len = parent.length();
+    return (mEnd - mNameStart > len) && (mSrc.charAt(mNameStart + len) == DELIM) &&
+        regionEquals(true, mNameStart, mNameStart + len, parent, 0, len);
+  }
+
+  /**
+   * Compare two nodes by the app ID, user ID and name ranges.
+   * @param other Another parsed view.
+   * @return true if they refer to the same node.
+   */
+  public boolean nodeEquals(NodePath other) {
+    if (other == this) {
+      return true;
+    }
+    return mSrc != null && other.mSrc != null &&
+        regionEquals(false, mAppStart, getAppIdEnd(), other.mSrc,
+            other.mAppStart, other.getAppIdEnd()) &&
+        regionEquals(true, mUserStart, getUserIdEnd(), other.mSrc,
+            other.mUserStart, other.getUserIdEnd()) &&
+        regionEquals(true, mNameStart, mEnd, other.mSrc, other.mNameStart,
+            other.mEnd);
+  }
+
+  /**
+   * Get the hash code of the name.  For an ASCII name, it is the same as the
+   * hash code of the {@link MMXTopicId} or {@link MMXChannelId} of this node.
+   * @return The hash code of the lower case name.
+   */
+  public int nameHashCode() {
+    int h = 0;
+    for (int i = mNameStart; i < mEnd; i++) {
+      h = 31 * h + toLowerCase(mSrc.charAt(i));
+    }
+    return h;
+  }
+
+  /**
+   * Get the hash code of the whole node, consistent with
+   * {@link #nodeEquals(NodePath)}.
+   * @return The hash code.
+   */
+  public int nodeHashCode() {
+    int h = 0;
+    for (int i = mAppStart; i < mUserStart; i++) {
+      h = 31 * h + mSrc.charAt(i);
+    }
+    for (int i = mUserStart; i < mEnd; i++) {
+      h = 31 * h + toLowerCase(mSrc.charAt(i));
+    }
+    return h;
+  }
+
+  /**
+   * Create a topic ID of this node.
+   * @return A new topic ID.
+   */
+  public MMXTopicId toTopicId() {
+    return new MMXTopicId(isUserNode() ? substring(mUserStart, getUserIdEnd())
+        : null, substring(mNameStart, mEnd));
+  }
+
+  /**
+   * Create a channel ID of this node.
+   * @return A new channel ID.
+   */
+  public MMXChannelId toChannelId() {
+    return new MMXChannelId(isUserNode() ? substring(mUserStart, getUserIdEnd())
+        : null, substring(mNameStart, mEnd));
+  }
+
+  @Override
+  public String toString() {
+    return (mSrc == null) ? "" : mSrc.subSequence(mAppStart - 1, mEnd).toString();
+  }
+
+  /**
+   * Append a node ID like {@link TopicHelper#makeTopic(String, String, String)}
+   * to a reusable buffer without intermediate strings.  The user ID must be
+   * escaped already; the user ID and name are appended in lower case.
+   * @param sb The buffer.
+   * @param appId The app ID.
+   * @param userId null for a global node, or an escaped user ID.
+   * @param name The topic or channel name.
+   * @return The buffer.
+   */
+  public static StringBuilder appendNode(StringBuilder sb, CharSequence appId,
+                                          CharSequence userId, CharSequence name) {
+    sb.append(DELIM).append(appId).append(DELIM);
+    if (userId == null || userId.length() == 0) {
+      sb.append(FOR_APP);
+    } else {
+      appendLowerCase(sb, userId);
+    }
+    if (name.length() == 0 || name.charAt(0) != DELIM) {
+      sb.append(DELIM);
+    }
+    return appendLowerCase(sb, name);
+  }
+
+  private static StringBuilder appendLowerCase(StringBuilder sb, CharSequence cs) {
+    for (int i = 0, len = cs.length(); i < len; i++) {
+      sb.append(toLowerCase(cs.charAt(i)));
+    }
+    return sb;
+  }
+
+  private String substring(int start, int end) {
+    return mSrc.subSequence(start, end).toString();
+  }
+
+  private boolean regionEquals(boolean ignoreCase, int start, int end,
+                                CharSequence cs, int csStart, int csEnd) {
+    if (end - start != csEnd - csStart) {
+      return false;
+    }
+    for (int i = start, j = csStart; i < end; i++, j++) {
+      char c1 = mSrc.charAt(i);
+      char c2 = cs.charAt(j);
+      if (c1 != c2 && (!ignoreCase || toLowerCase(c1) != toLowerCase(c2))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexOf(CharSequence cs, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (cs.charAt(i) == DELIM) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static char toLowerCase(char c) {
+    if (c < 0x80) {
+      return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+    return Character.toLowerCase(c);
+  }
+}
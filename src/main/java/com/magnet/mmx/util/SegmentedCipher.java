@@ -0,0 +1,675 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * @hide
+ * The segmented AEAD format of {@link DefaultEncryptor}.  The plain data is
+ * cut into fixed-size segments and each segment is encrypted and
+ * authenticated by AES-GCM, so a payload of any size can be encrypted or
+ * decrypted and verified in constant memory.
+ * <pre>
+ * HEADER    = MAGIC("MXE") + VERSION(1) + SEGMENT_SIZE(4) + SALT(16)
+ * SUBKEY    = HMAC-SHA256(key, SALT) truncated to the key size
+ * SEGMENT_i = GCM(SUBKEY, IV_i, PLAIN_i) + TAG(16)
+ * IV_i      = ZERO(8) + (i | LAST_FLAG if it is the last segment)(4)
+ * </pre>
+ * Each message is encrypted by its own subkey from a random 128-bit salt, so
+ * a long-lived key never repeats a (key, IV) pair in practice however many
+ * messages it encrypts.  The segment index and the last segment flag in the
+ * IV detect any reordered, dropped or truncated segment.  The last segment
+ * may be empty.  Integers are in big-endian.
+ */
+class SegmentedCipher {
+  final static int VERSION = 2;
+  final static int HEADER_SIZE = 24;
+  final static int TAG_SIZE = 16;
+  final static int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+  private final static byte[] MAGIC = { 'M', 'X', 'E' };
+  private final static int SALT_SIZE = 16;
+  private final static int IV_SIZE = 12;
+  private final static String KDF_ALGO = "HmacSHA256";
+  private final static int LAST_FLAG = 0x80000000;
+  private final static Constructor<?> sGcmSpecCtor;
+  static {
+    // GCMParameterSpec is not available before Java 7 and Android API 19; the
+    // older providers take an IvParameterSpec with the default 128-bit tag.
+    Constructor<?> ctor = null;
+    try {
+      ctor = Class.forName("javax.crypto.spec.GCMParameterSpec")
+          .getConstructor(int.class, byte[].class);
+    } catch (Exception e) {
+      // Use IvParameterSpec.
+    }
+    sGcmSpecCtor = ctor;
+  }
+
+  private final SecretKeySpec mKey;
+  private final SecretKeySpec mKdfKey;
+  private final String mAlgo;
+  private final String mTransform;
+  private final int mMaxSegmentSize;
+  private final SecureRandom mRandom;
+
+  /**
+   * Constructor.
+   * @param key The secret key.
+   * @param algo The block cipher algorithm, e.g. "AES".
+   * @param maxSegmentSize The largest segment size accepted for decryption;
+   *          it bounds the buffers allocated for an untrusted header.
+   * @param random The source of the salts.
+   */
+  SegmentedCipher(SecretKeySpec key, String algo, int maxSegmentSize,
+                  SecureRandom random) {
+    mKey = key;
+    mKdfKey = new SecretKeySpec(key.getEncoded(), KDF_ALGO);
+    mAlgo = algo;
+    mTransform = algo + "/GCM/NoPadding";
+    mMaxSegmentSize = Math.min(maxSegmentSize, MAX_SEGMENT_SIZE);
+    mRandom = random;
+  }
+
+  /**
+   * Validate that the platform supports the AEAD cipher.
+   * @throws GeneralSecurityException
+   */
+  void validate() throws GeneralSecurityException {
+    newCipher();
+    CipherCache.getMac(KDF_ALGO, mKdfKey);
+  }
+
+  /**
+   * Check if the data starts with the header of the segmented format.
+   * @param data The encrypted data.
+   * @param offset The offset of the data.
+   * @param len The length of the data.
+   * @return true if it is in the segmented format.
+   */
+  static boolean isSegmented(byte[] data, int offset, int len) {
+    return len >= HEADER_SIZE && data[offset] == MAGIC[0] &&
+        data[offset+1] == MAGIC[1] && data[offset+2] == MAGIC[2] &&
+        data[offset+3] == VERSION;
+  }
+
+  /**
+   * Check if the remaining data in the buffer starts with the header of the
+   * segmented format.  The buffer position is not changed.
+   * @param data The encrypted data.
+   * @return true if it is in the segmented format.
+   */
+  static boolean isSegmented(ByteBuffer data) {
+    int pos = data.position();
+    return data.remaining() >= HEADER_SIZE && data.get(pos) == MAGIC[0] &&
+        data.get(pos+1) == MAGIC[1] && data.get(pos+2) == MAGIC[2] &&
+        data.get(pos+3) == VERSION;
+  }
+
+  /**
+   * Get the size of the encrypted data.
+   * @param plainLen The plain data length.
+   * @param segmentSize The segment size.
+   * @return The encrypted size including the header and the tags.
+   */
+  static long encryptedSize(long plainLen, int segmentSize) {
+    long segments = (plainLen / segmentSize) + 1;
+    if (plainLen > 0 && plainLen % segmentSize == 0) {
+      --segments;
+    }
+    return HEADER_SIZE + plainLen + segments * TAG_SIZE;
+  }
+
+  /**
+   * Encrypt the data.
+   * @param plain The plain data.
+   * @param segmentSize The segment size.
+   * @return The encrypted data in the segmented format.
+   * @throws GeneralSecurityException
+   */
+  byte[] encrypt(byte[] plain, int segmentSize)
+      throws GeneralSecurityException {
+    long size = encryptedSize(plain.length, segmentSize);
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Data is too large: "+plain.length);
+    }
+    byte[] result = new byte[(int) size];
+    SecretKeySpec subkey = writeHeader(result, segmentSize);
+    Cipher cipher = getCipher();
+    int pos = HEADER_SIZE;
+    int index = 0;
+    int offset = 0;
+    do {
+      int len = Math.min(segmentSize, plain.length - offset);
+      boolean last = (offset + len == plain.length);
+      initCipher(cipher, Cipher.ENCRYPT_MODE, subkey, index++, last);
+      pos += cipher.doFinal(plain, offset, len, result, pos);
+      offset += len;
+    } while (offset < plain.length);
+    return result;
+  }
+
+  /**
+   * Decrypt and verify the data in the segmented format.
+   * @param data The encrypted data.
+   * @return The plain data.
+   * @throws IOException The data is corrupted or tampered.
+   */
+  byte[] decrypt(byte[] data) throws IOException {
+    if (!isSegmented(data, 0, data.length)) {
+      throw new IOException("data corrupted; invalid header");
+    }
+    int segmentSize = getSegmentSize(data, 0);
+    SecretKeySpec subkey = getSubkey(data, 0);
+    int encSegSize = segmentSize + TAG_SIZE;
+    int encLen = data.length - HEADER_SIZE;
+    int segments = (encLen + encSegSize - 1) / encSegSize;
+    int lastLen = encLen - (segments - 1) * encSegSize;
+    if (segments == 0 || lastLen < TAG_SIZE) {
+      throw new IOException("data corrupted; size mismatch");
+    }
+    byte[] result = new byte[encLen - segments * TAG_SIZE];
+    Cipher cipher = getCipher();
+    int pos = 0;
+    for (int index = 0; index < segments; index++) {
+      boolean last = (index == segments - 1);
+      int len = last ? lastLen : encSegSize;
+      try {
+        initCipher(cipher, Cipher.DECRYPT_MODE, subkey, index, last);
+        pos += cipher.doFinal(data, HEADER_SIZE + index * encSegSize, len,
+            result, pos);
+      } catch (GeneralSecurityException e) {
+        throw new IOException("data corrupted; invalid data", e);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Encrypt the remaining data in <code>src</code> into <code>dst</code>.
+   * The caller must ensure that <code>dst</code> has at least
+   * {@link #encryptedSize(long, int)} bytes remaining.
+   * @param src The plain data.
+   * @param dst The buffer for the encrypted data in the segmented format.
+   * @param segmentSize The segment size.
+   * @return Number of bytes written to <code>dst</code>.
+   * @throws GeneralSecurityException
+   */
+  int encrypt(ByteBuffer src, ByteBuffer dst, int segmentSize)
+      throws GeneralSecurityException {
+    byte[] header = new byte[HEADER_SIZE];
+    SecretKeySpec subkey = writeHeader(header, segmentSize);
+    dst.put(header);
+    Cipher cipher = getCipher();
+    int total = HEADER_SIZE;
+    int limit = src.limit();
+    int index = 0;
+    try {
+      do {
+        int len = Math.min(segmentSize, limit - src.position());
+        boolean last = (src.position() + len == limit);
+        src.limit(src.position() + len);
+        initCipher(cipher, Cipher.ENCRYPT_MODE, subkey, index++, last);
+        total += cipher.doFinal(src, dst);
+      } while (src.position() < limit);
+    } finally {
+      src.limit(limit);
+    }
+    return total;
+  }
+
+  /**
+   * Decrypt and verify the remaining data in the segmented format from
+   * <code>src</code> into <code>dst</code>.  The caller must ensure that
+   * <code>dst</code> has enough space; the plain data is never larger than
+   * the encrypted data less the header.
+   * @param src The encrypted data.
+   * @param dst The buffer for the plain data.
+   * @return Number of bytes written to <code>dst</code>.
+   * @throws IOException The data is corrupted or tampered.
+   */
+  int decrypt(ByteBuffer src, ByteBuffer dst) throws IOException {
+    byte[] header = new byte[HEADER_SIZE];
+    if (src.remaining() < HEADER_SIZE) {
+      throw new IOException("data corrupted; invalid header");
+    }
+    src.get(header);
+    if (!isSegmented(header, 0, HEADER_SIZE)) {
+      throw new IOException("data corrupted; invalid header");
+    }
+    int encSegSize = getSegmentSize(header, 0) + TAG_SIZE;
+    SecretKeySpec subkey = getSubkey(header, 0);
+    int limit = src.limit();
+    int segments = (src.remaining() + encSegSize - 1) / encSegSize;
+    if (segments == 0 ||
+        src.remaining() - (segments - 1) * encSegSize < TAG_SIZE) {
+      throw new IOException("data corrupted; size mismatch");
+    }
+    Cipher cipher = getCipher();
+    int total = 0;
+    try {
+      for (int index = 0; index < segments; index++) {
+        boolean last = (index == segments - 1);
+        src.limit(last ? limit : src.position() + encSegSize);
+        initCipher(cipher, Cipher.DECRYPT_MODE, subkey, index, last);
+        total += cipher.doFinal(src, dst);
+      }
+    } catch (GeneralSecurityException e) {
+      throw new IOException("data corrupted; invalid data", e);
+    } finally {
+      src.limit(limit);
+    }
+    return total;
+  }
+
+  /**
+   * Create an output stream which encrypts the data in segments.  The header
+   * is written immediately.  The last segment is written by
+   * {@link SegmentOutputStream#finish()} or {@link OutputStream#close()}.
+   * @param os The output stream for the encrypted data.
+   * @param segmentSize The segment size.
+   * @return An output stream for the plain data.
+   * @throws IOException
+   */
+  SegmentOutputStream encryptStream(OutputStream os, int segmentSize)
+      throws IOException {
+    try {
+      return new SegmentOutputStream(os, segmentSize);
+    } catch (GeneralSecurityException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Create an input stream which decrypts and verifies the segments.
+   * @param is The input stream positioned after the header.
+   * @param header A buffer holding the header.
+   * @return An input stream for the plain data.
+   * @throws IOException Invalid header.
+   */
+  InputStream decryptStream(InputStream is, byte[] header)
+      throws IOException {
+    if (!isSegmented(header, 0, header.length)) {
+      throw new IOException("data corrupted; invalid header");
+    }
+    try {
+      return new SegmentInputStream(is, getSegmentSize(header, 0),
+          getSubkey(header, 0));
+    } catch (GeneralSecurityException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Create an input stream like {@link #decryptStream(InputStream, byte[])},
+   * but decrypt and verify the first segment before returning.  The magic
+   * alone may match a legacy message by chance, so the caller gets all data
+   * read so far back if the header or the first segment is not valid.
+   * @param is The input stream positioned after the header.
+   * @param header A buffer holding the header.
+   * @return An input stream for the plain data.
+   * @throws UnverifiedDataException The header or the first segment is not
+   *          valid.
+   * @throws IOException Read error.
+   */
+  InputStream decryptVerifiedStream(InputStream is, byte[] header)
+      throws IOException {
+    SegmentInputStream sis;
+    try {
+      sis = (SegmentInputStream) decryptStream(is, header);
+    } catch (IOException e) {
+      throw new UnverifiedDataException(e, header, null, 0, is);
+    }
+    sis.verifyFirstSegment(header);
+    return sis;
+  }
+
+  /**
+   * The data has the magic of the segmented format, but its header or its
+   * first segment is not valid.  It holds the original data.
+   */
+  @SuppressWarnings("serial")
+  static class UnverifiedDataException extends IOException {
+    private final transient InputStream mRawData;
+
+    UnverifiedDataException(IOException cause, byte[] header, byte[] read,
+                            int readLen, InputStream rest) {
+      super(cause.getMessage(), cause);
+      byte[] raw = new byte[HEADER_SIZE + readLen];
+      System.arraycopy(header, 0, raw, 0, HEADER_SIZE);
+      if (readLen > 0) {
+        System.arraycopy(read, 0, raw, HEADER_SIZE, readLen);
+      }
+      mRawData = new SequenceInputStream(new ByteArrayInputStream(raw), rest);
+    }
+
+    /**
+     * @return A stream of the whole data from the first byte of the header.
+     */
+    InputStream getRawData() {
+      return mRawData;
+    }
+  }
+
+  private Cipher newCipher() throws GeneralSecurityException {
+    return Cipher.getInstance(mTransform);
+  }
+
+  // The shared per-thread Cipher for the bulk operations.
+  private Cipher getCipher() {
+    try {
+      return CipherCache.getCipher(mTransform, mKey);
+    } catch (GeneralSecurityException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // Write the header with a random salt; return the subkey of the message.
+  private SecretKeySpec writeHeader(byte[] buf, int segmentSize)
+      throws GeneralSecurityException {
+    if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+      throw new IllegalArgumentException("Invalid segment size: "+segmentSize);
+    }
+    System.arraycopy(MAGIC, 0, buf, 0, MAGIC.length);
+    buf[3] = VERSION;
+    putInt(buf, 4, segmentSize);
+    byte[] salt = new byte[SALT_SIZE];
+    mRandom.nextBytes(salt);
+    System.arraycopy(salt, 0, buf, 8, SALT_SIZE);
+    return deriveKey(buf, 8);
+  }
+
+  // A forged header must not make the reader allocate large buffers.
+  private int getSegmentSize(byte[] header, int offset) throws IOException {
+    int segmentSize = getInt(header, offset + 4);
+    if (segmentSize <= 0 || segmentSize > mMaxSegmentSize) {
+      throw new IOException("data corrupted; invalid header");
+    }
+    return segmentSize;
+  }
+
+  private SecretKeySpec getSubkey(byte[] header, int offset)
+      throws IOException {
+    try {
+      return deriveKey(header, offset + 8);
+    } catch (GeneralSecurityException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  private SecretKeySpec deriveKey(byte[] salt, int offset)
+      throws GeneralSecurityException {
+    Mac mac = CipherCache.getMac(KDF_ALGO, mKdfKey);
+    mac.update(salt, offset, SALT_SIZE);
+    byte[] prk = mac.doFinal();
+    return new SecretKeySpec(prk, 0, Math.min(prk.length,
+        mKey.getEncoded().length), mAlgo);
+  }
+
+  private static void initCipher(Cipher cipher, int mode, SecretKeySpec subkey,
+                                 int index, boolean last)
+                                 throws GeneralSecurityException {
+    if (index < 0) {
+      throw new GeneralSecurityException("Too many segments");
+    }
+    byte[] iv = new byte[IV_SIZE];
+    putInt(iv, IV_SIZE - 4, last ? (index | LAST_FLAG) : index);
+    cipher.init(mode, subkey, gcmSpec(iv));
+  }
+
+  private static AlgorithmParameterSpec gcmSpec(byte[] iv) {
+    if (sGcmSpecCtor != null) {
+      try {
+        return (AlgorithmParameterSpec) sGcmSpecCtor.newInstance(TAG_SIZE * 8,
+            iv);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return new IvParameterSpec(iv);
+  }
+
+  private static void putInt(byte[] buf, int offset, int value) {
+    buf[offset] = (byte) (value >>> 24);
+    buf[offset+1] = (byte) (value >>> 16);
+    buf[offset+2] = (byte) (value >>> 8);
+    buf[offset+3] = (byte) value;
+  }
+
+  private static int getInt(byte[] buf, int offset) {
+    return ((buf[offset] & 0xff) << 24) | ((buf[offset+1] & 0xff) << 16) |
+           ((buf[offset+2] & 0xff) << 8) | (buf[offset+3] & 0xff);
+  }
+
+  /**
+   * An output stream encrypting the data in segments.  A segment is written
+   * when it is full and more data follows, so the last segment is known at
+   * {@link #finish()}.
+   */
+  class SegmentOutputStream extends FilterOutputStream {
+    private final Cipher mCipher;
+    private final SecretKeySpec mSubkey;
+    private final byte[] mPlain;
+    private final byte[] mEncrypted;
+    private int mLen;
+    private int mIndex;
+    private boolean mFinished;
+
+    SegmentOutputStream(OutputStream os, int segmentSize)
+        throws IOException, GeneralSecurityException {
+      super(os);
+      // A stream may be handed over to another thread; it has its own cipher.
+      mCipher = newCipher();
+      byte[] header = new byte[HEADER_SIZE];
+      mSubkey = writeHeader(header, segmentSize);
+      mPlain = new byte[segmentSize];
+      mEncrypted = new byte[segmentSize + TAG_SIZE];
+      out.write(header);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (mFinished) {
+        throw new IOException("Stream is finished");
+      }
+      while (len > 0) {
+        if (mLen == mPlain.length) {
+          writeSegment(false);
+        }
+        int n = Math.min(len, mPlain.length - mLen);
+        System.arraycopy(b, off, mPlain, mLen, n);
+        mLen += n;
+        off += n;
+        len -= n;
+      }
+    }
+
+    /**
+     * Write the last segment without closing the underlying stream.
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+      if (!mFinished) {
+        writeSegment(true);
+        mFinished = true;
+        out.flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        finish();
+      } finally {
+        out.close();
+      }
+    }
+
+    private void writeSegment(boolean last) throws IOException {
+      int n;
+      try {
+        initCipher(mCipher, Cipher.ENCRYPT_MODE, mSubkey, mIndex++, last);
+        n = mCipher.doFinal(mPlain, 0, mLen, mEncrypted, 0);
+      } catch (GeneralSecurityException e) {
+        throw new IOException(e.getMessage(), e);
+      }
+      out.write(mEncrypted, 0, n);
+      mLen = 0;
+    }
+  }
+
+  /**
+   * An input stream decrypting and verifying the segments.  A segment is
+   * read ahead by one byte to tell if it is the last segment.
+   */
+  private class SegmentInputStream extends FilterInputStream {
+    private final Cipher mCipher;
+    private final SecretKeySpec mSubkey;
+    private final byte[] mEncrypted;   // a segment and a look-ahead byte
+    private final byte[] mPlain;
+    private int mEncLen;
+    private int mPos;
+    private int mLimit;
+    private int mIndex;
+    private boolean mDone;
+
+    SegmentInputStream(InputStream is, int segmentSize, SecretKeySpec subkey)
+        throws GeneralSecurityException {
+      super(is);
+      mCipher = newCipher();
+      mSubkey = subkey;
+      mEncrypted = new byte[segmentSize + TAG_SIZE + 1];
+      mPlain = new byte[segmentSize];
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      while (mPos == mLimit) {
+        if (mDone) {
+          return -1;
+        }
+        nextSegment();
+      }
+      int n = Math.min(len, mLimit - mPos);
+      System.arraycopy(mPlain, mPos, b, off, n);
+      mPos += n;
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = 0;
+      byte[] buf = new byte[(int) Math.min(n, 4096)];
+      while (skipped < n) {
+        int len = read(buf, 0, (int) Math.min(n - skipped, buf.length));
+        if (len < 0) {
+          break;
+        }
+        skipped += len;
+      }
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return mLimit - mPos;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+      throw new IOException("mark/reset not supported");
+    }
+
+    // Decrypt the first segment ahead; on failure, hand back the raw data.
+    void verifyFirstSegment(byte[] header) throws IOException {
+      try {
+        nextSegment();
+      } catch (IOException e) {
+        throw new UnverifiedDataException(e, header, mEncrypted, mEncLen, in);
+      }
+    }
+
+    private void nextSegment() throws IOException {
+      while (mEncLen < mEncrypted.length) {
+        int n = in.read(mEncrypted, mEncLen, mEncrypted.length - mEncLen);
+        if (n < 0) {
+          break;
+        }
+        mEncLen += n;
+      }
+      boolean last = (mEncLen < mEncrypted.length);
+      int len = last ? mEncLen : mEncLen - 1;
+      if (len < TAG_SIZE) {
+        throw new IOException("data corrupted; truncated data");
+      }
+      try {
+        initCipher(mCipher, Cipher.DECRYPT_MODE, mSubkey, mIndex++, last);
+        mLimit = mCipher.doFinal(mEncrypted, 0, len, mPlain, 0);
+      } catch (GeneralSecurityException e) {
+        throw new IOException("data corrupted; invalid data", e);
+      }
+      mPos = 0;
+      if (last) {
+        mDone = true;
+        mEncLen = 0;
+      } else {
+        // Carry the look-ahead byte to the next segment.
+        mEncrypted[0] = mEncrypted[len];
+        mEncLen = 1;
+      }
+    }
+  }
+}
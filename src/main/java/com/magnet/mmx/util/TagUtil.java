@@ -17,8 +17,6 @@ package com.magnet.mmx.util;
 
 import java.util.List;
 
-import com.magnet.mmx.protocol.Constants;
-
 /**
  * @hide
  * A utility class for tags.
@@ -31,15 +29,7 @@ public class TagUtil {
    * @throws IllegalArgumentException The length of tag name is 0 or too long.
    */
   public static void validateTag(String tag) {
-    if (tag != null) {
-      int len = tag.length();
-      if (len == 0) {
-        throw new IllegalArgumentException("The tag name cannot be empty");
-      }
-      if (len > Constants.MMX_MAX_TAG_LEN) {
-        throw new IllegalArgumentException("The length of tag name exceeds "+Constants.MMX_MAX_TAG_LEN);
-      }
-    }
+    NameValidator.TAG.validateLength(tag);
   }
   
   /**
@@ -48,8 +38,20 @@ public class TagUtil {
    * @throws IllegalArgumentException The length of tag name is too long.
    */
   public static void validateTags(List<String> tags) {
-    for (String tag : tags) {
-      validateTag(tag);
+    int index = NameValidator.TAG.indexOfInvalidLength(tags);
+    if (index >= 0) {
+      validateTag(tags.get(index));
     }
   }
+
+  /**
+   * Check if all tags are valid without throwing an exception.  It is
+   * suitable for the large tag lists, e.g. in TopicTags, ChannelTags, DevTags
+   * or UserTags.
+   * @param tags A list of tags.
+   * @return The index of the first invalid tag, or -1 if all tags are valid.
+   */
+  public static int indexOfInvalidTag(List<String> tags) {
+    return NameValidator.TAG.indexOfInvalidLength(tags);
+  }
 }
@@ -15,32 +15,50 @@
 
 package com.magnet.mmx.util;
 
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.EmptyStackException;
-import java.util.Stack;
 import java.util.TimeZone;
 
 /**
- * Utility to convert between Date to ISO-8601 UTC Date/Time for XMPP.  Since
- * the time formatter is not thread safe, a pool of formatter objects is used
- * instead of using synchronized block for performance reason.  The pool has no
- * upper limit because the execution time is short, but it may have many
- * concurrent uses.  In the client side, it is likely to be one object per
- * connection.  In the server side, the number of objects is higher, but it is
- * bounded by the number of concurrent requests/responses among the connected
- * sessions.
+ * Utility to convert between Date to ISO-8601 UTC Date/Time for XMPP.  The
+ * conversion is done by hand on char arrays and epoch milliseconds, so it is
+ * thread safe without any lock and it does not allocate anything other than
+ * the result.
+ * <p>
+ * The formatter always generates <code>YYYY-MM-DD'T'hh:mm:ss.SSS'Z'</code>.
+ * The parser accepts the same format with an optional 3-digit fraction, and a
+ * 'Z' or a <code>+hh:mm</code>, <code>+hhmm</code> or <code>+hh</code>
+ * offset.  Dates before the Gregorian cutover (1582) or after year 9999, and
+ * non-canonical input accepted by the former SimpleDateFormat (e.g. single
+ * digit fields or a fraction of another length), are still handled by a
+ * SimpleDateFormat, so the results are unchanged for existing data.  Note
+ * that SimpleDateFormat takes such a fraction as a count of milliseconds, e.g.
+ * ".5" is 5ms rather than 500ms.
  */
 public class TimeUtil {
-  private static Stack<SimpleDateFormat> sPool;
-  
-  static {
-    sPool = new Stack<SimpleDateFormat>();
-    sPool.push(newInstance());
-  }
-  
+  /**
+   * The length of a formatted date: YYYY-MM-DD'T'hh:mm:ss.SSS'Z'
+   */
+  public final static int ISO_DATE_LEN = 24;
+
+  private final static String PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+  private final static long MILLIS_PER_DAY = 86400000L;
+  // 1582-10-15T00:00:00.000Z, the Gregorian cutover used by SimpleDateFormat.
+  private final static long MIN_MILLIS = -12219292800000L;
+  // 10000-01-01T00:00:00.000Z
+  private final static long MAX_MILLIS = 253402300800000L;
+  private final static long INVALID = Long.MIN_VALUE;
+
+  private final static ThreadLocal<char[]> sBuffer = new ThreadLocal<char[]>() {
+    @Override
+    protected char[] initialValue() {
+      return new char[ISO_DATE_LEN];
+    }
+  };
+
   private static SimpleDateFormat newInstance() {
-    SimpleDateFormat fmtr = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+    SimpleDateFormat fmtr = new SimpleDateFormat(PATTERN);
     fmtr.setTimeZone(TimeZone.getTimeZone("UTC"));
     return fmtr;
   }
@@ -48,41 +66,242 @@ public class TimeUtil {
   /**
    * Convert ISO-8601 UTC Date/Time to Date.
    * @param isoDate YYYY-MM-DD'T'hh:mm:ss.SSS'Z'
-   * @return
+   * @return A Date, or null if the date is invalid.
    */
   public static Date toDate(String isoDate) {
-    SimpleDateFormat fmtr;
-    try {
-      fmtr = sPool.pop();
-    } catch (EmptyStackException e) {
-      fmtr = newInstance();
-    }
-    try {
-      return fmtr.parse(isoDate);
-    } catch (Throwable e) {
-      //    System.err.println("TimeUtil.toDate() failed: "+isoDate);
-      //    e.printStackTrace();
-      // Invalid ISO date format.
+    if (isoDate == null) {
       return null;
-    } finally {
-      sPool.push(fmtr);
     }
+    long millis = parseMillis(isoDate);
+    return (millis == INVALID) ? null : new Date(millis);
   }
-  
+
   /**
    * Convert Date to ISO-8601 UTC Date/Time with milliseconds.
    * @param date
    * @return YYYY-MM-DD'T'hh:mm:ss.SSS'Z'
    */
   public static String toString(Date date) {
-    SimpleDateFormat fmtr;
-    try {
-      fmtr = sPool.pop();
-    } catch (EmptyStackException e) {
-      fmtr = newInstance();
+    return format(date.getTime());
+  }
+
+  /**
+   * Format the epoch milliseconds as ISO-8601 UTC Date/Time.
+   * @param millis Milliseconds since the epoch.
+   * @return YYYY-MM-DD'T'hh:mm:ss.SSS'Z'
+   */
+  public static String format(long millis) {
+    if (millis < MIN_MILLIS || millis >= MAX_MILLIS) {
+      return newInstance().format(new Date(millis));
+    }
+    char[] buf = sBuffer.get();
+    formatChars(millis, buf, 0);
+    return new String(buf, 0, ISO_DATE_LEN);
+  }
+
+  /**
+   * Format the epoch milliseconds as ISO-8601 UTC Date/Time into a char
+   * array.  The date must be in the range of year 1583 to 9999.
+   * @param millis Milliseconds since the epoch.
+   * @param buf A buffer with at least {@link #ISO_DATE_LEN} chars from offset.
+   * @param offset The offset in the buffer.
+   * @return The offset after the formatted date.
+   * @throws IllegalArgumentException The date is out of range.
+   */
+  public static int format(long millis, char[] buf, int offset) {
+    if (millis < MIN_MILLIS || millis >= MAX_MILLIS) {
+      throw new IllegalArgumentException("Date out of range: "+millis);
+    }
+    return formatChars(millis, buf, offset);
+  }
+
+  /**
+   * Parse an ISO-8601 Date/Time into epoch milliseconds.
+   * @param isoDate An ISO-8601 date, e.g. YYYY-MM-DD'T'hh:mm:ss.SSS'Z'
+   * @return Milliseconds since the epoch.
+   * @throws IllegalArgumentException Invalid date.
+   */
+  public static long parse(CharSequence isoDate) {
+    long millis = parseMillis(isoDate);
+    if (millis == INVALID) {
+      throw new IllegalArgumentException("Invalid date: "+isoDate);
+    }
+    return millis;
+  }
+
+  private static long parseMillis(CharSequence s) {
+    long millis = parseIso(s);
+    if (millis != INVALID) {
+      return millis;
+    }
+    // Not in the canonical form; use the lenient SimpleDateFormat as before.
+    String str = s.toString();
+    ParsePosition pos = new ParsePosition(0);
+    Date date = newInstance().parse(str, pos);
+    return (date == null) ? INVALID : date.getTime();
+  }
+
+  private static int formatChars(long millis, char[] buf, int offset) {
+    long days = floorDiv(millis, MILLIS_PER_DAY);
+    int msOfDay = (int) (millis - days * MILLIS_PER_DAY);
+
+    // Civil date from days since the epoch (proleptic Gregorian).
+    long z = days + 719468;
+    long era = (z >= 0 ? z : z - 146096) / 146097;
+    int doe = (int) (z - era * 146097);
+    int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+    int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+    int mp = (5 * doy + 2) / 153;
+    int day = doy - (153 * mp + 2) / 5 + 1;
+    int month = (mp < 10) ? mp + 3 : mp - 9;
+    int year = (int) (yoe + era * 400) + ((month <= 2) ? 1 : 0);
+
+    int ms = msOfDay % 1000;
+    int secs = msOfDay / 1000;
+    int i = offset;
+    i = digits4(year, buf, i);
+    buf[i++] = '-';
+    i = digits2(month, buf, i);
+    buf[i++] = '-';
+    i = digits2(day, buf, i);
+    buf[i++] = 'T';
+    i = digits2(secs / 3600, buf, i);
+    buf[i++] = ':';
+    i = digits2((secs / 60) % 60, buf, i);
+    buf[i++] = ':';
+    i = digits2(secs % 60, buf, i);
+    buf[i++] = '.';
+    buf[i++] = (char) ('0' + ms / 100);
+    i = digits2(ms % 100, buf, i);
+    buf[i++] = 'Z';
+    return i;
+  }
+
+  // Strict ISO-8601 parsing; return INVALID if it is not in the supported
+  // forms or not in the Gregorian range.
+  private static long parseIso(CharSequence s) {
+    int len = s.length();
+    if (len < 20 || s.charAt(4) != '-' || s.charAt(7) != '-' ||
+        (s.charAt(10) != 'T' && s.charAt(10) != 't') ||
+        s.charAt(13) != ':' || s.charAt(16) != ':') {
+      return INVALID;
+    }
+    int year = num(s, 0, 4);
+    int month = num(s, 5, 2);
+    int day = num(s, 8, 2);
+    int hour = num(s, 11, 2);
+    int min = num(s, 14, 2);
+    int sec = num(s, 17, 2);
+    if (year < 1583 || month < 1 || month > 12 || day < 1 ||
+        day > daysInMonth(year, month) || hour < 0 || hour > 23 || min < 0 ||
+        min > 59 || sec < 0 || sec > 59) {
+      return INVALID;
+    }
+
+    int i = 19;
+    int ms = 0;
+    char c;
+    if (s.charAt(i) == '.') {
+      // SimpleDateFormat "SSS" takes the digits as a count of milliseconds,
+      // e.g. ".5" is 5ms, so only the 3-digit form is parsed here.
+      if (i + 4 > len || (ms = num(s, i + 1, 3)) < 0 ||
+          (i + 4 < len && (c = s.charAt(i + 4)) >= '0' && c <= '9')) {
+        return INVALID;
+      }
+      i += 4;
+    }
+
+    if (i >= len) {
+      return INVALID;
+    }
+    int offsetMins;
+    c = s.charAt(i++);
+    if (c == 'Z' || c == 'z') {
+      offsetMins = 0;
+    } else if (c == '+' || c == '-') {
+      int oh, om = 0;
+      if (i + 2 > len || (oh = num(s, i, 2)) < 0) {
+        return INVALID;
+      }
+      i += 2;
+      if (i < len) {
+        if (s.charAt(i) == ':') {
+          ++i;
+        }
+        if (i + 2 > len || (om = num(s, i, 2)) < 0) {
+          return INVALID;
+        }
+        i += 2;
+      }
+      if (oh > 23 || om > 59) {
+        return INVALID;
+      }
+      offsetMins = oh * 60 + om;
+      if (c == '-') {
+        offsetMins = -offsetMins;
+      }
+    } else {
+      return INVALID;
+    }
+    if (i != len) {
+      return INVALID;
+    }
+
+    long days = daysFromCivil(year, month, day);
+    return days * MILLIS_PER_DAY + ((hour * 60 + min - offsetMins) * 60 +
+        sec) * 1000L + ms;
+  }
+
+  // Days since the epoch from a civil date (proleptic Gregorian).
+  private static long daysFromCivil(int year, int month, int day) {
+    int y = (month <= 2) ? year - 1 : year;
+    int era = (y >= 0 ? y : y - 399) / 400;
+    int yoe = y - era * 400;
+    int doy = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+    int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+    return era * 146097L + doe - 719468;
+  }
+
+  private static int daysInMonth(int year, int month) {
+    switch (month) {
+    case 2:
+      return ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0) ? 29 : 28;
+    case 4:
+    case 6:
+    case 9:
+    case 11:
+      return 30;
+    default:
+      return 31;
+    }
+  }
+
+  // Parse a fixed number of decimal digits; return -1 if any is not a digit.
+  private static int num(CharSequence s, int offset, int count) {
+    int value = 0;
+    for (int i = offset, end = offset + count; i < end; i++) {
+      int d = s.charAt(i) - '0';
+      if (d < 0 || d > 9) {
+        return -1;
+      }
+      value = value * 10 + d;
     }
-    String isoDate = fmtr.format(date);
-    sPool.push(fmtr);
-    return isoDate;
+    return value;
+  }
+
+  private static int digits2(int value, char[] buf, int offset) {
+    buf[offset] = (char) ('0' + value / 10);
+    buf[offset + 1] = (char) ('0' + value % 10);
+    return offset + 2;
+  }
+
+  private static int digits4(int value, char[] buf, int offset) {
+    digits2(value / 100, buf, offset);
+    return digits2(value % 100, buf, offset + 2);
+  }
+
+  private static long floorDiv(long x, long y) {
+    long q = x / y;
+    return ((x % y) < 0) ? q - 1 : q;
   }
 }
@@ -15,9 +15,6 @@
 
 package com.magnet.mmx.util;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import com.magnet.mmx.protocol.Constants;
 import com.magnet.mmx.protocol.MMXTopicId;
 import com.magnet.mmx.protocol.OSType;
@@ -43,8 +40,6 @@ public class TopicHelper {
   public final static String TOPIC_LEAF_ALL = "_all_";            // a leaf node
   public final static String TOPIC_NAME_PATTERN_STRING = "^[a-zA-Z0-9_\\.\\-]*$";
 
-  private static final Pattern TOPIC_NAME_PATTERN = Pattern.compile(TOPIC_NAME_PATTERN_STRING);
-
 
   // the node is formulated as follows:
   // /<appId>/*/com.magnet.os/<osType>
@@ -143,6 +138,7 @@ public class TopicHelper {
    * topic.
    * @param topic A XMPP PubSub nodeID string.
    * @return An AppTopic object, or null if not an MMX topic.
+   * @see NodePath for parsing without allocation.
    */
   public static AppTopic parseTopic(String topic) {
     if (topic.charAt(0) != TOPIC_DELIM)
@@ -314,30 +310,7 @@ public class TopicHelper {
    * @throws IllegalArgumentException Topic cannot start or end with '/'.
    */
   public static String normalizePath(String path) {
-    if (path == null || path.isEmpty()) {
-      throw new IllegalArgumentException("Topic cannot be null or empty");
-    }
-    if (path.charAt(0) == TopicHelper.TOPIC_DELIM ||
-        path.charAt(path.length()-1) == TopicHelper.TOPIC_DELIM) {
-      throw new IllegalArgumentException("Topic cannot start or end with '/'");
-    }
-    StringBuilder sb = new StringBuilder(path.length());
-    char prev = '\0';
-    for (char c : path.toCharArray()) {
-      if (c == TopicHelper.TOPIC_DELIM) {
-        if (prev == TopicHelper.TOPIC_DELIM) {
-          continue;
-        }
-      } else {
-        if (prev == TopicHelper.TOPIC_DELIM) {
-          sb.append(TopicHelper.TOPIC_DELIM);
-        }
-        //MOB-2406:No longer lower case topic names
-        sb.append(c);
-      }
-      prev = c;
-    }
-    return sb.toString();
+    return NameValidator.TOPIC.normalizePath(path);
   }
   
   /**
@@ -347,18 +320,7 @@ public class TopicHelper {
    * @throws IllegalArgumentException Topic cannot contain '/'.
    */
   public static void checkPathAllowed(String topic) {
-    if (topic == null || topic.isEmpty()) {
-      throw new IllegalArgumentException("The topic name cannot be null or empty");
-    }
-    if (topic.length() > Constants.MMX_MAX_TOPIC_LEN) {
-      throw new IllegalArgumentException("The length of topic name exceeds "+Constants.MMX_MAX_TOPIC_LEN);
-    }
-    if (TOPIC_RESTRICTED_NAME) {
-      if (topic.indexOf(TopicHelper.TOPIC_DELIM) >= 0) {
-        throw new IllegalArgumentException(
-            "The path syntax is disabled; topic cannot contain '/'");
-      }
-    }
+    NameValidator.TOPIC.checkPathAllowed(topic, TOPIC_RESTRICTED_NAME);
   }
 
   public static boolean validatePublisherType(String publisherType) {
@@ -380,14 +342,6 @@ public class TopicHelper {
    * @return true if the topic name is valid. false if the topic name is invalid.
    */
   public static boolean validateApplicationTopicName (String topicName) {
-    if (topicName == null || topicName.isEmpty()) {
-      return false;
-    }
-    int length = topicName.length();
-    if (length > Constants.MMX_MAX_TOPIC_LEN) {
-      return false;
-    }
-    Matcher matcher = TOPIC_NAME_PATTERN.matcher(topicName);
-    return matcher.matches();
+    return NameValidator.TOPIC.isValid(topicName);
   }
 }
@@ -0,0 +1,249 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @hide
+ * A concurrent trie of values by topic or channel node ID, e.g. the
+ * subscriptions of each topic.  A node ID "/appID/userID/a/b" is keyed by the
+ * segments "appID", "userID", "a" and "b"; the user ID and the name segments
+ * are case-insensitive like {@link TopicHelper#makeTopic(String, String, String)}.
+ * Lookups are lock-free and take O(path depth); updates are serialized.
+ * <p>
+ * Besides the exact lookup, {@link #getUnder(String, Collection)} collects a
+ * whole subtree and {@link #match(String, Collection)} resolves a publish to
+ * the node and to the {@link TopicHelper#TOPIC_LEAF_ALL} leaf of each of its
+ * ancestors, e.g. a publish to "/appID/*&#x002Fcom.magnet.os/ANDROID/v4"
+ * also matches "/appID/*&#x002Fcom.magnet.os/ANDROID/_all_".
+ * @param <V> The type of the values.
+ */
+public class TopicTrie<V> {
+  private final static char DELIM = TopicHelper.TOPIC_DELIM;
+
+  private static class Node<V> {
+    final ConcurrentHashMap<String, Node<V>> mChildren =
+        new ConcurrentHashMap<String, Node<V>>(4);
+    volatile V mValue;
+  }
+
+  private final Node<V> mRoot = new Node<V>();
+  private final Object mLock = new Object();
+  private volatile int mSize;
+
+  /**
+   * Get the value of a node.
+   * @param nodeId A node ID "/appID/userID/name" or "/appID/*&#x002Fname".
+   * @return The value, or null if not found.
+   */
+  public V get(String nodeId) {
+    Node<V> node = find(nodeId, nodeId.length());
+    return (node == null) ? null : node.mValue;
+  }
+
+  /**
+   * Set the value of a node.
+   * @param nodeId A node ID "/appID/userID/name" or "/appID/*&#x002Fname".
+   * @param value A non-null value.
+   * @return The previous value, or null.
+   * @throws IllegalArgumentException Not a valid node ID.
+   */
+  public V put(String nodeId, V value) {
+    if (value == null) {
+      throw new IllegalArgumentException("Value cannot be null");
+    }
+    checkNodeId(nodeId);
+    synchronized(mLock) {
+      Node<V> node = mRoot;
+      for (int start = 1, end; start <= nodeId.length(); start = end + 1) {
+        end = segmentEnd(nodeId, start);
+        String key = key(nodeId, start, end);
+        Node<V> child = node.mChildren.get(key);
+        if (child == null) {
+          child = new Node<V>();
+          node.mChildren.put(key, child);
+        }
+        node = child;
+      }
+      V old = node.mValue;
+      node.mValue = value;
+      if (old == null) {
+        ++mSize;
+      }
+      return old;
+    }
+  }
+
+  /**
+   * Remove the value of a node.  The branches left empty are pruned.
+   * @param nodeId A node ID.
+   * @return The removed value, or null.
+   */
+  public V remove(String nodeId) {
+    synchronized(mLock) {
+      return remove(mRoot, nodeId, 1);
+    }
+  }
+
+  /**
+   * Collect the values of a node and all nodes under it.  A prefix may stop
+   * at any segment, e.g. "/appID" for the whole app or "/appID/*" for its
+   * global topics.
+   * @param prefix A node ID or a prefix of it at a segment boundary.
+   * @param values The collection for the values.
+   * @return The number of values added.
+   */
+  public int getUnder(String prefix, Collection<? super V> values) {
+    int len = prefix.length();
+    if (len > 1 && prefix.charAt(len - 1) == DELIM) {
+      --len;
+    }
+    Node<V> node = find(prefix, len);
+    return (node == null) ? 0 : collect(node, values);
+  }
+
+  /**
+   * Collect the values of a node and of the {@link TopicHelper#TOPIC_LEAF_ALL}
+   * leaf of each ancestor under the user or global name-space.
+   * @param nodeId A node ID "/appID/userID/name" or "/appID/*&#x002Fname".
+   * @param values The collection for the values.
+   * @return The number of values added.
+   */
+  public int match(String nodeId, Collection<? super V> values) {
+    int count = 0;
+    int len = nodeId.length();
+    Node<V> node = mRoot;
+    int depth = 0;
+    for (int start = 1, end; node != null && start <= len; start = end + 1) {
+      if (depth >= 2) {
+        // Collections are below the app ID and the user ID.
+        count += addValue(node.mChildren.get(TopicHelper.TOPIC_LEAF_ALL), values);
+      }
+      end = segmentEnd(nodeId, start);
+      node = node.mChildren.get(key(nodeId, start, end));
+      ++depth;
+    }
+    // A publish to an _all_ leaf itself has been matched by its parent.
+    if (node != null && !isLeafAll(nodeId)) {
+      count += addValue(node, values);
+    }
+    return count;
+  }
+
+  /**
+   * Get the number of nodes with a value.
+   * @return The number of values.
+   */
+  public int size() {
+    return mSize;
+  }
+
+  /**
+   * Remove all values.
+   */
+  public void clear() {
+    synchronized(mLock) {
+      mRoot.mChildren.clear();
+      mSize = 0;
+    }
+  }
+
+  private Node<V> find(String path, int len) {
+    if (len == 0 || path.charAt(0) != DELIM) {
+      return null;
+    }
+    Node<V> node = mRoot;
+    for (int start = 1, end; node != null && start <= len; start = end + 1) {
+      end = segmentEnd(path, start);
+      if (end > len) {
+        end = len;
+      }
+      node = node.mChildren.get(key(path, start, end));
+    }
+    return node;
+  }
+
+  private V remove(Node<V> node, String nodeId, int start) {
+    if (start > nodeId.length()) {
+      V old = node.mValue;
+      if (old != null) {
+        node.mValue = null;
+        --mSize;
+      }
+      return old;
+    }
+    int end = segmentEnd(nodeId, start);
+    String key = key(nodeId, start, end);
+    Node<V> child = node.mChildren.get(key);
+    if (child == null) {
+      return null;
+    }
+    V old = remove(child, nodeId, end + 1);
+    if (child.mValue == null && child.mChildren.isEmpty()) {
+      node.mChildren.remove(key);
+    }
+    return old;
+  }
+
+  private static <T> int collect(Node<? extends T> node,
+                                  Collection<? super T> values) {
+    int count = addValue(node, values);
+    for (Node<? extends T> child : node.mChildren.values()) {
+      count += collect(child, values);
+    }
+    return count;
+  }
+
+  private static <T> int addValue(Node<? extends T> node,
+                                   Collection<? super T> values) {
+    T value;
+    if (node == null || (value = node.mValue) == null) {
+      return 0;
+    }
+    values.add(value);
+    return 1;
+  }
+
+  private static int segmentEnd(String path, int start) {
+    int end = path.indexOf(DELIM, start);
+    return (end < 0) ? path.length() : end;
+  }
+
+  // The app ID is the first segment and it is case sensitive.
+  private static String key(String path, int start, int end) {
+    String segment = path.substring(start, end);
+    return (start == 1) ? segment : segment.toLowerCase();
+  }
+
+  private static boolean isLeafAll(String nodeId) {
+    int len = TopicHelper.TOPIC_LEAF_ALL.length();
+    int start = nodeId.length() - len;
+    return start > 0 && nodeId.charAt(start - 1) == DELIM &&
+        nodeId.regionMatches(true, start, TopicHelper.TOPIC_LEAF_ALL, 0, len);
+  }
+
+  private static void checkNodeId(String nodeId) {
+    int index1, index2;
+    if (nodeId.isEmpty() || nodeId.charAt(0) != DELIM ||
+        (index1 = nodeId.indexOf(DELIM, 1)) < 0 ||
+        (index2 = nodeId.indexOf(DELIM, index1 + 1)) < 0 ||
+        index2 == index1 + 1 || index2 == nodeId.length() - 1) {
+      throw new IllegalArgumentException("Not a valid node ID: "+nodeId);
+    }
+  }
+}
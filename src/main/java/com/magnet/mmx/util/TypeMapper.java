@@ -15,54 +15,215 @@
 
 package com.magnet.mmx.util;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.reflect.Constructor;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.gson.TypeAdapter;
 
 /**
  * This abstract class maps a named type string to a class.  This utility
  * class can be used to map a message payload type to a class.  The application
- * developer creates a derived class and implements the 
+ * developer creates a derived class and implements the
  * {@link #getClassNameByType(String)} which maps a type string to a class name.
  * The {@link #getClassByType(String)} returns the class for the type string.
  * <p>
- * In the future, a tool can generate an implementation of 
+ * Each mapper has its own lock-free registry of the resolved {@link Mapping},
+ * which holds the class, its no-arg constructor and its JSON type adapter.
+ * The unknown types are remembered as well, so a resolved or unknown type
+ * never goes through reflection again.  A derived class may list its types in
+ * {@link #getTypes()} to have them resolved by {@link #preload()} at startup.
+ * <p>
+ * In the future, a tool can generate an implementation of
  * {@link #getClassNameByType(String)} using an annotation in the payload
  * classes.
  *
  */
 public abstract class TypeMapper {
-  private static Map<String, Class<?>> sClassMap = new HashMap<String, Class<?>>();
-  
+  /**
+   * The maximum number of the unknown types to be remembered per mapper.
+   */
+  public final static int MAX_UNKNOWN_TYPES = 256;
+
+  /**
+   * The resolved handles of a mapped type.
+   */
+  public static class Mapping {
+    private final String mType;
+    private final Class<?> mClass;
+    private final Constructor<?> mConstructor;
+    private final TypeAdapter<?> mAdapter;
+
+    Mapping(String type, Class<?> clz, Constructor<?> ctor,
+            TypeAdapter<?> adapter) {
+      mType = type;
+      mClass = clz;
+      mConstructor = ctor;
+      mAdapter = adapter;
+    }
+
+    /**
+     * @return The type string.
+     */
+    public String getType() {
+      return mType;
+    }
+
+    /**
+     * @return The class of the type.
+     */
+    public Class<?> getMappedClass() {
+      return mClass;
+    }
+
+    /**
+     * @return The accessible no-arg constructor, or null if none.
+     */
+    public Constructor<?> getConstructor() {
+      return mConstructor;
+    }
+
+    /**
+     * @return The JSON type adapter of the class.
+     */
+    public TypeAdapter<?> getAdapter() {
+      return mAdapter;
+    }
+
+    @Override
+    public String toString() {
+      return "{type="+mType+", class="+mClass.getName()+"}";
+    }
+  }
+
+  // The placeholder of an unknown type.
+  private final static Mapping UNKNOWN = new Mapping(null, Void.class, null,
+      null);
+
+  private final ConcurrentHashMap<String, Mapping> mMappings =
+      new ConcurrentHashMap<String, Mapping>();
+  private final AtomicInteger mUnknownCount = new AtomicInteger();
+
   /**
    * Map a type to a class name.
    * @param type A user defined type string.
    * @return null if the type is not mappable, or a Java class name.
    */
   protected abstract String getClassNameByType(String type);
-  
+
+  /**
+   * Get all types known to this mapper for {@link #preload()}.  The default
+   * implementation returns null.
+   * @return A collection of types, or null.
+   */
+  protected Collection<String> getTypes() {
+    return null;
+  }
+
   /**
    * Map a type to a class.
    * @param type A user defined type string.
    * @return null if tye type is not mappable, or a Java Class.
    */
   public Class<?> getClassByType(String type) {
-    Class<?> clz = sClassMap.get(type);
-    if (clz == null) {
-      synchronized(sClassMap) {
-        if ((clz = sClassMap.get(type)) == null) {
-          String clzName = getClassNameByType(type);
-          if (clzName != null) {
-            try {
-              clz = Class.forName(clzName);
-              sClassMap.put(type, clz);
-            } catch (Throwable e) {
-              return null;
-            }
-          }
-        }
+    Mapping mapping = getMapping(type);
+    return (mapping == null) ? null : mapping.mClass;
+  }
+
+  /**
+   * Map a type to its resolved handles.
+   * @param type A user defined type string.
+   * @return null if the type is not mappable, or the mapping.
+   */
+  public Mapping getMapping(String type) {
+    if (type == null) {
+      return null;
+    }
+    Mapping mapping = mMappings.get(type);
+    if (mapping == null) {
+      mapping = resolve(type);
+    }
+    return (mapping == UNKNOWN) ? null : mapping;
+  }
+
+  /**
+   * Register a class with an optional type adapter for a type explicitly.  It
+   * overrides any mapping from {@link #getClassNameByType(String)}.
+   * @param type A user defined type string.
+   * @param clz The class of the type.
+   * @param adapter A type adapter for the class, or null for the default one.
+   * @return The mapping.
+   */
+  public <T> Mapping register(String type, Class<T> clz, TypeAdapter<T> adapter) {
+    Mapping mapping = newMapping(type, clz, adapter);
+    if (mMappings.put(type, mapping) == UNKNOWN) {
+      mUnknownCount.decrementAndGet();
+    }
+    return mapping;
+  }
+
+  /**
+   * Resolve all types from {@link #getTypes()}, so the lookups afterward do
+   * not need any reflection.
+   * @return The number of mapped types.
+   */
+  public int preload() {
+    Collection<String> types = getTypes();
+    return (types == null) ? 0 : preload(types);
+  }
+
+  /**
+   * Resolve the specified types.
+   * @param types A collection of types.
+   * @return The number of mapped types.
+   */
+  public int preload(Collection<String> types) {
+    int count = 0;
+    for (String type : types) {
+      if (getMapping(type) != null) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  private Mapping resolve(String type) {
+    Mapping mapping = UNKNOWN;
+    String clzName = getClassNameByType(type);
+    if (clzName != null) {
+      try {
+        mapping = newMapping(type, Class.forName(clzName), null);
+      } catch (Throwable e) {
+        // Treat it as an unknown type.
       }
     }
-    return clz;
+    if (mapping == UNKNOWN && mUnknownCount.get() >= MAX_UNKNOWN_TYPES) {
+      // Do not let the bogus types fill up the registry.
+      return mapping;
+    }
+    Mapping old = mMappings.putIfAbsent(type, mapping);
+    if (old != null) {
+      return old;
+    }
+    if (mapping == UNKNOWN) {
+      mUnknownCount.incrementAndGet();
+    }
+    return mapping;
+  }
+
+  private static Mapping newMapping(String type, Class<?> clz,
+                                     TypeAdapter<?> adapter) {
+    Constructor<?> ctor;
+    try {
+      ctor = clz.getDeclaredConstructor();
+      ctor.setAccessible(true);
+    } catch (Throwable e) {
+      ctor = null;
+    }
+    if (adapter == null) {
+      adapter = GsonData.getGson().getAdapter(clz);
+    }
+    return new Mapping(type, clz, ctor, adapter);
   }
-  
 }
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.CharBuffer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
@@ -49,6 +50,37 @@ public class Utils {
   public static final String AMP_ENCODE = "&amp;";
   public static final String LT_ENCODE = "&lt;";
   public static final String GT_ENCODE = "&gt;";
+  /**
+   * The maximum length of an XML escape sequence.
+   */
+  public static final int MAX_XML_ESCAPE_LEN = 6;
+
+  // Escape sequences indexed by char; null if no escape is needed.
+  private static final String[] XML_ESCAPES = new String['>' + 1];
+  private static final String[] NODE_ESCAPES = new String[128];
+  private static final String NODE_SPACE_ENCODE = "\\20";
+  static {
+    XML_ESCAPES['<'] = LT_ENCODE;
+    XML_ESCAPES['>'] = GT_ENCODE;
+    XML_ESCAPES['&'] = AMP_ENCODE;
+    XML_ESCAPES['"'] = QUOTE_ENCODE;
+    XML_ESCAPES['\''] = APOS_ENCODE;
+
+    for (char c = 0; c < NODE_ESCAPES.length; c++) {
+      if (Character.isWhitespace(c)) {
+        NODE_ESCAPES[c] = NODE_SPACE_ENCODE;
+      }
+    }
+    NODE_ESCAPES['"'] = "\\22";
+    NODE_ESCAPES['&'] = "\\26";
+    NODE_ESCAPES['\''] = "\\27";
+    NODE_ESCAPES['/'] = "\\2f";
+    NODE_ESCAPES[':'] = "\\3a";
+    NODE_ESCAPES['<'] = "\\3c";
+    NODE_ESCAPES['>'] = "\\3e";
+    NODE_ESCAPES['@'] = "\\40";
+    NODE_ESCAPES['\\'] = "\\5c";
+  }
 
   /**
    * Normalize a phone number for search or simple match. A normalized phone
@@ -396,51 +428,69 @@ public class Utils {
       return null;
     }
     final int len = string.length();
-    final StringBuilder out = new StringBuilder((int) (len * 1.3));
-    int last = 0;
-    int i = 0;
-    while (i < len) {
-      CharSequence toAppend = null;
-      char ch = string.charAt(i);
-      switch (ch) {
-      case '<':
-        toAppend = LT_ENCODE;
-        break;
-      case '>':
-        toAppend = GT_ENCODE;
-        break;
-      case '&':
-        toAppend = AMP_ENCODE;
-        break;
-      case '"':
-        toAppend = QUOTE_ENCODE;
-        break;
-      case '\'':
-        toAppend = APOS_ENCODE;
-        break;
-      default:
-        break;
-      }
-      if (toAppend == null) {
-        ++i;
-      } else {
-        if (i > last) {
-          out.append(string, last, i);
-        }
-        out.append(toAppend);
-        last = ++i;
-      }
-    }
-    if (last == 0) {
+    int i = indexOfEscape(XML_ESCAPES, string, 0, len);
+    if (i == len) {
       // Nothing to escape.
       return string;
     }
-    if (i > last) {
-      out.append(string, last, i);
-    }
+    final StringBuilder out = new StringBuilder((int) (len * 1.3));
+    appendEscaped(XML_ESCAPES, string, i, len, out.append(string, 0, i));
     return out;
   }
 
+  /**
+   * Escape a range of a char sequence for XML into a char buffer.  It stops
+   * when the buffer does not have enough room for the next char or its escape
+   * sequence, so the caller can drain the buffer and continue from the
+   * returned index.  The buffer capacity must be at least
+   * {@link #MAX_XML_ESCAPE_LEN}.
+   * @param src The source char sequence.
+   * @param start The inclusive starting index.
+   * @param end The exclusive ending index.
+   * @param dst The destination buffer.
+   * @return The index of the first char not yet escaped; <code>end</code> if
+   *          the whole range is escaped.
+   */
+  public static int escapeForXML(CharSequence src, int start, int end,
+                                  CharBuffer dst) {
+    return escape(XML_ESCAPES, src, start, end, dst);
+  }
+
+  /**
+   * Escape a range of a char array for XML into a char buffer.
+   * @param src The source chars.
+   * @param start The inclusive starting index.
+   * @param end The exclusive ending index.
+   * @param dst The destination buffer.
+   * @return The index of the first char not yet escaped; <code>end</code> if
+   *          the whole range is escaped.
+   * @see #escapeForXML(CharSequence, int, int, CharBuffer)
+   */
+  public static int escapeForXML(char[] src, int start, int end,
+                                  CharBuffer dst) {
+    return escape(XML_ESCAPES, CharBuffer.wrap(src), start, end, dst);
+  }
+
+  /**
+   * Escape a range of a char sequence for XML into a char array.  An escape
+   * sequence is at most {@link #MAX_XML_ESCAPE_LEN} chars.
+   * @param src The source char sequence.
+   * @param start The inclusive starting index.
+   * @param end The exclusive ending index.
+   * @param dst The destination array.
+   * @param offset The offset in the destination array.
+   * @return The offset after the escaped chars.
+   * @throws IndexOutOfBoundsException The destination array is too small.
+   */
+  public static int escapeForXML(CharSequence src, int start, int end,
+                                  char[] dst, int offset) {
+    CharBuffer cb = CharBuffer.wrap(dst, offset, dst.length - offset);
+    if (escape(XML_ESCAPES, src, start, end, cb) != end) {
+      throw new IndexOutOfBoundsException("Destination is too small");
+    }
+    return cb.position();
+  }
+
   public static boolean isNullOrEmpty(Collection c) {
     return (c == null) || (c.size() == 0);
   }
@@ -484,46 +534,128 @@ public class Utils {
     if (node == null) {
       return null;
     }
-    StringBuilder buf = new StringBuilder(node.length() + 8);
-    for (int i = 0, n = node.length(); i < n; i++) {
-      char c = node.charAt(i);
-      switch (c) {
-      case '"':
-        buf.append("\\22");
-        break;
-      case '&':
-        buf.append("\\26");
-        break;
-      case '\'':
-        buf.append("\\27");
-        break;
-      case '/':
-        buf.append("\\2f");
-        break;
-      case ':':
-        buf.append("\\3a");
-        break;
-      case '<':
-        buf.append("\\3c");
-        break;
-      case '>':
-        buf.append("\\3e");
-        break;
-      case '@':
-        buf.append("\\40");
-        break;
-      case '\\':
-        buf.append("\\5c");
-        break;
-      default:
-        if (Character.isWhitespace(c)) {
-          buf.append("\\20");
-        } else {
-          buf.append(c);
+    int len = node.length();
+    int i = indexOfEscape(NODE_ESCAPES, node, 0, len);
+    if (i == len) {
+      return node;
+    }
+    StringBuilder buf = new StringBuilder(len + 8);
+    appendEscaped(NODE_ESCAPES, node, i, len, buf.append(node, 0, i));
+    return buf.toString();
+  }
+
+  /**
+   * Escape a range of the node portion of a JID into a char buffer.  It stops
+   * when the buffer does not have enough room for the next char or its escape
+   * sequence of 3 chars.
+   * @param src The source node.
+   * @param start The inclusive starting index.
+   * @param end The exclusive ending index.
+   * @param dst The destination buffer.
+   * @return The index of the first char not yet escaped; <code>end</code> if
+   *          the whole range is escaped.
+   * @see #escapeNode(String)
+   */
+  public static int escapeNode(CharSequence src, int start, int end,
+                                CharBuffer dst) {
+    return escape(NODE_ESCAPES, src, start, end, dst);
+  }
+
+  /**
+   * Escape a range of the node portion of a JID into a char array.  An escape
+   * sequence is 3 chars.
+   * @param src The source node.
+   * @param start The inclusive starting index.
+   * @param end The exclusive ending index.
+   * @param dst The destination array.
+   * @param offset The offset in the destination array.
+   * @return The offset after the escaped chars.
+   * @throws IndexOutOfBoundsException The destination array is too small.
+   */
+  public static int escapeNode(CharSequence src, int start, int end,
+                                char[] dst, int offset) {
+    CharBuffer cb = CharBuffer.wrap(dst, offset, dst.length - offset);
+    if (escape(NODE_ESCAPES, src, start, end, cb) != end) {
+      throw new IndexOutOfBoundsException("Destination is too small");
+    }
+    return cb.position();
+  }
+
+  // Get the escape sequence of a char from a table, or null.  Only the node
+  // table escapes the non-ASCII whitespace.
+  private static String escapeOf(String[] table, char c) {
+    if (c < table.length) {
+      return table[c];
+    }
+    return (table == NODE_ESCAPES && Character.isWhitespace(c)) ?
+        NODE_SPACE_ENCODE : null;
+  }
+
+  // Find the first char to be escaped in [start, end); return end if none.
+  private static int indexOfEscape(String[] table, CharSequence src, int start,
+                                    int end) {
+    int i = start;
+    if (table == XML_ESCAPES) {
+      // All XML special chars are in the table.
+      for (char c; i < end; i++) {
+        if ((c = src.charAt(i)) < XML_ESCAPES.length && XML_ESCAPES[c] != null) {
+          break;
+        }
+      }
+    } else {
+      while (i < end && escapeOf(table, src.charAt(i)) == null) {
+        ++i;
+      }
+    }
+    return i;
+  }
+
+  private static void appendEscaped(String[] table, CharSequence src,
+                                    int start, int end, StringBuilder out) {
+    for (int i = start; i < end; ) {
+      out.append(escapeOf(table, src.charAt(i)));
+      int last = ++i;
+      i = indexOfEscape(table, src, i, end);
+      if (i > last) {
+        out.append(src, last, i);
+      }
+    }
+  }
+
+  private static int escape(String[] table, CharSequence src, int start,
+                            int end, CharBuffer dst) {
+    if (start < 0 || end > src.length() || start > end) {
+      throw new IndexOutOfBoundsException("start="+start+", end="+end+
+          ", length="+src.length());
+    }
+    int i = start;
+    while (i < end) {
+      int next = indexOfEscape(table, src, i, end);
+      int n = Math.min(next - i, dst.remaining());
+      if (src instanceof String) {
+        dst.put((String) src, i, i + n);
+      } else if (src instanceof CharBuffer && ((CharBuffer) src).hasArray()) {
+        CharBuffer cb = (CharBuffer) src;
+        dst.put(cb.array(), cb.arrayOffset() + cb.position() + i, n);
+      } else {
+        for (int j = i, e = i + n; j < e; j++) {
+          dst.put(src.charAt(j));
+        }
+      }
+      i += n;
+      if (i < next) {
+        break;      // buffer is full
+      }
+      if (i < end) {
+        String esc = escapeOf(table, src.charAt(i));
+        if (esc.length() > dst.remaining()) {
+          break;
         }
+        dst.put(esc);
+        ++i;
       }
     }
-    return buf.toString();
+    return i;
   }
 
   /**
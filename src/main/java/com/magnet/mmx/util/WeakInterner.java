@@ -0,0 +1,108 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A concurrent cache of canonical immutable instances by a String key.  The
+ * instances are weakly referenced, so an instance no longer used elsewhere is
+ * garbage collected and its entry is purged on a later call.  The key must
+ * not be referenced by its own instance more strongly than by the caller,
+ * e.g. it should be the string the instance is parsed from.
+ * <pre>
+ * V value = interner.get(key);
+ * if (value == null) {
+ *   value = interner.intern(key, new V(...));
+ * }
+ * </pre>
+ * @param <V> The type of the instances.
+ */
+public class WeakInterner<V> {
+  private static class Ref<V> extends WeakReference<V> {
+    private final String mKey;
+
+    Ref(String key, V value, ReferenceQueue<V> queue) {
+      super(value, queue);
+      mKey = key;
+    }
+  }
+
+  private final ConcurrentHashMap<String, Ref<V>> mMap =
+      new ConcurrentHashMap<String, Ref<V>>();
+  private final ReferenceQueue<V> mQueue = new ReferenceQueue<V>();
+
+  /**
+   * Get the canonical instance.
+   * @param key The key.
+   * @return The canonical instance, or null if not cached.
+   */
+  public V get(String key) {
+    Ref<V> ref = mMap.get(key);
+    return (ref == null) ? null : ref.get();
+  }
+
+  /**
+   * Make an instance canonical for the key unless there is already one.
+   * @param key The key.
+   * @param value A new instance for the key.
+   * @return The canonical instance; it may not be <code>value</code>.
+   */
+  public V intern(String key, V value) {
+    purge();
+    Ref<V> ref = new Ref<V>(key, value, mQueue);
+    while (true) {
+      Ref<V> old = mMap.putIfAbsent(key, ref);
+      if (old == null) {
+        return value;
+      }
+      V canonical = old.get();
+      if (canonical != null) {
+        return canonical;
+      }
+      // The old instance has been collected; replace its entry.
+      if (mMap.replace(key, old, ref)) {
+        return value;
+      }
+    }
+  }
+
+  /**
+   * Get the number of the cached entries including the collected instances
+   * not purged yet.
+   * @return The number of entries.
+   */
+  public int size() {
+    return mMap.size();
+  }
+
+  /**
+   * Remove all entries.
+   */
+  public void clear() {
+    mMap.clear();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void purge() {
+    Ref<V> ref;
+    while ((ref = (Ref<V>) mQueue.poll()) != null) {
+      mMap.remove(ref.mKey, ref);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.magnet.mmx.util.GsonData;
+
+/**
+ * Round trips of the binary encoding, and the rejection of corrupted data.
+ */
+public class BinaryCodecTest {
+  // A string length of 0x7fffffff in a 6-byte MsgAck.
+  private final static byte[] HUGE_LENGTH = {
+    1, (byte) 0xfe, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07 };
+
+  private static void assertRoundTrip(Object obj) throws IOException {
+    byte[] data = BinaryCodec.toBytes(obj);
+    Object decoded = BinaryCodec.fromBytes(data, obj.getClass());
+    assertEquals(GsonData.getGson().toJson(obj),
+        GsonData.getGson().toJson(decoded));
+  }
+
+  @Test
+  public void testMsgAck() throws IOException {
+    assertRoundTrip(new MsgAck("john.doe", "jane.doe\u00e9", "msg-1"));
+    assertRoundTrip(new MsgAck(null, "", "msg-2"));
+  }
+
+  @Test
+  public void testDevTags() throws IOException {
+    assertRoundTrip(new DevTags("dev-1", Arrays.asList("a", "b", "c"),
+        new Date(1420070400123L)));
+  }
+
+  @Test
+  public void testPubSubNotification() throws IOException {
+    Date date = new Date(1420070400123L);
+    assertRoundTrip(new PubSubNotification(
+        MMXChannelId.fromFields("john", "news"), date, "text"));
+    assertRoundTrip(new PubSubNotification((MMXChannelId) null, date,
+        "title", "body"));
+    // A derived class keeps all of its fields.
+    assertRoundTrip(new PubSubNotification(new ChannelInfo("john", "news",
+        false).setDescription("desc").setMaxItems(10), date, "text"));
+  }
+
+  @Test
+  public void testHugeLength() throws IOException {
+    try {
+      BinaryCodec.fromBytes(HUGE_LENGTH, MsgAck.class);
+      fail("The corrupted length must be rejected");
+    } catch (StreamCorruptedException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testHugeLengthFromStream() {
+    try {
+      // Not a ByteArrayInputStream, so the length cannot be checked upfront.
+      BinaryCodec.read(new FilterInputStream(
+          new ByteArrayInputStream(HUGE_LENGTH)) {}, MsgAck.class);
+      fail("The truncated data must be rejected");
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testNegativeSize() throws IOException {
+    byte[] data = BinaryCodec.toBytes(new MsgAck(null, "to", "msg-1"));
+    // Replace the null "from" with a varint of all ones, i.e. a size of -2.
+    byte[] corrupted = new byte[data.length + 9];
+    corrupted[0] = data[0];
+    Arrays.fill(corrupted, 1, 10, (byte) 0xff);
+    corrupted[10] = 0x01;
+    System.arraycopy(data, 2, corrupted, 11, data.length - 2);
+    try {
+      BinaryCodec.fromBytes(corrupted, MsgAck.class);
+      fail("The negative size must be rejected");
+    } catch (StreamCorruptedException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testTruncatedData() throws IOException {
+    byte[] data = BinaryCodec.toBytes(new MsgAck("john.doe", "jane.doe",
+        "msg-1"));
+    try {
+      BinaryCodec.fromBytes(Arrays.copyOf(data, data.length - 1), MsgAck.class);
+      fail("The truncated data must be rejected");
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.protocol;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.magnet.mmx.util.DisposableBinFile;
+import com.magnet.mmx.util.DisposableTextFile;
+
+/**
+ * Chunking of the payloads, and their reassembly from the chunk payloads.
+ */
+public class PayloadChunkerTest {
+  private final static int CHUNK_SIZE = 1000;
+
+  private static byte[] readAll(InputStream is) throws IOException {
+    try {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      byte[] buf = new byte[300];
+      int n;
+      while ((n = is.read(buf)) >= 0) {
+        baos.write(buf, 0, n);
+      }
+      return baos.toByteArray();
+    } finally {
+      is.close();
+    }
+  }
+
+  private static byte[] readAll(File file) throws IOException {
+    return readAll(new java.io.FileInputStream(file));
+  }
+
+  @Test
+  public void testFileChunks() throws Exception {
+    byte[] data = new byte[CHUNK_SIZE * 3 + 123];
+    new Random(1).nextBytes(data);
+    DisposableBinFile src = new DisposableBinFile(
+        File.createTempFile("chunker", ".bin").getPath(), true);
+    DisposableBinFile dst = new DisposableBinFile(
+        File.createTempFile("assembler", ".bin").getPath(), true);
+    try {
+      FileOutputStream fos = new FileOutputStream(src);
+      fos.write(data);
+      fos.close();
+
+      PayloadChunker chunker = new PayloadChunker(new Payload("bin", src),
+          CHUNK_SIZE);
+      PayloadAssembler assembler = PayloadAssembler.forFile("bin",
+          "cid", data.length, dst);
+      assertEquals(4, chunker.getChunkCount());
+      try {
+        while (chunker.hasNext()) {
+          Payload chunk = chunker.next().toPayload();
+          byte[] bytes = readAll(chunk.getDataAsInputStream());
+          assertEquals(chunk.getDataLen(), bytes.length);
+          assertEquals(bytes.length, chunk.getDataAsString().length());
+          assembler.add(chunk.getDataOffset(), ByteBuffer.wrap(bytes));
+        }
+      } finally {
+        chunker.close();
+      }
+      assertTrue(assembler.isComplete());
+      Payload payload = assembler.getPayload();
+      assertArrayEquals(data, readAll(payload.getFile()));
+      assertArrayEquals(data, readAll(payload.getDataAsInputStream()));
+    } finally {
+      src.finish();
+      dst.finish();
+    }
+  }
+
+  @Test
+  public void testTextChunks() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    Random random = new Random(2);
+    while (sb.length() < CHUNK_SIZE * 2 + 10) {
+      sb.append((char) ('a' + random.nextInt(26)));
+    }
+    String text = sb.toString();
+    DisposableTextFile dst = new DisposableTextFile(
+        File.createTempFile("assembler", ".txt").getPath(), true);
+    try {
+      PayloadChunker chunker = new PayloadChunker(new Payload("text", text),
+          CHUNK_SIZE);
+      PayloadAssembler assembler = PayloadAssembler.forChars("text", "cid",
+          text.length(), dst);
+      while (chunker.hasNext()) {
+        Payload chunk = chunker.next().toPayload();
+        // A chunk payload must survive the Java serialization.
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(chunk);
+        oos.close();
+        chunk = (Payload) new ObjectInputStream(new ByteArrayInputStream(
+            baos.toByteArray())).readObject();
+        assertFalse(assembler.isComplete());
+        assembler.add(chunk.getDataOffset(), chunk.getData());
+      }
+      chunker.close();
+      assertTrue(assembler.isComplete());
+      assertEquals(text, assembler.getPayload().getDataAsString());
+    } finally {
+      dst.finish();
+    }
+  }
+}
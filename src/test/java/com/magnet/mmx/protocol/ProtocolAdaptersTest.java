@@ -0,0 +1,164 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.magnet.mmx.protocol.Constants.MessageState;
+import com.magnet.mmx.util.GsonData;
+
+/**
+ * The streaming adapters against the behavior of the reflective adapters.
+ */
+public class ProtocolAdaptersTest {
+  private final static Gson sGson = GsonData.getGson();
+  // The reflective adapters with the same date format.
+  private final static Gson sReflective = new GsonBuilder()
+      .registerTypeAdapter(Date.class, GsonData.DATE_ADAPTER).create();
+
+  private static void assertSameJson(Object obj) {
+    String json = sReflective.toJson(obj);
+    assertEquals(json, sGson.toJson(obj));
+    assertEquals(json, sGson.toJson(sGson.fromJson(json, obj.getClass())));
+  }
+
+  private static void assertRoundTrip(Object obj) {
+    String json = sGson.toJson(obj);
+    assertEquals(json, sGson.toJson(sGson.fromJson(json, obj.getClass())));
+  }
+
+  @Test
+  public void testTopicInfoWithoutName() {
+    TopicInfo info = sGson.fromJson("{\"userId\":\"u1\",\"isCollection\":true}",
+        TopicInfo.class);
+    assertNull(info.getName());
+    assertEquals("u1", info.getEscUserId());
+    assertTrue(info.isCollection());
+
+    info = sGson.fromJson("{\"topicName\":\"\"}", TopicInfo.class);
+    assertEquals("", info.getName());
+    assertNull(info.getEscUserId());
+  }
+
+  @Test
+  public void testChannelInfoWithoutName() {
+    ChannelInfo info = sGson.fromJson("{\"userId\":\"u1\",\"isCollection\":true}",
+        ChannelInfo.class);
+    assertNull(info.getName());
+    assertEquals("u1", info.getEscUserId());
+    assertTrue(info.isCollection());
+
+    info = sGson.fromJson("{}", ChannelInfo.class);
+    assertNull(info.getName());
+    assertNull(info.getEscUserId());
+  }
+
+  @Test
+  public void testInfos() {
+    assertRoundTrip(new TopicInfo("u1", "sports", false)
+        .setDescription("desc").setMaxItems(10)
+        .setCreationDate(new Date(1000)).setCreator("u1")
+        .setPublisherType(TopicAction.PublisherType.subscribers));
+    assertRoundTrip(new ChannelInfo(null, "news", true)
+        .setModifiedDate(new Date(2000))
+        .setPublishPermission(TopicAction.PublisherType.anyone));
+  }
+
+  @Test
+  public void testFetchResponses() {
+    assertRoundTrip(new TopicAction.FetchResponse("u1", "sports", 2,
+        Arrays.asList(new TopicAction.MMXPublishedItem("id1", "u2",
+            new Date(1000), "<mmx>&amp;</mmx>"), null)));
+    assertRoundTrip(new ChannelAction.FetchResponse(null, "news", 1,
+        Arrays.asList(new ChannelAction.MMXPublishedItem("id1", null, null,
+            ""))));
+  }
+
+  @Test
+  public void testSameJsonAsReflective() {
+    assertSameJson(new TopicAction.MMXPublishedItem("id1", "u2",
+        new Date(1000), "<mmx>&amp;</mmx>"));
+    assertSameJson(new ChannelAction.MMXPublishedItem("id1", null, null, ""));
+    assertSameJson(new TopicAction.FetchResponse("u1", "sports", 1,
+        Arrays.asList(new TopicAction.MMXPublishedItem("id1", "u2",
+            new Date(1000), "<mmx/>"))));
+    assertSameJson(new ChannelAction.FetchResponse(null, "news", 0,
+        Collections.<ChannelAction.MMXPublishedItem>emptyList()));
+
+    TopicInfo topic = new TopicInfo("u1", "sports", false)
+        .setDescription("desc").setMaxItems(10)
+        .setCreationDate(new Date(1000)).setCreator("u1")
+        .setPublisherType(TopicAction.PublisherType.subscribers);
+    ChannelInfo channel = new ChannelInfo(null, "news", true)
+        .setModifiedDate(new Date(2000))
+        .setPublishPermission(TopicAction.PublisherType.anyone);
+    assertSameJson(topic);
+    assertSameJson(channel);
+    TopicAction.ListResponse topics = new TopicAction.ListResponse();
+    topics.add(topic);
+    assertSameJson(topics);
+    TopicAction.GetTopicsResponse getTopics =
+        new TopicAction.GetTopicsResponse();
+    getTopics.add(topic);
+    assertSameJson(getTopics);
+    ChannelAction.ListResponse channels = new ChannelAction.ListResponse();
+    channels.add(channel);
+    assertSameJson(channels);
+    ChannelAction.GetChannelsResponse getChannels =
+        new ChannelAction.GetChannelsResponse();
+    getChannels.add(channel);
+    assertSameJson(getChannels);
+
+    UserInfo user = new UserInfo().setUserId("u1").setDisplayName("Jane")
+        .setEmail("jane@example.com");
+    assertSameJson(user);
+    assertSameJson(new TopicAction.SubscribersResponse()
+        .setSubscribers(Arrays.asList(user)).setTotal(1)
+        .setCode(200).setMessage("ok"));
+    assertSameJson(new ChannelAction.SubscribersResponse().setTotal(0));
+
+    DeviceInfo device = new DeviceInfo().setDevId("d1").setOsType("ANDROID")
+        .setVersionMajor(5).setTags(Arrays.asList("a", "b"))
+        .setExtras(Collections.singletonMap("k", "v"));
+    assertSameJson(device);
+    assertSameJson(new DevReg().setApiKey("key").setDevId("d2")
+        .setPushType("GCM").setPushToken("token"));
+
+    assertSameJson(new MsgsState.Request(Arrays.asList("m1", "m2")));
+    MsgsState.MessageStatus status = new MsgsState.MessageStatus()
+        .setState(MessageState.DELIVERED).setRecipient("u2");
+    assertSameJson(status);
+    MsgsState.MessageStatusList statuses = new MsgsState.MessageStatusList();
+    statuses.add(status);
+    assertSameJson(statuses);
+    MsgsState.Response resp = new MsgsState.Response();
+    resp.put("m1", statuses);
+    assertSameJson(resp);
+
+    assertSameJson(new MMXTopicId("u1", "sports"));
+    assertSameJson(new MMXChannelId("news"));
+  }
+}
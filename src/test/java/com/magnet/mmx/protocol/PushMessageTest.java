@@ -0,0 +1,60 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.magnet.mmx.util.InvalidMessageException;
+
+/**
+ * Decoding of the push messages, and the rejection of malformed ones.
+ */
+public class PushMessageTest {
+  private static void assertInvalid(String pushMsg) throws Exception {
+    try {
+      PushMessage.decode(pushMsg, null);
+      fail("Decoded a malformed push message: "+pushMsg);
+    } catch (InvalidMessageException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    GCMPayload payload = new GCMPayload();
+    payload.setTitle("title");
+    payload.setBody("body");
+    String pushMsg = PushMessage.encode(PushMessage.Action.PUSH, "retrieve",
+        payload);
+    PushMessage msg = PushMessage.decode(pushMsg, null);
+    assertEquals(PushMessage.Action.PUSH, msg.getAction());
+    assertEquals("retrieve", msg.getType());
+    assertEquals("body", ((GCMPayload) msg.getPayload()).getBody());
+
+    msg = PushMessage.decode(pushMsg+"  \r\n", null);
+    assertEquals("title", ((GCMPayload) msg.getPayload()).getTitle());
+  }
+
+  @Test
+  public void testTrailingData() throws Exception {
+    assertInvalid("mmx:p:retrieve\r\n{\"body\":\"a\"}}");
+    assertInvalid("mmx:p:retrieve\r\n{\"body\":\"a\"} garbage");
+    assertInvalid("mmx:p:retrieve\r\n{\"body\":\"a\"}{\"body\":\"b\"}");
+  }
+}
@@ -0,0 +1,77 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.zip.DataFormatException;
+
+import org.junit.Test;
+
+/**
+ * Round trips of the pooled compressor, the converters and the preset
+ * dictionary, including empty data.
+ */
+public class CompressorTest {
+  private final static byte[] DATA =
+      "{\"msgId\":\"abc\",\"from\":\"john.doe\",\"content\":\"hello\"}".getBytes();
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    byte[] compressed = Compressor.DEFAULT.compress(DATA, 0, DATA.length);
+    assertArrayEquals(DATA, Compressor.DEFAULT.decompress(compressed, 0,
+        compressed.length));
+  }
+
+  @Test
+  public void testEmptyData() throws Exception {
+    byte[] compressed = Compressor.DEFAULT.compress(new byte[0], 0, 0);
+    assertEquals(0, Compressor.DEFAULT.decompress(compressed, 0,
+        compressed.length).length);
+  }
+
+  @Test
+  public void testTruncatedData() {
+    byte[] compressed = Compressor.DEFAULT.compress(DATA, 0, DATA.length);
+    try {
+      Compressor.DEFAULT.decompress(compressed, 0, compressed.length / 2);
+      fail("Truncated data must not be decompressed");
+    } catch (DataFormatException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testEmptyText() {
+    assertEquals("", Converter.Inflator.convert(
+        Converter.Deflator.convert("")).toString());
+    assertEquals("", Converter.JsonInflator.convert(
+        Converter.JsonDeflator.convert("")).toString());
+  }
+
+  @Test
+  public void testDictionary() throws Exception {
+    byte[] compressed = CompressionDictionary.CURRENT.compress(DATA, 0,
+        DATA.length);
+    assertArrayEquals(DATA, CompressionDictionary.decompress(compressed, 0,
+        compressed.length));
+    compressed = CompressionDictionary.CURRENT.compress(new byte[0], 0, 0);
+    assertEquals(0, CompressionDictionary.decompress(compressed, 0,
+        compressed.length).length);
+  }
+}
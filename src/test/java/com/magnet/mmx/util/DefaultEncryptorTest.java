@@ -0,0 +1,173 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Round trips of the encryption, e.g. with the destination buffers larger
+ * than required, and the rejection of tampered data.
+ */
+public class DefaultEncryptorTest {
+  private final static int SLACK = 100;
+
+  private static DefaultEncryptor newEncryptor() throws Exception {
+    byte[] key = new byte[EncryptorConfig.DEFAULT_KEY_SIZE];
+    new Random(1).nextBytes(key);
+    return new DefaultEncryptor(key);
+  }
+
+  private static byte[] plain(int len) {
+    byte[] data = new byte[len];
+    new Random(len).nextBytes(data);
+    return data;
+  }
+
+  private static void roundTrip(boolean direct, int plainLen) throws Exception {
+    DefaultEncryptor encryptor = newEncryptor();
+    byte[] data = plain(plainLen);
+    int size = encryptor.getEncryptedSize(data.length) + SLACK;
+    ByteBuffer dst = direct ? ByteBuffer.allocateDirect(size) :
+      ByteBuffer.allocate(size);
+    int len = encryptor.encrypt(ByteBuffer.wrap(data), dst);
+    assertEquals(len, dst.position());
+
+    dst.flip();
+    byte[] cipherData = new byte[len];
+    dst.duplicate().get(cipherData);
+    assertArrayEquals(data, encryptor.decode(cipherData));
+
+    ByteBuffer out = ByteBuffer.allocateDirect(encryptor.getDecryptedSize(len)
+        + SLACK);
+    assertEquals(data.length, encryptor.decrypt(dst, out));
+    out.flip();
+    byte[] result = new byte[out.remaining()];
+    out.get(result);
+    assertArrayEquals(data, result);
+  }
+
+  @Test
+  public void testOversizedDirectBuffer() throws Exception {
+    roundTrip(true, 1000);
+  }
+
+  @Test
+  public void testOversizedHeapBuffer() throws Exception {
+    roundTrip(false, 1000);
+  }
+
+  @Test
+  public void testEmptyData() throws Exception {
+    roundTrip(true, 0);
+  }
+
+  private static DefaultEncryptor newAeadEncryptor() throws Exception {
+    byte[] key = new byte[EncryptorConfig.DEFAULT_KEY_SIZE];
+    new Random(1).nextBytes(key);
+    EncryptorConfig cfg = new EncryptorConfig();
+    cfg.setMode(EncryptorConfig.MODE_GCM);
+    cfg.setSegmentSize(256);
+    return new DefaultEncryptor(cfg, key);
+  }
+
+  private static byte[] readAll(InputStream is) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    byte[] buf = new byte[100];
+    int n;
+    while ((n = is.read(buf)) >= 0) {
+      baos.write(buf, 0, n);
+    }
+    return baos.toByteArray();
+  }
+
+  @Test
+  public void testSegmentedStream() throws Exception {
+    DefaultEncryptor encryptor = newAeadEncryptor();
+    for (int len : new int[] { 1, 256, 1000 }) {
+      byte[] data = plain(len);
+      byte[] cipherData = encryptor.encode(data);
+      assertArrayEquals(data, readAll(encryptor.decodeStream(
+          new ByteArrayInputStream(cipherData))));
+    }
+  }
+
+  @Test
+  public void testTamperedSegmentedData() throws Exception {
+    DefaultEncryptor encryptor = newAeadEncryptor();
+    byte[] cipherData = encryptor.encode(plain(1000));
+    cipherData[SegmentedCipher.HEADER_SIZE] ^= 1;
+    try {
+      encryptor.decode(cipherData);
+      fail("Tampered data is decoded");
+    } catch (RuntimeException e) {
+      // Expected.
+    }
+    ByteBuffer src = ByteBuffer.wrap(cipherData);
+    try {
+      encryptor.decrypt(src, ByteBuffer.allocate(cipherData.length));
+      fail("Tampered data is decrypted");
+    } catch (IOException e) {
+      assertEquals(0, src.position());
+    }
+    try {
+      readAll(encryptor.decodeStream(new ByteArrayInputStream(cipherData)));
+      fail("Tampered stream is decoded");
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testForgedSegmentSize() throws Exception {
+    DefaultEncryptor encryptor = newAeadEncryptor();
+    byte[] cipherData = encryptor.encode(plain(1000));
+    // Claim 1MB segments, larger than any configured segment size.
+    cipherData[5] = 0x10;
+    try {
+      encryptor.decodeChannel(Channels.newChannel(
+          new ByteArrayInputStream(cipherData)),
+          Channels.newChannel(new ByteArrayOutputStream()));
+      fail("Forged header is accepted");
+    } catch (IOException e) {
+      assertEquals("data corrupted; invalid header", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testUniqueSubkeys() throws Exception {
+    DefaultEncryptor encryptor = newAeadEncryptor();
+    byte[] data = plain(100);
+    byte[] first = encryptor.encode(data);
+    byte[] second = encryptor.encode(data);
+    assertFalse(Arrays.equals(first, second));
+    assertArrayEquals(data, encryptor.decode(first));
+    assertArrayEquals(data, encryptor.decode(second));
+  }
+}
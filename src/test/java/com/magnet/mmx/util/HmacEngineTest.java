@@ -0,0 +1,60 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.magnet.mmx.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.Charset;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+/**
+ * The engines share the per-thread cache, so a key cached by one algorithm
+ * must not sign for another.
+ */
+public class HmacEngineTest {
+  private final static Charset UTF8 = Charset.forName("UTF-8");
+
+  private static byte[] expected(String algo, String key, byte[] data)
+      throws Exception {
+    Mac mac = Mac.getInstance(algo);
+    mac.init(new SecretKeySpec(key.getBytes(UTF8), algo));
+    return mac.doFinal(data);
+  }
+
+  @Test
+  public void testSharedCache() throws Exception {
+    byte[] data = "data".getBytes(UTF8);
+    HmacEngine engine = new HmacEngine(HmacEngine.HMAC_SHA1, 1);
+    for (int i = 0; i < 2; i++) {
+      byte[] sig1 = engine.sign("key", data);
+      byte[] sig256 = HmacEngine.SHA256.sign("key", data);
+      assertArrayEquals(expected(HmacEngine.HMAC_SHA1, "key", data), sig1);
+      assertArrayEquals(expected(HmacEngine.HMAC_SHA256, "key", data), sig256);
+      assertEquals(20, sig1.length);
+      assertTrue(HmacEngine.SHA256.verify("key", data, 0, data.length, sig256));
+      assertTrue(engine.verify("key", data, 0, data.length, sig1));
+      assertFalse(engine.verify("key", data, 0, data.length, sig256));
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*   Copyright (c) 2015 Magnet Systems, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.magnet.mmx.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * The parsed dates must be the same as SimpleDateFormat with "SSS", which
+ * takes the fraction as a count of milliseconds.
+ */
+public class TimeUtilTest {
+  private static long legacyParse(String isoDate) {
+    SimpleDateFormat fmtr = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+    fmtr.setTimeZone(TimeZone.getTimeZone("UTC"));
+    Date date = fmtr.parse(isoDate, new ParsePosition(0));
+    return date.getTime();
+  }
+
+  private static void assertSameAsLegacy(String isoDate) {
+    assertEquals(legacyParse(isoDate), TimeUtil.toDate(isoDate).getTime());
+  }
+
+  @Test
+  public void testCanonicalFraction() {
+    assertSameAsLegacy("2015-01-01T00:00:00.123Z");
+    assertSameAsLegacy("2015-06-30T23:59:59.999Z");
+  }
+
+  @Test
+  public void testShortFraction() {
+    assertSameAsLegacy("2015-01-01T00:00:00.5Z");
+    assertSameAsLegacy("2015-01-01T00:00:00.05Z");
+  }
+
+  @Test
+  public void testLongFraction() {
+    assertSameAsLegacy("2015-01-01T00:00:00.12345Z");
+    assertSameAsLegacy("2015-01-01T00:00:00.0001Z");
+  }
+
+  @Test
+  public void testFormatRoundTrip() {
+    long millis = 1420070400123L;
+    assertEquals(millis, TimeUtil.parse(TimeUtil.format(millis)));
+  }
+}